@@ -203,6 +203,8 @@ public class BufrConfig {
   private void scanBufrFile(RandomAccessFile raf) throws Exception {
     NetcdfFile ncd = null;
     countObs = 0;
+    boolean readAhead = raf.isReadAhead();
+    raf.setReadAhead(true); // messages are scanned front to back
 
     try {
       MessageScanner scanner = new MessageScanner(raf);
@@ -234,6 +236,7 @@ public class BufrConfig {
       setStandardActions(rootConverter);
 
     } finally {
+      raf.setReadAhead(readAhead);
       if (ncd != null)
         ncd.close();
     }
@@ -477,6 +477,7 @@ public class FeatureCollectionConfig {
     public boolean intvMerge = intvMergeDef;
     public boolean useCenter = useCenterDef;
     public boolean unionRuntimeCoord;
+    public int indexThreads = 1; // number of files whose gbx9 index is read or created at once
 
     public GribIntvFilter intvFilter;
     public TimeUnitConverterHash tuc;
@@ -599,6 +600,10 @@ public class FeatureCollectionConfig {
         unionRuntimeCoord = true;
         return true;
       }
+      if (name.equalsIgnoreCase("indexThreads")) {
+        indexThreads = Integer.parseInt(value); // eg "4"
+        return true;
+      }
       return false;
     }
 
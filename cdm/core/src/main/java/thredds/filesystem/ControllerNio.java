@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package thredds.filesystem;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import thredds.inventory.CollectionConfig;
+import thredds.inventory.MController;
+import thredds.inventory.MFile;
+import ucar.nc2.util.CloseableIterator;
+
+/**
+ * Implements an MController with java.nio, reading the attributes of each file once, while listing its directory.
+ * <p>
+ * If an Executor is given, the subdirectories are listed concurrently on it, and the files are returned by the
+ * iterator as soon as they are found, in no particular order. At most 10000 files wait to be returned, then the
+ * listing waits for the iterator. The iterator of getInventoryAll() is a CloseableIterator: closing it, or dropping it
+ * before the end, stops the listing. Otherwise the directories are listed on the calling thread, as the iterator
+ * needs them.
+ * <p>
+ * In incremental mode (or if recheck is false), the listing of each directory is kept, and is used again by the next
+ * scan if the directory's last modified time has not changed. Adding, removing or renaming a file changes the last
+ * modified time of its directory, but changing the contents of a file does not, so then its length and last modified
+ * time are stale until something else in the directory changes. The listings are kept for all the collections
+ * scanned by this controller; a complete scan drops the directories under its top directory that are gone.
+ * <p>
+ * Symbolic links are followed, like ControllerOS.
+ */
+@ThreadSafe
+public class ControllerNio implements MController {
+  private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ControllerNio.class);
+
+  // a listing made this soon after its directory was modified may have missed a change in the same clock tick
+  private static final long RACY_MSECS = 2000;
+  private static final int MAX_QUEUED = 10 * 1000;
+  // how often a waiting listing checks that its scan was not closed or dropped
+  private static final long WAIT_MSECS = 100;
+
+  @Nullable
+  private final Executor executor;
+  private final boolean incremental;
+  private final int maxQueued;
+  private final Map<Path, Listing> listings = new ConcurrentHashMap<>(); // from the last scans
+
+  /** List directories on the calling thread, always reading from the OS. */
+  public ControllerNio() {
+    this(null, false);
+  }
+
+  /**
+   * @param executor list subdirectories concurrently on this Executor, or on the calling thread if null.
+   * @param incremental only list the directories that were modified since the last scan.
+   */
+  public ControllerNio(@Nullable Executor executor, boolean incremental) {
+    this(executor, incremental, MAX_QUEUED);
+  }
+
+  ControllerNio(@Nullable Executor executor, boolean incremental, int maxQueued) {
+    this.executor = executor;
+    this.incremental = incremental;
+    this.maxQueued = maxQueued;
+  }
+
+  @Override
+  @Nullable
+  public Iterator<MFile> getInventoryAll(CollectionConfig mc, boolean recheck) {
+    Path top = getTopDirectory(mc);
+    if (top == null)
+      return null;
+    return new Scan(mc, top, incremental || !recheck);
+  }
+
+  @Override
+  @Nullable
+  public Iterator<MFile> getInventoryTop(CollectionConfig mc, boolean recheck) throws IOException {
+    Path top = getTopDirectory(mc);
+    if (top == null)
+      return null;
+    Listing listing = listDirectory(top, null, incremental || !recheck);
+    List<MFile> result = new ArrayList<>(listing.files.size());
+    for (MFile mfile : listing.files) {
+      if (mc.accept(mfile))
+        result.add(mfile);
+    }
+    return result.iterator();
+  }
+
+  @Override
+  @Nullable
+  public Iterator<MFile> getSubdirs(CollectionConfig mc, boolean recheck) {
+    Path top = getTopDirectory(mc);
+    if (top == null)
+      return null;
+    try {
+      Listing listing = listDirectory(top, null, incremental || !recheck);
+      List<MFile> result = new ArrayList<>(listing.subdirs.size());
+      for (Path subdir : listing.subdirs) {
+        MFile mfile = new MFileOS7(subdir);
+        if (mc.accept(mfile))
+          result.add(mfile);
+      }
+      return result.iterator();
+    } catch (IOException e) {
+      logger.warn("I/O error on {}", top, e);
+      return null;
+    }
+  }
+
+  @Override
+  public void close() {} // NOOP, the Executor belongs to the caller
+
+  @Nullable
+  private static Path getTopDirectory(CollectionConfig mc) {
+    String path = mc.getDirectoryName();
+    if (path.startsWith("file:")) {
+      path = path.substring(5);
+    }
+    Path top = Paths.get(path);
+    return Files.isDirectory(top) ? top : null;
+  }
+
+  ////////////////////////////////////////////////////////////
+
+  // the contents of one directory
+  private static class Listing {
+    final long lastModified; // of the directory when it was listed
+    final long listed; // when it was listed
+    final List<MFile> files;
+    final List<Path> subdirs;
+
+    Listing(long lastModified, long listed, List<MFile> files, List<Path> subdirs) {
+      this.lastModified = lastModified;
+      this.listed = listed;
+      this.files = files;
+      this.subdirs = subdirs;
+    }
+
+    boolean isCurrent(long dirLastModified) {
+      return lastModified == dirLastModified && listed - lastModified >= RACY_MSECS;
+    }
+  }
+
+  /**
+   * List one directory, or use its previous listing if it has not been modified since.
+   *
+   * @param dir the directory
+   * @param attr attributes of dir, or null to read them
+   * @param useCache use the previous listing if it is current
+   */
+  private Listing listDirectory(Path dir, @Nullable BasicFileAttributes attr, boolean useCache) throws IOException {
+    if (attr == null)
+      attr = Files.readAttributes(dir, BasicFileAttributes.class);
+    long lastModified = attr.lastModifiedTime().toMillis();
+    if (useCache) {
+      Listing previous = listings.get(dir);
+      if (previous != null && previous.isCurrent(lastModified))
+        return previous;
+    }
+
+    long listed = System.currentTimeMillis();
+    List<MFile> files = new ArrayList<>();
+    List<Path> subdirs = new ArrayList<>();
+    // depth 1: each entry comes with the attributes read while listing the directory
+    Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes fileAttr) {
+        if (fileAttr.isDirectory())
+          subdirs.add(file);
+        else
+          files.add(new MFileOS7(file, fileAttr));
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException exc) {
+        logger.warn("I/O error on {}", file, exc);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return new Listing(lastModified, listed, files, subdirs);
+  }
+
+  // keep the listings of a complete scan, and drop the directories under its top directory that it did not find
+  private void updateListings(Path top, Map<Path, Listing> scanned) {
+    listings.keySet().removeIf(dir -> dir.startsWith(top) && !scanned.containsKey(dir));
+    listings.putAll(scanned);
+  }
+
+  // the iterator over the files of a collection; the Walk it starts stops if it is closed or garbage collected
+  private class Scan implements CloseableIterator<MFile> {
+    private final Walk walk;
+    private MFile next;
+    private boolean done;
+
+    Scan(CollectionConfig mc, Path top, boolean useCache) {
+      this.walk = new Walk(mc, top, useCache, this);
+      walk.addDirectory(top);
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next != null)
+        return true;
+      if (done)
+        return false;
+
+      Object result;
+      try {
+        while ((result = walk.poll(0)) == null) {
+          if (walk.cancelled)
+            throw new IllegalStateException("scan of " + walk.mc.getDirectoryName() + " was interrupted");
+          Path dir = walk.todo.poll();
+          if (dir != null)
+            walk.scanDirectory(dir, true);
+          else if ((result = walk.poll(WAIT_MSECS)) != null) // meanwhile, a rejected directory may come in todo
+            break;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        close();
+        throw new IllegalStateException("interrupted while scanning " + walk.mc.getDirectoryName(), e);
+      }
+
+      if (result == walk.end) {
+        done = true;
+        return false;
+      }
+      next = (MFile) result;
+      return true;
+    }
+
+    @Override
+    public MFile next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      MFile result = next;
+      next = null;
+      return result;
+    }
+
+    @Override
+    public void close() {
+      done = true;
+      next = null;
+      walk.cancel();
+    }
+  }
+
+  // lists all the directories of a collection; does not refer to its Scan, so that a dropped Scan can be collected
+  private class Walk {
+    private final Object end = new Object(); // put in found after the last directory
+    private final CollectionConfig mc;
+    private final Path top;
+    private final boolean useCache;
+    private final WeakReference<Scan> owner;
+    // files found on the executor, and end; at most maxQueued files, counted by room
+    private final BlockingQueue<Object> found = new LinkedBlockingQueue<>();
+    private final Semaphore room = new Semaphore(maxQueued);
+    private final Queue<MFile> local = new ArrayDeque<>(); // files found on the thread of the iterator
+    private final Queue<Path> todo = new ConcurrentLinkedQueue<>(); // to be listed on the thread of the iterator
+    private final AtomicInteger pendingDirs = new AtomicInteger();
+    private final Set<Object> visited = ConcurrentHashMap.newKeySet(); // directory keys, in case of link cycles
+    private final Map<Path, Listing> scanned = new ConcurrentHashMap<>();
+    private volatile boolean cancelled;
+
+    Walk(CollectionConfig mc, Path top, boolean useCache, Scan owner) {
+      this.mc = mc;
+      this.top = top;
+      this.useCache = useCache;
+      this.owner = new WeakReference<>(owner);
+    }
+
+    private boolean isCancelled() {
+      if (!cancelled && owner.get() == null) {
+        logger.debug("scan of {} was dropped before the end", mc.getDirectoryName());
+        cancelled = true;
+      }
+      return cancelled;
+    }
+
+    private void cancel() {
+      cancelled = true;
+      found.clear();
+      local.clear();
+      todo.clear();
+    }
+
+    // on the thread of the iterator: the next file or end, or null if none came within msecs
+    @Nullable
+    private Object poll(long msecs) throws InterruptedException {
+      MFile mfile = local.poll();
+      if (mfile != null)
+        return mfile;
+      Object result = found.poll(msecs, TimeUnit.MILLISECONDS);
+      if (result instanceof MFile)
+        room.release();
+      return result;
+    }
+
+    private void addDirectory(Path dir) {
+      pendingDirs.incrementAndGet();
+      if (executor == null) {
+        todo.add(dir);
+        return;
+      }
+      try {
+        executor.execute(() -> scanDirectory(dir, false));
+      } catch (RejectedExecutionException e) {
+        todo.add(dir);
+      }
+    }
+
+    // onIterator: called by the iterator, which must not wait for room
+    private void scanDirectory(Path dir, boolean onIterator) {
+      try {
+        if (isCancelled())
+          return;
+        BasicFileAttributes attr = Files.readAttributes(dir, BasicFileAttributes.class);
+        Object key = attr.fileKey();
+        if (key != null && !visited.add(key))
+          return; // already seen through another link
+
+        Listing listing = listDirectory(dir, attr, useCache);
+        scanned.put(dir, listing);
+        for (MFile mfile : listing.files) {
+          if (!mc.accept(mfile))
+            continue;
+          if (onIterator)
+            local.add(mfile);
+          else if (waitForRoom())
+            found.add(mfile);
+          else
+            return; // cancelled
+        }
+        for (Path subdir : listing.subdirs)
+          addDirectory(subdir);
+
+      } catch (IOException | RuntimeException e) {
+        logger.warn("I/O error on {}", dir, e);
+
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        cancelled = true;
+
+      } finally {
+        if (pendingDirs.decrementAndGet() == 0 && !cancelled) {
+          updateListings(top, scanned);
+          found.add(end);
+        }
+      }
+    }
+
+    // wait until the iterator has taken enough files, return false if cancelled
+    private boolean waitForRoom() throws InterruptedException {
+      while (!room.tryAcquire(WAIT_MSECS, TimeUnit.MILLISECONDS)) {
+        if (isCancelled())
+          return false;
+      }
+      return true;
+    }
+  }
+
+}
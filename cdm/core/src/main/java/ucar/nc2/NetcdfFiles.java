@@ -14,6 +14,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.net.URL;
 import java.nio.channels.FileLock;
@@ -23,13 +24,14 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import javax.annotation.Nullable;
-import ucar.nc2.internal.iosp.netcdf3.N3headerNew;
 import ucar.nc2.internal.iosp.netcdf3.N3iospNew;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.FileSignature;
 import ucar.nc2.iosp.IOServiceProvider;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.util.DiskCache;
@@ -58,6 +60,11 @@ public class NetcdfFiles {
   private static boolean loadWarnings = false;
   private static boolean userLoads;
 
+  // loaded once, instead of on each open; see getServiceProviders() and getIospDispatch()
+  private static volatile ServiceProviders serviceProviders;
+  private static volatile IospDispatch iospDispatch;
+  private static final AtomicInteger registrations = new AtomicInteger(); // changes when an IOSP is registered
+
   // load core service providers
   static {
     // Make sure RC gets loaded
@@ -102,6 +109,13 @@ public class NetcdfFiles {
         log.info("Cant load class InMemoryRandomAccessFileProvider", e);
     }
 
+    try {
+      registerRandomAccessFileProvider("ucar.unidata.io.MMapRandomAccessFile$Provider");
+    } catch (Throwable e) {
+      if (loadWarnings)
+        log.info("Cant load class MMapRandomAccessFileProvider", e);
+    }
+
     // if a user explicitly registers an IOSP or RandomAccessFile implementation via
     // registerIOProvider or registerRandomAccessFileProvider, this ensures they are tried first,
     // even before the core implementations.
@@ -156,6 +170,7 @@ public class NetcdfFiles {
       registeredProviders.add(0, spi); // put user stuff first
     else
       registeredProviders.add(spi);
+    registrations.incrementAndGet();
   }
 
   /**
@@ -422,7 +437,7 @@ public class NetcdfFiles {
 
     if (raf == null) {
       // look for dynamically loaded RandomAccessFile Providers
-      for (RandomAccessFileProvider provider : ServiceLoader.load(RandomAccessFileProvider.class)) {
+      for (RandomAccessFileProvider provider : getServiceProviders().rafProviders) {
         if (provider.isOwnerOf(location)) {
           raf = provider.open(location, buffer_size);
           // might cause issues if the end of a resource location string
@@ -782,49 +797,163 @@ public class NetcdfFiles {
     if (NetcdfFile.debugSPI)
       log.info("NetcdfFile try to open = {}", raf.getLocation());
 
-    // Registered providers override defaults.
-    for (IOServiceProvider registeredSpi : registeredProviders) {
-      if (NetcdfFile.debugSPI)
-        log.info(" try iosp = {}", registeredSpi.getClass().getName());
-
-      if (registeredSpi.isValidFile(raf)) {
-        // need a new instance for thread safety
-        Class c = registeredSpi.getClass();
-        try {
-          return (IOServiceProvider) c.newInstance();
-        } catch (InstantiationException e) {
-          throw new IOException("IOServiceProvider " + c.getName() + "must have no-arg constructor.");
-        } catch (IllegalAccessException e) {
-          throw new IOException("IOServiceProvider " + c.getName() + " IllegalAccessException: " + e.getMessage());
-        }
+    IospDispatch dispatch = getIospDispatch();
+    int n = dispatch.iosps.size();
+    boolean[] tried = new boolean[n];
+
+    // Registered providers override defaults, unless they have signatures.
+    for (int i = 0; i < dispatch.nregistered; i++) {
+      if (dispatch.signatures.get(i).isEmpty()) {
+        tried[i] = true;
+        IOServiceProvider iosp = probe(dispatch.iosps.get(i), raf);
+        if (iosp != null)
+          return iosp;
       }
     }
 
-    if (N3headerNew.isValidFile(raf)) {
-      return new N3iospNew();
+    // Then the providers whose signature matches, so usually only the right one is asked.
+    byte[] header = new byte[dispatch.headerSize];
+    int headerLength = readHeader(raf, header);
+    for (int i = 0; i < n; i++) {
+      if (!tried[i] && matches(dispatch.signatures.get(i), header, headerLength, raf.getLocation())) {
+        tried[i] = true;
+        IOServiceProvider iosp = probe(dispatch.iosps.get(i), raf);
+        if (iosp != null)
+          return iosp;
+      }
+    }
 
-    } else {
-      // look for dynamically loaded IOSPs, and sort before using
-      final ServiceLoader<IOServiceProvider> iosps = ServiceLoader.load(IOServiceProvider.class);
-      final List<IOServiceProvider> sortedIosps = Lists.newArrayList(iosps);
-      Collections.sort(sortedIosps);
-
-      for (IOServiceProvider loadedSpi : sortedIosps) {
-        if (loadedSpi.isValidFile(raf)) {
-          Class c = loadedSpi.getClass();
-          try {
-            return (IOServiceProvider) c.newInstance();
-          } catch (InstantiationException e) {
-            throw new IOException("IOServiceProvider " + c.getName() + "must have no-arg constructor.");
-          } catch (IllegalAccessException e) {
-            throw new IOException("IOServiceProvider " + c.getName() + " IllegalAccessException: " + e.getMessage());
-          }
-        }
+    // Then all the others, in order, except those that can only open files with a matching signature.
+    for (int i = 0; i < n; i++) {
+      if (!tried[i] && !dispatch.requireSignature.get(i)) {
+        IOServiceProvider iosp = probe(dispatch.iosps.get(i), raf);
+        if (iosp != null)
+          return iosp;
       }
     }
     return null;
   }
 
+  /**
+   * Ask a new instance of the IOSP if it can open the file, since isValidFile() may keep state in the instance.
+   *
+   * @return the new instance if it can open the file, else null
+   */
+  @Nullable
+  private static IOServiceProvider probe(IOServiceProvider iosp, ucar.unidata.io.RandomAccessFile raf)
+      throws IOException {
+    if (NetcdfFile.debugSPI)
+      log.info(" try iosp = {}", iosp.getClass().getName());
+    IOServiceProvider result = newInstance(iosp);
+    return result.isValidFile(raf) ? result : null;
+  }
+
+  // need a new instance for thread safety
+  private static IOServiceProvider newInstance(IOServiceProvider iosp) throws IOException {
+    Class c = iosp.getClass();
+    try {
+      return (IOServiceProvider) c.newInstance();
+    } catch (InstantiationException e) {
+      throw new IOException("IOServiceProvider " + c.getName() + "must have no-arg constructor.");
+    } catch (IllegalAccessException e) {
+      throw new IOException("IOServiceProvider " + c.getName() + " IllegalAccessException: " + e.getMessage());
+    }
+  }
+
+  /** Read the start of the file, return the number of bytes read. */
+  private static int readHeader(ucar.unidata.io.RandomAccessFile raf, byte[] header) throws IOException {
+    if (header.length == 0 || raf.isDirectory())
+      return 0;
+    raf.seek(0);
+    int count = 0;
+    while (count < header.length) {
+      int nread = raf.read(header, count, header.length - count);
+      if (nread <= 0)
+        break;
+      count += nread;
+    }
+    raf.seek(0);
+    return count;
+  }
+
+  private static boolean matches(List<FileSignature> signatures, byte[] header, int headerLength, String location) {
+    for (FileSignature signature : signatures) {
+      if (signature.matches(header, headerLength, location))
+        return true;
+    }
+    return false;
+  }
+
+  /** The providers found by the ServiceLoader, for the context class loader. */
+  private static class ServiceProviders {
+    private final WeakReference<ClassLoader> loader;
+    private final List<IOServiceProvider> iosps; // sorted
+    private final List<RandomAccessFileProvider> rafProviders;
+
+    private ServiceProviders(ClassLoader loader) {
+      this.loader = new WeakReference<>(loader);
+      this.iosps = Lists.newArrayList(ServiceLoader.load(IOServiceProvider.class, loader));
+      Collections.sort(this.iosps);
+      this.rafProviders = Lists.newArrayList(ServiceLoader.load(RandomAccessFileProvider.class, loader));
+    }
+  }
+
+  private static ServiceProviders getServiceProviders() {
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    if (loader == null)
+      loader = ClassLoader.getSystemClassLoader();
+    ServiceProviders result = serviceProviders;
+    if (result == null || result.loader.get() != loader) {
+      result = new ServiceProviders(loader);
+      serviceProviders = result;
+    }
+    return result;
+  }
+
+  /**
+   * All the IOSPs in the order they are tried, with their signatures. These instances are shared, so they are not
+   * asked isValidFile(), see probe().
+   */
+  private static class IospDispatch {
+    private final ServiceProviders services;
+    private final int registrations;
+    private final List<IOServiceProvider> iosps = new ArrayList<>();
+    private final List<List<FileSignature>> signatures = new ArrayList<>();
+    private final List<Boolean> requireSignature = new ArrayList<>();
+    private final int nregistered;
+    private final int headerSize;
+
+    private IospDispatch(ServiceProviders services, int registrations) {
+      this.services = services;
+      this.registrations = registrations;
+      iosps.addAll(registeredProviders);
+      nregistered = iosps.size();
+      iosps.add(new N3iospNew());
+      iosps.addAll(services.iosps);
+
+      int size = 0;
+      for (IOServiceProvider iosp : iosps) {
+        List<FileSignature> sigs = iosp.getFileSignatures();
+        signatures.add(sigs);
+        requireSignature.add(!sigs.isEmpty() && iosp.requiresFileSignature());
+        for (FileSignature sig : sigs)
+          size = Math.max(size, sig.getHeaderSize());
+      }
+      this.headerSize = size;
+    }
+  }
+
+  private static IospDispatch getIospDispatch() {
+    ServiceProviders services = getServiceProviders();
+    int count = registrations.get();
+    IospDispatch result = iospDispatch;
+    if (result == null || result.services != services || result.registrations != count) {
+      result = new IospDispatch(services, count);
+      iospDispatch = result;
+    }
+    return result;
+  }
+
   public static NetcdfFile build(IOServiceProvider spi, ucar.unidata.io.RandomAccessFile raf, String location,
       ucar.nc2.util.CancelTask cancelTask) throws IOException {
 
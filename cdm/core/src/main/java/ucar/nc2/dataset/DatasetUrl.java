@@ -61,11 +61,13 @@ public class DatasetUrl {
     StringBuilder buf = new StringBuilder(url);
     // If there are any leading protocols, then they must stop at the first '/'.
     int slashpos = buf.indexOf("/");
-    // Check special cases of file:<path> or cdms3:<path> with no slashes after:
+    // Check special cases of file:<path>, cdms3:<path> or mmap:<path> with no slashes after:
     if (url.startsWith("file:") && "/\\".indexOf(url.charAt(5)) < 0) {
       allprotocols.add("file");
     } else if (url.startsWith("cdms3:") && "/\\".indexOf(url.charAt(6)) < 0) {
       allprotocols.add("cdms3");
+    } else if (url.startsWith("mmap:") && "/\\".indexOf(url.charAt(5)) < 0) {
+      allprotocols.add("mmap");
     } else if (slashpos >= 0) {
       // Remove everything after the first slash
       buf.delete(slashpos + 1, buf.length());
@@ -151,7 +153,7 @@ public class DatasetUrl {
       // - we have file://<path> or file:<path>; we need to see if
       // the extension can help, otherwise, start defaulting.
       // - we have a simple url: e.g. http://... ; contact the server
-      if (leadProtocol.equals("file") || leadProtocol.equals("cdms3")) {
+      if (leadProtocol.equals("file") || leadProtocol.equals("cdms3") || leadProtocol.equals("mmap")) {
         serviceType = decodePathExtension(trueUrl); // look at the path extension
         // If it's a S3 file, it is expensive to peak inside to check if it's ncml, so we will only check extension
         if (serviceType == null && !leadProtocol.equals("cdms3") && checkIfNcml(new File(location))) {
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dataset;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.filter.Enhancement;
+
+/**
+ * Applies a list of {@link Enhancement}s to numeric data in one pass over blocks of values. Each block is read from
+ * the primitive storage of the data into a double[] kept by the thread, converted in place by each enhancement in
+ * turn, then narrowed into the primitive storage of the result, as {@code Number.xxxValue()} would. No value is boxed,
+ * and the data is never copied to a double[] as a whole. Large arrays are converted a block per task in parallel.
+ * Thread safe if the enhancements are.
+ */
+class EnhancementChain {
+  static final int BLOCK_SIZE = 4096;
+  // fewer values than this are converted on the calling thread
+  private static final int PARALLEL_THRESHOLD = 16 * BLOCK_SIZE;
+
+  private static final ThreadLocal<double[]> blocks = ThreadLocal.withInitial(() -> new double[BLOCK_SIZE]);
+
+  private final Enhancement[] enhancements;
+  private final DataType outType;
+
+  /**
+   * @param enhancements applied in this order
+   * @param outType the data type of the result
+   */
+  EnhancementChain(List<Enhancement> enhancements, DataType outType) {
+    this.enhancements = enhancements.toArray(new Enhancement[0]);
+    this.outType = outType;
+  }
+
+  /** Convert the data, giving a new Array of outType with the same shape. */
+  Array convert(Array data) {
+    // the storage itself if the data is in canonical order, else a copy of the same primitive type
+    Object in = data.get1DJavaArray(data.getDataType());
+    Array result = Array.factory(outType, data.getShape());
+    Object out = result.getStorage();
+
+    int size = (int) data.getSize();
+    int nblocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    if (size < PARALLEL_THRESHOLD) {
+      for (int b = 0; b < nblocks; b++) {
+        convertBlock(in, out, b * BLOCK_SIZE, Math.min(BLOCK_SIZE, size - b * BLOCK_SIZE));
+      }
+    } else {
+      IntStream.range(0, nblocks).parallel().forEach(
+          b -> convertBlock(in, out, b * BLOCK_SIZE, Math.min(BLOCK_SIZE, size - b * BLOCK_SIZE)));
+    }
+    return result;
+  }
+
+  private void convertBlock(Object in, Object out, int start, int len) {
+    double[] values = blocks.get();
+    read(in, start, values, len);
+    for (Enhancement enhancement : enhancements) {
+      enhancement.convert(values, 0, len);
+    }
+    write(values, len, out, start);
+  }
+
+  // as MAMath.copy() to a double array: values are taken as signed, an UnsignedConversion widens them
+  private static void read(Object in, int start, double[] values, int len) {
+    if (in instanceof double[]) {
+      System.arraycopy((double[]) in, start, values, 0, len);
+    } else if (in instanceof float[]) {
+      float[] src = (float[]) in;
+      for (int i = 0; i < len; i++) {
+        values[i] = src[start + i];
+      }
+    } else if (in instanceof long[]) {
+      long[] src = (long[]) in;
+      for (int i = 0; i < len; i++) {
+        values[i] = src[start + i];
+      }
+    } else if (in instanceof int[]) {
+      int[] src = (int[]) in;
+      for (int i = 0; i < len; i++) {
+        values[i] = src[start + i];
+      }
+    } else if (in instanceof short[]) {
+      short[] src = (short[]) in;
+      for (int i = 0; i < len; i++) {
+        values[i] = src[start + i];
+      }
+    } else if (in instanceof byte[]) {
+      byte[] src = (byte[]) in;
+      for (int i = 0; i < len; i++) {
+        values[i] = src[start + i];
+      }
+    } else if (in instanceof char[]) {
+      char[] src = (char[]) in;
+      for (int i = 0; i < len; i++) {
+        values[i] = src[start + i];
+      }
+    } else {
+      throw new IllegalArgumentException("Cannot enhance data stored as " + in.getClass().getSimpleName());
+    }
+  }
+
+  // as Array.setObject() with a Double
+  private static void write(double[] values, int len, Object out, int start) {
+    if (out instanceof double[]) {
+      System.arraycopy(values, 0, (double[]) out, start, len);
+    } else if (out instanceof float[]) {
+      float[] dst = (float[]) out;
+      for (int i = 0; i < len; i++) {
+        dst[start + i] = (float) values[i];
+      }
+    } else if (out instanceof long[]) {
+      long[] dst = (long[]) out;
+      for (int i = 0; i < len; i++) {
+        dst[start + i] = (long) values[i];
+      }
+    } else if (out instanceof int[]) {
+      int[] dst = (int[]) out;
+      for (int i = 0; i < len; i++) {
+        dst[start + i] = (int) values[i];
+      }
+    } else if (out instanceof short[]) {
+      short[] dst = (short[]) out;
+      for (int i = 0; i < len; i++) {
+        dst[start + i] = (short) values[i];
+      }
+    } else if (out instanceof byte[]) {
+      byte[] dst = (byte[]) out;
+      for (int i = 0; i < len; i++) {
+        dst[start + i] = (byte) values[i];
+      }
+    } else {
+      throw new IllegalArgumentException("Cannot enhance data to " + out.getClass().getSimpleName());
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.filter;
+
+/**
+ * The bit transpose of bitshuffle (https://github.com/kiyo-masui/bitshuffle), also used inside Blosc.
+ * The data is seen as a matrix of nelems rows by 8 * elemSize bits, and transposed: bit k of byte j of element i
+ * goes to bit (i % 8) of byte (i / 8) of row (8 * j + k), each row being nelems / 8 bytes long.
+ */
+final class BitTranspose {
+
+  private BitTranspose() {}
+
+  /** Transpose nelems elements of elemSize bytes from src to dst. nelems must be a multiple of 8. */
+  static void encode(byte[] src, int srcOff, byte[] dst, int dstOff, int nelems, int elemSize) {
+    int rowBytes = nelems / 8;
+    for (int i8 = 0; i8 < rowBytes; i8++) {
+      int elemStart = srcOff + 8 * i8 * elemSize;
+      for (int j = 0; j < elemSize; j++) {
+        long x = 0;
+        for (int m = 0; m < 8; m++)
+          x |= (src[elemStart + m * elemSize + j] & 0xffL) << (8 * m);
+        x = transpose8x8(x);
+        int rowStart = dstOff + 8 * j * rowBytes + i8;
+        for (int k = 0; k < 8; k++)
+          dst[rowStart + k * rowBytes] = (byte) (x >>> (8 * k));
+      }
+    }
+  }
+
+  /** Undo encode(). nelems must be a multiple of 8. */
+  static void decode(byte[] src, int srcOff, byte[] dst, int dstOff, int nelems, int elemSize) {
+    int rowBytes = nelems / 8;
+    for (int i8 = 0; i8 < rowBytes; i8++) {
+      int elemStart = dstOff + 8 * i8 * elemSize;
+      for (int j = 0; j < elemSize; j++) {
+        int rowStart = srcOff + 8 * j * rowBytes + i8;
+        long x = 0;
+        for (int k = 0; k < 8; k++)
+          x |= (src[rowStart + k * rowBytes] & 0xffL) << (8 * k);
+        x = transpose8x8(x);
+        for (int m = 0; m < 8; m++)
+          dst[elemStart + m * elemSize + j] = (byte) (x >>> (8 * m));
+      }
+    }
+  }
+
+  // bit c of byte r <-> bit r of byte c
+  private static long transpose8x8(long x) {
+    long t = (x ^ (x >>> 7)) & 0x00AA00AA00AA00AAL;
+    x = x ^ t ^ (t << 7);
+    t = (x ^ (x >>> 14)) & 0x0000CCCC0000CCCCL;
+    x = x ^ t ^ (t << 14);
+    t = (x ^ (x >>> 28)) & 0x00000000F0F0F0F0L;
+    return x ^ t ^ (t << 28);
+  }
+}
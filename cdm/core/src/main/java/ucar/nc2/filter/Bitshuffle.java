@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Filter implementation of bitshuffle (https://github.com/kiyo-masui/bitshuffle), in pure Java, optionally followed
+ * by LZ4 or Zstandard compression of each block, as in the HDF5 bitshuffle plugin.
+ * <p>
+ * The data is bit transposed in blocks of blocksize elements. The elements left over after the last multiple of 8
+ * are copied as is. Compressed chunks start with the decoded size as a big endian long and the block size in bytes as
+ * a big endian int, then hold each block as its compressed size (a big endian int) followed by the compressed bytes.
+ * <p>
+ * The properties are the client data of the HDF5 filter: {major, minor, patch version, element size, block size,
+ * compression (0 = none, 2 = lz4, 3 = zstd), compression level}, or else the element size, "blocksize" and "cname".
+ */
+public class Bitshuffle extends Filter {
+
+  private static final String name = "bitshuffle";
+
+  private static final int id = 32008;
+
+  private static final int NO_COMPRESSION = 0;
+  private static final int LZ4_COMPRESSION = 2;
+  private static final int ZSTD_COMPRESSION = 3;
+
+  private static final int BLOCKED_MULT = 8;
+  private static final int TARGET_BLOCK_SIZE_B = 8192;
+  private static final int MIN_RECOMMEND_BLOCK = 128;
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+
+  private final int elemSize;
+  private final int blockSize; // elements, 0 = default
+  private final int compression;
+
+  public Bitshuffle(Map<String, Object> properties) {
+    Object data = properties.get(Filters.Keys.DATA);
+    Object elemSizeObj = properties.get(Filters.Keys.ELEM_SIZE);
+    int size = elemSizeObj instanceof Number ? ((Number) elemSizeObj).intValue() : 1;
+    if (data instanceof int[] && ((int[]) data).length > 3) { // HDF5
+      int[] values = (int[]) data;
+      if (values[3] > 0) {
+        size = values[3];
+      }
+      this.blockSize = values.length > 4 ? values[4] : 0;
+      this.compression = values.length > 5 ? values[5] : NO_COMPRESSION;
+    } else {
+      Object blockSizeObj = properties.get("blocksize");
+      this.blockSize = blockSizeObj instanceof Number ? ((Number) blockSizeObj).intValue() : 0;
+      Object cname = properties.get("cname");
+      this.compression =
+          "lz4".equals(cname) ? LZ4_COMPRESSION : "zstd".equals(cname) ? ZSTD_COMPRESSION : NO_COMPRESSION;
+    }
+    this.elemSize = Math.max(1, size);
+    if (blockSize < 0 || blockSize % BLOCKED_MULT != 0) {
+      throw new IllegalArgumentException("Invalid block size: " + blockSize);
+    }
+    if (compression != NO_COMPRESSION && compression != LZ4_COMPRESSION && compression != ZSTD_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression: " + compression);
+    }
+  }
+
+  // as bshuf_default_block_size()
+  private int defaultBlockSize() {
+    int size = TARGET_BLOCK_SIZE_B / elemSize / BLOCKED_MULT * BLOCKED_MULT;
+    return Math.max(size, MIN_RECOMMEND_BLOCK);
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public int getId() {
+    return id;
+  }
+
+  @Override
+  public byte[] encode(byte[] dataIn) throws IOException {
+    if (dataIn.length % elemSize != 0) {
+      throw new IOException("bitshuffle: not a whole number of elements");
+    }
+    int nelems = dataIn.length / elemSize;
+    int bsize = blockSize > 0 ? blockSize : defaultBlockSize();
+    int limit = nelems - nelems % BLOCKED_MULT;
+    int leftover = dataIn.length - limit * elemSize;
+
+    if (compression == NO_COMPRESSION) {
+      byte[] out = new byte[dataIn.length];
+      for (int start = 0, n; start < limit; start += n) {
+        n = Math.min(bsize, limit - start);
+        BitTranspose.encode(dataIn, start * elemSize, out, start * elemSize, n, elemSize);
+      }
+      System.arraycopy(dataIn, limit * elemSize, out, limit * elemSize, leftover);
+      return out;
+    }
+
+    int blockBytes = bsize * elemSize;
+    int maxBlock = compression == LZ4_COMPRESSION ? Lz4Block.maxCompressedLength(blockBytes)
+        : ZstdEncoder.maxCompressedLength(blockBytes);
+    int nblocks = (limit + bsize - 1) / bsize;
+    byte[] out = new byte[12 + nblocks * (4 + maxBlock) + leftover];
+    writeLong(out, 0, dataIn.length);
+    writeInt(out, 8, blockBytes);
+    int pos = 12;
+    byte[] tmp = new byte[blockBytes];
+    for (int start = 0, n; start < limit; start += n) {
+      n = Math.min(bsize, limit - start);
+      BitTranspose.encode(dataIn, start * elemSize, tmp, 0, n, elemSize);
+      int len = compression == LZ4_COMPRESSION ? Lz4Block.compress(tmp, 0, n * elemSize, out, pos + 4, maxBlock)
+          : ZstdEncoder.compress(tmp, 0, n * elemSize, out, pos + 4);
+      writeInt(out, pos, len);
+      pos += 4 + len;
+    }
+    System.arraycopy(dataIn, limit * elemSize, out, pos, leftover);
+    return Arrays.copyOf(out, pos + leftover);
+  }
+
+  @Override
+  public byte[] decode(byte[] dataIn) throws IOException {
+    return toArray(decode(ByteBuffer.wrap(dataIn), null));
+  }
+
+  @Override
+  public ByteBuffer decode(ByteBuffer dataIn, ByteBuffer dataOut) throws IOException {
+    byte[] in = dataIn.hasArray() ? dataIn.array() : toArray(dataIn);
+    int inStart = dataIn.hasArray() ? dataIn.arrayOffset() + dataIn.position() : 0;
+    int inEnd = inStart + dataIn.remaining();
+
+    if (compression == NO_COMPRESSION) {
+      int length = inEnd - inStart;
+      if (length % elemSize != 0) {
+        throw new IOException("bitshuffle: not a whole number of elements");
+      }
+      int nelems = length / elemSize;
+      int bsize = blockSize > 0 ? blockSize : defaultBlockSize();
+      int limit = nelems - nelems % BLOCKED_MULT;
+      ByteBuffer result = outputBuffer(dataOut, length);
+      byte[] out = result.array();
+      int outStart = result.arrayOffset() + result.position();
+      for (int start = 0, n; start < limit; start += n) {
+        n = Math.min(bsize, limit - start);
+        BitTranspose.decode(in, inStart + start * elemSize, out, outStart + start * elemSize, n, elemSize);
+      }
+      System.arraycopy(in, inStart + limit * elemSize, out, outStart + limit * elemSize, length - limit * elemSize);
+      return result;
+    }
+
+    if (inEnd - inStart < 12) {
+      throw new IOException("bitshuffle: chunk too small");
+    }
+    long size = readLong(in, inStart);
+    int blockBytes = readInt(in, inStart + 8);
+    if (size < 0 || size > MAX_ARRAY_LEN || size % elemSize != 0 || blockBytes <= 0 || blockBytes % elemSize != 0
+        || blockBytes / elemSize % BLOCKED_MULT != 0) {
+      throw new IOException("bitshuffle: bad chunk header");
+    }
+    int nelems = (int) size / elemSize;
+    int bsize = blockBytes / elemSize;
+    int limit = nelems - nelems % BLOCKED_MULT;
+    ByteBuffer result = outputBuffer(dataOut, (int) size);
+    byte[] out = result.array();
+    int outStart = result.arrayOffset() + result.position();
+    byte[] tmp = new byte[Math.min(blockBytes, limit * elemSize)];
+    int pos = inStart + 12;
+    for (int start = 0, n; start < limit; start += n) {
+      n = Math.min(bsize, limit - start);
+      if (pos > inEnd - 4) {
+        throw new IOException("bitshuffle: truncated chunk");
+      }
+      int len = readInt(in, pos);
+      pos += 4;
+      if (len < 0 || len > inEnd - pos) {
+        throw new IOException("bitshuffle: truncated chunk");
+      }
+      int decoded = compression == LZ4_COMPRESSION ? Lz4Block.decompress(in, pos, len, tmp, 0, n * elemSize)
+          : ZstdDecoder.decompress(in, pos, len, tmp, 0, n * elemSize);
+      if (decoded != n * elemSize) {
+        throw new IOException("bitshuffle: block decodes to the wrong size");
+      }
+      BitTranspose.decode(tmp, 0, out, outStart + start * elemSize, n, elemSize);
+      pos += len;
+    }
+    int leftover = (int) size - limit * elemSize;
+    if (leftover > inEnd - pos) {
+      throw new IOException("bitshuffle: truncated chunk");
+    }
+    System.arraycopy(in, pos, out, outStart + limit * elemSize, leftover);
+    return result;
+  }
+
+  private static int readInt(byte[] buf, int pos) {
+    return (buf[pos] & 0xff) << 24 | (buf[pos + 1] & 0xff) << 16 | (buf[pos + 2] & 0xff) << 8 | (buf[pos + 3] & 0xff);
+  }
+
+  private static long readLong(byte[] buf, int pos) {
+    return (long) readInt(buf, pos) << 32 | (readInt(buf, pos + 4) & 0xffffffffL);
+  }
+
+  private static void writeInt(byte[] buf, int pos, int value) {
+    buf[pos] = (byte) (value >>> 24);
+    buf[pos + 1] = (byte) (value >>> 16);
+    buf[pos + 2] = (byte) (value >>> 8);
+    buf[pos + 3] = (byte) value;
+  }
+
+  private static void writeLong(byte[] buf, int pos, long value) {
+    writeInt(buf, pos, (int) (value >>> 32));
+    writeInt(buf, pos + 4, (int) value);
+  }
+
+  public static class Provider implements FilterProvider {
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public int getId() {
+      return id;
+    }
+
+    @Override
+    public Filter create(Map<String, Object> properties) {
+      return new Bitshuffle(properties);
+    }
+  }
+}
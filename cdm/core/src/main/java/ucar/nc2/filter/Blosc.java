@@ -5,17 +5,145 @@
 
 package ucar.nc2.filter;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
-
-// TODO: Still to be implemented
+/**
+ * Filter implementation of Blosc (https://www.blosc.org), reading and writing the Blosc 1 chunk format in pure Java.
+ * <p>
+ * Decodes chunks compressed with blosclz, lz4, lz4hc, zlib or zstd, with byte shuffle, bit shuffle or no shuffle.
+ * Snappy and the extended header of Blosc 2 chunks are not supported.
+ * <p>
+ * Encodes with zlib if cname is "zlib", otherwise with lz4, which every Blosc library can read.
+ * <p>
+ * The properties are the Zarr compressor configuration (cname, clevel, shuffle, blocksize, typesize), or the client
+ * data of the HDF5 filter: {filter revision, blosc version, typesize, chunk size, clevel, shuffle, compressor code}.
+ */
 public class Blosc extends Filter {
 
   private static final String name = "blosc";
 
   private static final int id = 32001;
 
-  public Blosc(Map<String, Object> properties) {}
+  // the chunk header
+  private static final int HEADER_SIZE = 16;
+  private static final int VERSION_FORMAT = 2;
+  private static final int MAX_VERSION_FORMAT = 4;
+  private static final int LZ_VERSION_FORMAT = 1;
+  private static final int DOSHUFFLE = 0x1;
+  private static final int MEMCPYED = 0x2;
+  private static final int DOBITSHUFFLE = 0x4;
+  private static final int DONT_SPLIT = 0x10;
+  private static final int MAX_SPLITS = 16;
+  private static final int MIN_BUFFERSIZE = 128;
+
+  // compressor formats, in the top 3 bits of the flags
+  private static final int BLOSCLZ_FORMAT = 0;
+  private static final int LZ4_FORMAT = 1;
+  private static final int SNAPPY_FORMAT = 2;
+  private static final int ZLIB_FORMAT = 3;
+  private static final int ZSTD_FORMAT = 4;
+
+  // shuffle property
+  private static final int AUTOSHUFFLE = -1;
+  private static final int NOSHUFFLE = 0;
+  private static final int SHUFFLE = 1;
+  private static final int BITSHUFFLE = 2;
+
+  // HDF5 compressor codes
+  private static final String[] COMPRESSOR_NAMES = {"blosclz", "lz4", "lz4hc", "snappy", "zlib", "zstd"};
+
+  private static final int DEFAULT_CLEVEL = 5;
+  private static final int DEFAULT_BLOCKSIZE = 256 * 1024;
+
+  // experimental multithreading
+  private static volatile Executor executor;
+
+  /**
+   * Decode the blocks of large chunks concurrently on the given Executor. The calling thread decodes blocks too, so
+   * it is safe to use the same Executor that the chunks are decoded on. Default is null, meaning that the blocks are
+   * decoded on the calling thread.
+   */
+  public static void setExecutor(Executor exec) {
+    executor = exec;
+  }
+
+  private final int typesize;
+  private final int clevel;
+  private final int shuffle;
+  private final int blocksize; // 0 = automatic
+  private final boolean zlib; // else lz4
+
+  public Blosc(Map<String, Object> properties) {
+    int[] data = properties.get(Filters.Keys.DATA) instanceof int[] ? (int[]) properties.get(Filters.Keys.DATA) : null;
+    String cname = null;
+    int shuffleProp;
+    if (data != null && data.length > 2) { // HDF5
+      this.typesize = checkTypesize(data[2]);
+      this.clevel = data.length > 4 ? data[4] : DEFAULT_CLEVEL;
+      shuffleProp = data.length > 5 ? data[5] : SHUFFLE;
+      if (data.length > 6 && data[6] >= 0 && data[6] < COMPRESSOR_NAMES.length) {
+        cname = COMPRESSOR_NAMES[data[6]];
+      }
+      this.blocksize = 0;
+    } else { // Zarr
+      int elemSize = getInt(properties.get(Filters.Keys.ELEM_SIZE), 1);
+      this.typesize = checkTypesize(getInt(properties.get("typesize"), elemSize));
+      this.clevel = getInt(properties.get("clevel"), DEFAULT_CLEVEL);
+      Object shuffleObj = properties.get("shuffle");
+      if (shuffleObj instanceof String) {
+        switch ((String) shuffleObj) {
+          case "noshuffle":
+            shuffleProp = NOSHUFFLE;
+            break;
+          case "bitshuffle":
+            shuffleProp = BITSHUFFLE;
+            break;
+          default:
+            shuffleProp = SHUFFLE;
+        }
+      } else {
+        shuffleProp = getInt(shuffleObj, SHUFFLE);
+      }
+      Object cnameObj = properties.get("cname");
+      cname = cnameObj instanceof String ? (String) cnameObj : null;
+      this.blocksize = Math.max(0, getInt(properties.get("blocksize"), 0));
+    }
+    if (shuffleProp == AUTOSHUFFLE) {
+      shuffleProp = typesize == 1 ? BITSHUFFLE : SHUFFLE;
+    }
+    this.shuffle = shuffleProp;
+    this.zlib = "zlib".equals(cname);
+    if (clevel < 0 || clevel > 9) {
+      throw new IllegalArgumentException("Invalid compression level: " + clevel);
+    }
+  }
+
+  private static int getInt(Object value, int defaultValue) {
+    if (value instanceof Number) {
+      return ((Number) value).intValue();
+    }
+    if (value instanceof String) {
+      return Integer.parseInt((String) value);
+    }
+    return defaultValue;
+  }
+
+  // as in Blosc, sizes over 255 are treated as 1
+  private static int checkTypesize(int typesize) {
+    return typesize < 1 || typesize > 255 ? 1 : typesize;
+  }
 
   @Override
   public String getName() {
@@ -28,13 +156,451 @@ public class Blosc extends Filter {
   }
 
   @Override
-  public byte[] encode(byte[] dataIn) {
-    return new byte[0];
+  public byte[] encode(byte[] dataIn) throws IOException {
+    int nbytes = dataIn.length;
+    int bsize = blocksize > 0 ? Math.min(blocksize, nbytes) : Math.min(DEFAULT_BLOCKSIZE, nbytes);
+    if (bsize > typesize) {
+      bsize -= bsize % typesize;
+    }
+    int flags = DONT_SPLIT | (zlib ? ZLIB_FORMAT : LZ4_FORMAT) << 5;
+    if (clevel == 0 || nbytes == 0) {
+      return memcpyed(dataIn, flags, bsize);
+    }
+    if (shuffle == SHUFFLE && typesize > 1) {
+      flags |= DOSHUFFLE;
+    } else if (shuffle == BITSHUFFLE) {
+      flags |= DOBITSHUFFLE;
+    }
+
+    int nblocks = (nbytes + bsize - 1) / bsize;
+    byte[] out = new byte[HEADER_SIZE + nbytes]; // else memcpyed is smaller
+    byte[] tmp = new byte[bsize];
+    Deflater deflater = zlib ? new Deflater(clevel) : null;
+    try {
+      int pos = HEADER_SIZE + 4 * nblocks;
+      for (int j = 0; j < nblocks; j++) {
+        if (pos + 4 > out.length) {
+          return memcpyed(dataIn, flags, bsize);
+        }
+        writeInt(out, HEADER_SIZE + 4 * j, pos);
+        int start = j * bsize;
+        int size = Math.min(bsize, nbytes - start);
+
+        byte[] src = dataIn;
+        int srcOff = start;
+        if ((flags & DOSHUFFLE) != 0) {
+          shuffle(dataIn, start, tmp, 0, size, typesize);
+          src = tmp;
+          srcOff = 0;
+        } else if ((flags & DOBITSHUFFLE) != 0 && size >= typesize) {
+          bitshuffle(dataIn, start, tmp, 0, size, typesize, VERSION_FORMAT, false);
+          src = tmp;
+          srcOff = 0;
+        }
+
+        // one stream per block, which must be smaller than the block to be read as compressed
+        int room = Math.min(size - 1, out.length - pos - 4);
+        int n = room <= 0 ? -1
+            : zlib ? deflate(deflater, src, srcOff, size, out, pos + 4, room)
+                : Lz4Block.compress(src, srcOff, size, out, pos + 4, room);
+        if (n < 0) {
+          if (size > out.length - pos - 4) {
+            return memcpyed(dataIn, flags, bsize);
+          }
+          System.arraycopy(src, srcOff, out, pos + 4, size);
+          n = size;
+        }
+        writeInt(out, pos, n);
+        pos += 4 + n;
+      }
+      writeHeader(out, flags, nbytes, bsize, pos);
+      return pos == out.length ? out : Arrays.copyOf(out, pos);
+
+    } finally {
+      if (deflater != null) {
+        deflater.end();
+      }
+    }
+  }
+
+  private byte[] memcpyed(byte[] dataIn, int flags, int bsize) {
+    byte[] out = new byte[HEADER_SIZE + dataIn.length];
+    System.arraycopy(dataIn, 0, out, HEADER_SIZE, dataIn.length);
+    writeHeader(out, (flags & ~(DOSHUFFLE | DOBITSHUFFLE)) | MEMCPYED, dataIn.length, bsize, out.length);
+    return out;
+  }
+
+  private void writeHeader(byte[] out, int flags, int nbytes, int bsize, int cbytes) {
+    out[0] = VERSION_FORMAT;
+    out[1] = LZ_VERSION_FORMAT;
+    out[2] = (byte) flags;
+    out[3] = (byte) typesize;
+    writeInt(out, 4, nbytes);
+    writeInt(out, 8, bsize);
+    writeInt(out, 12, cbytes);
+  }
+
+  // return the number of bytes written, or -1 if they do not fit
+  private static int deflate(Deflater deflater, byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff,
+      int dstLen) {
+    deflater.reset();
+    deflater.setInput(src, srcOff, srcLen);
+    deflater.finish();
+    int n = 0;
+    while (!deflater.finished() && n < dstLen) {
+      n += deflater.deflate(dst, dstOff + n, dstLen - n);
+    }
+    return deflater.finished() ? n : -1;
+  }
+
+  @Override
+  public byte[] decode(byte[] dataIn) throws IOException {
+    return toArray(decode(ByteBuffer.wrap(dataIn), null));
   }
 
   @Override
-  public byte[] decode(byte[] dataIn) {
-    return new byte[0];
+  public ByteBuffer decode(ByteBuffer dataBuffer, ByteBuffer dataOut) throws IOException {
+    byte[] dataIn = toArray(dataBuffer);
+    if (dataIn.length < HEADER_SIZE) {
+      throw new IOException("Blosc: chunk too short, length = " + dataIn.length);
+    }
+    int version = dataIn[0] & 0xff;
+    int flags = dataIn[2] & 0xff;
+    int typesize = dataIn[3] & 0xff;
+    int nbytes = readInt(dataIn, 4);
+    int bsize = readInt(dataIn, 8);
+    int cbytes = readInt(dataIn, 12);
+    if (version == 0 || version > MAX_VERSION_FORMAT) {
+      throw new IOException("Blosc: unknown format version " + version);
+    }
+    if ((flags & (DOSHUFFLE | DOBITSHUFFLE)) == (DOSHUFFLE | DOBITSHUFFLE)) {
+      throw new IOException("Blosc: Blosc 2 extended header not supported");
+    }
+    if (nbytes < 0 || cbytes < HEADER_SIZE || cbytes > dataIn.length) {
+      throw new IOException("Blosc: bad chunk sizes nbytes = " + nbytes + " cbytes = " + cbytes);
+    }
+
+    ByteBuffer result = outputBuffer(dataOut, nbytes);
+    byte[] out = result.array();
+    int outOff = result.arrayOffset() + result.position();
+    if ((flags & MEMCPYED) != 0) {
+      if (HEADER_SIZE + nbytes > cbytes) {
+        throw new IOException("Blosc: truncated chunk");
+      }
+      System.arraycopy(dataIn, HEADER_SIZE, out, outOff, nbytes);
+      return result;
+    }
+    if (nbytes == 0) {
+      return result;
+    }
+    if (bsize <= 0 || typesize == 0) {
+      throw new IOException("Blosc: bad blocksize " + bsize + " or typesize " + typesize);
+    }
+
+    Chunk chunk = new Chunk(dataIn, out, outOff, nbytes, version, flags, typesize, bsize);
+    try {
+      Executor exec = executor;
+      if (exec == null || chunk.nblocks < 2) {
+        byte[] tmp = new byte[bsize];
+        for (int j = 0; j < chunk.nblocks; j++) {
+          chunk.decodeBlock(j, tmp);
+        }
+      } else {
+        chunk.decodeBlocks(exec);
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Blosc: corrupt chunk", e);
+    }
+    return result;
+  }
+
+  // one chunk being decoded
+  private static class Chunk {
+    private final byte[] src;
+    private final byte[] dst;
+    private final int dstOff;
+    private final int nbytes;
+    private final int version;
+    private final int flags;
+    private final int typesize;
+    private final int blocksize;
+    private final int compformat;
+    private final int nblocks;
+
+    Chunk(byte[] src, byte[] dst, int dstOff, int nbytes, int version, int flags, int typesize, int blocksize)
+        throws IOException {
+      this.src = src;
+      this.dst = dst;
+      this.dstOff = dstOff;
+      this.nbytes = nbytes;
+      this.version = version;
+      this.flags = flags;
+      this.typesize = typesize;
+      this.blocksize = blocksize;
+      this.compformat = flags >>> 5;
+      this.nblocks = nbytes / blocksize + (nbytes % blocksize > 0 ? 1 : 0);
+      if (HEADER_SIZE + 4L * nblocks > src.length) {
+        throw new IOException("Blosc: truncated chunk");
+      }
+    }
+
+    // decode blocks on the executor and on this thread, until they are all done
+    void decodeBlocks(Executor exec) throws IOException {
+      AtomicInteger next = new AtomicInteger();
+      CountDownLatch done = new CountDownLatch(nblocks);
+      AtomicReference<Exception> failure = new AtomicReference<>();
+      Runnable worker = () -> {
+        byte[] tmp = new byte[blocksize];
+        int j;
+        while ((j = next.getAndIncrement()) < nblocks) {
+          try {
+            if (failure.get() == null) {
+              decodeBlock(j, tmp);
+            }
+          } catch (IOException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            done.countDown();
+          }
+        }
+      };
+
+      int nworkers = Math.min(nblocks, Runtime.getRuntime().availableProcessors()) - 1;
+      for (int i = 0; i < nworkers; i++) {
+        try {
+          exec.execute(worker);
+        } catch (RejectedExecutionException e) {
+          break; // executor is saturated or shut down, the blocks are decoded on this thread
+        }
+      }
+      worker.run();
+
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while decoding Blosc chunk");
+      }
+      Exception e = failure.get();
+      if (e instanceof IOException) {
+        throw (IOException) e;
+      }
+      if (e != null) {
+        throw (RuntimeException) e;
+      }
+    }
+
+    void decodeBlock(int j, byte[] tmp) throws IOException {
+      int start = j * blocksize;
+      int bsize = Math.min(blocksize, nbytes - start);
+      boolean leftover = bsize < blocksize;
+      boolean doShuffle = (flags & DOSHUFFLE) != 0 && typesize > 1;
+      boolean doBitshuffle = (flags & DOBITSHUFFLE) != 0 && bsize >= typesize;
+      byte[] target = doShuffle || doBitshuffle ? tmp : dst;
+      int targetOff = target == dst ? dstOff + start : 0;
+
+      int nsplits = (flags & DONT_SPLIT) == 0 && typesize <= MAX_SPLITS && blocksize / typesize >= MIN_BUFFERSIZE
+          && !leftover ? typesize : 1;
+      int neblock = bsize / nsplits;
+      int pos = readInt(src, HEADER_SIZE + 4 * j);
+      for (int k = 0; k < nsplits; k++) {
+        int cbytes = readInt(src, pos);
+        pos += 4;
+        if (cbytes < 0 || cbytes > src.length - pos) {
+          throw new IOException("Blosc: bad compressed size " + cbytes + " in block " + j);
+        }
+        int off = targetOff + k * neblock;
+        if (cbytes == neblock) {
+          System.arraycopy(src, pos, target, off, neblock);
+        } else if (decompress(compformat, src, pos, cbytes, target, off, neblock) != neblock) {
+          throw new IOException("Blosc: wrong decompressed size in block " + j);
+        }
+        pos += cbytes;
+      }
+
+      if (doShuffle) {
+        unshuffle(tmp, 0, dst, dstOff + start, bsize, typesize);
+      } else if (doBitshuffle) {
+        bitshuffle(tmp, 0, dst, dstOff + start, bsize, typesize, version, true);
+      }
+    }
+  }
+
+  private static int decompress(int compformat, byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen)
+      throws IOException {
+    switch (compformat) {
+      case BLOSCLZ_FORMAT:
+        return bloscLzDecompress(src, srcOff, srcLen, dst, dstOff, dstLen);
+      case LZ4_FORMAT:
+        return Lz4Block.decompress(src, srcOff, srcLen, dst, dstOff, dstLen);
+      case ZLIB_FORMAT:
+        return inflate(src, srcOff, srcLen, dst, dstOff, dstLen);
+      case ZSTD_FORMAT:
+        return ZstdDecoder.decompress(src, srcOff, srcLen, dst, dstOff, dstLen);
+      case SNAPPY_FORMAT:
+        throw new IOException("Blosc: snappy compression not supported");
+      default:
+        throw new IOException("Blosc: unknown compressor format " + compformat);
+    }
+  }
+
+  private static int inflate(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen)
+      throws IOException {
+    Inflater inflater = Deflate.threadInflater();
+    try {
+      inflater.setInput(src, srcOff, srcLen);
+      int n = 0;
+      while (n < dstLen && !inflater.finished()) {
+        int count = inflater.inflate(dst, dstOff + n, dstLen - n);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        n += count;
+      }
+      return n;
+    } catch (DataFormatException e) {
+      throw new IOException("Blosc: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Decompress a blosclz stream, a variant of FastLZ level 2. Each instruction starts with a control byte:
+   * a literal run of (ctrl + 1) bytes if ctrl < 32, else a match whose length is in the top 3 bits and whose distance
+   * is in the low 5 bits followed by one byte, or by three bytes for distances of 8192 or more.
+   */
+  private static int bloscLzDecompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen)
+      throws IOException {
+    if (srcLen == 0) {
+      return 0;
+    }
+    int ip = srcOff;
+    int ipLimit = srcOff + srcLen;
+    int op = dstOff;
+    int opLimit = dstOff + dstLen;
+    int ctrl = src[ip++] & 31;
+
+    while (true) {
+      if (ctrl >= 32) { // match
+        int len = (ctrl >>> 5) - 1;
+        int ofs = (ctrl & 31) << 8;
+        if (len == 7 - 1) {
+          int code;
+          do {
+            if (ip >= ipLimit) {
+              throw new IOException("blosclz: truncated match length");
+            }
+            code = src[ip++] & 0xff;
+            len += code;
+          } while (code == 255);
+        }
+        if (ip >= ipLimit) {
+          throw new IOException("blosclz: truncated match");
+        }
+        int code = src[ip++] & 0xff;
+        len += 3;
+        int distance = ofs + code + 1;
+        if (code == 255 && ofs == (31 << 8)) { // 16-bit distance
+          if (ip + 2 > ipLimit) {
+            throw new IOException("blosclz: truncated match distance");
+          }
+          distance = ((src[ip] & 0xff) << 8) + (src[ip + 1] & 0xff) + 8192;
+          ip += 2;
+        }
+        if (len > opLimit - op) {
+          throw new IOException("blosclz: match past end of buffer");
+        }
+        if (distance > op - dstOff) {
+          throw new IOException("blosclz: bad match distance " + distance);
+        }
+        int from = op - distance;
+        if (distance >= len) {
+          System.arraycopy(dst, from, dst, op, len);
+        } else { // overlapping
+          for (int i = 0; i < len; i++) {
+            dst[op + i] = dst[from + i];
+          }
+        }
+        op += len;
+        if (ip >= ipLimit) {
+          break; // the stream may end with a match
+        }
+        ctrl = src[ip++] & 0xff;
+
+      } else { // literal run
+        ctrl++;
+        if (ctrl > opLimit - op || ctrl > ipLimit - ip) {
+          throw new IOException("blosclz: literal run past end of buffer");
+        }
+        System.arraycopy(src, ip, dst, op, ctrl);
+        op += ctrl;
+        ip += ctrl;
+        if (ip >= ipLimit) {
+          break;
+        }
+        ctrl = src[ip++] & 0xff;
+      }
+    }
+    return op - dstOff;
+  }
+
+  ////////////////////////////////////////////////////////////
+  // shuffles, leaving the bytes after the last whole element in place
+
+  private static void shuffle(byte[] src, int srcOff, byte[] dst, int dstOff, int size, int typesize) {
+    int nelems = size / typesize;
+    for (int j = 0; j < typesize; j++) {
+      int s = srcOff + j;
+      int d = dstOff + j * nelems;
+      for (int i = 0; i < nelems; i++) {
+        dst[d++] = src[s];
+        s += typesize;
+      }
+    }
+    int done = nelems * typesize;
+    System.arraycopy(src, srcOff + done, dst, dstOff + done, size - done);
+  }
+
+  private static void unshuffle(byte[] src, int srcOff, byte[] dst, int dstOff, int size, int typesize) {
+    int nelems = size / typesize;
+    for (int j = 0; j < typesize; j++) {
+      int s = srcOff + j * nelems;
+      int d = dstOff + j;
+      for (int i = 0; i < nelems; i++) {
+        dst[d] = src[s++];
+        d += typesize;
+      }
+    }
+    int done = nelems * typesize;
+    System.arraycopy(src, srcOff + done, dst, dstOff + done, size - done);
+  }
+
+  // format version 2 only bit shuffles blocks whose number of elements is a multiple of 8,
+  // later versions bit shuffle all but the last (nelems % 8) elements
+  private static void bitshuffle(byte[] src, int srcOff, byte[] dst, int dstOff, int size, int typesize, int version,
+      boolean undo) {
+    int nelems = size / typesize;
+    if (version <= 2 && nelems % 8 != 0) {
+      nelems = 0;
+    }
+    nelems -= nelems % 8;
+    if (undo) {
+      BitTranspose.decode(src, srcOff, dst, dstOff, nelems, typesize);
+    } else {
+      BitTranspose.encode(src, srcOff, dst, dstOff, nelems, typesize);
+    }
+    int done = nelems * typesize;
+    System.arraycopy(src, srcOff + done, dst, dstOff + done, size - done);
+  }
+
+  private static int readInt(byte[] buf, int pos) {
+    return (buf[pos] & 0xff) | (buf[pos + 1] & 0xff) << 8 | (buf[pos + 2] & 0xff) << 16 | (buf[pos + 3] & 0xff) << 24;
+  }
+
+  private static void writeInt(byte[] buf, int pos, int value) {
+    buf[pos] = (byte) value;
+    buf[pos + 1] = (byte) (value >>> 8);
+    buf[pos + 2] = (byte) (value >>> 16);
+    buf[pos + 3] = (byte) (value >>> 24);
   }
 
   public static class Provider implements FilterProvider {
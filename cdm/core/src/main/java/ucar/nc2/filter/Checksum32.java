@@ -7,6 +7,8 @@ package ucar.nc2.filter;
 
 import com.google.common.primitives.Ints;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Map;
 import java.util.zip.Adler32;
 import java.util.zip.CRC32;
@@ -66,26 +68,39 @@ public class Checksum32 extends Filter {
 
   @Override
   public byte[] decode(byte[] dataIn) {
-    // strip the checksum
-    byte[] dataOut = new byte[dataIn.length - nbytes];
+    return toArray(decode(ByteBuffer.wrap(dataIn), null));
+  }
+
+  /**
+   * Verify the checksum and return a view of the data without it.
+   */
+  @Override
+  public ByteBuffer decode(ByteBuffer dataIn, ByteBuffer dataOut) {
+    byte[] in = dataIn.hasArray() ? dataIn.array() : toArray(dataIn);
+    int inStart = dataIn.hasArray() ? dataIn.arrayOffset() + dataIn.position() : 0;
+    int length = dataIn.remaining() - nbytes;
     // Adler and CRC are supported by Zarr, which follows the NumCodec spec with a checksum before the data
     // Fletcher is support by hdf5, which has the checksum after the data
     int dataStart = this.type == CType.FLETCHER ? 0 : nbytes;
-    System.arraycopy(dataIn, dataStart, dataOut, 0, dataOut.length);
     // verify checksum
-    int checksum = (int) getChecksum(dataOut);
-    byte[] bytes = new byte[nbytes];
-    int checksumStart = this.type == CType.FLETCHER ? dataIn.length - nbytes : 0;
-    System.arraycopy(dataIn, checksumStart, bytes, 0, nbytes);
-    int i = Integer.reverseBytes(Ints.fromByteArray(bytes)); // convert from little endian
+    int checksum = (int) getChecksum(in, inStart + dataStart, length);
+    int checksumStart = this.type == CType.FLETCHER ? length : 0;
+    int i = ByteBuffer.wrap(in, inStart + checksumStart, nbytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
     if (i != checksum) {
       throw new RuntimeException("Checksum invalid");
     }
     // return data
-    return dataOut;
+    ByteBuffer result = dataIn.duplicate();
+    result.position(dataIn.position() + dataStart);
+    result.limit(result.position() + length);
+    return result;
   }
 
   private long getChecksum(byte[] data) {
+    return getChecksum(data, 0, data.length);
+  }
+
+  private long getChecksum(byte[] data, int off, int len) {
     Checksum checksum;
     switch (type) {
       case ADLER:
@@ -99,7 +114,7 @@ public class Checksum32 extends Filter {
         checksum = new Fletcher32();
         break;
     }
-    checksum.update(data, 0, data.length);
+    checksum.update(data, off, len);
     return checksum.getValue();
   }
 
@@ -117,7 +132,7 @@ public class Checksum32 extends Filter {
         throw new ArrayIndexOutOfBoundsException();
       }
 
-      int i = 0;
+      int i = off;
       int end = len / 2;
       while (end > 0) {
         int blocklen = end > 360 ? 360 : end;
@@ -134,7 +149,7 @@ public class Checksum32 extends Filter {
 
       // handle odd # of bytes
       if (len % 2 > 0) {
-        sum1 += (b[len - 1] & 0xff) << 8;
+        sum1 += (b[off + len - 1] & 0xff) << 8;
         sum2 += sum1;
         sum1 = (sum1 & 0xffff) + (sum1 >>> 16);
         sum2 = (sum2 & 0xffff) + (sum2 >>> 16);
@@ -233,6 +233,18 @@ public class ConvertMissing implements Enhancement {
     return isMissing(value) ? Double.NaN : value;
   }
 
+  @Override
+  public void convert(double[] values, int off, int len) {
+    if (!hasMissing()) {
+      return; // only NaN is missing, and it stays NaN
+    }
+    for (int i = off; i < off + len; i++) {
+      if (isMissing(values[i])) {
+        values[i] = Double.NaN;
+      }
+    }
+  }
+
   public Array convertMissing(Array in) {
     DataType type = in.getDataType();
     if (!type.isNumeric()) {
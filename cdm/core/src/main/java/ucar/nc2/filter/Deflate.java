@@ -5,18 +5,20 @@
 
 package ucar.nc2.filter;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
-import java.util.zip.InflaterInputStream;
-import ucar.nc2.util.IO;
+import java.util.zip.ZipException;
 
 /**
  * Filter implementation of zlib compression.
+ * Each thread keeps an Inflater, and a Deflater per compression level, reset for each chunk.
  */
 public class Deflate extends Filter {
   private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
@@ -25,6 +27,9 @@ public class Deflate extends Filter {
 
   private static final int id = 1;
 
+  private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+  private static final ThreadLocal<Deflater[]> deflaters = ThreadLocal.withInitial(() -> new Deflater[10]); // by level
+
   private final int clevel; // compression level
 
   public Deflate(Map<String, Object> properties) {
@@ -57,8 +62,14 @@ public class Deflate extends Filter {
 
   @Override
   public byte[] encode(byte[] dataIn) throws IOException {
+    Deflater[] byLevel = deflaters.get();
+    if (byLevel[clevel] == null) {
+      byLevel[clevel] = new Deflater(clevel);
+    }
+    Deflater deflater = byLevel[clevel];
+    deflater.reset();
     ByteArrayOutputStream os = new ByteArrayOutputStream(dataIn.length);
-    try (DeflaterOutputStream dos = new DeflaterOutputStream(os, new Deflater(clevel));) {
+    try (DeflaterOutputStream dos = new DeflaterOutputStream(os, deflater)) {
       dos.write(dataIn);
       // close everything and return
       dos.finish();
@@ -69,15 +80,62 @@ public class Deflate extends Filter {
 
   @Override
   public byte[] decode(byte[] dataIn) throws IOException {
-    int len = Math.min(8 * dataIn.length, MAX_ARRAY_LEN);
-    try (ByteArrayInputStream in = new ByteArrayInputStream(dataIn);
-        InflaterInputStream iis = new InflaterInputStream(in, new Inflater(), dataIn.length);
-        ByteArrayOutputStream os = new ByteArrayOutputStream(len)) {
+    return toArray(decode(ByteBuffer.wrap(dataIn), null));
+  }
 
-      IO.copyB(iis, os, IO.default_socket_buffersize);
+  /**
+   * Inflate into dataOut, or into a new buffer of 8 times the input size, which grows if needed.
+   */
+  @Override
+  public ByteBuffer decode(ByteBuffer dataIn, ByteBuffer dataOut) throws IOException {
+    Inflater inflater = threadInflater();
+    if (dataIn.hasArray()) {
+      inflater.setInput(dataIn.array(), dataIn.arrayOffset() + dataIn.position(), dataIn.remaining());
+    } else {
+      inflater.setInput(toArray(dataIn));
+    }
 
-      return os.toByteArray();
+    ByteBuffer result = dataOut != null && dataOut.hasArray() && dataOut.hasRemaining() ? dataOut.duplicate()
+        : ByteBuffer.allocate(Math.max(1, (int) Math.min(8L * dataIn.remaining(), MAX_ARRAY_LEN)));
+    byte[] out = result.array();
+    int start = result.arrayOffset() + result.position();
+    int pos = start;
+    int end = result.arrayOffset() + result.limit();
+    try {
+      while (!inflater.finished()) {
+        if (pos == end) { // grow into a new array
+          if (end - start == MAX_ARRAY_LEN) {
+            throw new IOException("Inflated data is too large");
+          }
+          int size = (int) Math.min(2L * (end - start), MAX_ARRAY_LEN);
+          byte[] bigger = new byte[size];
+          System.arraycopy(out, start, bigger, 0, pos - start);
+          out = bigger;
+          pos -= start;
+          start = 0;
+          end = size;
+          result = ByteBuffer.wrap(out);
+        }
+        int n = inflater.inflate(out, pos, end - pos);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        pos += n;
+      }
+    } catch (DataFormatException e) {
+      String msg = e.getMessage();
+      throw new ZipException(msg != null ? msg : "Invalid ZLIB data format");
     }
+    result.limit(pos - result.arrayOffset());
+    result.position(start - result.arrayOffset());
+    return result;
+  }
+
+  /** The Inflater of this thread, reset. */
+  static Inflater threadInflater() {
+    Inflater inflater = inflaters.get();
+    inflater.reset();
+    return inflater;
   }
 
   public static class Provider implements FilterProvider {
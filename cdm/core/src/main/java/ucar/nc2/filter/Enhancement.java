@@ -2,4 +2,14 @@ package ucar.nc2.filter;
 
 public interface Enhancement {
   double convert(double num);
+
+  /**
+   * Convert values[offset, offset + length) in place, as {@link #convert(double)} does for each value.
+   * Implementations may override this with a loop that does not dispatch per value.
+   */
+  default void convert(double[] values, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      values[i] = convert(values[i]);
+    }
+  }
 }
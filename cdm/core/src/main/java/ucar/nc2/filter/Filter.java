@@ -6,6 +6,7 @@
 package ucar.nc2.filter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Formatter;
 import java.util.Map;
@@ -23,6 +24,52 @@ public abstract class Filter {
 
   public abstract byte[] decode(byte[] dataIn) throws IOException;
 
+  /**
+   * Decode the bytes between the position and the limit of dataIn, into dataOut when it has room for the result.
+   * This lets a chain of filters decode through reused buffers (see {@link FilterPipeline}) instead of allocating
+   * new arrays at each step.
+   * <p>
+   * The default implementation is an adapter to {@link #decode(byte[])}; filters override it to avoid copies.
+   *
+   * @param dataIn the encoded bytes; its position and limit are not changed
+   * @param dataOut where to write the decoded bytes, starting at its position, if they fit; its position and limit
+   *        are not changed; may be null
+   * @return the decoded bytes, between the position and the limit of the returned buffer, which is a view of dataOut,
+   *         a new buffer, or a view of dataIn. Its byte order is not specified.
+   */
+  public ByteBuffer decode(ByteBuffer dataIn, ByteBuffer dataOut) throws IOException {
+    byte[] out = decode(toArray(dataIn));
+    if (dataOut != null && dataOut.hasArray() && dataOut.remaining() >= out.length) {
+      ByteBuffer result = outputBuffer(dataOut, out.length);
+      result.duplicate().put(out);
+      return result;
+    }
+    return ByteBuffer.wrap(out);
+  }
+
+  /**
+   * The bytes between the position and the limit of a buffer, without a copy when the buffer wraps a whole array.
+   * The position of the buffer is not changed.
+   */
+  static byte[] toArray(ByteBuffer bb) {
+    if (bb.hasArray() && bb.arrayOffset() == 0 && bb.position() == 0 && bb.remaining() == bb.array().length) {
+      return bb.array();
+    }
+    byte[] result = new byte[bb.remaining()];
+    bb.duplicate().get(result);
+    return result;
+  }
+
+  /** A heap buffer to decode n bytes into: a view of dataOut if it has room for them, else a new one. */
+  static ByteBuffer outputBuffer(ByteBuffer dataOut, int n) {
+    if (dataOut != null && dataOut.hasArray() && dataOut.remaining() >= n) {
+      ByteBuffer result = dataOut.duplicate();
+      result.limit(result.position() + n);
+      return result;
+    }
+    return ByteBuffer.allocate(n);
+  }
+
   public String toString() {
     Formatter f = new Formatter();
     return f.format("Name: %s, ID: %d", getName(), getId()).toString();
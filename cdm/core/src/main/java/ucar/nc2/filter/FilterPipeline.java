@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Decodes chunks through a chain of filters, using {@link Filter#decode(ByteBuffer, ByteBuffer)}.
+ * The intermediate results are written to two scratch arrays kept by each thread and reused from chunk to chunk,
+ * so that only the final result is allocated, with its exact size when the decoded size is known.
+ * Thread safe.
+ */
+public class FilterPipeline {
+  // scratch arrays larger than this are not kept after use
+  private static final int MAX_POOLED_BYTES = 32 * 1024 * 1024;
+
+  private static final ThreadLocal<byte[][]> scratch = ThreadLocal.withInitial(() -> new byte[2][0]);
+
+  private final Filter[] filters; // in the order they were applied when encoding
+
+  /** @param filters in the order they were applied when encoding */
+  public FilterPipeline(Filter... filters) {
+    this.filters = filters.clone();
+  }
+
+  /** @param filters in the order they were applied when encoding */
+  public FilterPipeline(List<Filter> filters) {
+    this.filters = filters.toArray(new Filter[0]);
+  }
+
+  /**
+   * Decode a chunk, applying all the filters in reverse order.
+   *
+   * @param raw the encoded chunk
+   * @param decodedSize the size of the decoded chunk in bytes, or -1 if not known
+   * @return the decoded chunk, which may be raw itself if there are no filters
+   */
+  public byte[] decode(byte[] raw, int decodedSize) throws IOException {
+    return decode(raw, decodedSize, 0);
+  }
+
+  /**
+   * Decode a chunk, applying the filters in reverse order.
+   *
+   * @param raw the encoded chunk
+   * @param decodedSize the size of the decoded chunk in bytes, or -1 if not known
+   * @param skipMask filter i is skipped if bit i is set, as in the filter mask of HDF5 chunks
+   * @return the decoded chunk, which may be raw itself if all filters are skipped
+   */
+  public byte[] decode(byte[] raw, int decodedSize, int skipMask) throws IOException {
+    int last = 0; // the last filter to decode with
+    while (last < filters.length && isSkipped(skipMask, last)) {
+      last++;
+    }
+    if (last == filters.length) {
+      return raw;
+    }
+
+    byte[][] buffers = scratch.get();
+    ByteBuffer data = ByteBuffer.wrap(raw);
+    for (int i = filters.length - 1; i >= last; i--) {
+      if (isSkipped(skipMask, i)) {
+        continue;
+      }
+      if (i == last && decodedSize >= 0) {
+        data = filters[i].decode(data, ByteBuffer.wrap(new byte[decodedSize]));
+        break;
+      }
+
+      // decode into the scratch array that does not hold the input
+      int k = data.hasArray() && data.array() == buffers[0] ? 1 : 0;
+      int want = Math.max(decodedSize, data.remaining());
+      if (buffers[k].length < want && want <= MAX_POOLED_BYTES) {
+        buffers[k] = new byte[want];
+      }
+      data = filters[i].decode(data, ByteBuffer.wrap(buffers[k]));
+
+      // keep a larger array that the filter had to allocate, so that the next chunk fits
+      if (data.hasArray() && data.array() != raw && data.array() != buffers[1 - k]
+          && data.array().length > buffers[k].length && data.array().length <= MAX_POOLED_BYTES) {
+        buffers[k] = data.array();
+      }
+    }
+    return toExactArray(data, buffers);
+  }
+
+  private static boolean isSkipped(int skipMask, int i) {
+    return i < 32 && ((skipMask >>> i) & 1) != 0;
+  }
+
+  // the result must not share a scratch array
+  private static byte[] toExactArray(ByteBuffer data, byte[][] buffers) {
+    if (data.hasArray() && data.array() != buffers[0] && data.array() != buffers[1] && data.arrayOffset() == 0
+        && data.position() == 0 && data.remaining() == data.array().length) {
+      return data.array();
+    }
+    byte[] result = new byte[data.remaining()];
+    data.duplicate().get(result);
+    return result;
+  }
+}
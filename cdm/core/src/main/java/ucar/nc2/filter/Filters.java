@@ -69,7 +69,10 @@ public class Filters {
     }
 
     // try by id next
-    int id = ((Short) oid).intValue();
+    if (!(oid instanceof Number)) {
+      throw new UnknownFilterException(name);
+    }
+    int id = ((Number) oid).intValue();
     // look for dynamically loaded filters by id
     for (FilterProvider fp : ServiceLoader.load(FilterProvider.class)) {
       if (fp.canProvide(id)) {
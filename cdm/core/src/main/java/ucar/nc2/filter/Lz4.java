@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Filter implementation of LZ4 compression (https://lz4.org), in pure Java.
+ * <p>
+ * HDF5 chunks (the filter has a numeric id) use the framing of the HDF5 LZ4 plugin: the decoded size as a big endian
+ * long, the block size as a big endian int, then for each block its compressed size as a big endian int followed by
+ * the compressed bytes, or by the raw bytes if they did not compress. The block size is the first client data value.
+ * <p>
+ * Zarr chunks use the framing of the numcodecs LZ4 codec: the decoded size as a little endian int, then one block.
+ */
+public class Lz4 extends Filter {
+
+  private static final String name = "lz4";
+
+  private static final int id = 32004;
+
+  private static final int DEFAULT_BLOCK_SIZE = 1 << 30;
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+
+  private final boolean hdf5;
+  private final int blockSize;
+
+  public Lz4(Map<String, Object> properties) {
+    Object data = properties.get(Filters.Keys.DATA);
+    this.hdf5 = properties.get(Filters.Keys.ID) instanceof Number;
+    if (data instanceof int[] && ((int[]) data).length > 0 && ((int[]) data)[0] > 0) {
+      this.blockSize = ((int[]) data)[0];
+    } else {
+      this.blockSize = DEFAULT_BLOCK_SIZE;
+    }
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public int getId() {
+    return id;
+  }
+
+  @Override
+  public byte[] encode(byte[] dataIn) throws IOException {
+    return hdf5 ? encodeHdf5(dataIn) : encodeNumcodecs(dataIn);
+  }
+
+  @Override
+  public byte[] decode(byte[] dataIn) throws IOException {
+    return toArray(decode(ByteBuffer.wrap(dataIn), null));
+  }
+
+  @Override
+  public ByteBuffer decode(ByteBuffer dataIn, ByteBuffer dataOut) throws IOException {
+    byte[] in = dataIn.hasArray() ? dataIn.array() : toArray(dataIn);
+    int inStart = dataIn.hasArray() ? dataIn.arrayOffset() + dataIn.position() : 0;
+    int inEnd = inStart + dataIn.remaining();
+    return hdf5 ? decodeHdf5(in, inStart, inEnd, dataOut) : decodeNumcodecs(in, inStart, inEnd, dataOut);
+  }
+
+  private byte[] encodeHdf5(byte[] dataIn) {
+    int bsize = Math.max(1, Math.min(blockSize, dataIn.length));
+    int nblocks = (dataIn.length + bsize - 1) / bsize;
+    byte[] out = new byte[12 + 4 * nblocks + Lz4Block.maxCompressedLength(dataIn.length)];
+    writeLong(out, 0, dataIn.length);
+    writeInt(out, 8, bsize);
+    int pos = 12;
+    for (int start = 0, len; start < dataIn.length; start += len) {
+      len = Math.min(bsize, dataIn.length - start);
+      int n = Lz4Block.compress(dataIn, start, len, out, pos + 4, len - 1);
+      if (n < 0) { // store as is
+        System.arraycopy(dataIn, start, out, pos + 4, len);
+        n = len;
+      }
+      writeInt(out, pos, n);
+      pos += 4 + n;
+    }
+    return Arrays.copyOf(out, pos);
+  }
+
+  private ByteBuffer decodeHdf5(byte[] in, int inStart, int inEnd, ByteBuffer dataOut) throws IOException {
+    if (inEnd - inStart < 12) {
+      throw new IOException("lz4: chunk too small");
+    }
+    long size = readLong(in, inStart);
+    int bsize = readInt(in, inStart + 8);
+    if (size < 0 || size > MAX_ARRAY_LEN || bsize <= 0) {
+      throw new IOException("lz4: bad chunk header");
+    }
+    ByteBuffer result = outputBuffer(dataOut, (int) size);
+    byte[] out = result.array();
+    int outStart = result.arrayOffset() + result.position();
+    int pos = inStart + 12;
+    for (int start = 0, len; start < size; start += len) {
+      len = (int) Math.min(bsize, size - start);
+      if (pos > inEnd - 4) {
+        throw new IOException("lz4: truncated chunk");
+      }
+      int n = readInt(in, pos);
+      pos += 4;
+      if (n < 0 || n > inEnd - pos) {
+        throw new IOException("lz4: truncated chunk");
+      }
+      if (n == len) {
+        System.arraycopy(in, pos, out, outStart + start, len);
+      } else if (Lz4Block.decompress(in, pos, n, out, outStart + start, len) != len) {
+        throw new IOException("lz4: block decodes to the wrong size");
+      }
+      pos += n;
+    }
+    return result;
+  }
+
+  private byte[] encodeNumcodecs(byte[] dataIn) {
+    byte[] out = new byte[4 + Lz4Block.maxCompressedLength(dataIn.length)];
+    writeIntLE(out, 0, dataIn.length);
+    int n = Lz4Block.compress(dataIn, 0, dataIn.length, out, 4, out.length - 4);
+    return Arrays.copyOf(out, 4 + n);
+  }
+
+  private ByteBuffer decodeNumcodecs(byte[] in, int inStart, int inEnd, ByteBuffer dataOut) throws IOException {
+    if (inEnd - inStart < 4) {
+      throw new IOException("lz4: chunk too small");
+    }
+    int size = (in[inStart] & 0xff) | (in[inStart + 1] & 0xff) << 8 | (in[inStart + 2] & 0xff) << 16
+        | (in[inStart + 3] & 0xff) << 24;
+    if (size < 0 || size > MAX_ARRAY_LEN) {
+      throw new IOException("lz4: bad chunk header");
+    }
+    ByteBuffer result = outputBuffer(dataOut, size);
+    int outStart = result.arrayOffset() + result.position();
+    if (Lz4Block.decompress(in, inStart + 4, inEnd - inStart - 4, result.array(), outStart, size) != size) {
+      throw new IOException("lz4: chunk decodes to the wrong size");
+    }
+    return result;
+  }
+
+  private static int readInt(byte[] buf, int pos) {
+    return (buf[pos] & 0xff) << 24 | (buf[pos + 1] & 0xff) << 16 | (buf[pos + 2] & 0xff) << 8 | (buf[pos + 3] & 0xff);
+  }
+
+  private static long readLong(byte[] buf, int pos) {
+    return (long) readInt(buf, pos) << 32 | (readInt(buf, pos + 4) & 0xffffffffL);
+  }
+
+  private static void writeInt(byte[] buf, int pos, int value) {
+    buf[pos] = (byte) (value >>> 24);
+    buf[pos + 1] = (byte) (value >>> 16);
+    buf[pos + 2] = (byte) (value >>> 8);
+    buf[pos + 3] = (byte) value;
+  }
+
+  private static void writeLong(byte[] buf, int pos, long value) {
+    writeInt(buf, pos, (int) (value >>> 32));
+    writeInt(buf, pos + 4, (int) value);
+  }
+
+  private static void writeIntLE(byte[] buf, int pos, int value) {
+    buf[pos] = (byte) value;
+    buf[pos + 1] = (byte) (value >>> 8);
+    buf[pos + 2] = (byte) (value >>> 16);
+    buf[pos + 3] = (byte) (value >>> 24);
+  }
+
+  public static class Provider implements FilterProvider {
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public int getId() {
+      return id;
+    }
+
+    @Override
+    public Filter create(Map<String, Object> properties) {
+      return new Lz4(properties);
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.filter;
+
+import java.io.IOException;
+
+/**
+ * The LZ4 block format, without the LZ4 frame around it, in pure Java.
+ * The compressor is the simple greedy one with a single hash table; any LZ4 decoder can read its output.
+ */
+final class Lz4Block {
+  private static final int MIN_MATCH = 4;
+  private static final int LAST_LITERALS = 5; // the last 5 bytes are always literals
+  private static final int MF_LIMIT = 12; // the last match starts at least 12 bytes before the end
+  private static final int MAX_DISTANCE = 65535;
+  private static final int HASH_LOG = 12;
+
+  private Lz4Block() {}
+
+  /**
+   * Decompress one block.
+   *
+   * @return the number of bytes written to dst
+   * @throws IOException if the data is not valid, or does not fit in dst
+   */
+  static int decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) throws IOException {
+    int ip = srcOff;
+    int srcEnd = srcOff + srcLen;
+    int op = dstOff;
+    int dstEnd = dstOff + dstLen;
+    try {
+      while (true) {
+        if (ip >= srcEnd)
+          throw new IOException("lz4: truncated data");
+        int token = src[ip++] & 0xff;
+
+        int literalLength = token >>> 4;
+        if (literalLength == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xff;
+            literalLength += b;
+          } while (b == 255);
+        }
+        if (literalLength < 0 || literalLength > srcEnd - ip || literalLength > dstEnd - op)
+          throw new IOException("lz4: literals past end of buffer");
+        System.arraycopy(src, ip, dst, op, literalLength);
+        ip += literalLength;
+        op += literalLength;
+        if (ip == srcEnd)
+          break; // the last sequence has no match
+
+        if (ip > srcEnd - 2)
+          throw new IOException("lz4: truncated data");
+        int offset = (src[ip] & 0xff) | (src[ip + 1] & 0xff) << 8;
+        ip += 2;
+        if (offset == 0 || offset > op - dstOff)
+          throw new IOException("lz4: bad match offset " + offset);
+
+        int matchLength = token & 0xf;
+        if (matchLength == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xff;
+            matchLength += b;
+          } while (b == 255);
+        }
+        matchLength += MIN_MATCH;
+        if (matchLength < 0 || matchLength > dstEnd - op)
+          throw new IOException("lz4: match past end of buffer");
+
+        int from = op - offset;
+        if (offset >= matchLength) {
+          System.arraycopy(dst, from, dst, op, matchLength);
+        } else { // overlapping
+          for (int i = 0; i < matchLength; i++)
+            dst[op + i] = dst[from + i];
+        }
+        op += matchLength;
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("lz4: corrupt data", e);
+    }
+    return op - dstOff;
+  }
+
+  /** The largest size that compress() may write for srcLen bytes. */
+  static int maxCompressedLength(int srcLen) {
+    return srcLen + srcLen / 255 + 16;
+  }
+
+  /**
+   * Compress one block.
+   *
+   * @return the number of bytes written to dst, or -1 if they do not fit
+   */
+  static int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) {
+    int srcEnd = srcOff + srcLen;
+    int dstEnd = dstOff + dstLen;
+    int[] table = new int[1 << HASH_LOG]; // position + 1 of the last 4 bytes with this hash, 0 if none
+
+    int ip = srcOff;
+    int anchor = srcOff;
+    int op = dstOff;
+    int matchLimit = srcEnd - LAST_LITERALS;
+    int last = srcEnd - MF_LIMIT;
+    while (ip < last) {
+      int seq = readInt(src, ip);
+      int h = (seq * -1640531535) >>> (32 - HASH_LOG);
+      int ref = table[h] - 1;
+      table[h] = ip + 1;
+      if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != seq) {
+        ip++;
+        continue;
+      }
+
+      int matchLength = MIN_MATCH;
+      while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength])
+        matchLength++;
+
+      op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op, dstEnd);
+      if (op < 0)
+        return -1;
+      ip += matchLength;
+      anchor = ip;
+    }
+    op = writeSequence(src, anchor, srcEnd - anchor, 0, 0, dst, op, dstEnd);
+    return op < 0 ? -1 : op - dstOff;
+  }
+
+  // write one sequence, or just the literals if matchLength == 0; return the new op, or -1 if it does not fit
+  private static int writeSequence(byte[] src, int literals, int literalLength, int offset, int matchLength, byte[] dst,
+      int op, int dstEnd) {
+    if (op + 1 + literalLength + literalLength / 255 + 1 + 2 + (matchLength / 255 + 1) > dstEnd)
+      return -1;
+    int tokenPos = op++;
+    int token;
+    if (literalLength >= 15) {
+      token = 15 << 4;
+      op = writeLength(literalLength - 15, dst, op);
+    } else {
+      token = literalLength << 4;
+    }
+    System.arraycopy(src, literals, dst, op, literalLength);
+    op += literalLength;
+
+    if (matchLength > 0) {
+      dst[op++] = (byte) offset;
+      dst[op++] = (byte) (offset >>> 8);
+      int ml = matchLength - MIN_MATCH;
+      if (ml >= 15) {
+        token |= 15;
+        op = writeLength(ml - 15, dst, op);
+      } else {
+        token |= ml;
+      }
+    }
+    dst[tokenPos] = (byte) token;
+    return op;
+  }
+
+  private static int writeLength(int length, byte[] dst, int op) {
+    while (length >= 255) {
+      dst[op++] = (byte) 255;
+      length -= 255;
+    }
+    dst[op++] = (byte) length;
+    return op;
+  }
+
+  private static int readInt(byte[] src, int pos) {
+    return (src[pos] & 0xff) | (src[pos + 1] & 0xff) << 8 | (src[pos + 2] & 0xff) << 16 | (src[pos + 3] & 0xff) << 24;
+  }
+}
@@ -69,6 +69,11 @@ public class Normalizer implements Enhancement {
     return scaleOffset.applyScaleOffset(val);
   }
 
+  @Override
+  public void convert(double[] values, int off, int len) {
+    scaleOffset.applyScaleOffset(values, off, len);
+  }
+
   public double getMinimum() {
     return minimum;
   }
@@ -174,8 +174,82 @@ public class ScaleOffset extends Filter implements Enhancement {
     if (scale == DEFAULT_SCALE && offset == DEFAULT_OFFSET) {
       return dataIn;
     }
-    Array out = convert(FilterHelpers.bytesToArray(dataIn, astype, astypeOrder));
-    return FilterHelpers.arrayToBytes(out, dtype, dtypeOrder);
+    return toArray(decode(ByteBuffer.wrap(dataIn), null));
+  }
+
+  /**
+   * Decode element by element, without boxing, giving the same values as {@link #convert(Array)}.
+   */
+  @Override
+  public ByteBuffer decode(ByteBuffer dataIn, ByteBuffer dataOut) {
+    if (scale == DEFAULT_SCALE && offset == DEFAULT_OFFSET) {
+      return dataIn.duplicate();
+    }
+    ByteBuffer in = dataIn.slice().order(astypeOrder);
+    int n = in.remaining() / astype.getSize();
+    ByteBuffer result = outputBuffer(dataOut, n * dtype.getSize());
+    ByteBuffer out = result.duplicate().order(dtypeOrder);
+    for (int i = 0; i < n; i++) {
+      double value = convert(readAsDouble(in, astype));
+      switch (dtype) {
+        case BYTE:
+        case UBYTE:
+          out.put((byte) (int) value);
+          break;
+        case SHORT:
+        case USHORT:
+          out.putShort((short) (int) value);
+          break;
+        case INT:
+          out.putInt((int) value);
+          break;
+        case UINT:
+          out.putInt((int) (long) value);
+          break;
+        case LONG:
+        case ULONG:
+          out.putLong((long) value);
+          break;
+        case FLOAT:
+          out.putFloat((float) value);
+          break;
+        case DOUBLE:
+          out.putDouble(value);
+          break;
+        default:
+          throw new IllegalStateException("ScaleOffset error: unsupported dtype " + dtype);
+      }
+    }
+    return result;
+  }
+
+  // read the next value, as unsigned if the type is unsigned
+  private static double readAsDouble(ByteBuffer in, DataType type) {
+    switch (type) {
+      case BYTE:
+        return in.get();
+      case UBYTE:
+        return in.get() & 0xff;
+      case SHORT:
+        return in.getShort();
+      case USHORT:
+        return in.getShort() & 0xffff;
+      case INT:
+        return in.getInt();
+      case UINT:
+        return in.getInt() & 0xffffffffL;
+      case LONG:
+        return in.getLong();
+      case ULONG:
+        long value = in.getLong();
+        return value >= 0 ? value : ((value >>> 1) | (value & 1)) * 2.0;
+      case FLOAT:
+        return in.getFloat();
+      case DOUBLE:
+        return in.getDouble();
+      default:
+        throw new IllegalStateException("ScaleOffset error: unsupported astype " + type);
+    }
   }
 
   public Array applyScaleOffset(Array in) {
@@ -264,6 +338,32 @@ public class ScaleOffset extends Filter implements Enhancement {
     return value / scale + offset;
   }
 
+  @Override
+  public void convert(double[] values, int off, int len) {
+    if (dtype.isIntegral()) {
+      for (int i = off; i < off + len; i++) {
+        values[i] = Math.round(values[i] / scale + offset);
+      }
+    } else {
+      for (int i = off; i < off + len; i++) {
+        values[i] = values[i] / scale + offset;
+      }
+    }
+  }
+
+  /** Apply the scale and offset to values[off, off + len) in place, as {@link #applyScaleOffset(double)}. */
+  public void applyScaleOffset(double[] values, int off, int len) {
+    if (astype.isIntegral()) {
+      for (int i = off; i < off + len; i++) {
+        values[i] = Math.round((values[i] - offset) * scale);
+      }
+    } else {
+      for (int i = off; i < off + len; i++) {
+        values[i] = (values[i] - offset) * scale;
+      }
+    }
+  }
+
   private Number convertUnsigned(Number value, Signedness signedness) {
     if (signedness == Signedness.UNSIGNED) {
       // Handle integral types that should be treated as unsigned by widening them if necessary.
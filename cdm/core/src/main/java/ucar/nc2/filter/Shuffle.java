@@ -5,6 +5,7 @@
 
 package ucar.nc2.filter;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 /**
@@ -61,24 +62,32 @@ public class Shuffle extends Filter {
 
   @Override
   public byte[] decode(byte[] dataIn) {
-    if (dataIn.length % this.elemSize == 0 && this.elemSize > 1) {
-      int nElems = dataIn.length / this.elemSize;
-      byte[] result = new byte[dataIn.length];
-
-      for (int j = 0; j < this.elemSize; ++j) {
-        int sourceIndex = j * nElems;
-        int destIndex = j;
-        for (int i = 0; i < nElems; ++i) {
-          result[destIndex] = dataIn[sourceIndex];
-          sourceIndex++;
-          destIndex += this.elemSize;
-        }
-      }
+    return toArray(decode(ByteBuffer.wrap(dataIn), null));
+  }
 
-      return result;
-    } else {
-      return dataIn;
+  @Override
+  public ByteBuffer decode(ByteBuffer dataIn, ByteBuffer dataOut) {
+    int length = dataIn.remaining();
+    if (length % this.elemSize != 0 || this.elemSize <= 1) {
+      return dataIn.duplicate();
     }
+    byte[] in = dataIn.hasArray() ? dataIn.array() : toArray(dataIn);
+    int inStart = dataIn.hasArray() ? dataIn.arrayOffset() + dataIn.position() : 0;
+    ByteBuffer result = outputBuffer(dataOut, length);
+    byte[] out = result.array();
+    int outStart = result.arrayOffset() + result.position();
+
+    int nElems = length / this.elemSize;
+    for (int j = 0; j < this.elemSize; ++j) {
+      int sourceIndex = inStart + j * nElems;
+      int destIndex = outStart + j;
+      for (int i = 0; i < nElems; ++i) {
+        out[destIndex] = in[sourceIndex];
+        sourceIndex++;
+        destIndex += this.elemSize;
+      }
+    }
+    return result;
   }
 
   public static class Provider implements FilterProvider {
@@ -69,6 +69,11 @@ public class Standardizer implements Enhancement {
     return scaleOffset.applyScaleOffset(val);
   }
 
+  @Override
+  public void convert(double[] values, int off, int len) {
+    scaleOffset.applyScaleOffset(values, off, len);
+  }
+
   public double getMean() {
     return mean;
   }
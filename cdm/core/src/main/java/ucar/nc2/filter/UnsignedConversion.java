@@ -53,24 +53,48 @@ public class UnsignedConversion implements Enhancement {
   }
 
   public double convert(double value) {
-    Number val;
+    if (this.signedness != DataType.Signedness.UNSIGNED) {
+      return value;
+    }
+    // narrow to the type before widening, then take the value as unsigned
     switch (outType) {
       case UBYTE:
-        val = new Byte((byte) value);
-        break;
       case USHORT:
-        val = new Byte((byte) value);
+        return (int) value & 0xff;
+      case UINT:
+        return (int) value & 0xffff;
+      case ULONG:
+        return (int) value & 0xffffffffL;
+      default:
+        return value;
+    }
+  }
+
+  @Override
+  public void convert(double[] values, int off, int len) {
+    if (this.signedness != DataType.Signedness.UNSIGNED) {
+      return;
+    }
+    switch (outType) {
+      case UBYTE:
+      case USHORT:
+        for (int i = off; i < off + len; i++) {
+          values[i] = (int) values[i] & 0xff;
+        }
         break;
       case UINT:
-        val = new Short((short) value);
+        for (int i = off; i < off + len; i++) {
+          values[i] = (int) values[i] & 0xffff;
+        }
         break;
       case ULONG:
-        val = new Integer((int) value);
+        for (int i = off; i < off + len; i++) {
+          values[i] = (int) values[i] & 0xffffffffL;
+        }
         break;
       default:
-        val = new Double(value);
+        break;
     }
-    return this.signedness == DataType.Signedness.UNSIGNED ? DataType.widenNumberIfNegative(val).doubleValue() : value;
   }
 
   public Array convertUnsigned(Array in) {
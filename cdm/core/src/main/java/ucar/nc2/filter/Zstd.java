@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.filter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Filter implementation of Zstandard compression (https://facebook.github.io/zstd), in pure Java.
+ * Each chunk is a single zstd frame, as written by the HDF5 Zstandard plugin and the Zarr zstd codec.
+ * <p>
+ * The compression level (the Zarr "level" property, or the client data of the HDF5 filter) is ignored: encoding
+ * always uses the fast compressor of {@link ZstdEncoder}.
+ */
+public class Zstd extends Filter {
+
+  private static final String name = "zstd";
+
+  private static final int id = 32015;
+
+  public Zstd(Map<String, Object> properties) {}
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public int getId() {
+    return id;
+  }
+
+  @Override
+  public byte[] encode(byte[] dataIn) {
+    return ZstdEncoder.compress(dataIn, 0, dataIn.length);
+  }
+
+  @Override
+  public byte[] decode(byte[] dataIn) throws IOException {
+    return toArray(decode(ByteBuffer.wrap(dataIn), null));
+  }
+
+  @Override
+  public ByteBuffer decode(ByteBuffer dataIn, ByteBuffer dataOut) throws IOException {
+    byte[] in = dataIn.hasArray() ? dataIn.array() : toArray(dataIn);
+    int inStart = dataIn.hasArray() ? dataIn.arrayOffset() + dataIn.position() : 0;
+    long size = ZstdDecoder.decompressedSize(in, inStart, dataIn.remaining());
+    if (size < 0) { // not in the frame headers
+      return ByteBuffer.wrap(ZstdDecoder.decompress(in, inStart, dataIn.remaining()));
+    }
+    ByteBuffer result = outputBuffer(dataOut, (int) size);
+    int n = ZstdDecoder.decompress(in, inStart, dataIn.remaining(), result.array(),
+        result.arrayOffset() + result.position(), (int) size);
+    if (n != size) {
+      throw new IOException("zstd: decompressed size does not match the frame headers");
+    }
+    return result;
+  }
+
+  public static class Provider implements FilterProvider {
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public int getId() {
+      return id;
+    }
+
+    @Override
+    public Filter create(Map<String, Object> properties) {
+      return new Zstd(properties);
+    }
+  }
+}
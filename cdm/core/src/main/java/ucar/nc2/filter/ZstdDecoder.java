@@ -0,0 +1,772 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.filter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Decompresses Zstandard frames (RFC 8878), in pure Java.
+ * Dictionaries are not supported, and the content checksum is not verified.
+ * Not thread safe, a new decoder is made for each call to decompress().
+ */
+final class ZstdDecoder {
+  static final int MAGIC = 0xFD2FB528;
+  private static final int SKIPPABLE_MAGIC = 0x184D2A50; // low 4 bits are free
+  static final int MAX_BLOCK_SIZE = 1 << 17;
+  private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
+
+  // sequence tables, in the order of the symbol compression modes
+  static final int LL = 0, OF = 1, ML = 2;
+  private static final int[] MAX_SYMBOL = {35, 31, 52};
+  private static final int[] MAX_LOG = {9, 8, 9};
+
+  static final int[] LL_BASE = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 18, 20, 22, 24, 28, 32,
+      40, 48, 64, 128, 256, 512, 1024, 2048, 4096, 8192, 16384, 32768, 65536};
+  static final int[] LL_BITS = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8,
+      9, 10, 11, 12, 13, 14, 15, 16};
+  static final int[] ML_BASE = {3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24,
+      25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131, 259, 515, 1027, 2051,
+      4099, 8195, 16387, 32771, 65539};
+  static final int[] ML_BITS = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+      0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16};
+
+  private static final short[] LL_DEFAULT = {4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1, 2, 2, 2, 2, 2, 2, 2,
+      2, 2, 3, 2, 1, 1, 1, 1, 1, -1, -1, -1, -1};
+  private static final short[] OF_DEFAULT =
+      {1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1};
+  private static final short[] ML_DEFAULT = {1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1, -1, -1};
+
+  static final FseTable[] DEFAULT_TABLES = new FseTable[3];
+  static {
+    DEFAULT_TABLES[LL] = new FseTable(6);
+    DEFAULT_TABLES[LL].build(LL_DEFAULT, LL_DEFAULT.length - 1, 6);
+    DEFAULT_TABLES[OF] = new FseTable(5);
+    DEFAULT_TABLES[OF].build(OF_DEFAULT, OF_DEFAULT.length - 1, 5);
+    DEFAULT_TABLES[ML] = new FseTable(6);
+    DEFAULT_TABLES[ML].build(ML_DEFAULT, ML_DEFAULT.length - 1, 6);
+  }
+
+  /**
+   * Decompress all the frames in src into dst.
+   *
+   * @return the number of bytes written to dst
+   * @throws IOException if the data is not valid, or does not fit in dst
+   */
+  static int decompress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff, int dstLen) throws IOException {
+    ZstdDecoder decoder = new ZstdDecoder(dst, dstOff, dstOff + dstLen, false);
+    decoder.decodeFrames(src, srcOff, srcOff + srcLen);
+    return decoder.outPos - dstOff;
+  }
+
+  /**
+   * Decompress all the frames in src. The size of the result is taken from the frame headers when they have it.
+   *
+   * @throws IOException if the data is not valid
+   */
+  static byte[] decompress(byte[] src, int srcOff, int srcLen) throws IOException {
+    ZstdDecoder decoder = new ZstdDecoder(new byte[0], 0, MAX_ARRAY_LEN, true);
+    decoder.decodeFrames(src, srcOff, srcOff + srcLen);
+    return decoder.out.length == decoder.outPos ? decoder.out : Arrays.copyOf(decoder.out, decoder.outPos);
+  }
+
+  /**
+   * The decompressed size of all the frames in src, from the frame headers, without decompressing them.
+   *
+   * @return the size, or -1 if a frame header does not have it, or the data is not valid
+   */
+  static long decompressedSize(byte[] src, int srcOff, int srcLen) {
+    long total = 0;
+    int pos = srcOff;
+    int end = srcOff + srcLen;
+    while (pos < end) {
+      if (end - pos < 8)
+        return -1;
+      int magic = readLE32(src, pos);
+      if ((magic & 0xFFFFFFF0) == SKIPPABLE_MAGIC) {
+        pos += 8 + readLE32(src, pos + 4);
+        continue;
+      }
+      if (magic != MAGIC)
+        return -1;
+      pos += 4;
+      int descriptor = src[pos++] & 0xff;
+      boolean singleSegment = (descriptor & 0x20) != 0;
+      int dictFlag = descriptor & 3;
+      int fcsFlag = descriptor >>> 6;
+      int fcsSize = fcsFlag == 0 ? (singleSegment ? 1 : 0) : 1 << fcsFlag;
+      if (fcsSize == 0)
+        return -1;
+      pos += (singleSegment ? 0 : 1) + (dictFlag == 3 ? 4 : dictFlag);
+      if (pos > end - fcsSize)
+        return -1;
+      total += readLE(src, pos, fcsSize) + (fcsSize == 2 ? 256 : 0);
+      pos += fcsSize;
+
+      // skip the blocks
+      boolean last;
+      do {
+        if (pos > end - 3)
+          return -1;
+        int header = (int) readLE(src, pos, 3);
+        last = (header & 1) != 0;
+        int type = (header >>> 1) & 3;
+        pos += 3 + (type == 1 ? 1 : header >>> 3);
+      } while (!last);
+      if ((descriptor & 0x04) != 0)
+        pos += 4;
+      if (total < 0 || total > MAX_ARRAY_LEN)
+        return -1;
+    }
+    return pos == end ? total : -1;
+  }
+
+  ////////////////////////////////////////////////////////////
+
+  private byte[] out;
+  private final int outStart;
+  private int outPos;
+  private final int outLimit;
+  private final boolean growable;
+
+  // state kept between the blocks of a frame
+  private final int[] rep = new int[3];
+  private Huffman huffman; // from the last compressed literals, for treeless literals
+  private final FseTable[] tables = new FseTable[3]; // from the last sequences, for repeat mode
+  private final FseTable[] ownTables = new FseTable[3];
+
+  private final byte[] literals = new byte[MAX_BLOCK_SIZE];
+  private int nliterals;
+
+  private ZstdDecoder(byte[] out, int outStart, int outLimit, boolean growable) {
+    this.out = out;
+    this.outStart = outStart;
+    this.outPos = outStart;
+    this.outLimit = outLimit;
+    this.growable = growable;
+    for (int k = 0; k < 3; k++)
+      ownTables[k] = new FseTable(MAX_LOG[k]);
+  }
+
+  private void decodeFrames(byte[] src, int pos, int end) throws IOException {
+    try {
+      if (pos >= end)
+        throw new IOException("zstd: no data");
+      while (pos < end) {
+        int magic = readLE32(src, pos);
+        if ((magic & 0xFFFFFFF0) == SKIPPABLE_MAGIC) {
+          pos += 8 + readLE32(src, pos + 4);
+        } else if (magic == MAGIC) {
+          pos = decodeFrame(src, pos + 4, end);
+        } else {
+          throw new IOException("zstd: bad magic number " + Integer.toHexString(magic));
+        }
+      }
+      if (pos != end)
+        throw new IOException("zstd: truncated data");
+    } catch (ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+      throw new IOException("zstd: corrupt data", e);
+    }
+  }
+
+  // returns the position after the frame
+  private int decodeFrame(byte[] src, int pos, int end) throws IOException {
+    int descriptor = src[pos++] & 0xff;
+    if ((descriptor & 0x08) != 0)
+      throw new IOException("zstd: reserved bit set in frame header");
+    boolean singleSegment = (descriptor & 0x20) != 0;
+    boolean hasChecksum = (descriptor & 0x04) != 0;
+    int dictFlag = descriptor & 3;
+    int fcsFlag = descriptor >>> 6;
+
+    if (!singleSegment)
+      pos++; // window descriptor, the whole output is kept anyway
+    int dictSize = dictFlag == 3 ? 4 : dictFlag;
+    if (readLE(src, pos, dictSize) != 0)
+      throw new IOException("zstd: dictionaries are not supported");
+    pos += dictSize;
+    int fcsSize = fcsFlag == 0 ? (singleSegment ? 1 : 0) : 1 << fcsFlag;
+    if (fcsSize > 0) {
+      long contentSize = readLE(src, pos, fcsSize) + (fcsSize == 2 ? 256 : 0);
+      if (contentSize < 0 || contentSize > MAX_ARRAY_LEN)
+        throw new IOException("zstd: content size too large " + contentSize);
+      ensure((int) contentSize);
+      pos += fcsSize;
+    }
+
+    rep[0] = 1;
+    rep[1] = 4;
+    rep[2] = 8;
+    huffman = null;
+    Arrays.fill(tables, null);
+
+    boolean last;
+    do {
+      int header = (int) readLE(src, pos, 3);
+      pos += 3;
+      last = (header & 1) != 0;
+      int type = (header >>> 1) & 3;
+      int size = header >>> 3;
+      switch (type) {
+        case 0: // raw
+          if (pos + size > end)
+            throw new IOException("zstd: truncated raw block");
+          ensure(size);
+          System.arraycopy(src, pos, out, outPos, size);
+          outPos += size;
+          pos += size;
+          break;
+        case 1: // RLE
+          ensure(size);
+          Arrays.fill(out, outPos, outPos + size, src[pos]);
+          outPos += size;
+          pos++;
+          break;
+        case 2: // compressed
+          if (size > MAX_BLOCK_SIZE || pos + size > end)
+            throw new IOException("zstd: bad compressed block size " + size);
+          decodeBlock(src, pos, pos + size);
+          pos += size;
+          break;
+        default:
+          throw new IOException("zstd: reserved block type");
+      }
+    } while (!last);
+
+    if (hasChecksum)
+      pos += 4;
+    return pos;
+  }
+
+  private void ensure(int n) throws IOException {
+    if (n <= outLimit - outPos && outPos + n <= out.length)
+      return;
+    if (!growable || n > outLimit - outPos)
+      throw new IOException("zstd: decompressed data is larger than expected");
+    long want = Math.max((long) outPos + n, 2L * out.length);
+    out = Arrays.copyOf(out, (int) Math.min(want, outLimit));
+  }
+
+  private void decodeBlock(byte[] src, int pos, int end) throws IOException {
+    pos = decodeLiterals(src, pos, end);
+
+    int nseq = src[pos++] & 0xff;
+    if (nseq >= 128) {
+      if (nseq < 255) {
+        nseq = ((nseq - 128) << 8) + (src[pos++] & 0xff);
+      } else {
+        nseq = (src[pos] & 0xff) + ((src[pos + 1] & 0xff) << 8) + 0x7F00;
+        pos += 2;
+      }
+    }
+    if (nseq == 0) {
+      if (pos != end)
+        throw new IOException("zstd: extra bytes after literals");
+      copyLiterals(0, nliterals);
+      return;
+    }
+
+    int modes = src[pos++] & 0xff;
+    if ((modes & 3) != 0)
+      throw new IOException("zstd: reserved bits set in symbol compression modes");
+    for (int k = 0; k < 3; k++) {
+      switch ((modes >>> (6 - 2 * k)) & 3) {
+        case 0: // predefined
+          tables[k] = DEFAULT_TABLES[k];
+          break;
+        case 1: // RLE
+          int symbol = src[pos++] & 0xff;
+          if (symbol > MAX_SYMBOL[k])
+            throw new IOException("zstd: bad RLE symbol " + symbol);
+          ownTables[k].setRle(symbol);
+          tables[k] = ownTables[k];
+          break;
+        case 2: // FSE compressed
+          pos = ownTables[k].read(src, pos, end, MAX_SYMBOL[k], MAX_LOG[k]);
+          tables[k] = ownTables[k];
+          break;
+        default: // repeat
+          if (tables[k] == null)
+            throw new IOException("zstd: repeat mode without a previous table");
+      }
+    }
+
+    executeSequences(src, pos, end, nseq);
+  }
+
+  // decode the literals section into literals, return the position after it
+  private int decodeLiterals(byte[] src, int pos, int end) throws IOException {
+    int b0 = src[pos] & 0xff;
+    int type = b0 & 3;
+    int sizeFormat = (b0 >>> 2) & 3;
+
+    if (type < 2) { // raw or RLE
+      int size;
+      switch (sizeFormat) {
+        case 1:
+          size = (b0 >>> 4) + ((src[pos + 1] & 0xff) << 4);
+          pos += 2;
+          break;
+        case 3:
+          size = (b0 >>> 4) + ((src[pos + 1] & 0xff) << 4) + ((src[pos + 2] & 0xff) << 12);
+          pos += 3;
+          break;
+        default:
+          size = b0 >>> 3;
+          pos += 1;
+      }
+      if (size > MAX_BLOCK_SIZE)
+        throw new IOException("zstd: too many literals " + size);
+      if (type == 0) {
+        if (pos + size > end)
+          throw new IOException("zstd: truncated literals");
+        System.arraycopy(src, pos, literals, 0, size);
+        pos += size;
+      } else {
+        Arrays.fill(literals, 0, size, src[pos++]);
+      }
+      nliterals = size;
+      return pos;
+    }
+
+    int headerSize = sizeFormat < 2 ? 3 : sizeFormat + 2;
+    int bits = sizeFormat < 2 ? 10 : (sizeFormat == 2 ? 14 : 18);
+    long header = readLE(src, pos, headerSize);
+    int mask = (1 << bits) - 1;
+    int size = (int) (header >>> 4) & mask;
+    int compressedSize = (int) (header >>> (4 + bits)) & mask;
+    pos += headerSize;
+    int litEnd = pos + compressedSize;
+    if (size > MAX_BLOCK_SIZE || litEnd > end)
+      throw new IOException("zstd: bad literals section");
+
+    if (type == 2) {
+      if (huffman == null)
+        huffman = new Huffman();
+      pos = huffman.read(src, pos, litEnd);
+    } else if (huffman == null) {
+      throw new IOException("zstd: treeless literals without a previous Huffman table");
+    }
+
+    if (sizeFormat == 0) {
+      huffman.decodeStream(src, pos, litEnd, literals, 0, size);
+    } else {
+      int size1 = (int) readLE(src, pos, 2);
+      int size2 = (int) readLE(src, pos + 2, 2);
+      int size3 = (int) readLE(src, pos + 4, 2);
+      int start1 = pos + 6;
+      int start2 = start1 + size1;
+      int start3 = start2 + size2;
+      int start4 = start3 + size3;
+      int segment = (size + 3) / 4;
+      if (start4 > litEnd || 3 * segment > size)
+        throw new IOException("zstd: bad literals jump table");
+      huffman.decodeStream(src, start1, start2, literals, 0, segment);
+      huffman.decodeStream(src, start2, start3, literals, segment, 2 * segment);
+      huffman.decodeStream(src, start3, start4, literals, 2 * segment, 3 * segment);
+      huffman.decodeStream(src, start4, litEnd, literals, 3 * segment, size);
+    }
+    nliterals = size;
+    return litEnd;
+  }
+
+  private void executeSequences(byte[] src, int pos, int end, int nseq) throws IOException {
+    FseTable llTable = tables[LL];
+    FseTable ofTable = tables[OF];
+    FseTable mlTable = tables[ML];
+    BitReader bits = new BitReader(src, pos, end);
+    int llState = bits.read(llTable.log);
+    int ofState = bits.read(ofTable.log);
+    int mlState = bits.read(mlTable.log);
+    bits.reload();
+
+    int litPos = 0;
+    for (int i = 0; i < nseq; i++) {
+      int ofCode = ofTable.symbol[ofState];
+      int mlCode = mlTable.symbol[mlState];
+      int llCode = llTable.symbol[llState];
+      if (ofCode > 30)
+        throw new IOException("zstd: bad offset code " + ofCode);
+
+      int offsetValue = (1 << ofCode) + bits.read(ofCode);
+      bits.reload();
+      int matchLength = ML_BASE[mlCode] + bits.read(ML_BITS[mlCode]);
+      int literalLength = LL_BASE[llCode] + bits.read(LL_BITS[llCode]);
+      bits.reload();
+
+      int offset;
+      if (offsetValue > 3) {
+        offset = offsetValue - 3;
+        rep[2] = rep[1];
+        rep[1] = rep[0];
+        rep[0] = offset;
+      } else {
+        int idx = offsetValue - 1 + (literalLength == 0 ? 1 : 0);
+        if (idx == 0) {
+          offset = rep[0];
+        } else {
+          offset = idx == 3 ? rep[0] - 1 : rep[idx];
+          if (idx != 1)
+            rep[2] = rep[1];
+          rep[1] = rep[0];
+          rep[0] = offset;
+        }
+      }
+
+      if (literalLength > nliterals - litPos)
+        throw new IOException("zstd: not enough literals");
+      copyLiterals(litPos, literalLength);
+      litPos += literalLength;
+
+      ensure(matchLength);
+      if (offset <= 0 || offset > outPos - outStart)
+        throw new IOException("zstd: bad match offset " + offset);
+      int from = outPos - offset;
+      if (offset >= matchLength) {
+        System.arraycopy(out, from, out, outPos, matchLength);
+      } else { // overlapping
+        for (int j = 0; j < matchLength; j++)
+          out[outPos + j] = out[from + j];
+      }
+      outPos += matchLength;
+
+      if (i < nseq - 1) {
+        llState = llTable.newState[llState] + bits.read(llTable.nbBits[llState]);
+        mlState = mlTable.newState[mlState] + bits.read(mlTable.nbBits[mlState]);
+        ofState = ofTable.newState[ofState] + bits.read(ofTable.nbBits[ofState]);
+        bits.reload();
+      }
+    }
+    if (!bits.isFinished())
+      throw new IOException("zstd: corrupt sequences");
+    copyLiterals(litPos, nliterals - litPos);
+  }
+
+  private void copyLiterals(int from, int n) throws IOException {
+    ensure(n);
+    System.arraycopy(literals, from, out, outPos, n);
+    outPos += n;
+  }
+
+  ////////////////////////////////////////////////////////////
+
+  // Huffman decoding table for literals
+  private static final class Huffman {
+    private static final int MAX_BITS = 11;
+
+    private int maxBits;
+    private final byte[] symbols = new byte[1 << MAX_BITS];
+    private final byte[] nbBits = new byte[1 << MAX_BITS];
+    private final byte[] weights = new byte[256];
+
+    // read the tree description, return the position after it
+    int read(byte[] src, int pos, int end) throws IOException {
+      int header = src[pos++] & 0xff;
+      int nweights;
+      if (header < 128) { // FSE compressed weights
+        int weightsEnd = pos + header;
+        if (weightsEnd > end)
+          throw new IOException("zstd: truncated Huffman weights");
+        nweights = readFseWeights(src, pos, weightsEnd);
+        pos = weightsEnd;
+      } else { // 4 bits each
+        nweights = header - 127;
+        if (pos + (nweights + 1) / 2 > end)
+          throw new IOException("zstd: truncated Huffman weights");
+        for (int i = 0; i < nweights; i++) {
+          int b = src[pos + i / 2] & 0xff;
+          weights[i] = (byte) ((i & 1) == 0 ? b >>> 4 : b & 0xf);
+        }
+        pos += (nweights + 1) / 2;
+      }
+
+      // the weight of the last symbol is implied
+      int total = 0;
+      for (int i = 0; i < nweights; i++) {
+        int w = weights[i] & 0xff;
+        if (w > MAX_BITS)
+          throw new IOException("zstd: bad Huffman weight " + w);
+        if (w > 0)
+          total += 1 << (w - 1);
+      }
+      if (total == 0)
+        throw new IOException("zstd: empty Huffman table");
+      maxBits = 32 - Integer.numberOfLeadingZeros(total);
+      int rest = (1 << maxBits) - total;
+      if (maxBits > MAX_BITS || Integer.bitCount(rest) != 1)
+        throw new IOException("zstd: bad Huffman weights");
+      weights[nweights] = (byte) (Integer.numberOfTrailingZeros(rest) + 1);
+      int nsymbols = nweights + 1;
+
+      // codes are assigned in order of increasing weight, then increasing symbol
+      int next = 0;
+      for (int w = 1; w <= maxBits; w++) {
+        for (int s = 0; s < nsymbols; s++) {
+          if (weights[s] == w) {
+            int count = 1 << (w - 1);
+            Arrays.fill(symbols, next, next + count, (byte) s);
+            Arrays.fill(nbBits, next, next + count, (byte) (maxBits + 1 - w));
+            next += count;
+          }
+        }
+      }
+      return pos;
+    }
+
+    // the weights are FSE compressed with two interleaved states
+    private int readFseWeights(byte[] src, int pos, int end) throws IOException {
+      FseTable table = new FseTable(6);
+      pos = table.read(src, pos, end, 255, 6);
+      BitReader bits = new BitReader(src, pos, end);
+      int state1 = bits.read(table.log);
+      int state2 = bits.read(table.log);
+      bits.reload();
+      int n = 0;
+      while (true) {
+        if (n > 253)
+          throw new IOException("zstd: too many Huffman weights");
+        weights[n++] = table.symbol[state1];
+        state1 = table.newState[state1] + bits.read(table.nbBits[state1]);
+        if (bits.reload()) {
+          weights[n++] = table.symbol[state2];
+          break;
+        }
+        weights[n++] = table.symbol[state2];
+        state2 = table.newState[state2] + bits.read(table.nbBits[state2]);
+        if (bits.reload()) {
+          weights[n++] = table.symbol[state1];
+          break;
+        }
+      }
+      return n;
+    }
+
+    void decodeStream(byte[] src, int start, int end, byte[] dst, int dstPos, int dstEnd) throws IOException {
+      BitReader bits = new BitReader(src, start, end);
+      int limit = 64 - maxBits;
+      for (int i = dstPos; i < dstEnd; i++) {
+        int v = bits.peek(maxBits);
+        dst[i] = symbols[v];
+        bits.skip(nbBits[v]);
+        if (bits.consumed > limit)
+          bits.reload();
+      }
+      if (!bits.isFinished())
+        throw new IOException("zstd: corrupt Huffman stream");
+    }
+  }
+
+  // FSE decoding table
+  static final class FseTable {
+    int log;
+    final byte[] symbol;
+    final byte[] nbBits;
+    final int[] newState;
+
+    FseTable(int maxLog) {
+      symbol = new byte[1 << maxLog];
+      nbBits = new byte[1 << maxLog];
+      newState = new int[1 << maxLog];
+    }
+
+    void setRle(int sym) {
+      log = 0;
+      symbol[0] = (byte) sym;
+      nbBits[0] = 0;
+      newState[0] = 0;
+    }
+
+    // read a table description and build the table, return the position after it
+    int read(byte[] src, int pos, int end, int maxSymbol, int maxLog) throws IOException {
+      short[] norm = new short[maxSymbol + 1];
+      long bitPos = 8L * pos;
+      int tableLog = peekForward(src, end, bitPos, 4) + 5;
+      bitPos += 4;
+      if (tableLog > maxLog)
+        throw new IOException("zstd: FSE table log too large " + tableLog);
+
+      int remaining = (1 << tableLog) + 1;
+      int threshold = 1 << tableLog;
+      int nbits = tableLog + 1;
+      int sym = 0;
+      boolean previous0 = false;
+      while (remaining > 1 && sym <= maxSymbol) {
+        if (previous0) {
+          int n0 = sym;
+          while (peekForward(src, end, bitPos, 16) == 0xFFFF) {
+            n0 += 24;
+            bitPos += 16;
+          }
+          while (peekForward(src, end, bitPos, 2) == 3) {
+            n0 += 3;
+            bitPos += 2;
+          }
+          n0 += peekForward(src, end, bitPos, 2);
+          bitPos += 2;
+          if (n0 > maxSymbol)
+            throw new IOException("zstd: bad FSE table description");
+          while (sym < n0)
+            norm[sym++] = 0;
+        }
+
+        int max = (2 * threshold - 1) - remaining;
+        int v = peekForward(src, end, bitPos, nbits);
+        int count;
+        if ((v & (threshold - 1)) < max) {
+          count = v & (threshold - 1);
+          bitPos += nbits - 1;
+        } else {
+          count = v & (2 * threshold - 1);
+          if (count >= threshold)
+            count -= max;
+          bitPos += nbits;
+        }
+        count--;
+        remaining -= Math.abs(count);
+        norm[sym++] = (short) count;
+        previous0 = count == 0;
+        while (remaining < threshold) {
+          nbits--;
+          threshold >>= 1;
+        }
+      }
+      int next = (int) ((bitPos + 7) >>> 3);
+      if (remaining != 1 || next > end)
+        throw new IOException("zstd: bad FSE table description");
+      build(norm, sym - 1, tableLog);
+      return next;
+    }
+
+    void build(short[] norm, int maxSymbol, int tableLog) {
+      this.log = tableLog;
+      int size = 1 << tableLog;
+      int high = size - 1;
+      int[] next = new int[maxSymbol + 1];
+      for (int s = 0; s <= maxSymbol; s++) {
+        if (norm[s] == -1) {
+          symbol[high--] = (byte) s;
+          next[s] = 1;
+        } else {
+          next[s] = norm[s];
+        }
+      }
+
+      int step = (size >>> 1) + (size >>> 3) + 3;
+      int mask = size - 1;
+      int p = 0;
+      for (int s = 0; s <= maxSymbol; s++) {
+        for (int i = 0; i < norm[s]; i++) {
+          symbol[p] = (byte) s;
+          do {
+            p = (p + step) & mask;
+          } while (p > high);
+        }
+      }
+
+      for (int u = 0; u < size; u++) {
+        int s = symbol[u] & 0xff;
+        int state = next[s]++;
+        int nb = tableLog - (31 - Integer.numberOfLeadingZeros(state));
+        nbBits[u] = (byte) nb;
+        newState[u] = (state << nb) - size;
+      }
+    }
+  }
+
+  // up to 24 bits starting at bitPos, reading forward, little endian; past end reads zeros
+  private static int peekForward(byte[] src, int end, long bitPos, int n) {
+    int pos = (int) (bitPos >>> 3);
+    int v = 0;
+    for (int i = 0; i < 4 && pos + i < end; i++)
+      v |= (src[pos + i] & 0xff) << (8 * i);
+    return (v >>> (bitPos & 7)) & ((1 << n) - 1);
+  }
+
+  // reads a bitstream backwards from its end, as written by the encoder
+  private static final class BitReader {
+    private final byte[] src;
+    private final int start;
+    private int ptr;
+    private long container;
+    int consumed; // bits of container already read, from the top
+
+    BitReader(byte[] src, int start, int end) throws IOException {
+      if (end <= start)
+        throw new IOException("zstd: empty bitstream");
+      int last = src[end - 1] & 0xff;
+      if (last == 0)
+        throw new IOException("zstd: bitstream has no end mark");
+      this.src = src;
+      this.start = start;
+      consumed = Integer.numberOfLeadingZeros(last) - 23; // skip the padding and the end mark
+      int size = end - start;
+      if (size >= 8) {
+        ptr = end - 8;
+        container = readLE64(src, ptr);
+      } else {
+        ptr = start;
+        container = readLE(src, start, size);
+        consumed += (8 - size) * 8;
+      }
+    }
+
+    int read(int n) {
+      int v = peek(n);
+      consumed += n;
+      return v;
+    }
+
+    int peek(int n) {
+      if (n == 0 || consumed >= 64)
+        return 0;
+      return (int) ((container << consumed) >>> (64 - n));
+    }
+
+    void skip(int n) {
+      consumed += n;
+    }
+
+    /** Refill the container, return true if more bits were read than were in the stream. */
+    boolean reload() {
+      if (consumed > 64)
+        return true;
+      if (ptr >= start + 8) {
+        ptr -= consumed >>> 3;
+        consumed &= 7;
+      } else if (ptr == start) {
+        return false;
+      } else {
+        int n = Math.min(consumed >>> 3, ptr - start);
+        ptr -= n;
+        consumed -= 8 * n;
+      }
+      container = readLE64(src, ptr);
+      return false;
+    }
+
+    boolean isFinished() {
+      return ptr == start && consumed == 64;
+    }
+  }
+
+  ////////////////////////////////////////////////////////////
+
+  private static int readLE32(byte[] src, int pos) {
+    return (src[pos] & 0xff) | (src[pos + 1] & 0xff) << 8 | (src[pos + 2] & 0xff) << 16 | (src[pos + 3] & 0xff) << 24;
+  }
+
+  private static long readLE64(byte[] src, int pos) {
+    return (readLE32(src, pos) & 0xffffffffL) | ((long) readLE32(src, pos + 4) << 32);
+  }
+
+  private static long readLE(byte[] src, int pos, int n) {
+    long v = 0;
+    for (int i = 0; i < n; i++)
+      v |= (long) (src[pos + i] & 0xff) << (8 * i);
+    return v;
+  }
+}
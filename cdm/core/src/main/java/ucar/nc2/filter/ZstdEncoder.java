@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.filter;
+
+import static ucar.nc2.filter.ZstdDecoder.DEFAULT_TABLES;
+import static ucar.nc2.filter.ZstdDecoder.LL;
+import static ucar.nc2.filter.ZstdDecoder.LL_BASE;
+import static ucar.nc2.filter.ZstdDecoder.LL_BITS;
+import static ucar.nc2.filter.ZstdDecoder.MAGIC;
+import static ucar.nc2.filter.ZstdDecoder.MAX_BLOCK_SIZE;
+import static ucar.nc2.filter.ZstdDecoder.ML;
+import static ucar.nc2.filter.ZstdDecoder.ML_BASE;
+import static ucar.nc2.filter.ZstdDecoder.ML_BITS;
+import static ucar.nc2.filter.ZstdDecoder.OF;
+
+import java.util.Arrays;
+
+/**
+ * Compresses to a single Zstandard frame (RFC 8878), in pure Java.
+ * This is a fast compressor: greedy matches from a single hash table, raw literals, and the predefined sequence
+ * tables. Its ratio is below that of the zstd library, but any zstd decoder can read its output.
+ * Not thread safe, a new encoder is made for each call to compress().
+ */
+final class ZstdEncoder {
+  private static final int MIN_MATCH = 4;
+  private static final int HASH_LOG = 16;
+  private static final int MAX_DISTANCE = (1 << 24) - 1;
+  private static final int MAX_SEQUENCES = MAX_BLOCK_SIZE / MIN_MATCH;
+
+  private static final int BLOCK_RAW = 0;
+  private static final int BLOCK_COMPRESSED = 2;
+
+  // for each table, the state to encode a symbol with, given the next state: [symbol << log | next state]
+  private static final int[][] ENCODE_STATES = new int[3][];
+  static {
+    for (int t = LL; t <= ML; t++) {
+      ZstdDecoder.FseTable table = DEFAULT_TABLES[t];
+      int size = 1 << table.log;
+      int maxSymbol = 0;
+      for (int u = 0; u < size; u++) {
+        maxSymbol = Math.max(maxSymbol, table.symbol[u]);
+      }
+      int[] states = new int[(maxSymbol + 1) << table.log];
+      for (int u = 0; u < size; u++) {
+        int from = (table.symbol[u] << table.log) + table.newState[u];
+        Arrays.fill(states, from, from + (1 << table.nbBits[u]), u);
+      }
+      ENCODE_STATES[t] = states;
+    }
+  }
+
+  /** The largest size that compress() may write for srcLen bytes. */
+  static int maxCompressedLength(int srcLen) {
+    return srcLen + 3 * (srcLen / MAX_BLOCK_SIZE + 1) + 14;
+  }
+
+  /** Compress src into a new array holding one frame. */
+  static byte[] compress(byte[] src, int srcOff, int srcLen) {
+    byte[] dst = new byte[maxCompressedLength(srcLen)];
+    int n = compress(src, srcOff, srcLen, dst, 0);
+    return Arrays.copyOf(dst, n);
+  }
+
+  /**
+   * Compress src into dst, which must have room for maxCompressedLength(srcLen) bytes.
+   *
+   * @return the number of bytes written to dst
+   */
+  static int compress(byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff) {
+    return new ZstdEncoder(src, srcOff).compressFrame(srcLen, dst, dstOff);
+  }
+
+  private final byte[] src;
+  private final int srcStart;
+  private final int[] hashTable = new int[1 << HASH_LOG]; // position + 1 of the last 4 bytes with this hash, 0 if none
+
+  // the sequences of the current block
+  private int nseq;
+  private final int[] literalLengths = new int[MAX_SEQUENCES];
+  private final int[] matchLengths = new int[MAX_SEQUENCES];
+  private final int[] offsets = new int[MAX_SEQUENCES];
+  private int nliterals;
+  private final byte[] literals = new byte[MAX_BLOCK_SIZE];
+
+  // the fields of the sequences bitstream, in the order that the decoder reads them
+  private int nfields;
+  private int[] fieldValues = new int[64];
+  private byte[] fieldBits = new byte[64];
+
+  private ZstdEncoder(byte[] src, int srcStart) {
+    this.src = src;
+    this.srcStart = srcStart;
+  }
+
+  private int compressFrame(int srcLen, byte[] dst, int dstOff) {
+    int op = dstOff;
+    writeLE(dst, op, MAGIC, 4);
+    op += 4;
+
+    // single segment, so the window is the whole content, no checksum, no dictionary
+    if (srcLen < 256) {
+      dst[op++] = 0x20;
+      dst[op++] = (byte) srcLen;
+    } else if (srcLen < 65536 + 256) {
+      dst[op++] = 0x60;
+      writeLE(dst, op, srcLen - 256, 2);
+      op += 2;
+    } else {
+      dst[op++] = (byte) 0xA0;
+      writeLE(dst, op, srcLen, 4);
+      op += 4;
+    }
+
+    int pos = srcStart;
+    int end = srcStart + srcLen;
+    do {
+      int blockLen = Math.min(MAX_BLOCK_SIZE, end - pos);
+      boolean last = pos + blockLen == end;
+      int n = compressBlock(pos, blockLen, dst, op + 3);
+      if (n > 0) {
+        writeLE(dst, op, (n << 3) | (BLOCK_COMPRESSED << 1) | (last ? 1 : 0), 3);
+        op += 3 + n;
+      } else {
+        writeLE(dst, op, (blockLen << 3) | (BLOCK_RAW << 1) | (last ? 1 : 0), 3);
+        System.arraycopy(src, pos, dst, op + 3, blockLen);
+        op += 3 + blockLen;
+      }
+      pos += blockLen;
+    } while (pos < end);
+    return op - dstOff;
+  }
+
+  // write the compressed block at op, return its size, or -1 if it is not smaller than blockLen
+  private int compressBlock(int blockStart, int blockLen, byte[] dst, int op) {
+    findSequences(blockStart, blockLen);
+    encodeSequences();
+
+    int bitstreamLen = 0;
+    for (int i = 0; i < nfields; i++) {
+      bitstreamLen += fieldBits[i];
+    }
+    bitstreamLen = bitstreamLen / 8 + 1;
+    int size = (nliterals < 32 ? 1 : nliterals < 4096 ? 2 : 3) + nliterals
+        + (nseq < 128 ? 1 : nseq < 0x7F00 ? 2 : 3) + (nseq > 0 ? 1 + bitstreamLen : 0);
+    if (size >= blockLen) {
+      return -1;
+    }
+
+    int start = op;
+    // raw literals
+    if (nliterals < 32) {
+      dst[op++] = (byte) (nliterals << 3);
+    } else if (nliterals < 4096) {
+      writeLE(dst, op, (nliterals << 4) | (1 << 2), 2);
+      op += 2;
+    } else {
+      writeLE(dst, op, (nliterals << 4) | (3 << 2), 3);
+      op += 3;
+    }
+    System.arraycopy(literals, 0, dst, op, nliterals);
+    op += nliterals;
+
+    // sequences, all with the predefined tables
+    if (nseq < 128) {
+      dst[op++] = (byte) nseq;
+    } else if (nseq < 0x7F00) {
+      dst[op++] = (byte) ((nseq >>> 8) + 0x80);
+      dst[op++] = (byte) nseq;
+    } else {
+      dst[op++] = (byte) 0xFF;
+      writeLE(dst, op, nseq - 0x7F00, 2);
+      op += 2;
+    }
+    if (nseq > 0) {
+      dst[op++] = 0; // compression modes
+      op = writeBitstream(dst, op);
+    }
+    return op - start;
+  }
+
+  // greedy matching; matches may start in earlier blocks, but end in this one
+  private void findSequences(int blockStart, int blockLen) {
+    nseq = 0;
+    nliterals = 0;
+    int blockEnd = blockStart + blockLen;
+    int anchor = blockStart;
+    int ip = blockStart;
+    while (ip <= blockEnd - MIN_MATCH) {
+      int seq = readLE32(src, ip);
+      int h = (seq * -1640531535) >>> (32 - HASH_LOG);
+      int ref = hashTable[h] - 1;
+      hashTable[h] = ip + 1;
+      if (ref < 0 || ip - ref > MAX_DISTANCE || readLE32(src, ref) != seq) {
+        ip++;
+        continue;
+      }
+
+      int matchLength = MIN_MATCH;
+      while (ip + matchLength < blockEnd && src[ref + matchLength] == src[ip + matchLength]) {
+        matchLength++;
+      }
+      addSequence(anchor, ip - anchor, matchLength, ip - ref);
+      ip += matchLength;
+      anchor = ip;
+    }
+    System.arraycopy(src, anchor, literals, nliterals, blockEnd - anchor);
+    nliterals += blockEnd - anchor;
+  }
+
+  private void addSequence(int literalStart, int literalLength, int matchLength, int offset) {
+    System.arraycopy(src, literalStart, literals, nliterals, literalLength);
+    nliterals += literalLength;
+    literalLengths[nseq] = literalLength;
+    matchLengths[nseq] = matchLength;
+    offsets[nseq] = offset;
+    nseq++;
+  }
+
+  // choose the FSE states backwards from the last sequence, and list the fields in decoding order
+  private void encodeSequences() {
+    nfields = 0;
+    if (nseq == 0) {
+      return;
+    }
+    int[] llCodes = new int[nseq];
+    int[] mlCodes = new int[nseq];
+    int[] ofCodes = new int[nseq];
+    for (int i = 0; i < nseq; i++) {
+      llCodes[i] = code(LL_BASE, literalLengths[i]);
+      mlCodes[i] = code(ML_BASE, matchLengths[i]);
+      ofCodes[i] = 31 - Integer.numberOfLeadingZeros(offsets[i] + 3); // no repeat offsets
+    }
+
+    int[] llStates = states(LL, llCodes);
+    int[] mlStates = states(ML, mlCodes);
+    int[] ofStates = states(OF, ofCodes);
+
+    ensureFields(3 + 6 * nseq);
+    addField(llStates[0], DEFAULT_TABLES[LL].log);
+    addField(ofStates[0], DEFAULT_TABLES[OF].log);
+    addField(mlStates[0], DEFAULT_TABLES[ML].log);
+    for (int i = 0; i < nseq; i++) {
+      int ofCode = ofCodes[i];
+      addField(offsets[i] + 3 - (1 << ofCode), ofCode);
+      addField(matchLengths[i] - ML_BASE[mlCodes[i]], ML_BITS[mlCodes[i]]);
+      addField(literalLengths[i] - LL_BASE[llCodes[i]], LL_BITS[llCodes[i]]);
+      if (i < nseq - 1) {
+        addStateField(LL, llStates[i], llStates[i + 1]);
+        addStateField(ML, mlStates[i], mlStates[i + 1]);
+        addStateField(OF, ofStates[i], ofStates[i + 1]);
+      }
+    }
+  }
+
+  private int[] states(int t, int[] codes) {
+    int log = DEFAULT_TABLES[t].log;
+    int[] encodeStates = ENCODE_STATES[t];
+    int[] states = new int[nseq];
+    states[nseq - 1] = encodeStates[codes[nseq - 1] << log];
+    for (int i = nseq - 2; i >= 0; i--) {
+      states[i] = encodeStates[(codes[i] << log) + states[i + 1]];
+    }
+    return states;
+  }
+
+  private void addStateField(int t, int state, int nextState) {
+    ZstdDecoder.FseTable table = DEFAULT_TABLES[t];
+    addField(nextState - table.newState[state], table.nbBits[state]);
+  }
+
+  private void ensureFields(int n) {
+    if (fieldValues.length < n) {
+      fieldValues = new int[n];
+      fieldBits = new byte[n];
+    }
+  }
+
+  private void addField(int value, int nbits) {
+    fieldValues[nfields] = value;
+    fieldBits[nfields] = (byte) nbits;
+    nfields++;
+  }
+
+  // the decoder reads the bitstream backwards, so write the fields in reverse, then the end mark
+  private int writeBitstream(byte[] dst, int op) {
+    long acc = 0;
+    int accBits = 0;
+    for (int i = nfields - 1; i >= 0; i--) {
+      acc |= (long) fieldValues[i] << accBits;
+      accBits += fieldBits[i];
+      while (accBits >= 8) {
+        dst[op++] = (byte) acc;
+        acc >>>= 8;
+        accBits -= 8;
+      }
+    }
+    acc |= 1L << accBits;
+    dst[op++] = (byte) acc;
+    return op;
+  }
+
+  // the largest i with base[i] <= value
+  private static int code(int[] base, int value) {
+    int lo = 0;
+    int hi = base.length - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (base[mid] <= value) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo;
+  }
+
+  private static int readLE32(byte[] src, int pos) {
+    return (src[pos] & 0xff) | (src[pos + 1] & 0xff) << 8 | (src[pos + 2] & 0xff) << 16 | (src[pos + 3] & 0xff) << 24;
+  }
+
+  private static void writeLE(byte[] dst, int pos, int value, int n) {
+    for (int i = 0; i < n; i++) {
+      dst[pos + i] = (byte) (value >>> (8 * i));
+    }
+  }
+}
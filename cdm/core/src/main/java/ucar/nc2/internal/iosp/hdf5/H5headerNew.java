@@ -112,7 +112,7 @@ public class H5headerNew implements H5headerIF, HdfHeaderIF {
     debugStructure = debugFlag.isSet("H5header/structure");
   }
 
-  private static final byte[] magic = {(byte) 0x89, 'H', 'D', 'F', '\r', '\n', 0x1a, '\n'};
+  static final byte[] magic = {(byte) 0x89, 'H', 'D', 'F', '\r', '\n', 0x1a, '\n'};
   private static final String magicString = new String(magic, StandardCharsets.UTF_8);
   private static final long maxHeaderPos = 50000; // header's gotta be within this
   private static final boolean transformReference = true;
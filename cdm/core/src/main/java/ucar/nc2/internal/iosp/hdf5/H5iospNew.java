@@ -6,10 +6,12 @@ package ucar.nc2.internal.iosp.hdf5;
 
 import static ucar.nc2.NetcdfFile.IOSP_MESSAGE_GET_NETCDF_FILE_FORMAT;
 
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.util.List;
 import java.util.Optional;
 import ucar.ma2.Array;
 import ucar.ma2.ArrayStructure;
@@ -29,6 +31,7 @@ import ucar.nc2.Variable;
 import ucar.nc2.constants.DataFormatType;
 import ucar.nc2.internal.iosp.hdf4.HdfEos;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.FileSignature;
 import ucar.nc2.iosp.IospHelper;
 import ucar.nc2.iosp.Layout;
 import ucar.nc2.iosp.LayoutBB;
@@ -83,6 +86,16 @@ public class H5iospNew extends AbstractIOServiceProvider {
     return H5headerNew.isValidFile(raf);
   }
 
+  // the superblock may also be further on, at a larger power of 2
+  private static final List<FileSignature> signatures =
+      ImmutableList.of(FileSignature.ofMagic(H5headerNew.magic, 0, 512, 1024, 2048, 4096),
+          FileSignature.ofSuffix(".h5", ".he5", ".nc4"));
+
+  @Override
+  public List<FileSignature> getFileSignatures() {
+    return signatures;
+  }
+
   @Override
   public String getFileTypeId() {
     if (isEos)
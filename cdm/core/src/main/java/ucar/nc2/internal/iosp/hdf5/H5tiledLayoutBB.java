@@ -9,21 +9,32 @@ import com.google.common.primitives.Longs;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
 import ucar.nc2.Variable;
 import ucar.nc2.filter.Filter;
+import ucar.nc2.filter.FilterPipeline;
 import ucar.nc2.filter.Filters;
 import ucar.nc2.filter.UnknownFilterException;
+import ucar.nc2.iosp.ChunkCache;
 import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutBBTiled;
 import ucar.nc2.iosp.hdf5.DataBTree;
 import ucar.nc2.util.IO;
+import ucar.unidata.io.ByteRange;
 import ucar.unidata.io.RandomAccessFile;
 
 /**
@@ -37,27 +48,54 @@ import ucar.unidata.io.RandomAccessFile;
  */
 public class H5tiledLayoutBB implements LayoutBB {
 
-  static final int DEFAULTZIPBUFFERSIZE = 512;
-  // System property name for -D flag
-  static final String INFLATEBUFFERSIZE = "unidata.h5iosp.inflate.buffersize";
-
   public static boolean debugFilter;
 
+  /** Default maximum number of chunks waiting to be decoded when an Executor is set. */
+  public static final int DEFAULT_MAX_PENDING_CHUNKS = 2 * Runtime.getRuntime().availableProcessors();
+
+  // experimental multithreading, set by any thread and read by the readers
+  private static volatile Executor executor;
+  private static volatile int maxPendingChunks = DEFAULT_MAX_PENDING_CHUNKS;
+
+  // when the raf prefers range reads, the raw bytes of up to this many bytes of chunks are read with one call
+  private static final long MAX_PREFETCH_BYTES = 64L * 1024 * 1024;
+
+  /**
+   * Decode chunks concurrently on the given Executor. The raw chunk bytes are still read sequentially on the
+   * calling thread, in the order of the data btree (i.e. file order); only the filters are run on the Executor.
+   * Default is null, meaning that chunks are decoded on the calling thread.
+   */
+  public static void setExecutor(Executor exec) {
+    executor = exec;
+  }
+
+  /**
+   * Set the maximum number of chunks that are read ahead and waiting to be decoded when an Executor is set.
+   * This bounds the memory used by a single read to about maxPending * (compressed + uncompressed) chunk size.
+   * Default is {@link #DEFAULT_MAX_PENDING_CHUNKS}, 2 * number of processors.
+   */
+  public static void setMaxPendingChunks(int maxPending) {
+    if (maxPending < 1)
+      throw new IllegalArgumentException("maxPendingChunks must be > 0");
+    maxPendingChunks = maxPending;
+  }
+
   private LayoutBBTiled delegate;
 
   private RandomAccessFile raf;
-  private Filter[] filters;
+  private FilterPipeline pipeline;
   private ByteOrder byteOrder;
+  private ChunkCache chunkCache; // null if not caching
+  private ChunkCache.VariableKey cacheKey;
 
   private Section want;
   private int[] chunkSize; // from the StorageLayout message (exclude the elemSize)
   private int elemSize; // last dimension of the StorageLayout message
   private int nChunkDims;
+  private int decodedChunkSize; // bytes in a decoded chunk, or -1 if too large for an array
 
   private boolean debug;
 
-  private int inflatebuffersize = DEFAULTZIPBUFFERSIZE;
-
   /**
    * Constructor.
    * This is for HDF5 chunked data storage. The data is read by chunk, for efficiency.
@@ -78,7 +116,7 @@ public class H5tiledLayoutBB implements LayoutBB {
     assert vinfo.btree != null;
 
     this.raf = raf;
-    this.filters = new Filter[filterProps.length];
+    Filter[] filters = new Filter[filterProps.length];
     for (int i = 0; i < filterProps.length; i++) {
       // add var info to filter props
       Map<String, Object> props = filterProps[i].getProperties();
@@ -90,8 +128,15 @@ public class H5tiledLayoutBB implements LayoutBB {
         throw new IOException(ex);
       }
     }
+    this.pipeline = new FilterPipeline(filters);
     this.byteOrder = byteOrder;
 
+    ChunkCache cache = ChunkCache.getInstance();
+    if (cache != null) {
+      this.cacheKey = ChunkCache.makeVariableKey(raf, v2.getFullName());
+      this.chunkCache = (cacheKey == null) ? null : cache;
+    }
+
     // we have to translate the want section into the same rank as the storageSize, in order to be able to call
     // Section.intersect(). It appears that storageSize (actually msl.chunkSize) may have an extra dimension, relative
     // to the Variable.
@@ -107,26 +152,20 @@ public class H5tiledLayoutBB implements LayoutBB {
     this.chunkSize = new int[nChunkDims];
     System.arraycopy(vinfo.storageSize, 0, chunkSize, 0, nChunkDims);
     this.elemSize = vinfo.storageSize[vinfo.storageSize.length - 1]; // last one is always the elements size
+    long nbytes = elemSize;
+    for (int size : chunkSize) {
+      nbytes *= size;
+    }
+    this.decodedChunkSize = (nbytes <= DataChunk.MAX_ARRAY_LEN) ? (int) nbytes : -1;
 
     // create the data chunk iterator
     DataBTree.DataChunkIterator iter = vinfo.btree.getDataChunkIteratorFilter(this.want);
-    DataChunkIterator dcIter = new DataChunkIterator(iter);
+    ChunkSource source = new ChunkSource(iter, raf.prefersRangeReads());
+    Executor exec = executor;
+    LayoutBBTiled.DataChunkIterator dcIter = (exec == null) ? new DataChunkIterator(source)
+        : new ParallelDataChunkIterator(source, exec, maxPendingChunks);
     delegate = new LayoutBBTiled(dcIter, chunkSize, elemSize, this.want);
 
-    if (System.getProperty(INFLATEBUFFERSIZE) != null) {
-      try {
-        int size = Integer.parseInt(System.getProperty(INFLATEBUFFERSIZE));
-        if (size <= 0)
-          H5iospNew.log.warn(String.format("-D%s must be > 0", INFLATEBUFFERSIZE));
-        else
-          this.inflatebuffersize = size;
-      } catch (NumberFormatException nfe) {
-        H5iospNew.log.warn(String.format("-D%s is not an integer", INFLATEBUFFERSIZE));
-      }
-    }
-    if (debugFilter)
-      System.out.printf("inflate buffer size -D%s = %d%n", INFLATEBUFFERSIZE, this.inflatebuffersize);
-
     if (debug)
       System.out.println(" H5tiledLayout: " + this);
   }
@@ -161,10 +200,60 @@ public class H5tiledLayoutBB implements LayoutBB {
     return sbuff.toString();
   }
 
+  // The chunks of the btree that intersect the wanted section, in btree order.
+  // If prefetch, the raw bytes of the chunks are read in batches with RandomAccessFile.readRanges(), which lets
+  // remote files merge nearby chunks and fetch them concurrently.
+  private class ChunkSource {
+    private final DataBTree.DataChunkIterator delegate;
+    private final boolean prefetch;
+    private final ArrayDeque<DataChunk> batch = new ArrayDeque<>();
+
+    ChunkSource(DataBTree.DataChunkIterator delegate, boolean prefetch) {
+      this.delegate = delegate;
+      this.prefetch = prefetch;
+    }
+
+    boolean hasNext() {
+      return !batch.isEmpty() || delegate.hasNext();
+    }
+
+    DataChunk next() throws IOException {
+      if (!prefetch) {
+        return new DataChunk(delegate.next());
+      }
+      if (batch.isEmpty()) {
+        readBatch();
+      }
+      return batch.removeFirst();
+    }
+
+    private void readBatch() throws IOException {
+      List<DataChunk> toRead = new ArrayList<>();
+      List<ByteRange> ranges = new ArrayList<>();
+      long nbytes = 0;
+      while (delegate.hasNext() && (batch.isEmpty() || nbytes < MAX_PREFETCH_BYTES)) {
+        DataChunk dataChunk = new DataChunk(delegate.next());
+        batch.addLast(dataChunk);
+        if (chunkCache != null && chunkCache.contains(cacheKey, dataChunk.delegate.offset)) {
+          continue; // already decoded
+        }
+        toRead.add(dataChunk);
+        ranges.add(new ByteRange(dataChunk.delegate.filePos, dataChunk.delegate.size));
+        nbytes += dataChunk.delegate.size;
+      }
+      if (!ranges.isEmpty()) {
+        List<byte[]> raw = raf.readRanges(ranges);
+        for (int i = 0; i < toRead.size(); i++) {
+          toRead.get(i).prefetched = raw.get(i);
+        }
+      }
+    }
+  }
+
   private class DataChunkIterator implements LayoutBBTiled.DataChunkIterator {
-    DataBTree.DataChunkIterator delegate;
+    ChunkSource delegate;
 
-    DataChunkIterator(DataBTree.DataChunkIterator delegate) {
+    DataChunkIterator(ChunkSource delegate) {
       this.delegate = delegate;
     }
 
@@ -173,7 +262,81 @@ public class H5tiledLayoutBB implements LayoutBB {
     }
 
     public LayoutBBTiled.DataChunk next() throws IOException {
-      return new DataChunk(delegate.next());
+      return delegate.next();
+    }
+  }
+
+  // Reads chunks in order on the calling thread, and decodes up to maxPending of them ahead on the executor.
+  // Chunks are returned in the same order as the btree, so the LayoutBBTiled sees the same sequence as the serial case.
+  private class ParallelDataChunkIterator implements LayoutBBTiled.DataChunkIterator {
+    private final ChunkSource delegate;
+    private final Executor exec;
+    private final int maxPending;
+    private final ArrayDeque<PendingDataChunk> pending = new ArrayDeque<>();
+
+    ParallelDataChunkIterator(ChunkSource delegate, Executor exec, int maxPending) {
+      this.delegate = delegate;
+      this.exec = exec;
+      this.maxPending = maxPending;
+    }
+
+    public boolean hasNext() {
+      return !pending.isEmpty() || delegate.hasNext();
+    }
+
+    public LayoutBBTiled.DataChunk next() throws IOException {
+      // keep the pipeline full: submit more chunks while we wait for the oldest one
+      while (pending.size() < maxPending && delegate.hasNext()) {
+        DataChunk dataChunk = delegate.next();
+        FutureTask<ByteBuffer> task;
+        byte[] cached = (chunkCache == null) ? null : chunkCache.getIfPresent(cacheKey, dataChunk.delegate.offset);
+        if (cached != null) {
+          task = new FutureTask<>(() -> dataChunk.wrap(cached));
+          task.run();
+        } else {
+          byte[] raw = dataChunk.readRaw();
+          task = new FutureTask<>(() -> dataChunk.wrap(dataChunk.decodeAndCache(raw)));
+          try {
+            exec.execute(task);
+          } catch (RejectedExecutionException e) {
+            task.run(); // executor is saturated or shut down, decode on this thread
+          }
+        }
+        pending.addLast(new PendingDataChunk(dataChunk, task));
+      }
+      return pending.removeFirst();
+    }
+  }
+
+  private static class PendingDataChunk implements LayoutBBTiled.DataChunk {
+    private final DataChunk dataChunk;
+    private final FutureTask<ByteBuffer> task;
+
+    PendingDataChunk(DataChunk dataChunk, FutureTask<ByteBuffer> task) {
+      this.dataChunk = dataChunk;
+      this.task = task;
+    }
+
+    public int[] getOffset() {
+      return dataChunk.getOffset();
+    }
+
+    public ByteBuffer getByteBuffer() throws IOException {
+      try {
+        return task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while decoding chunk " + dataChunk.delegate);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException)
+          throw (IOException) cause;
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        if (cause instanceof Error)
+          throw (Error) cause;
+        throw new IOException(cause);
+      }
     }
   }
 
@@ -182,6 +345,7 @@ public class H5tiledLayoutBB implements LayoutBB {
     private static final int MAX_ARRAY_LEN = Integer.MAX_VALUE - 8;
 
     DataBTree.DataChunk delegate;
+    byte[] prefetched; // raw bytes read ahead by the ChunkSource, if any
 
     DataChunk(DataBTree.DataChunk delegate) {
       this.delegate = delegate;
@@ -217,37 +381,60 @@ public class H5tiledLayoutBB implements LayoutBB {
     }
 
     public ByteBuffer getByteBuffer() throws IOException {
+      if (chunkCache != null)
+        return wrap(chunkCache.get(cacheKey, delegate.offset, () -> decode(readRaw())));
+      return wrap(decode(readRaw()));
+    }
+
+    ByteBuffer wrap(byte[] data) {
+      ByteBuffer result = ByteBuffer.wrap(data);
+      result.order(byteOrder);
+      return result;
+    }
+
+    // read the compressed data; not thread safe, since it uses the shared raf
+    byte[] readRaw() throws IOException {
+      if (prefetched != null) {
+        byte[] data = prefetched;
+        prefetched = null;
+        return data;
+      }
       try {
-        // read the data
         byte[] data = new byte[delegate.size];
         raf.seek(delegate.filePos);
         raf.readFully(data);
+        return data;
+      } catch (OutOfMemoryError e) {
+        throw outOfMemory(e);
+      }
+    }
 
-        // apply filters backwards
-        for (int i = filters.length - 1; i >= 0; i--) {
-          Filter f = filters[i];
-          if (isBitSet(delegate.filterMask, i)) {
-            if (debug) {
-              System.out.println("skip for chunk " + delegate);
-            }
-            continue;
-          }
-          data = f.decode(data);
-        }
+    // thread safe, so may be called from the executor
+    byte[] decodeAndCache(byte[] raw) throws IOException {
+      byte[] data = decode(raw);
+      if (chunkCache != null)
+        chunkCache.put(cacheKey, delegate.offset, data);
+      return data;
+    }
 
-        ByteBuffer result = ByteBuffer.wrap(data);
-        result.order(byteOrder);
-        return result;
+    // apply the filters backwards, skipping those set in the filter mask; thread safe, so may be called from the
+    // executor
+    byte[] decode(byte[] data) throws IOException {
+      try {
+        if (debug && delegate.filterMask != 0) {
+          System.out.println("skip for chunk " + delegate);
+        }
+        return pipeline.decode(data, decodedChunkSize, delegate.filterMask);
       } catch (OutOfMemoryError e) {
-        Error oom = new OutOfMemoryError("Ran out of memory trying to read HDF5 filtered chunk. Either increase the "
-            + "JVM's heap size (use the -Xmx switch) or reduce the size of the dataset's chunks (use nccopy -c).");
-        oom.initCause(e); // OutOfMemoryError lacks a constructor with a cause parameter.
-        throw oom;
+        throw outOfMemory(e);
       }
     }
 
-    boolean isBitSet(int val, int bitno) {
-      return ((val >>> bitno) & 1) != 0;
+    private Error outOfMemory(OutOfMemoryError e) {
+      Error oom = new OutOfMemoryError("Ran out of memory trying to read HDF5 filtered chunk. Either increase the "
+          + "JVM's heap size (use the -Xmx switch) or reduce the size of the dataset's chunks (use nccopy -c).");
+      oom.initCause(e); // OutOfMemoryError lacks a constructor with a cause parameter.
+      return oom;
     }
   }
 }
@@ -3,11 +3,13 @@ package ucar.nc2.internal.iosp.netcdf3;
 
 import static ucar.nc2.NetcdfFile.IOSP_MESSAGE_GET_NETCDF_FILE_FORMAT;
 
+import com.google.common.collect.ImmutableList;
 import java.io.File;
 import java.io.IOException;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.Formatter;
+import java.util.List;
 import java.util.Optional;
 import ucar.ma2.Array;
 import ucar.ma2.ArrayStructureBB;
@@ -22,6 +24,7 @@ import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 import ucar.nc2.constants.DataFormatType;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.FileSignature;
 import ucar.nc2.iosp.IOServiceProvider;
 import ucar.nc2.iosp.IospHelper;
 import ucar.nc2.iosp.Layout;
@@ -94,6 +97,19 @@ public class N3iospNew extends AbstractIOServiceProvider implements IOServicePro
     return N3headerNew.isValidFile(raf);
   }
 
+  private static final List<FileSignature> signatures =
+      ImmutableList.of(FileSignature.ofMagic(N3headerNew.MAGIC), FileSignature.ofMagic(N3headerNew.MAGIC_LONG));
+
+  @Override
+  public List<FileSignature> getFileSignatures() {
+    return signatures;
+  }
+
+  @Override
+  public boolean requiresFileSignature() {
+    return true;
+  }
+
   @Override
   public String getDetailInfo() {
     Formatter f = new Formatter();
@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.ncml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+
+/**
+ * Binary persistence of the nested dataset info (ncoords and cached variable values) of a joinExisting aggregation.
+ * The file is a log of records, one per nested dataset, so that a new or changed dataset is appended without
+ * rewriting the others; the last record for a dataset id wins. Only the record headers are read when the
+ * aggregation is opened, the values are read the first time they are needed.
+ *
+ * <pre>
+ * header: magic "NcmlAggC", int version, UTF type, UTF dimName, int length of the header
+ * record: int length of the rest of the record, int length of the record header,
+ *         record header: UTF id, long lastModified, int ncoords, int nvars, UTF varName[nvars],
+ *         for each var: UTF dataType, int rank, int[rank] shape, values
+ * </pre>
+ *
+ * All numbers are big endian. A record cut short by a crash is ignored, and overwritten by the next append.
+ */
+class AggCacheFile {
+  static final String SUFFIX = ".aggcache";
+
+  private static final byte[] MAGIC = "NcmlAggC".getBytes(StandardCharsets.US_ASCII);
+  private static final int VERSION = 1;
+
+  /** The header of a record. */
+  static class Entry {
+    final String id;
+    final long lastModified;
+    final int ncoords;
+    final List<String> varNames;
+    final long pos; // of the record length
+    final int length; // of the rest of the record
+    final int headerLength;
+
+    Entry(String id, long lastModified, int ncoords, List<String> varNames, long pos, int length, int headerLength) {
+      this.id = id;
+      this.lastModified = lastModified;
+      this.ncoords = ncoords;
+      this.varNames = varNames;
+      this.pos = pos;
+      this.length = length;
+      this.headerLength = headerLength;
+    }
+  }
+
+  /** A record to write. */
+  static class Record {
+    final String id;
+    final long lastModified;
+    final int ncoords;
+    final Map<String, Array> data; // varName -> values
+
+    Record(String id, long lastModified, int ncoords, Map<String, Array> data) {
+      this.id = id;
+      this.lastModified = lastModified;
+      this.ncoords = ncoords;
+      this.data = data;
+    }
+  }
+
+  private final File file;
+  private final String type;
+  private final String dimName;
+
+  private final Map<String, Entry> index = new LinkedHashMap<>();
+  private int nrecords; // including the obsolete ones
+  private long validLength; // end of the last complete record
+  private long indexedLength; // file length when the index was read
+
+  AggCacheFile(File file, String type, String dimName) {
+    this.file = file;
+    this.type = type;
+    this.dimName = (dimName == null) ? "" : dimName;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /** Number of records in the file, including those replaced by a later record. */
+  int getRecordCount() {
+    return nrecords;
+  }
+
+  Entry getEntry(String id) {
+    return index.get(id);
+  }
+
+  Collection<Entry> getEntries() {
+    return index.values();
+  }
+
+  /**
+   * Read the record headers.
+   *
+   * @return false if the file does not exist, or was written for a different aggregation or version
+   */
+  boolean readIndex() throws IOException {
+    index.clear();
+    nrecords = 0;
+    validLength = 0;
+    indexedLength = 0;
+    if (!file.exists())
+      return false;
+
+    long fileLength = file.length();
+    indexedLength = fileLength;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+      byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      if (!Arrays.equals(magic, MAGIC) || in.readInt() != VERSION)
+        return false;
+      if (!type.equals(in.readUTF()) || !dimName.equals(in.readUTF()))
+        return false;
+      long pos = in.readInt(); // length of the header
+      validLength = pos;
+
+      while (pos + 8 <= fileLength) {
+        int length = in.readInt();
+        int headerLength = in.readInt();
+        if (length < 4 || headerLength < 0 || headerLength > length - 4 || pos + 4 + length > fileLength)
+          break; // incomplete record
+        byte[] header = new byte[headerLength];
+        in.readFully(header);
+        DataInputStream hin = new DataInputStream(new ByteArrayInputStream(header));
+        String id = hin.readUTF();
+        long lastModified = hin.readLong();
+        int ncoords = hin.readInt();
+        int nvars = hin.readInt();
+        List<String> varNames = new ArrayList<>(nvars);
+        for (int i = 0; i < nvars; i++)
+          varNames.add(hin.readUTF());
+        skipFully(in, length - 4 - headerLength);
+
+        index.remove(id); // keep the order of the last write
+        index.put(id, new Entry(id, lastModified, ncoords, varNames, pos, length, headerLength));
+        nrecords++;
+        pos += 4 + length;
+        validLength = pos;
+      }
+    } catch (EOFException e) {
+      // truncated record: use what we have
+    }
+    return validLength > 0;
+  }
+
+  private static void skipFully(DataInputStream in, int n) throws IOException {
+    while (n > 0) {
+      int skipped = in.skipBytes(n);
+      if (skipped <= 0)
+        throw new EOFException();
+      n -= skipped;
+    }
+  }
+
+  /**
+   * Read the values of the current records, in one pass through the file.
+   *
+   * @return id -> (varName -> values)
+   */
+  Map<String, Map<String, Array>> readData() throws IOException {
+    Map<String, Map<String, Array>> result = new HashMap<>();
+    if (index.isEmpty())
+      return result;
+    List<Entry> entries = new ArrayList<>(index.values());
+    entries.sort(Comparator.comparingLong(e -> e.pos));
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      for (Entry entry : entries)
+        result.put(entry.id, readData(raf, entry));
+    }
+    return result;
+  }
+
+  /**
+   * Read the values of one record.
+   *
+   * @return varName -> values
+   */
+  Map<String, Array> readData(Entry entry) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      return readData(raf, entry);
+    }
+  }
+
+  private static Map<String, Array> readData(RandomAccessFile raf, Entry entry) throws IOException {
+    byte[] values = new byte[entry.length - 4 - entry.headerLength];
+    raf.seek(entry.pos + 8 + entry.headerLength);
+    raf.readFully(values);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(values));
+    Map<String, Array> data = new LinkedHashMap<>();
+    for (String varName : entry.varNames)
+      data.put(varName, readArray(in));
+    return data;
+  }
+
+  /**
+   * Write the records. They are appended if readIndex() found a compatible file, otherwise the file is rewritten.
+   * Records without an id are skipped. Gives up without writing if another process is writing the file, or has
+   * written it since readIndex().
+   *
+   * @param records records to write
+   * @param rewrite rewrite the file with just these records
+   * @return true if written
+   */
+  boolean write(List<Record> records, boolean rewrite) throws IOException {
+    File dir = file.getParentFile();
+    if (dir != null && !dir.exists() && !dir.mkdirs())
+      throw new IOException("Cant make cache directory= " + dir);
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+      FileLock lock;
+      try {
+        lock = channel.tryLock();
+      } catch (OverlappingFileLockException e) {
+        return false; // File is already locked in this thread or virtual machine
+      }
+      if (lock == null)
+        return false;
+
+      if (validLength == 0)
+        rewrite = true; // not a compatible file
+      else if (!rewrite && raf.length() != indexedLength)
+        return false; // changed since readIndex(), another process is using it
+
+      if (rewrite) {
+        index.clear();
+        nrecords = 0;
+        raf.setLength(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream hout = new DataOutputStream(bytes);
+        hout.write(MAGIC);
+        hout.writeInt(VERSION);
+        hout.writeUTF(type);
+        hout.writeUTF(dimName);
+        hout.writeInt(bytes.size() + 4);
+        raf.write(bytes.toByteArray());
+        validLength = bytes.size();
+      } else {
+        raf.setLength(validLength); // drop an incomplete record
+        raf.seek(validLength);
+      }
+
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      ByteArrayOutputStream header = new ByteArrayOutputStream();
+      ByteArrayOutputStream values = new ByteArrayOutputStream();
+      for (Record record : records) {
+        if (record.id == null) {
+          Aggregation.logger.warn("id is null, not persisted in {}", file.getPath());
+          continue;
+        }
+        header.reset();
+        DataOutputStream hout = new DataOutputStream(header);
+        hout.writeUTF(record.id);
+        hout.writeLong(record.lastModified);
+        hout.writeInt(record.ncoords);
+        hout.writeInt(record.data.size());
+        for (String varName : record.data.keySet())
+          hout.writeUTF(varName);
+
+        values.reset();
+        DataOutputStream vout = new DataOutputStream(values);
+        for (Array data : record.data.values())
+          writeArray(vout, data);
+
+        int length = 4 + header.size() + values.size();
+        out.writeInt(length);
+        out.writeInt(header.size());
+        header.writeTo(out);
+        values.writeTo(out);
+        index.remove(record.id);
+        index.put(record.id, new Entry(record.id, record.lastModified, record.ncoords,
+            new ArrayList<>(record.data.keySet()), validLength, length, header.size()));
+        nrecords++;
+        validLength += 4 + length;
+      }
+      out.flush();
+      indexedLength = validLength;
+      return true;
+    }
+  }
+
+  private static void writeArray(DataOutputStream out, Array data) throws IOException {
+    DataType dtype = data.getDataType();
+    out.writeUTF(dtype.name());
+    int[] shape = data.getShape();
+    out.writeInt(shape.length);
+    for (int len : shape)
+      out.writeInt(len);
+
+    IndexIterator ii = data.getIndexIterator();
+    switch (dtype) {
+      case BYTE:
+      case UBYTE:
+      case ENUM1:
+        while (ii.hasNext())
+          out.writeByte(ii.getByteNext());
+        break;
+      case SHORT:
+      case USHORT:
+      case ENUM2:
+        while (ii.hasNext())
+          out.writeShort(ii.getShortNext());
+        break;
+      case INT:
+      case UINT:
+      case ENUM4:
+        while (ii.hasNext())
+          out.writeInt(ii.getIntNext());
+        break;
+      case LONG:
+      case ULONG:
+        while (ii.hasNext())
+          out.writeLong(ii.getLongNext());
+        break;
+      case FLOAT:
+        while (ii.hasNext())
+          out.writeFloat(ii.getFloatNext());
+        break;
+      case DOUBLE:
+        while (ii.hasNext())
+          out.writeDouble(ii.getDoubleNext());
+        break;
+      case CHAR:
+        while (ii.hasNext())
+          out.writeChar(ii.getCharNext());
+        break;
+      case BOOLEAN:
+        while (ii.hasNext())
+          out.writeBoolean(ii.getBooleanNext());
+        break;
+      default:
+        while (ii.hasNext())
+          out.writeUTF(String.valueOf(ii.getObjectNext()));
+    }
+  }
+
+  private static Array readArray(DataInputStream in) throws IOException {
+    DataType dtype = DataType.valueOf(in.readUTF());
+    int rank = in.readInt();
+    int[] shape = new int[rank];
+    for (int i = 0; i < rank; i++)
+      shape[i] = in.readInt();
+
+    Array data = Array.factory(dtype, shape);
+    IndexIterator ii = data.getIndexIterator();
+    switch (dtype) {
+      case BYTE:
+      case UBYTE:
+      case ENUM1:
+        while (ii.hasNext())
+          ii.setByteNext(in.readByte());
+        break;
+      case SHORT:
+      case USHORT:
+      case ENUM2:
+        while (ii.hasNext())
+          ii.setShortNext(in.readShort());
+        break;
+      case INT:
+      case UINT:
+      case ENUM4:
+        while (ii.hasNext())
+          ii.setIntNext(in.readInt());
+        break;
+      case LONG:
+      case ULONG:
+        while (ii.hasNext())
+          ii.setLongNext(in.readLong());
+        break;
+      case FLOAT:
+        while (ii.hasNext())
+          ii.setFloatNext(in.readFloat());
+        break;
+      case DOUBLE:
+        while (ii.hasNext())
+          ii.setDoubleNext(in.readDouble());
+        break;
+      case CHAR:
+        while (ii.hasNext())
+          ii.setCharNext(in.readChar());
+        break;
+      case BOOLEAN:
+        while (ii.hasNext())
+          ii.setBooleanNext(in.readBoolean());
+        break;
+      default:
+        while (ii.hasNext())
+          ii.setObjectNext(in.readUTF());
+    }
+    return data;
+  }
+}
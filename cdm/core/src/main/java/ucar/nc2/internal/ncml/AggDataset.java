@@ -105,22 +105,43 @@ class AggDataset implements Comparable<AggDataset> {
     if (debugOpenFile)
       System.out.println(" try to acquire " + cacheLocation);
     long start = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
 
-    if (durl == null) {
-      // cache the ServiceType so we dont have to keep figuring it out
-      durl = DatasetUrl.findDatasetUrl(cacheLocation);
-    }
+    try {
+      if (durl == null) {
+        // cache the ServiceType so we dont have to keep figuring it out
+        durl = DatasetUrl.findDatasetUrl(cacheLocation);
+      }
 
-    NetcdfFile ncfile = NetcdfDatasets.acquireFile(reader, null, durl, -1, cancelTask, spiObject);
-    if (ncmlElem == null && (enhance.isEmpty()))
-      return ncfile;
+      NetcdfFile ncfile = NetcdfDatasets.acquireFile(reader, null, durl, -1, cancelTask, spiObject);
+      if (ncmlElem == null && (enhance.isEmpty()))
+        return ncfile;
 
-    NetcdfDataset.Builder builder = NcmlReader.mergeNcml(ncfile, ncmlElem); // create new dataset
-    builder.setEnhanceMode(enhance);
+      NetcdfDataset.Builder builder = NcmlReader.mergeNcml(ncfile, ncmlElem); // create new dataset
+      builder.setEnhanceMode(enhance);
 
-    if (debugOpenFile)
-      System.out.println(" acquire (enhance) " + cacheLocation + " took " + (System.currentTimeMillis() - start));
-    return builder.build();
+      if (debugOpenFile)
+        System.out.println(" acquire (enhance) " + cacheLocation + " took " + (System.currentTimeMillis() - start));
+      return builder.build();
+
+    } finally {
+      AggregationMetrics metrics = getMetrics();
+      if (metrics != null)
+        metrics.recordOpen(System.nanoTime() - startNanos);
+    }
+  }
+
+  /** The metrics of the Aggregation this belongs to, if known. */
+  @Nullable
+  protected AggregationMetrics getMetrics() {
+    return null;
+  }
+
+  // add the time since startNanos to the read metrics
+  protected void recordRead(long startNanos) {
+    AggregationMetrics metrics = getMetrics();
+    if (metrics != null)
+      metrics.recordRead(System.nanoTime() - startNanos);
   }
 
   protected void close(NetcdfFile ncfile) throws IOException {
@@ -152,7 +173,10 @@ class AggDataset implements Comparable<AggDataset> {
       if (debugRead)
         System.out.printf("Agg.read %s from %s in %s%n", mainv.getNameAndDimensions(), v.getNameAndDimensions(),
             getLocation());
-      return v.read();
+      long start = System.nanoTime();
+      Array data = v.read();
+      recordRead(start);
+      return data;
 
     } finally {
       close(ncd);
@@ -184,7 +208,10 @@ class AggDataset implements Comparable<AggDataset> {
             v.getNameAndDimensions(), getLocation());
       }
 
-      return v.read(section);
+      long start = System.nanoTime();
+      Array data = v.read(section);
+      recordRead(start);
+      return data;
 
     } finally {
       close(ncd);
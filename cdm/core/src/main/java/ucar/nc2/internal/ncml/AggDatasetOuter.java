@@ -265,6 +265,11 @@ class AggDatasetOuter extends AggDataset {
    * }
    */
 
+  @Override
+  protected AggregationMetrics getMetrics() {
+    return aggregationOuter.getMetrics();
+  }
+
   // read any cached variables that need it
 
   @Override
@@ -305,7 +310,10 @@ class AggDatasetOuter extends AggDataset {
         section.set(0, limitRange);
       }
 
-      return v.read(section);
+      long start = System.nanoTime();
+      Array data = v.read(section);
+      recordRead(start);
+      return data;
 
     } finally {
       close(ncd);
@@ -56,12 +56,25 @@ public abstract class Aggregation implements ucar.nc2.ncml.AggregationIF {
   }
 
   // experimental multithreading
-  protected static Executor executor;
+  protected static volatile Executor executor;
+  protected static volatile int maxPendingReads = 2 * Runtime.getRuntime().availableProcessors();
 
   public static void setExecutor(Executor exec) {
     executor = exec;
   }
 
+  /**
+   * Set how many nested datasets may be read ahead on the executor when reading a section of an aggregation
+   * variable. The results are assembled in order, so this bounds the memory held by reads that finish early.
+   *
+   * @param max maximum number of outstanding reads, at least 1
+   */
+  public static void setMaxPendingReads(int max) {
+    if (max < 1)
+      throw new IllegalArgumentException("maxPendingReads must be >= 1");
+    maxPendingReads = max;
+  }
+
   public static void setTypicalDatasetMode(String mode) {
     if (mode.equalsIgnoreCase("random"))
       typicalDatasetMode = TypicalDataset.RANDOM;
@@ -99,6 +112,8 @@ public abstract class Aggregation implements ucar.nc2.ncml.AggregationIF {
   protected boolean isDate;
   protected DateFormatter dateFormatter = new DateFormatter();
 
+  protected final AggregationMetrics metrics = new AggregationMetrics();
+
   /**
    * Create an Aggregation for the given NetcdfDataset.
    * The following addXXXX methods are called, then build(), before the object is ready for use.
@@ -332,6 +347,7 @@ public abstract class Aggregation implements ucar.nc2.ncml.AggregationIF {
   public void getDetailInfo(Formatter f) {
     f.format("  Type=%s%n", type);
     f.format("  dimName=%s%n", dimName);
+    metrics.show(f);
     f.format("  Datasets (%d) %n", datasets.size());
     for (AggDataset ds : datasets)
       ds.show(f);
@@ -353,6 +369,11 @@ public abstract class Aggregation implements ucar.nc2.ncml.AggregationIF {
     return datasets;
   }
 
+  /** Time spent opening and reading the nested datasets. */
+  public AggregationMetrics getMetrics() {
+    return metrics;
+  }
+
   /**
    * Make the list of Datasets, from explicit and scans.
    *
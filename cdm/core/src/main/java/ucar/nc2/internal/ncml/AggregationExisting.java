@@ -6,16 +6,10 @@
 package ucar.nc2.internal.ncml;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
-import java.nio.channels.OverlappingFileLockException;
-import java.nio.charset.StandardCharsets;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -45,6 +39,17 @@ import ucar.nc2.util.CancelTask;
  */
 class AggregationExisting extends AggregationOuter {
 
+  // rewrite the persistence file when it has more obsolete records than this, and than current ones
+  private static final int minObsoleteRecords = 100;
+
+  // number of records read one at a time from the persistence file, before reading all of them
+  private static final int maxSingleLoads = 8;
+
+  private AggCacheFile aggCacheFile; // persistence file
+  private boolean persistedDataLoaded; // all cached values have been read from aggCacheFile
+  private int persistedSingleLoads;
+  private Map<String, AggDataset> datasetsById;
+
   AggregationExisting(NetcdfDataset.Builder ncd, String dimName, String recheckS) {
     super(ncd, dimName, Type.joinExisting, recheckS);
   }
@@ -170,134 +175,212 @@ class AggregationExisting extends AggregationOuter {
 
   /**
    * Persist info (ncoords, coordValues) from joinExisting, since that can be expensive to
-   * recreate.
+   * recreate. Records for new or changed datasets are appended to the binary cache file; the file is rewritten
+   * when it is not compatible, or when most of its records are obsolete.
    */
   public void persistWrite() throws IOException {
-    if (diskCache2 == null) {
+    File cacheFile = getPersistenceFile(AggCacheFile.SUFFIX);
+    if (cacheFile == null) {
       return;
     }
 
-    String cacheName = getCacheName();
-    if (cacheName == null) {
+    // only write out if something changed after the cache file was last written, or if the file has been deleted
+    if (!cacheDirty && cacheFile.exists()) {
       return;
     }
-    if (cacheName.startsWith("file:")) { // LOOK HACK
-      cacheName = cacheName.substring(5);
+
+    AggCacheFile cache = getAggCacheFile(cacheFile);
+    boolean compatible = cache.readIndex();
+
+    List<AggDataset> nestedDatasets = getDatasets();
+    int live = 0;
+    for (AggDataset dataset : nestedDatasets) {
+      if (cache.getEntry(dataset.getId()) != null) {
+        live++;
+      }
     }
-    File cacheFile = diskCache2.getCacheFile(cacheName);
-    if (cacheFile == null) {
-      throw new IllegalStateException();
+    boolean rewrite = !compatible || (cache.getRecordCount() - live > Math.max(live, minObsoleteRecords));
+    if (rewrite) {
+      loadPersistedData(null); // the unchanged datasets are rewritten too
     }
 
-    // only write out if something changed after the cache file was last written, or if the file has been deleted
-    if (!cacheDirty && cacheFile.exists()) {
+    List<AggCacheFile.Record> records = new ArrayList<>();
+    for (AggDataset dataset : nestedDatasets) {
+      AggDatasetOuter dod = (AggDatasetOuter) dataset;
+      String id = dod.getId();
+      long lastModified = getLastModified(dod);
+      int ncoords = dod.getNcoords(null);
+
+      Map<String, Array> data = new LinkedHashMap<>();
+      for (CacheVar pv : cacheList) {
+        Array values = pv.getCachedData(id);
+        if (values != null) {
+          data.put(pv.varName, values);
+        }
+      }
+
+      AggCacheFile.Entry entry = cache.getEntry(id);
+      if (rewrite || entry == null || entry.lastModified != lastModified || entry.ncoords != ncoords
+          || !entry.varNames.containsAll(data.keySet())) {
+        records.add(new AggCacheFile.Record(id, lastModified, ncoords, data));
+      }
+    }
+
+    if (records.isEmpty() && !rewrite) {
+      cacheDirty = false;
       return;
     }
+    if (!cache.write(records, rewrite)) {
+      return; // another process is writing it
+    }
+    cacheDirty = false;
 
-    File dir = cacheFile.getParentFile();
-    if (!dir.exists()) {
-      if (!dir.mkdirs()) {
-        logger.error("Cant make cache directory= " + cacheFile);
-      }
+    // the XML cache has been migrated
+    File xmlFile = getPersistenceFile("");
+    if (xmlFile != null && xmlFile.exists() && !xmlFile.delete()) {
+      logger.warn("FAIL to delete old aggregation cache {}", xmlFile.getPath());
+    }
+
+    if (logger.isDebugEnabled()) {
+      logger.debug("Aggregation persisted = {} wrote {} records (rewrite={})", cacheFile.getPath(), records.size(),
+          rewrite);
     }
+  }
 
-    // Get a file channel for the file
-    try (FileOutputStream fos = new FileOutputStream(cacheFile);
-        FileChannel channel = fos.getChannel();
-        PrintWriter out = new PrintWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+  // read info from the persistent binary file, or from the XML file written by earlier versions
+  protected void persistRead() {
+    File cacheFile = getPersistenceFile(AggCacheFile.SUFFIX);
+    if (cacheFile == null) {
+      return;
+    }
 
-      // Try acquiring the lock without blocking. This method returns
-      // null or throws an exception if the file is already locked.
-      FileLock lock;
-      try {
-        lock = channel.tryLock();
-      } catch (OverlappingFileLockException e) {
-        // File is already locked in this thread or virtual machine
-        return; // give up
-      }
-      if (lock == null) {
+    AggCacheFile cache = getAggCacheFile(cacheFile);
+    try {
+      if (cache.readIndex()) {
+        persistReadIndex(cache);
         return;
       }
+    } catch (IOException e) {
+      logger.warn("Error reading aggregation cache " + cacheFile.getPath(), e);
+      return;
+    }
+
+    File xmlFile = getPersistenceFile("");
+    if (xmlFile != null && xmlFile.exists()) {
+      persistReadXml(xmlFile);
+    }
+  }
 
-      out.print("<?xml version='1.0' encoding='UTF-8'?>\n");
-      out.print("<aggregation xmlns='http://www.unidata.ucar.edu/namespaces/netcdf/ncml-2.2' version='3' ");
-      out.print("type='" + type + "' ");
-      if (dimName != null) {
-        out.print("dimName='" + dimName + "' ");
+  private AggCacheFile getAggCacheFile(File cacheFile) {
+    if (aggCacheFile == null || !aggCacheFile.getFile().equals(cacheFile)) {
+      aggCacheFile = new AggCacheFile(cacheFile, type.toString(), dimName);
+      persistedDataLoaded = false;
+      persistedSingleLoads = 0;
+    }
+    return aggCacheFile;
+  }
+
+  // set ncoords from the record headers; the cached values are loaded on first use
+  private void persistReadIndex(AggCacheFile cache) {
+    for (AggDataset dataset : getDatasets()) {
+      AggDatasetOuter dod = (AggDatasetOuter) dataset;
+      AggCacheFile.Entry entry = cache.getEntry(dod.getId());
+      if (entry == null || entry.lastModified != getLastModified(dod)) {
+        continue; // new or changed dataset
       }
-      if (datasetManager.getRecheck() != null) {
-        out.print("recheckEvery='" + datasetManager.getRecheck() + "' ");
+      if (dod.ncoord == 0) {
+        dod.ncoord = entry.ncoords;
       }
-      out.print(">\n");
+    }
+  }
 
-      List<AggDataset> nestedDatasets = getDatasets();
-      for (AggDataset dataset : nestedDatasets) {
-        AggDatasetOuter dod = (AggDatasetOuter) dataset;
-        if (dod.getId() == null) {
-          logger.warn("id is null");
+  @Override
+  protected synchronized boolean loadPersistedData(String id) {
+    if (aggCacheFile == null || persistedDataLoaded) {
+      return false;
+    }
+    try {
+      if (id != null) {
+        AggCacheFile.Entry entry = aggCacheFile.getEntry(id);
+        if (entry == null || entry.lastModified != getLastModified(findDataset(id))) {
+          return false; // not cached
         }
-
-        out.print("  <netcdf id='" + dod.getId() + "' ");
-        out.print("ncoords='" + dod.getNcoords(null) + "' >\n");
-
-        for (CacheVar pv : cacheList) {
-          Array data = pv.getData(dod.getId());
-          if (data != null) {
-            out.print("    <cache varName='" + pv.varName + "' >");
-            while (data.hasNext()) {
-              out.printf("%s ", data.next());
-            }
-            out.print("</cache>\n");
-            if (logger.isDebugEnabled()) {
-              logger.debug(
-                  " wrote array = " + pv.varName + " nelems= " + data.getSize() + " for " + dataset.getLocation());
-            }
-          }
+        // building the aggregation reads the typical dataset; after a few, assume all are wanted
+        if (persistedSingleLoads++ < maxSingleLoads) {
+          putPersistedData(id, aggCacheFile.readData(entry));
+          return true;
         }
-        out.print("  </netcdf>\n");
       }
 
-      out.print("</aggregation>\n");
-
-      long time = datasetManager.getLastScanned();
-      if (time == 0) {
-        time = System.currentTimeMillis(); // no scans (eg all static) will have a 0
+      persistedDataLoaded = true;
+      Map<String, Map<String, Array>> allData = aggCacheFile.readData();
+      for (AggDataset dataset : getDatasets()) {
+        String dsId = dataset.getId();
+        AggCacheFile.Entry entry = aggCacheFile.getEntry(dsId);
+        Map<String, Array> data = allData.get(dsId);
+        if (entry != null && data != null && entry.lastModified == getLastModified(dataset)) {
+          putPersistedData(dsId, data);
+        }
       }
+      return true;
 
-      if (!cacheFile.setLastModified(time)) {
-        logger.warn("FAIL to set lastModified on {}", cacheFile.getPath());
+    } catch (IOException e) {
+      persistedDataLoaded = true; // dont try again
+      logger.warn("Error reading aggregation cache " + aggCacheFile.getFile().getPath(), e);
+      return false;
+    }
+  }
+
+  private void putPersistedData(String id, Map<String, Array> data) {
+    for (Map.Entry<String, Array> varData : data.entrySet()) {
+      CacheVar pv = findCacheVariable(varData.getKey());
+      if (pv != null && pv.getCachedData(id) == null) { // allow ncml to override
+        pv.putData(id, varData.getValue());
+        countCacheUse++;
       }
-      cacheDirty = false;
+    }
+  }
 
-      if (logger.isDebugEnabled()) {
-        logger.debug("Aggregation persisted = " + cacheFile.getPath() + " lastModified= "
-            + new Date(datasetManager.getLastScanned()));
+  private AggDataset findDataset(String id) {
+    if (datasetsById == null || datasetsById.size() != getDatasets().size()) {
+      Map<String, AggDataset> map = new HashMap<>();
+      for (AggDataset ds : getDatasets()) {
+        map.put(ds.getId(), ds);
       }
+      datasetsById = map;
     }
+    return datasetsById.get(id);
   }
 
-  // read info from the persistent XML file, if it exists
-  protected void persistRead() {
+  // identifies the version of a nested dataset that a cache record was made from
+  private static long getLastModified(AggDataset dataset) {
+    MFile mfile = (dataset == null) ? null : dataset.getMFile();
+    return (mfile == null) ? -1 : mfile.getLastModified();
+  }
+
+  // the file in the DiskCache2 for the persistent info, null if not persisting
+  private File getPersistenceFile(String suffix) {
     if (diskCache2 == null) {
-      return;
+      return null;
     }
 
     String cacheName = getCacheName();
     if (cacheName == null) {
-      return;
+      return null;
     }
-    if (cacheName.startsWith("file:")) // LOOK
-    {
+    if (cacheName.startsWith("file:")) { // LOOK HACK
       cacheName = cacheName.substring(5);
     }
-
-    File cacheFile = diskCache2.getCacheFile(cacheName);
+    File cacheFile = diskCache2.getCacheFile(cacheName + suffix);
     if (cacheFile == null) {
       throw new IllegalStateException();
     }
-    if (!cacheFile.exists()) {
-      return;
-    }
+    return cacheFile;
+  }
+
+  // read info from the persistent XML file written by earlier versions; it is replaced by the binary file
+  // the next time persistWrite() is called
+  private void persistReadXml(File cacheFile) {
     long lastWritten = cacheFile.lastModified();
 
     if (logger.isDebugEnabled()) {
@@ -309,7 +392,7 @@ class AggregationExisting extends AggregationOuter {
       aggElem = ucar.nc2.util.xml.Parse.readRootElement("file:" + cacheFile.getPath());
     } catch (IOException e) {
       if (debugCache) {
-        System.out.println(" No cache for " + cacheName + " - " + e.getMessage());
+        System.out.println(" No cache for " + cacheFile.getPath() + " - " + e.getMessage());
       }
       return;
     }
@@ -396,7 +479,7 @@ class AggregationExisting extends AggregationOuter {
 
   }
 
-  // name to use in the DiskCache2 for the persistent XML info.
+  // name to use in the DiskCache2 for the persistent info.
   // Document root is aggregation
 
   // has the name getCacheName()
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.ncml;
+
+import java.util.Formatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Time spent opening and reading the nested datasets of an Aggregation.
+ * The datasets may be read concurrently, so the times are summed over all threads and may exceed the elapsed time.
+ */
+@ThreadSafe
+public class AggregationMetrics {
+  private final LongAdder opens = new LongAdder();
+  private final LongAdder openNanos = new LongAdder();
+  private final LongAdder reads = new LongAdder();
+  private final LongAdder readNanos = new LongAdder();
+
+  void recordOpen(long nanos) {
+    opens.increment();
+    openNanos.add(nanos);
+  }
+
+  void recordRead(long nanos) {
+    reads.increment();
+    readNanos.add(nanos);
+  }
+
+  /** Number of times a nested dataset was opened (or acquired from the file cache). */
+  public long getOpenCount() {
+    return opens.sum();
+  }
+
+  /** Total time spent opening nested datasets. */
+  public long getOpenTime(TimeUnit unit) {
+    return unit.convert(openNanos.sum(), TimeUnit.NANOSECONDS);
+  }
+
+  /** Number of variable reads from nested datasets. */
+  public long getReadCount() {
+    return reads.sum();
+  }
+
+  /** Total time spent reading variables from nested datasets, not counting opening them. */
+  public long getReadTime(TimeUnit unit) {
+    return unit.convert(readNanos.sum(), TimeUnit.NANOSECONDS);
+  }
+
+  public void reset() {
+    opens.reset();
+    openNanos.reset();
+    reads.reset();
+    readNanos.reset();
+  }
+
+  public void show(Formatter f) {
+    f.format("  opens=%d took %d msecs; reads=%d took %d msecs%n", getOpenCount(), getOpenTime(TimeUnit.MILLISECONDS),
+        getReadCount(), getReadTime(TimeUnit.MILLISECONDS));
+  }
+}
@@ -5,10 +5,13 @@
 package ucar.nc2.internal.ncml;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.Formatter;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
@@ -16,6 +19,8 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import thredds.inventory.MFile;
 import ucar.ma2.Array;
 import ucar.ma2.DataType;
@@ -399,13 +404,12 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
 
     List<Range> ranges = section.getRanges();
     Range joinRange = section.getRange(0);
-    List<Range> nestedSection = new ArrayList<>(ranges); // get copy
     List<Range> innerSection = ranges.subList(1, ranges.size());
 
     if (debug)
       System.out.println("   agg wants range=" + mainv.getFullName() + "(" + joinRange + ")");
 
-    // LOOK: could multithread here
+    List<SectionReaderTask> tasks = new ArrayList<>();
     List<AggDataset> nestedDatasets = getDatasets();
     for (AggDataset nested : nestedDatasets) {
       AggDatasetOuter dod = (AggDatasetOuter) nested;
@@ -413,25 +417,74 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
       if (nestedJoinRange == null)
         continue;
 
-      Array varData;
+      List<Range> nestedSection;
       if ((type == Type.joinNew) || (type == Type.forecastModelRunCollection)) {
-        varData = dod.read(mainv, cancelTask, innerSection);
+        nestedSection = innerSection;
       } else {
+        nestedSection = new ArrayList<>(ranges); // get copy
         nestedSection.set(0, nestedJoinRange);
-        varData = dod.read(mainv, cancelTask, nestedSection);
       }
+      tasks.add(new SectionReaderTask(dod, mainv, cancelTask, nestedSection));
+    }
+
+    // read ahead on the executor, but copy into sectionData in order
+    ArrayDeque<FutureTask<Array>> pending = new ArrayDeque<>();
+    boolean parallel = (executor != null) && (tasks.size() > 1);
+    Iterator<SectionReaderTask> iter = tasks.iterator();
+    try {
+      while (iter.hasNext() || !pending.isEmpty()) {
+        Array varData;
+        if (parallel) {
+          while (iter.hasNext() && pending.size() < maxPendingReads) {
+            FutureTask<Array> future = new FutureTask<>(iter.next());
+            pending.add(future);
+            try {
+              executor.execute(future);
+            } catch (RejectedExecutionException e) {
+              future.run(); // executor is saturated or shut down
+            }
+          }
+          varData = waitFor(pending.remove());
+        } else {
+          varData = iter.next().read();
+        }
 
-      if ((cancelTask != null) && cancelTask.isCancel())
-        return null;
-      varData = MAMath.convert(varData, dtype); // just in case it need to be converted
+        if ((cancelTask != null) && cancelTask.isCancel())
+          return null;
+        varData = MAMath.convert(varData, dtype); // just in case it need to be converted
 
-      Array.arraycopy(varData, 0, sectionData, destPos, (int) varData.getSize());
-      destPos += varData.getSize();
+        Array.arraycopy(varData, 0, sectionData, destPos, (int) varData.getSize());
+        destPos += varData.getSize();
+      }
+    } finally {
+      for (FutureTask<Array> future : pending)
+        future.cancel(false); // dont interrupt: that would close the channels of cached files
     }
 
     return sectionData;
   }
 
+  // wait for a read on the executor, and rethrow its exception
+  private static Array waitFor(FutureTask<Array> future) throws IOException, InvalidRangeException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted reading aggregation");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof InvalidRangeException)
+        throw (InvalidRangeException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IOException(cause);
+    }
+  }
+
   /**
    * Read an aggregation variable: A variable whose data spans multiple files.
    * This is an implementation of ProxyReader, so must fulfill that contract.
@@ -530,6 +583,30 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
     }
   }
 
+  private static class SectionReaderTask implements Callable<Array> {
+    AggDatasetOuter ds;
+    Variable mainv;
+    CancelTask cancelTask;
+    List<Range> section;
+
+    SectionReaderTask(AggDatasetOuter ds, Variable mainv, CancelTask cancelTask, List<Range> section) {
+      this.ds = ds;
+      this.mainv = mainv;
+      this.cancelTask = cancelTask;
+      this.section = section;
+    }
+
+    Array read() throws IOException, InvalidRangeException {
+      if ((cancelTask != null) && cancelTask.isCancel())
+        return null;
+      return ds.read(mainv, cancelTask, section);
+    }
+
+    public Array call() throws Exception {
+      return read();
+    }
+  }
+
   private static class Result {
     Array data;
     int index;
@@ -551,6 +628,16 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
     return new AggDatasetOuter(this, dset);
   }
 
+  /**
+   * Load cached variable values that persistRead() found but did not read; overridden in AggregationExisting.
+   *
+   * @param id load the values for this dataset, or all of them if null
+   * @return true if values were loaded
+   */
+  protected boolean loadPersistedData(String id) {
+    return false;
+  }
+
   /////////////////////////////////////////////
   // vars that should be cached across the agg for efficiency
   class CacheVar {
@@ -651,6 +738,14 @@ abstract class AggregationOuter extends Aggregation implements ProxyReader {
     }
 
     protected Array getData(String id) {
+      Array data = dataMap.get(id);
+      if (data == null && loadPersistedData(id))
+        data = dataMap.get(id);
+      return data;
+    }
+
+    // the data in memory, without looking in the persistence cache
+    protected Array getCachedData(String id) {
       return dataMap.get(id);
     }
 
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import ucar.unidata.io.InMemoryRandomAccessFile;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * A process-wide cache of decoded (uncompressed and unfiltered) data chunks, shared by the tiled LayoutBB
+ * implementations (HDF5/NetCDF-4 and Zarr).
+ * Chunks are keyed by file location, file last modified date and length, variable name, and chunk origin,
+ * so a file that is modified on disk will not see its old chunks.
+ * The cache is bounded by the total number of bytes held, not by the number of chunks; eviction is least recently
+ * used.
+ * The cache is disabled by default, call {@link #enable(long)} to turn it on.
+ */
+@ThreadSafe
+public class ChunkCache {
+  private static ChunkCache instance;
+
+  /**
+   * Enable the global chunk cache, replacing any existing one.
+   *
+   * @param maxBytes maximum number of decoded bytes held in the cache.
+   */
+  public static synchronized void enable(long maxBytes) {
+    if (instance != null)
+      instance.invalidateAll();
+    instance = new ChunkCache(maxBytes);
+  }
+
+  /** Disable and clear the global chunk cache. */
+  public static synchronized void disable() {
+    if (instance != null)
+      instance.invalidateAll();
+    instance = null;
+  }
+
+  /** Get the global chunk cache, or null if not enabled. */
+  @Nullable
+  public static synchronized ChunkCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Make a key for the chunks of a variable in a file.
+   *
+   * @param raf the file being read
+   * @param varName unique name of the variable in the file
+   * @return key for the variable's chunks, or null if the file cannot be identified, eg an in-memory file.
+   */
+  @Nullable
+  public static VariableKey makeVariableKey(RandomAccessFile raf, String varName) {
+    if (raf instanceof InMemoryRandomAccessFile || raf.getLocation() == null)
+      return null;
+    long length;
+    try {
+      length = raf.length();
+    } catch (IOException e) {
+      return null;
+    }
+    return new VariableKey(raf.getLocation(), raf.getLastModified(), length, varName);
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////
+  private final long maxBytes;
+  private final Cache<Key, byte[]> cache;
+  private final AtomicLong bytesDecoded = new AtomicLong();
+
+  private ChunkCache(long maxBytes) {
+    if (maxBytes <= 0)
+      throw new IllegalArgumentException("maxBytes must be > 0");
+    this.maxBytes = maxBytes;
+    // one segment, otherwise Guava divides maxBytes among the segments, and evicts any chunk bigger than a segment's
+    // share as soon as it is added. Reads don't lock the segment.
+    this.cache = CacheBuilder.newBuilder().concurrencyLevel(1).maximumWeight(maxBytes)
+        .weigher((Key key, byte[] value) -> value.length + key.offset.length * 4).recordStats().build();
+  }
+
+  /**
+   * Get the decoded chunk, calling the loader if it is not in the cache.
+   * Callers must not modify the returned array.
+   *
+   * @param vkey identifies the variable, from makeVariableKey()
+   * @param chunkOrigin origin of the chunk in the variable's index space
+   * @param loader reads and decodes the chunk if needed
+   * @return the decoded chunk
+   * @throws IOException if the loader fails
+   */
+  public byte[] get(VariableKey vkey, int[] chunkOrigin, Callable<byte[]> loader) throws IOException {
+    try {
+      return cache.get(new Key(vkey, chunkOrigin), () -> {
+        byte[] data = loader.call();
+        bytesDecoded.addAndGet(data.length);
+        return data;
+      });
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      throw new IOException(cause);
+    } catch (UncheckedExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw e;
+    }
+  }
+
+  /**
+   * Get the decoded chunk if it is in the cache.
+   * Callers must not modify the returned array.
+   *
+   * @return the decoded chunk or null if not in the cache
+   */
+  @Nullable
+  public byte[] getIfPresent(VariableKey vkey, int[] chunkOrigin) {
+    return cache.getIfPresent(new Key(vkey, chunkOrigin));
+  }
+
+  /**
+   * Check whether the decoded chunk is in the cache, without counting a hit or a miss. Use this to decide whether to
+   * prefetch a chunk, before it's read with {@link #get}.
+   *
+   * @return true if the chunk is in the cache
+   */
+  public boolean contains(VariableKey vkey, int[] chunkOrigin) {
+    return cache.asMap().containsKey(new Key(vkey, chunkOrigin));
+  }
+
+  /** Add a decoded chunk to the cache. The caller must not modify the array afterwards. */
+  public void put(VariableKey vkey, int[] chunkOrigin, byte[] data) {
+    bytesDecoded.addAndGet(data.length);
+    cache.put(new Key(vkey, chunkOrigin), data);
+  }
+
+  /** Remove all chunks from the cache, and reset the byte counter. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+    bytesDecoded.set(0);
+  }
+
+  /** Maximum number of bytes held. */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Number of chunks currently in the cache. */
+  public long getNumberOfChunks() {
+    return cache.size();
+  }
+
+  /** Total number of decoded bytes added to the cache since it was created or invalidated. */
+  public long getBytesDecoded() {
+    return bytesDecoded.get();
+  }
+
+  /** Hit, miss and eviction counts. */
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  public void showStats(Formatter f) {
+    CacheStats stats = cache.stats();
+    f.format("ChunkCache: maxBytes=%d nchunks=%d hits=%d misses=%d hitRate=%.3f evictions=%d bytesDecoded=%d%n",
+        maxBytes, cache.size(), stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(),
+        bytesDecoded.get());
+  }
+
+  /** Identifies the chunks of one variable in one version of a file. */
+  public static class VariableKey {
+    private final String location;
+    private final long lastModified;
+    private final long length;
+    private final String varName;
+
+    private VariableKey(String location, long lastModified, long length, String varName) {
+      this.location = location;
+      this.lastModified = lastModified;
+      this.length = length;
+      this.varName = varName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      VariableKey that = (VariableKey) o;
+      return lastModified == that.lastModified && length == that.length && location.equals(that.location)
+          && varName.equals(that.varName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(location, lastModified, length, varName);
+    }
+
+    @Override
+    public String toString() {
+      return location + "#" + varName;
+    }
+  }
+
+  private static class Key {
+    private final VariableKey vkey;
+    private final int[] offset;
+    private final int hashCode;
+
+    private Key(VariableKey vkey, int[] offset) {
+      this.vkey = vkey;
+      this.offset = offset.clone();
+      this.hashCode = 31 * vkey.hashCode() + Arrays.hashCode(offset);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      Key that = (Key) o;
+      return hashCode == that.hashCode && Arrays.equals(offset, that.offset) && vkey.equals(that.vkey);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
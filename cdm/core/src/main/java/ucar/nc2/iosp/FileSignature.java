@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Identifies the files of one format by magic bytes at fixed offsets, and/or by file name suffixes.
+ * Used by NetcdfFiles.open() to choose which IOServiceProvider to try first, see
+ * {@link IOServiceProvider#getFileSignatures()}. A match is only a hint: isValidFile() still decides.
+ */
+@Immutable
+public class FileSignature {
+  /** Magic bytes must lie within this many bytes of the start of the file. */
+  public static final int MAX_HEADER_SIZE = 8192;
+
+  /**
+   * Files that have the magic bytes at any of the offsets.
+   *
+   * @param magic the magic bytes
+   * @param offsets where the magic bytes may be, default 0.
+   */
+  public static FileSignature ofMagic(byte[] magic, long... offsets) {
+    return new FileSignature(magic, offsets.length == 0 ? new long[] {0} : offsets, ImmutableList.of());
+  }
+
+  /** Files whose name ends with any of the suffixes, ignoring case. */
+  public static FileSignature ofSuffix(String... suffixes) {
+    return new FileSignature(null, new long[0], Arrays.asList(suffixes));
+  }
+
+  private final byte[] magic;
+  private final long[] offsets;
+  private final ImmutableList<String> suffixes;
+
+  private FileSignature(byte[] magic, long[] offsets, List<String> suffixes) {
+    for (long offset : offsets) {
+      Preconditions.checkArgument(offset >= 0 && offset + magic.length <= MAX_HEADER_SIZE,
+          "magic must be within the first %s bytes", MAX_HEADER_SIZE);
+    }
+    this.magic = magic == null ? null : magic.clone();
+    this.offsets = offsets.clone();
+    ImmutableList.Builder<String> lower = ImmutableList.builder();
+    for (String suffix : suffixes) {
+      lower.add(suffix.toLowerCase(Locale.ROOT));
+    }
+    this.suffixes = lower.build();
+  }
+
+  /** The number of bytes at the start of the file needed by matches(). */
+  public int getHeaderSize() {
+    int size = 0;
+    for (long offset : offsets) {
+      size = Math.max(size, (int) offset + magic.length);
+    }
+    return size;
+  }
+
+  /**
+   * Does the start of the file, or its name, match this signature?
+   *
+   * @param header the first bytes of the file
+   * @param headerLength number of valid bytes in header, less than getHeaderSize() if the file is small.
+   * @param location the file location, may be null.
+   */
+  public boolean matches(byte[] header, int headerLength, String location) {
+    for (long offset : offsets) {
+      if (matchesAt(header, headerLength, (int) offset)) {
+        return true;
+      }
+    }
+    if (location != null && !suffixes.isEmpty()) {
+      String name = location.toLowerCase(Locale.ROOT);
+      for (String suffix : suffixes) {
+        if (name.endsWith(suffix)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean matchesAt(byte[] header, int headerLength, int offset) {
+    if (offset + magic.length > headerLength) {
+      return false;
+    }
+    for (int i = 0; i < magic.length; i++) {
+      if (header[offset + i] != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
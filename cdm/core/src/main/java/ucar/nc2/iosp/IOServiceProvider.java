@@ -7,6 +7,8 @@ package ucar.nc2.iosp;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.List;
 import javax.annotation.Nullable;
 import ucar.ma2.Section;
 import ucar.ma2.InvalidRangeException;
@@ -243,6 +245,27 @@ public interface IOServiceProvider extends Comparable<IOServiceProvider> {
    */
   String getFileTypeDescription();
 
+  /**
+   * Signatures of the files this IOServiceProvider can open. NetcdfFiles.open() reads the start of the file once,
+   * and calls isValidFile() on the IOServiceProviders with a matching signature before trying all the others.
+   * So a signature must not replace any check in isValidFile(). By default there are none.
+   *
+   * @return signatures, may be empty.
+   */
+  default List<FileSignature> getFileSignatures() {
+    return Collections.emptyList();
+  }
+
+  /**
+   * Whether this IOServiceProvider can only open files that match one of its signatures, eg because the magic bytes
+   * must be at the start of the file. If so, NetcdfFiles.open() does not create it for other files. By default false.
+   *
+   * @return true if no file without a matching signature is valid.
+   */
+  default boolean requiresFileSignature() {
+    return false;
+  }
+
   /**
    * Used to determine the ordering for dynamically loaded IOServiceProviders.
    */
@@ -6,6 +6,7 @@ package ucar.nc2.iosp;
 
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.*;
 
@@ -79,8 +80,8 @@ public class LayoutBBTiled implements LayoutBB {
           // get next dataChunk
           try {
             dataChunk = chunkIterator.next();
-          } catch (IOException e) {
-            e.printStackTrace();
+          } catch (EOFException e) {
+            // truncated file: the rest of the data is missing. other IOExceptions are real errors, thrown below
             next = null;
             return false;
           }
@@ -5,6 +5,7 @@
 
 package ucar.nc2.stream;
 
+import com.google.common.collect.ImmutableList;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -30,6 +31,7 @@ import ucar.nc2.NetcdfFile;
 import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.FileSignature;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.util.IO;
 import ucar.unidata.io.RandomAccessFile;
@@ -55,6 +57,18 @@ public class NcStreamIosp extends AbstractIOServiceProvider {
     return test(b, NcStream.MAGIC_HEADER) || test(b, NcStream.MAGIC_DATA); // immed followed by one of these
   }
 
+  private static final List<FileSignature> signatures = ImmutableList.of(FileSignature.ofMagic(NcStream.MAGIC_START));
+
+  @Override
+  public List<FileSignature> getFileSignatures() {
+    return signatures;
+  }
+
+  @Override
+  public boolean requiresFileSignature() {
+    return true;
+  }
+
   public String getFileTypeId() {
     return "ncstream";
   }
@@ -103,6 +103,10 @@ public class NetcdfFormatWriter implements Closeable {
       return this;
     }
 
+    /**
+     * Set the IOSP used to write a new file. If it is an IOServiceProviderWriter, it is used instead of the
+     * netcdf-3 or netcdf-4 writer chosen from the format. This allows other formats, eg Zarr, to be written.
+     */
     public Builder setIosp(IOServiceProvider iosp) {
       this.iosp = iosp;
       return this;
@@ -293,7 +297,9 @@ public class NetcdfFormatWriter implements Closeable {
     this.extraHeaderBytes = builder.extraHeaderBytes;
     this.preallocateSize = builder.preallocateSize;
     this.chunker = builder.chunker;
-    this.useJna = builder.useJna || format.isNetcdf4Format();
+    IOServiceProviderWriter customWriter =
+        (builder.iosp instanceof IOServiceProviderWriter) ? (IOServiceProviderWriter) builder.iosp : null;
+    this.useJna = customWriter == null && (builder.useJna || format.isNetcdf4Format());
 
     this.ncout = NetcdfFile.builder().setRootGroup(builder.rootGroup).setLocation(builder.location).build();
     this.rootGroup = this.ncout.getRootGroup();
@@ -310,7 +316,9 @@ public class NetcdfFormatWriter implements Closeable {
       existingRaf = null;
     }
 
-    if (useJna) {
+    if (customWriter != null) {
+      spiw = customWriter;
+    } else if (useJna) {
       String className = "ucar.nc2.jni.netcdf.Nc4Iosp";
       IOServiceProviderWriter spi;
       try {
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A contiguous range of bytes in a file, used for vectored reads with {@link RandomAccessFile#readRanges}.
+ */
+@Immutable
+public final class ByteRange {
+  private final long offset;
+  private final int length;
+
+  /**
+   * @param offset position of the first byte in the file
+   * @param length number of bytes, must be &ge; 0
+   */
+  public ByteRange(long offset, int length) {
+    if (offset < 0 || length < 0) {
+      throw new IllegalArgumentException("Invalid byte range: offset=" + offset + " length=" + length);
+    }
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /** Position of the first byte in the file. */
+  public long offset() {
+    return offset;
+  }
+
+  /** Number of bytes. */
+  public int length() {
+    return length;
+  }
+
+  /** Position following the last byte in the file. */
+  public long end() {
+    return offset + length;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ByteRange that = (ByteRange) o;
+    return offset == that.offset && length == that.length;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Long.hashCode(offset) + length;
+  }
+
+  @Override
+  public String toString() {
+    return offset + ":" + length;
+  }
+}
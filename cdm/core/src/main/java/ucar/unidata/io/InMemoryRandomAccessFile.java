@@ -35,6 +35,7 @@ public class InMemoryRandomAccessFile extends ucar.unidata.io.RandomAccessFile {
     dataEnd = buffer.length;
     filePosition = 0;
     endOfFile = false;
+    super.setReadAhead(false); // the buffer is the data, so it must never be replaced
 
     if (debugLeaks)
       openFiles.add(location);
@@ -50,6 +51,11 @@ public class InMemoryRandomAccessFile extends ucar.unidata.io.RandomAccessFile {
     // do nothing
   }
 
+  @Override
+  public void setReadAhead(boolean readAhead) {
+    // do nothing
+  }
+
   @Override
   protected int read_(long pos, byte[] b, int offset, int len) {
     len = Math.min(len, (int) (buffer.length - pos));
@@ -4,99 +4,296 @@
  */
 package ucar.unidata.io;
 
-import java.io.*;
-import java.nio.channels.FileChannel;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.unidata.io.spi.RandomAccessFileProvider;
+import ucar.unidata.util.StringUtil2;
 
 /**
- * Use NIO MappedByteBuffer to implement a RandomAccessFile.
- * Limited to 2G size. Not currently used - NOT UP TO DATE DO NOT USE
- * 
- * @deprecated not part of public API.
+ * A read-only RandomAccessFile that reads a local file through memory mapped segments, so that reads are served
+ * from the OS page cache without a system call or an intermediate buffer copy.
+ * The file is divided into segments of a fixed, page aligned size (default 1 GiB, set by the system property
+ * "ucar.unidata.io.mmap.segmentSize"), so files larger than 2 GB can be mapped. Each segment is mapped the first
+ * time it is read. The segments are unmapped when the file is closed, unless the system property
+ * "ucar.unidata.io.mmap.unmap" is false, in which case that is left to the garbage collector.
+ * <p/>
+ * Open with NetcdfFiles using a location of the form "mmap:/path/to/file.nc".
  */
-@Deprecated
+@NotThreadSafe
 public class MMapRandomAccessFile extends RandomAccessFile {
+  private static final Logger logger = LoggerFactory.getLogger(MMapRandomAccessFile.class);
+
+  /** Location prefix that selects this implementation */
+  public static final String SCHEME = "mmap:";
+
+  private static final int pageSize = 4096;
+  private static final int defaultSegmentSize = Integer.getInteger("ucar.unidata.io.mmap.segmentSize", 1 << 30);
+  private static final boolean unmapOnClose =
+      Boolean.parseBoolean(System.getProperty("ucar.unidata.io.mmap.unmap", "true"));
 
-  private MappedByteBuffer source;
+  private final long fileLength;
+  private final int segmentShift; // log2 of the segment size
+  private final int segmentMask;
+  private final MappedByteBuffer[] segments; // null until first used
+  private FileChannel channel;
 
   /**
-   * Constructor for in-memory "files"
-   * 
-   * @param location used as a name
-   * @param mode the open mode
-   * @throws java.io.IOException on error
+   * Constructor.
+   *
+   * @param location location of the file
+   * @param mode must be "r"
+   * @throws IOException on open error
    */
   public MMapRandomAccessFile(String location, String mode) throws IOException {
-    super(location, mode, 1);
-    FileChannel channel = file.getChannel();
-    source = channel.map(readonly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, (long) 0,
-        channel.size());
-    // channel.close();
-
-    bufferStart = 0;
-    dataSize = (int) channel.size();
-    dataEnd = channel.size();
-    filePosition = 0;
-    buffer = null;
-    endOfFile = false;
+    this(location, mode, defaultBufferSize, defaultSegmentSize);
   }
 
+  /**
+   * Constructor.
+   *
+   * @param location location of the file
+   * @param mode must be "r"
+   * @param bufferSize size of the buffer used by searchForward
+   * @throws IOException on open error
+   */
+  public MMapRandomAccessFile(String location, String mode, int bufferSize) throws IOException {
+    this(location, mode, bufferSize, defaultSegmentSize);
+  }
 
-  public void flush() {
-    if (bufferModified) {
-      source.force();
-      bufferModified = false;
+  MMapRandomAccessFile(String location, String mode, int bufferSize, int segmentSize) throws IOException {
+    super(location, checkMode(mode), bufferSize);
+    if (segmentSize < pageSize || Integer.bitCount(segmentSize) != 1)
+      throw new IllegalArgumentException("segmentSize must be a power of 2 >= " + pageSize);
+    this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+    this.segmentMask = segmentSize - 1;
+    this.channel = file.getChannel();
+    this.fileLength = channel.size();
+    this.segments = new MappedByteBuffer[(int) ((fileLength + segmentMask) >>> segmentShift)];
+  }
+
+  private static String checkMode(String mode) {
+    if (!"r".equals(mode))
+      throw new IllegalArgumentException("MMapRandomAccessFile is read-only, mode must be \"r\"");
+    return mode;
+  }
+
+  // map segment i on first use
+  private MappedByteBuffer getSegment(int i) throws IOException {
+    MappedByteBuffer segment = segments[i];
+    if (segment == null) {
+      if (channel == null)
+        throw new IOException("File is closed: " + location);
+      long start = (long) i << segmentShift;
+      long size = Math.min(segmentMask + 1L, fileLength - start);
+      segment = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+      segments[i] = segment;
     }
+    return segment;
   }
 
+  @Override
+  public synchronized void close() throws IOException {
+    super.close();
+    if (file != null)
+      return; // still in use by the file cache
+    channel = null;
+    for (int i = 0; i < segments.length; i++) {
+      if (segments[i] != null && unmapOnClose)
+        Unmapper.unmap(segments[i]);
+      segments[i] = null;
+    }
+  }
+
+  @Override
   public long length() {
-    return dataEnd;
+    return fileLength;
   }
 
-  public void seek(long pos) {
+  @Override
+  public void seek(long pos) throws IOException {
+    if (pos < 0)
+      throw new IOException("Negative seek offset");
     filePosition = pos;
-    if (filePosition < dataEnd)
-      source.position((int) filePosition);
-    else
-      endOfFile = true;
+    endOfFile = false;
   }
 
+  @Override
   public void unread() {
-    seek(filePosition - 1);
+    filePosition--;
+    endOfFile = false;
   }
 
-  public int read() {
-    // If the file position is within the data, return the byte...
-    if (filePosition < dataEnd) {
-      filePosition++;
-      return source.get() & 0xff;
+  @Override
+  public int read() throws IOException {
+    if (filePosition >= fileLength) {
+      endOfFile = true;
+      return -1;
+    }
+    MappedByteBuffer segment = getSegment((int) (filePosition >>> segmentShift));
+    int b = segment.get((int) (filePosition & segmentMask)) & 0xff;
+    filePosition++;
+    return b;
+  }
 
-    } else {
+  @Override
+  public int readBytes(byte[] b, int off, int len) throws IOException {
+    int n = read_(filePosition, b, off, len);
+    if (n < 0) {
+      endOfFile = true;
       return -1;
     }
+    filePosition += n;
+    return n;
   }
 
-  public int readBytes(byte[] dst, int offset, int length) {
-    if (endOfFile)
+  /** Copy directly from the mapped segments, without going through the buffer. */
+  @Override
+  protected int read_(long pos, byte[] b, int offset, int len) throws IOException {
+    if (pos >= fileLength)
       return -1;
+    len = (int) Math.min(len, fileLength - pos);
+    int done = 0;
+    while (done < len) {
+      MappedByteBuffer segment = getSegment((int) (pos >>> segmentShift));
+      int segPos = (int) (pos & segmentMask);
+      int n = Math.min(len - done, segment.limit() - segPos);
+      segment.position(segPos);
+      segment.get(b, offset + done, n);
+      done += n;
+      pos += n;
+    }
+    return len;
+  }
 
-    length = (int) Math.min(length, dataEnd - filePosition);
-    if (length > 0) {
-      source.get(dst, offset, length);
-      filePosition += length;
+  @Override
+  public long readToByteChannel(WritableByteChannel dest, long offset, long nbytes) throws IOException {
+    long need = Math.min(nbytes, fileLength - offset);
+    long start = offset;
+    while (need > 0) {
+      MappedByteBuffer segment = getSegment((int) (offset >>> segmentShift));
+      int segPos = (int) (offset & segmentMask);
+      ByteBuffer slice = segment.duplicate();
+      slice.position(segPos);
+      slice.limit((int) Math.min(slice.limit(), segPos + need));
+      int count = dest.write(slice);
+      if (count == 0)
+        break;
+      need -= count;
+      offset += count;
     }
-    return length;
+    return offset - start;
   }
 
-  public void write(int b) {
-    source.put((byte) b);
-    filePosition++;
-    bufferModified = true;
+  @Override
+  protected boolean canReadConcurrently() {
+    return false; // never needs to read ahead
   }
 
-  public void writeBytes(byte[] dst, int offset, int length) {
-    source.put(dst, offset, length);
-    filePosition += length;
+  @Override
+  public boolean searchForward(KMPMatch match, int maxBytes) throws IOException {
+    long last = (maxBytes < 0) ? fileLength : Math.min(fileLength, filePosition + maxBytes);
+    int matchLen = match.getMatchLength();
+    long pos = filePosition;
+    // scan windows of the buffer size, overlapping so that a match can span two of them
+    while (last - pos >= matchLen) {
+      int n = (int) Math.min(buffer.length, last - pos);
+      read_(pos, buffer, 0, n);
+      int found = match.indexOf(buffer, 0, n);
+      if (found >= 0) {
+        seek(pos + found);
+        return true;
+      }
+      if (pos + n >= last || n <= matchLen)
+        break;
+      pos += n - matchLen + 1;
+    }
+    seek(last);
+    return false;
   }
 
+  @Override
+  public void flush() {
+    // read-only, nothing to write
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    throw new IOException("MMapRandomAccessFile is read-only: " + location);
+  }
+
+  @Override
+  public void writeBytes(byte[] b, int off, int len) throws IOException {
+    throw new IOException("MMapRandomAccessFile is read-only: " + location);
+  }
+
+  /** Releases a mapping now, rather than when the buffer is garbage collected. */
+  private static class Unmapper {
+    private static final Object unsafe; // java 9+
+    private static final Method invokeCleaner;
+
+    static {
+      Object theUnsafe = null;
+      Method method = null;
+      try {
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        method = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        Field field = unsafeClass.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        theUnsafe = field.get(null);
+      } catch (Exception e) {
+        method = null; // java 8, use the buffer's cleaner
+      }
+      unsafe = theUnsafe;
+      invokeCleaner = method;
+    }
+
+    static void unmap(MappedByteBuffer buffer) {
+      try {
+        if (invokeCleaner != null) {
+          invokeCleaner.invoke(unsafe, buffer);
+        } else {
+          Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+          cleanerMethod.setAccessible(true);
+          Object cleaner = cleanerMethod.invoke(buffer);
+          if (cleaner != null)
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+      } catch (Exception e) {
+        logger.debug("Could not unmap buffer, leaving it to the garbage collector", e);
+      }
+    }
+  }
+
+  /**
+   * Hook for service provider interface RandomAccessFileProvider
+   */
+  public static class Provider implements RandomAccessFileProvider {
+
+    @Override
+    public boolean isOwnerOf(String location) {
+      return location.startsWith(SCHEME);
+    }
+
+    @Override
+    public RandomAccessFile open(String location) throws IOException {
+      return open(location, defaultBufferSize);
+    }
+
+    @Override
+    public RandomAccessFile open(String location, int bufferSize) throws IOException {
+      String path = location.substring(SCHEME.length());
+      if (path.startsWith("file:"))
+        path = StringUtil2.unescape(path.substring(5));
+      path = StringUtil2.replace(path, '\\', "/");
+      return new MMapRandomAccessFile(path, "r", bufferSize);
+    }
+  }
 }
@@ -5,6 +5,7 @@
 
 package ucar.unidata.io;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.stream.Collectors;
@@ -18,9 +19,21 @@ import ucar.nc2.util.cache.FileFactory;
 import ucar.unidata.util.StringUtil2;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -288,6 +301,16 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
    */
   private boolean extendMode;
 
+  /**
+   * Read-ahead for sequential scans, see setReadAhead()
+   */
+  private boolean readAhead = defaultReadAhead;
+  private int baseBufferSize; // buffer size set by the user, used when not reading sequentially
+  private int sequentialReads; // number of consecutive buffer refills that continued a sequential scan
+  private FutureTask<Integer> prefetch; // reads the window that follows the buffer, or null
+  private long prefetchStart;
+  private byte[] prefetchBuffer; // never shared with a running prefetch once that is cancelled
+
   /**
    * Constructor, for subclasses
    *
@@ -367,6 +390,10 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
   }
 
   private void init(int bufferSize) {
+    cancelPrefetch();
+    baseBufferSize = bufferSize;
+    sequentialReads = 0;
+
     // Initialise the buffer
     bufferStart = 0;
     dataEnd = 0;
@@ -423,6 +450,8 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
         System.out.println("  close " + location);
     }
 
+    cancelPrefetch();
+
     if (file == null)
       return;
 
@@ -507,11 +536,15 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
       flush();
     }
 
+    if (readAhead && readonly && !extendMode) {
+      dataSize = readAhead(pos);
+    } else {
+      dataSize = read_(pos, buffer, 0, buffer.length);
+    }
+
     bufferStart = pos;
     filePosition = pos;
 
-    dataSize = read_(pos, buffer, 0, buffer.length);
-
     if (dataSize <= 0) {
       dataSize = 0;
       endOfFile = true;
@@ -882,6 +915,302 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     filePosition--;
   }
 
+  //
+  // Vectored reads.
+  //
+
+  // threads used by subclasses that read several ranges at once; daemon threads, so they never keep the JVM alive
+  private static final int rangeReadThreads =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.rangeReadThreads", "8"));
+  private static volatile Executor rangeReadExecutor = makeRangeReadExecutor(rangeReadThreads);
+
+  private static ExecutorService makeRangeReadExecutor(int nthreads) {
+    ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("raf-range-read-%d").setDaemon(true).build();
+    ThreadPoolExecutor exec =
+        new ThreadPoolExecutor(nthreads, nthreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+    exec.allowCoreThreadTimeOut(true);
+    return exec;
+  }
+
+  /**
+   * Set the Executor used by subclasses that fetch several byte ranges concurrently in {@link #readRanges}.
+   * Default is a shared pool of daemon threads, whose size is set by the system property
+   * "ucar.unidata.io.rangeReadThreads" (default 8). If null, the ranges are read one after the other on the
+   * calling thread.
+   */
+  public static void setRangeReadExecutor(Executor exec) {
+    rangeReadExecutor = exec;
+  }
+
+  /**
+   * Read several byte ranges of the file in one call.
+   * This implementation reads them one after the other through the buffer. Subclasses that can do better, eg
+   * by merging nearby ranges into fewer requests and issuing them concurrently, override this method
+   * and {@link #prefersRangeReads}.
+   * The file pointer is not changed.
+   *
+   * @param ranges the ranges to read, in any order; they may overlap
+   * @return the bytes of each range, in the same order as ranges
+   * @throws EOFException if a range extends past the end of the file
+   * @throws IOException on io error
+   */
+  public List<byte[]> readRanges(List<ByteRange> ranges) throws IOException {
+    List<byte[]> result = new ArrayList<>(ranges.size());
+    long savePos = getFilePointer();
+    try {
+      for (ByteRange range : ranges) {
+        byte[] data = new byte[range.length()];
+        seek(range.offset());
+        readFully(data);
+        result.add(data);
+      }
+    } finally {
+      seek(savePos);
+    }
+    return result;
+  }
+
+  /**
+   * Whether {@link #readRanges} is cheaper than reading the same ranges one at a time, so that callers should
+   * gather the ranges they need (eg the chunks of a variable section) and read them with one call.
+   *
+   * @return false for local files
+   */
+  public boolean prefersRangeReads() {
+    return false;
+  }
+
+  /**
+   * Run the tasks on the range read Executor (see {@link #setRangeReadExecutor}) and wait for all of them.
+   * Tasks that have not started when the calling thread gets to them are run on the calling thread,
+   * so this never blocks waiting on a saturated Executor, and may be nested.
+   * Intended for subclasses that override {@link #readRanges}.
+   *
+   * @param tasks the tasks to run
+   * @return the results of the tasks, in the same order
+   * @throws IOException the first exception thrown by a task; the remaining tasks are cancelled
+   */
+  protected static <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws IOException {
+    List<FutureTask<T>> futures = new ArrayList<>(tasks.size());
+    for (Callable<T> task : tasks) {
+      futures.add(new FutureTask<>(task));
+    }
+    Executor exec = rangeReadExecutor;
+    if (exec != null) {
+      // the first task is run on this thread
+      for (int i = 1; i < futures.size(); i++) {
+        try {
+          exec.execute(futures.get(i));
+        } catch (RejectedExecutionException e) {
+          break; // executor is saturated or shut down, the rest is run on this thread
+        }
+      }
+    }
+
+    List<T> results = new ArrayList<>(futures.size());
+    try {
+      for (FutureTask<T> future : futures) {
+        future.run(); // does nothing if already started
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while reading ranges");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw new IOException(cause);
+    } finally {
+      for (FutureTask<T> future : futures) {
+        future.cancel(false); // does nothing if done
+      }
+    }
+    return results;
+  }
+
+  //
+  // Read-ahead.
+  //
+
+  // default for new files, and the largest buffer that read-ahead grows to (1 MiB)
+  private static final boolean defaultReadAhead = Boolean.getBoolean("ucar.unidata.io.readAhead");
+  private static final int readAheadMaxBufferSize =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.readAheadMaxBufferSize", String.valueOf(1 << 20)));
+  // number of sequential refills before the next window is prefetched
+  private static final int readAheadThreshold = 2;
+
+  /**
+   * Turn adaptive read-ahead on or off for this file, for sequential scans such as indexing GRIB or BUFR files.
+   * When on, each buffer refill that continues forward from the current buffer doubles the buffer size, up to
+   * "ucar.unidata.io.readAheadMaxBufferSize" bytes (default 1 MiB), and once a scan is detected the window
+   * following the buffer is read on the range read Executor (see {@link #setRangeReadExecutor}) while the caller
+   * works on the current one. Any other seek drops back to the buffer size that was set for the file.
+   * Only applies to files opened read only. The default is set by the system property "ucar.unidata.io.readAhead"
+   * (default false).
+   *
+   * @param readAhead true to turn read-ahead on
+   */
+  public void setReadAhead(boolean readAhead) {
+    this.readAhead = readAhead;
+    if (!readAhead) {
+      cancelPrefetch();
+      sequentialReads = 0;
+    }
+  }
+
+  /** Whether adaptive read-ahead is on, see {@link #setReadAhead}. */
+  public boolean isReadAhead() {
+    return readAhead;
+  }
+
+  /**
+   * Whether {@link #readConcurrently} can be used.
+   *
+   * @return true for local files that are open
+   */
+  protected boolean canReadConcurrently() {
+    return file != null;
+  }
+
+  /**
+   * Read directly from the file like {@link #read_}, but safe to call from another thread while the owning thread
+   * keeps using this object. Used to read ahead. Subclasses that override read_ should override this method and
+   * {@link #canReadConcurrently} as well.
+   *
+   * @param pos start here in the file
+   * @param b put data into this buffer
+   * @param offset buffer offset
+   * @param len this number of bytes
+   * @return actual number of bytes read, -1 if at the end of the file or the file was closed
+   * @throws IOException on io error
+   */
+  protected int readConcurrently(long pos, byte[] b, int offset, int len) throws IOException {
+    java.io.RandomAccessFile f = file;
+    if (f == null) {
+      return -1;
+    }
+    // positional reads do not move the file pointer used by read_
+    FileChannel channel = f.getChannel();
+    ByteBuffer dest = ByteBuffer.wrap(b, offset, len);
+    int total = 0;
+    while (dest.hasRemaining()) {
+      int n = channel.read(dest, pos + total);
+      if (n < 0) {
+        break;
+      }
+      total += n;
+    }
+    if (debugAccess) {
+      debug_nseeks.incrementAndGet();
+      debug_nbytes.addAndGet(total);
+    }
+    return (total == 0 && len > 0) ? -1 : total;
+  }
+
+  // fill the buffer starting at pos, using and starting prefetches; return number of bytes read
+  private int readAhead(long pos) throws IOException {
+    // a refill that moves forward by less than a buffer length continues a sequential scan
+    boolean sequential = dataSize > 0 && pos >= bufferStart && pos < dataEnd + buffer.length;
+    sequentialReads = sequential ? sequentialReads + 1 : 0;
+
+    int n = -1;
+    if (prefetch != null) {
+      n = takePrefetch(pos, sequential);
+    }
+    if (n < 0) {
+      int window = sequential ? nextWindow() : baseBufferSize;
+      if (buffer.length != window) {
+        buffer = new byte[window];
+      }
+      n = read_(pos, buffer, 0, buffer.length);
+    }
+
+    if (sequentialReads >= readAheadThreshold && n > 0 && canReadConcurrently()) {
+      startPrefetch(pos + n, nextWindow());
+    }
+    return n;
+  }
+
+  private int nextWindow() {
+    return Math.max(baseBufferSize, (int) Math.min(2L * buffer.length, readAheadMaxBufferSize));
+  }
+
+  private void startPrefetch(long pos, int size) {
+    if (prefetchBuffer == null || prefetchBuffer.length != size) {
+      prefetchBuffer = new byte[size];
+    }
+    byte[] dest = prefetchBuffer;
+    prefetchStart = pos;
+    prefetch = new FutureTask<>(() -> readConcurrently(pos, dest, 0, dest.length));
+    Executor exec = rangeReadExecutor;
+    if (exec != null) {
+      try {
+        exec.execute(prefetch);
+      } catch (RejectedExecutionException e) {
+        // executor is saturated or shut down, takePrefetch() will run it
+      }
+    }
+  }
+
+  // Wait for the prefetch and move what it read into the buffer, so that the buffer starts at pos.
+  // Return the number of bytes now in the buffer, or -1 if the prefetch cannot be used.
+  private int takePrefetch(long pos, boolean sequential) throws IOException {
+    // the prefetch starts at the end of the buffer
+    FutureTask<Integer> task = prefetch;
+    long start = prefetchStart;
+    if (!sequential || pos >= start + prefetchBuffer.length) {
+      cancelPrefetch();
+      return -1;
+    }
+    prefetch = null;
+
+    int count;
+    try {
+      task.run(); // does nothing if already started
+      count = task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while reading ahead");
+    } catch (ExecutionException e) {
+      // read it again on this thread, which reports any error
+      return -1;
+    }
+    if (count <= 0 || pos >= start + count) {
+      return -1;
+    }
+
+    byte[] data = prefetchBuffer;
+    int n;
+    if (pos >= start) {
+      // skip the start of the prefetched window
+      int skip = (int) (pos - start);
+      n = count - skip;
+      System.arraycopy(data, skip, data, 0, n);
+    } else {
+      // keep the end of the current buffer, followed by as much of the prefetched window as fits
+      int keep = (int) (start - pos);
+      n = Math.min(data.length, keep + count);
+      System.arraycopy(data, 0, data, keep, n - keep);
+      System.arraycopy(buffer, (int) (pos - bufferStart), data, 0, keep);
+    }
+    prefetchBuffer = buffer; // reused by the next prefetch
+    buffer = data;
+    return n;
+  }
+
+  private void cancelPrefetch() {
+    if (prefetch != null) {
+      prefetch.cancel(false); // never interrupt, that would close the FileChannel
+      prefetch = null;
+      prefetchBuffer = null; // may still be written by the cancelled task
+    }
+  }
+
   //
   // Write primitives.
   //
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Formatter;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.nc2.util.DiskCache2;
+
+/**
+ * A process-wide cache of the blocks read by {@link RemoteRandomAccessFile}s, shared by all open remote files.
+ * Blocks are keyed by the remote location, the version of the remote object (its ETag if known, else its length
+ * and last modified date), the block size, and the block number, so a newly opened file can use the blocks read
+ * by earlier ones, and a changed object does not see its old blocks. Objects with neither an ETag nor a last modified
+ * date are not cached here, since a change that kept their length would go unnoticed.
+ * The memory tier is bounded by the total number of bytes held; eviction is least recently used.
+ * An optional second tier keeps blocks as files under the root directory of a {@link DiskCache2}, which deletes
+ * them by age when it scours.
+ * The cache is disabled by default, call {@link #enable(long)} to turn it on. Remote files opened while it is
+ * enabled use it instead of their own read cache.
+ */
+@ThreadSafe
+public class RemoteBlockCache {
+  private static final Logger logger = LoggerFactory.getLogger(RemoteBlockCache.class);
+  private static final String diskSubdirectory = "remoteBlocks";
+  private static RemoteBlockCache instance;
+
+  /**
+   * Enable the global remote block cache in memory only, replacing any existing one.
+   *
+   * @param maxBytes maximum number of bytes held in memory.
+   */
+  public static synchronized void enable(long maxBytes) {
+    enable(maxBytes, null);
+  }
+
+  /**
+   * Enable the global remote block cache, replacing any existing one.
+   *
+   * @param maxBytes maximum number of bytes held in memory.
+   * @param diskCache if not null, also keep blocks on disk under its root directory.
+   */
+  public static synchronized void enable(long maxBytes, @Nullable DiskCache2 diskCache) {
+    if (instance != null)
+      instance.invalidateAll();
+    instance = new RemoteBlockCache(maxBytes, diskCache);
+  }
+
+  /** Disable and clear the memory tier of the global remote block cache. Blocks on disk are left alone. */
+  public static synchronized void disable() {
+    if (instance != null)
+      instance.invalidateAll();
+    instance = null;
+  }
+
+  /** Get the global remote block cache, or null if not enabled. */
+  @Nullable
+  public static synchronized RemoteBlockCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Make the key for the blocks of one version of a remote object.
+   *
+   * @param location location of the remote object
+   * @param version identifies the version of the object, eg its ETag
+   * @param blockSize size of each block in bytes
+   * @return key for the object's blocks
+   */
+  public static String makeFileKey(String location, String version, int blockSize) {
+    return location + "#" + version + "#" + blockSize;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////////////
+  private final long maxBytes;
+  private final Cache<BlockKey, byte[]> cache;
+  @Nullable
+  private final File diskRoot;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong diskHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong bytesSaved = new AtomicLong();
+  private final AtomicLong bytesFetched = new AtomicLong();
+
+  private RemoteBlockCache(long maxBytes, @Nullable DiskCache2 diskCache) {
+    if (maxBytes <= 0)
+      throw new IllegalArgumentException("maxBytes must be > 0");
+    this.maxBytes = maxBytes;
+    this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes)
+        .weigher((BlockKey key, byte[] value) -> value.length + key.fileKey.length()).build();
+    this.diskRoot = (diskCache == null) ? null : new File(diskCache.getRootDirectory(), diskSubdirectory);
+  }
+
+  /**
+   * Get a block, from memory, from disk, or by calling the loader, in that order.
+   * Callers must not modify the returned array.
+   *
+   * @param fileKey identifies the remote object, from makeFileKey()
+   * @param blockNumber number of the block in the object
+   * @param loader reads the block from the remote object if needed
+   * @return the block
+   * @throws IOException if the loader fails
+   */
+  public byte[] get(String fileKey, long blockNumber, Callable<byte[]> loader) throws IOException {
+    BlockKey key = new BlockKey(fileKey, blockNumber);
+    byte[] data = cache.getIfPresent(key);
+    if (data != null) {
+      hits.incrementAndGet();
+      bytesSaved.addAndGet(data.length);
+      return data;
+    }
+    try {
+      return cache.get(key, () -> load(key, loader));
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      throw new IOException(cause);
+    } catch (UncheckedExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw e;
+    }
+  }
+
+  /** True if the block can be had without calling a loader, from memory or disk. */
+  public boolean contains(String fileKey, long blockNumber) {
+    BlockKey key = new BlockKey(fileKey, blockNumber);
+    return cache.getIfPresent(key) != null || (diskRoot != null && getDiskFile(key).exists());
+  }
+
+  private byte[] load(BlockKey key, Callable<byte[]> loader) throws Exception {
+    File file = (diskRoot == null) ? null : getDiskFile(key);
+    if (file != null) {
+      try {
+        byte[] data = Files.readAllBytes(file.toPath());
+        diskHits.incrementAndGet();
+        bytesSaved.addAndGet(data.length);
+        return data;
+      } catch (NoSuchFileException e) {
+        // not on disk, fall through to the loader
+      } catch (IOException e) {
+        logger.warn("Failed to read cached block {}", file, e);
+      }
+    }
+
+    byte[] data = loader.call();
+    misses.incrementAndGet();
+    bytesFetched.addAndGet(data.length);
+    if (file != null) {
+      writeDiskFile(file, data);
+    }
+    return data;
+  }
+
+  // write to a temporary file and rename it, so that readers never see a partial block
+  private void writeDiskFile(File file, byte[] data) {
+    File dir = file.getParentFile();
+    if (!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+      logger.warn("Failed to create remote block cache directory {}", dir);
+      return;
+    }
+    Path tmp = null;
+    try {
+      tmp = Files.createTempFile(dir.toPath(), file.getName(), ".tmp");
+      Files.write(tmp, data);
+      try {
+        Files.move(tmp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      logger.warn("Failed to write cached block {}", file, e);
+      if (tmp != null) {
+        try {
+          Files.deleteIfExists(tmp);
+        } catch (IOException ignore) {
+          // the DiskCache2 scour will get it
+        }
+      }
+    }
+  }
+
+  // one directory per object version, named by a hash of its key, with one file per block
+  private File getDiskFile(BlockKey key) {
+    String hash = Hashing.sha256().hashString(key.fileKey, StandardCharsets.UTF_8).toString();
+    return new File(diskRoot, hash.substring(0, 2) + "/" + hash + "/" + key.blockNumber);
+  }
+
+  /** Remove all blocks from memory, and reset the counters. Blocks on disk are left alone. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+    hits.set(0);
+    diskHits.set(0);
+    misses.set(0);
+    bytesSaved.set(0);
+    bytesFetched.set(0);
+  }
+
+  /** Maximum number of bytes held in memory. */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Number of blocks currently in memory. */
+  public long getNumberOfBlocks() {
+    return cache.size();
+  }
+
+  /** Number of blocks found in memory. */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /** Number of blocks found on disk. */
+  public long getDiskHitCount() {
+    return diskHits.get();
+  }
+
+  /** Number of blocks read from the remote objects. */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /** Fraction of blocks found in memory or on disk, or 1.0 if there were no requests. */
+  public double getHitRatio() {
+    long found = hits.get() + diskHits.get();
+    long total = found + misses.get();
+    return (total == 0) ? 1.0 : (double) found / total;
+  }
+
+  /** Number of bytes found in memory or on disk, that did not have to be read from the remote objects. */
+  public long getBytesSaved() {
+    return bytesSaved.get();
+  }
+
+  /** Number of bytes read from the remote objects. */
+  public long getBytesFetched() {
+    return bytesFetched.get();
+  }
+
+  public void showStats(Formatter f) {
+    f.format(
+        "RemoteBlockCache: maxBytes=%d nblocks=%d hits=%d diskHits=%d misses=%d hitRatio=%.3f bytesSaved=%d"
+            + " bytesFetched=%d disk=%s%n",
+        maxBytes, cache.size(), hits.get(), diskHits.get(), misses.get(), getHitRatio(), bytesSaved.get(),
+        bytesFetched.get(), diskRoot);
+  }
+
+  private static class BlockKey {
+    private final String fileKey;
+    private final long blockNumber;
+
+    private BlockKey(String fileKey, long blockNumber) {
+      this.fileKey = fileKey;
+      this.blockNumber = blockNumber;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (o == null || getClass() != o.getClass())
+        return false;
+      BlockKey that = (BlockKey) o;
+      return blockNumber == that.blockNumber && fileKey.equals(that.fileKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * fileKey.hashCode() + Long.hashCode(blockNumber);
+    }
+  }
+}
@@ -8,12 +8,19 @@ package ucar.unidata.io;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,11 +37,23 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
   protected static final int defaultRemoteFileTimeout = 10 * 1000;
   // default cache time to live in milliseconds
   private static final long defaultReadCacheTimeToLive = 30 * 1000;
+  // in readRanges, ranges separated by at most this many bytes are fetched with a single request (64 KiB)
+  private static final int rangeReadMaxGap =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.remote.rangeReadMaxGap", String.valueOf(65536)));
+  // in readRanges, ranges are not merged into a request larger than this (16 MiB)
+  private static final int rangeReadMaxSize =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.remote.rangeReadMaxSize", String.valueOf(16777216)));
 
   protected final String url;
   private final boolean readCacheEnabled;
   private final int readCacheBlockSize;
   private final LoadingCache<Long, byte[]> readCache;
+  // if not null, the process-wide block cache is used instead of readCache
+  private final RemoteBlockCache sharedCache;
+  // lazily computed, since subclass fields are not set in this constructor; NO_SHARED_CACHE_KEY if the object has no
+  // version, so its blocks must not be shared
+  private volatile String sharedCacheKey;
+  private static final String NO_SHARED_CACHE_KEY = "";
 
   protected RemoteRandomAccessFile(String url, int bufferSize, long maxRemoteCacheSize) {
     super(bufferSize);
@@ -46,7 +65,13 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
     // Only enable cache if its maximum size is at least 2x the buffer size, both of which are configurable
     // at runtime
     int minimumCacheActivationSize = 2 * bufferSize;
-    if (maxRemoteCacheSize >= minimumCacheActivationSize) {
+    this.sharedCache = RemoteBlockCache.getInstance();
+    if (sharedCache != null) {
+      // blocks are shared with other remote files, which may have been opened before this one
+      this.readCacheBlockSize = bufferSize;
+      this.readCache = null;
+      readCacheEnabled = true;
+    } else if (maxRemoteCacheSize >= minimumCacheActivationSize) {
       // have each cache block hold a 1 buffer sized chunk
       this.readCacheBlockSize = bufferSize;
       // user set max cache size in bytes
@@ -154,12 +179,7 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
     long cacheBlockNumber = pos / readCacheBlockSize;
 
     // read in the cache block
-    byte[] src;
-    try {
-      src = readCache.get(cacheBlockNumber);
-    } catch (ExecutionException ee) {
-      throw new IOException("Error obtaining data from the remote data read cache.", ee);
-    }
+    byte[] src = getCacheBlock(cacheBlockNumber);
 
     // Careful - we are doing a partial read from the cache block. The pos in the file is some offset into the cache
     // block, so let's start by calculating the pos of the first block
@@ -212,14 +232,52 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
   }
 
   private int readCacheBlockFull(long cacheBlockNumber, int positionInBuffer, byte[] buff) throws IOException {
-    byte[] src;
+    byte[] src = getCacheBlock(cacheBlockNumber);
+    System.arraycopy(src, 0, buff, positionInBuffer, readCacheBlockSize);
+    return readCacheBlockSize;
+  }
+
+  private byte[] getCacheBlock(long cacheBlockNumber) throws IOException {
+    if (sharedCache != null) {
+      String key = getSharedCacheKey();
+      if (key == null) {
+        return readRemoteCacheSizedChunk(cacheBlockNumber);
+      }
+      return sharedCache.get(key, cacheBlockNumber, () -> readRemoteCacheSizedChunk(cacheBlockNumber));
+    }
     try {
-      src = readCache.get(cacheBlockNumber);
+      return readCache.get(cacheBlockNumber);
     } catch (ExecutionException ee) {
       throw new IOException("Error obtaining data from the remote data read cache.", ee);
     }
-    System.arraycopy(src, 0, buff, positionInBuffer, readCacheBlockSize);
-    return readCacheBlockSize;
+  }
+
+  // the key of this object's blocks in the shared cache, or null if the object has neither an entity tag nor a last
+  // modified date, since then a changed object could not be told from the cached one
+  @Nullable
+  private String getSharedCacheKey() throws IOException {
+    String key = sharedCacheKey;
+    if (key == null) {
+      String version = getETag();
+      if (version == null && getLastModified() > 0) {
+        version = length() + ":" + getLastModified();
+      }
+      key = (version == null) ? NO_SHARED_CACHE_KEY
+          : RemoteBlockCache.makeFileKey(location, version, readCacheBlockSize);
+      sharedCacheKey = key;
+    }
+    return key.equals(NO_SHARED_CACHE_KEY) ? null : key;
+  }
+
+  /**
+   * The entity tag of the remote object, which changes whenever the object does.
+   * Used to identify the object's blocks in the {@link RemoteBlockCache}; if null, the length and last modified
+   * date are used instead, and if the last modified date is not known either, the shared cache is not used.
+   *
+   * @return the entity tag, or null if not known.
+   */
+  protected String getETag() {
+    return null;
   }
 
   /**
@@ -233,10 +291,156 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
     int bytes = Math.toIntExact(bytesToRead);
     byte[] buffer = new byte[bytes];
 
-    readRemote(position, buffer, 0, bytes);
+    // blocks may be shared with other files and kept on disk, so never keep a short read
+    int done = 0;
+    while (done < bytes) {
+      int count = readRemote(position + done, buffer, done, bytes - done);
+      if (count <= 0) {
+        throw new EOFException("Reading " + location + " block " + cacheBlockNumber + " got " + done + " bytes");
+      }
+      done += count;
+    }
     return buffer;
   }
 
+  /**
+   * Read several byte ranges with as few remote requests as possible.
+   * The ranges are sorted, ranges that are separated by at most "ucar.unidata.io.remote.rangeReadMaxGap" bytes
+   * are merged, up to a request size of "ucar.unidata.io.remote.rangeReadMaxSize" bytes, and the merged requests
+   * are issued concurrently (see {@link RandomAccessFile#setRangeReadExecutor}).
+   * Requests that are entirely held by the read cache are served from it.
+   */
+  @Override
+  public List<byte[]> readRanges(List<ByteRange> ranges) throws IOException {
+    long length = length();
+    for (ByteRange range : ranges) {
+      if (range.end() > length) {
+        throw new EOFException("Reading " + location + " range " + range + " file length = " + length);
+      }
+    }
+
+    List<ByteRange> requests = coalesce(ranges, rangeReadMaxGap, rangeReadMaxSize);
+    List<Callable<byte[]>> tasks = new ArrayList<>(requests.size());
+    for (ByteRange request : requests) {
+      tasks.add(() -> readRange(request));
+    }
+    List<byte[]> responses = invokeAll(tasks);
+    logger.debug("Read {} ranges of {} with {} requests", ranges.size(), location, requests.size());
+
+    // copy each range out of the request that holds it
+    long[] requestStarts = new long[requests.size()];
+    for (int i = 0; i < requests.size(); i++) {
+      requestStarts[i] = requests.get(i).offset();
+    }
+    List<byte[]> result = new ArrayList<>(ranges.size());
+    for (ByteRange range : ranges) {
+      if (range.length() == 0) {
+        result.add(new byte[0]);
+        continue;
+      }
+      int i = Arrays.binarySearch(requestStarts, range.offset());
+      if (i < 0) {
+        i = -i - 2; // the last request that starts before the range
+      }
+      ByteRange request = requests.get(i);
+      byte[] response = responses.get(i);
+      if (request.equals(range)) {
+        result.add(response);
+      } else {
+        int start = Math.toIntExact(range.offset() - request.offset());
+        result.add(Arrays.copyOfRange(response, start, start + range.length()));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public boolean prefersRangeReads() {
+    return true;
+  }
+
+  /**
+   * Sort the ranges and merge the ones that are at most maxGap bytes apart, as long as the merged range is not
+   * larger than maxSize. Empty ranges are dropped.
+   *
+   * @param ranges ranges to merge, in any order, may overlap
+   * @param maxGap largest gap between two ranges that are merged
+   * @param maxSize largest merged range, unless a single range is larger
+   * @return non-overlapping ranges sorted by offset, covering all ranges
+   */
+  static List<ByteRange> coalesce(List<ByteRange> ranges, int maxGap, int maxSize) {
+    List<ByteRange> sorted = new ArrayList<>(ranges);
+    sorted.sort(Comparator.comparingLong(ByteRange::offset));
+
+    List<ByteRange> result = new ArrayList<>();
+    long start = -1;
+    long end = -1;
+    for (ByteRange range : sorted) {
+      if (range.length() == 0) {
+        continue;
+      }
+      long mergedEnd = Math.max(end, range.end());
+      if (start >= 0 && range.offset() <= end + maxGap && mergedEnd - start <= maxSize) {
+        end = mergedEnd;
+      } else {
+        if (start >= 0) {
+          result.add(new ByteRange(start, Math.toIntExact(end - start)));
+        }
+        start = range.offset();
+        end = range.end();
+      }
+    }
+    if (start >= 0) {
+      result.add(new ByteRange(start, Math.toIntExact(end - start)));
+    }
+    return result;
+  }
+
+  // read one range, from the cache if it holds all of it, else with one remote request. may be called concurrently.
+  private byte[] readRange(ByteRange range) throws IOException {
+    byte[] data = new byte[range.length()];
+    boolean fromCache = readCacheEnabled && isCached(range);
+    int done = 0;
+    while (done < data.length) {
+      long pos = range.offset() + done;
+      int count = fromCache ? readFromCache(pos, data, done, data.length - done)
+          : readRemote(pos, data, done, data.length - done);
+      if (count <= 0) {
+        throw new EOFException("Reading " + location + " range " + range + " got " + done + " bytes");
+      }
+      done += count;
+    }
+    return data;
+  }
+
+  private boolean isCached(ByteRange range) throws IOException {
+    long lastCacheBlockNumber = (range.end() - 1) / readCacheBlockSize;
+    for (long block = range.offset() / readCacheBlockSize; block <= lastCacheBlockNumber; block++) {
+      boolean cached;
+      if (sharedCache != null) {
+        String key = getSharedCacheKey();
+        cached = key != null && sharedCache.contains(key, block);
+      } else {
+        cached = readCache.getIfPresent(block) != null;
+      }
+      if (!cached) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  protected boolean canReadConcurrently() {
+    return true;
+  }
+
+  /** Same as read_, since reads from the remote service and the read caches are thread safe. */
+  @Override
+  protected int readConcurrently(long pos, byte[] buff, int offset, int len) throws IOException {
+    return read_(pos, buff, offset, len);
+  }
+
   @Override
   public long readToByteChannel(WritableByteChannel dest, long offset, long nbytes) throws IOException {
     int n = (int) nbytes;
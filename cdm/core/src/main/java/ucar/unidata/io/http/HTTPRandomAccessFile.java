@@ -7,6 +7,9 @@ package ucar.unidata.io.http;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -46,6 +49,8 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
 
   private HTTPSession session;
   private long total_length;
+  private String etag;
+  private long lastModified;
 
   public HTTPRandomAccessFile(String url) throws IOException {
     this(url, httpBufferSize, httpMaxCacheSize);
@@ -78,6 +83,10 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
         }
       }
 
+      this.etag = method.getResponseHeaderValue("ETag").orElse(null);
+      this.lastModified = method.getResponseHeaderValue("Last-Modified").map(HTTPRandomAccessFile::parseHttpDate)
+          .orElse(0L);
+
       try {
         this.total_length = method.getResponseHeaderValue("Content-Length").map(Long::parseLong)
             .orElseThrow(() -> new IOException("Server does not support Content-Length"));
@@ -218,15 +227,28 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
       return fileLength;
   }
 
+  @Override
+  protected String getETag() {
+    return etag;
+  }
+
   /**
-   * Always returns {@code 0L}, as we cannot easily determine the last time that a remote file was modified.
+   * The last time that the remote file was modified, from the Last-Modified header of the HEAD response.
    *
-   * @return {@code 0L}, always.
+   * @return time in msecs since the epoch, or {@code 0L} if the server did not send a valid Last-Modified header.
    */
-  // LOOK: An idea of how we might implement this: https://github.com/Unidata/thredds/pull/479#issuecomment-194562614
   @Override
   public long getLastModified() {
-    return 0;
+    return lastModified;
+  }
+
+  // an HTTP-date, eg "Tue, 15 Nov 1994 08:12:31 GMT", in msecs since the epoch, or 0 if it can't be parsed
+  private static long parseHttpDate(String value) {
+    try {
+      return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+    } catch (DateTimeParseException e) {
+      return 0;
+    }
   }
 
   /**
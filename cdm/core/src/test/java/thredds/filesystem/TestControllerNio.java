@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package thredds.filesystem;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import thredds.inventory.CollectionConfig;
+import thredds.inventory.MController;
+import thredds.inventory.MFile;
+import thredds.inventory.filter.WildcardMatchOnName;
+import ucar.nc2.util.CloseableIterator;
+
+/** ControllerNio must find the same files as ControllerOS. */
+public class TestControllerNio {
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private ThreadPoolExecutor executor;
+  private File top;
+
+  @Before
+  public void makeTree() throws IOException {
+    executor = new ThreadPoolExecutor(4, 4, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    top = tempFolder.newFolder("top");
+    for (int i = 0; i < 5; i++) {
+      File dir = new File(top, "dir" + i);
+      for (int j = 0; j < 4; j++) {
+        File subdir = new File(dir, "sub" + j);
+        assertThat(subdir.mkdirs()).isTrue();
+        for (int k = 0; k < 3; k++) {
+          assertThat(new File(subdir, "file" + k + ".nc").createNewFile()).isTrue();
+          assertThat(new File(subdir, "file" + k + ".txt").createNewFile()).isTrue();
+        }
+      }
+      assertThat(new File(dir, "file.nc").createNewFile()).isTrue();
+    }
+    assertThat(new File(top, "top.nc").createNewFile()).isTrue();
+  }
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldFindSameFilesAsControllerOS() throws IOException {
+    CollectionConfig all = new CollectionConfig("test", top.getPath(), true, new WildcardMatchOnName("*.nc"), null);
+    Set<String> expected = scan(new ControllerOS(), all, true);
+    assertThat(expected).hasSize(5 * 4 * 3 + 5 + 1);
+
+    assertThat(scan(new ControllerNio(), all, true)).isEqualTo(expected);
+    assertThat(scan(new ControllerNio(executor, false), all, true)).isEqualTo(expected);
+    assertThat(scan(new ControllerNio(executor, true), all, true)).isEqualTo(expected);
+
+    CollectionConfig one = new CollectionConfig("test", top.getPath(), false, null, null);
+    assertThat(scan(new ControllerNio(executor, false), one, false)).isEqualTo(scan(new ControllerOS(), one, false));
+  }
+
+  @Test
+  public void shouldOnlyRelistModifiedDirectories() throws IOException {
+    CollectionConfig all = new CollectionConfig("test", top.getPath(), true, null, null);
+    Path dir = top.toPath().resolve("dir2").resolve("sub1");
+    // long enough ago that a listing can be trusted
+    FileTime longAgo = FileTime.fromMillis(System.currentTimeMillis() - 3600 * 1000);
+    Files.setLastModifiedTime(dir, longAgo);
+
+    MController incremental = new ControllerNio(executor, true);
+    MController always = new ControllerNio(executor, false);
+    Set<String> before = scan(incremental, all, true);
+    assertThat(scan(always, all, true)).isEqualTo(before);
+
+    // remove a file without changing the time of its directory: only seen if the directory is listed again
+    Path removed = dir.resolve("file0.nc");
+    Files.delete(removed);
+    Files.setLastModifiedTime(dir, longAgo);
+    assertThat(scan(incremental, all, true)).contains(toPath(removed));
+    assertThat(scan(always, all, true)).doesNotContain(toPath(removed));
+
+    // a new file changes the time of its directory
+    Path added = dir.resolve("added.nc");
+    Files.createFile(added);
+    Files.setLastModifiedTime(dir, FileTime.fromMillis(longAgo.toMillis() + 1000));
+    Set<String> after = scan(incremental, all, true);
+    assertThat(after).contains(toPath(added));
+    assertThat(after).doesNotContain(toPath(removed));
+    assertThat(after).isEqualTo(scan(always, all, true));
+  }
+
+  @Test
+  public void shouldKeepListingsOfOtherCollections() throws IOException {
+    CollectionConfig one = new CollectionConfig("one", new File(top, "dir1").getPath(), true, null, null);
+    CollectionConfig two = new CollectionConfig("two", new File(top, "dir2").getPath(), true, null, null);
+    Path dir = top.toPath().resolve("dir1").resolve("sub1");
+    FileTime longAgo = FileTime.fromMillis(System.currentTimeMillis() - 3600 * 1000);
+    Files.setLastModifiedTime(dir, longAgo);
+
+    MController incremental = new ControllerNio(executor, true);
+    Set<String> before = scan(incremental, one, true);
+    scan(incremental, two, true);
+
+    // still uses the listing of dir1/sub1, so does not see the file is gone
+    Path removed = dir.resolve("file0.nc");
+    Files.delete(removed);
+    Files.setLastModifiedTime(dir, longAgo);
+    assertThat(scan(incremental, one, true)).isEqualTo(before);
+  }
+
+  @Test
+  public void shouldWaitForIteratorWhenQueueIsFull() throws Exception {
+    CollectionConfig all = new CollectionConfig("test", top.getPath(), true, null, null);
+    MController controller = new ControllerNio(executor, false, 5);
+    CloseableIterator<MFile> iter = (CloseableIterator<MFile>) controller.getInventoryAll(all, true);
+    assertThat(iter.hasNext()).isTrue();
+
+    // the listing waits until the iterator is closed
+    Thread.sleep(500);
+    assertThat(isIdle()).isFalse();
+    iter.close();
+    assertThat(iter.hasNext()).isFalse();
+    for (int i = 0; i < 100 && !isIdle(); i++) {
+      Thread.sleep(100);
+    }
+    assertThat(isIdle()).isTrue();
+  }
+
+  @Test
+  public void shouldStopWhenIteratorIsDropped() throws Exception {
+    CollectionConfig all = new CollectionConfig("test", top.getPath(), true, null, null);
+    assertThat(new ControllerNio(executor, false, 5).getInventoryAll(all, true).hasNext()).isTrue();
+
+    Thread.sleep(500);
+    assertThat(isIdle()).isFalse();
+    for (int i = 0; i < 100 && !isIdle(); i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    assertThat(isIdle()).isTrue();
+  }
+
+  private boolean isIdle() {
+    return executor.getActiveCount() == 0 && executor.getQueue().isEmpty();
+  }
+
+  @Test
+  public void shouldReturnNullForMissingDirectory() throws IOException {
+    CollectionConfig missing =
+        new CollectionConfig("test", new File(top, "missing").getPath(), true, null, null);
+    assertThat(new ControllerNio().getInventoryAll(missing, true)).isNull();
+    assertThat(new ControllerNio().getInventoryTop(missing, true)).isNull();
+  }
+
+  private static String toPath(Path path) {
+    return path.toString().replace('\\', '/');
+  }
+
+  private static Set<String> scan(MController controller, CollectionConfig mc, boolean all) throws IOException {
+    Iterator<MFile> iter = all ? controller.getInventoryAll(mc, true) : controller.getInventoryTop(mc, true);
+    Set<String> result = new HashSet<>();
+    while (iter.hasNext()) {
+      assertThat(result.add(iter.next().getPath())).isTrue();
+    }
+    return result;
+  }
+}
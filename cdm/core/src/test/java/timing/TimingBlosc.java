@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package timing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import ucar.nc2.filter.Blosc;
+import ucar.nc2.filter.Deflate;
+import ucar.nc2.filter.Filter;
+
+/** Decode throughput of the Blosc filter compared to the Deflate filter, on a smooth float field. */
+public class TimingBlosc {
+  private static final int CHUNK_BYTES = 4 * 1024 * 1024;
+  private static final int NCHUNKS = 16;
+
+  public static void main(String[] args) throws IOException {
+    byte[] chunk = makeField();
+
+    Map<String, Object> props = new HashMap<>();
+    props.put("cname", "lz4");
+    props.put("shuffle", 1);
+    props.put("typesize", 4);
+    time("blosc lz4 shuffle", new Blosc(props), chunk);
+    props.put("shuffle", 2);
+    time("blosc lz4 bitshuffle", new Blosc(props), chunk);
+    props.put("cname", "zlib");
+    props.put("clevel", 1);
+    props.put("shuffle", 1);
+    time("blosc zlib shuffle", new Blosc(props), chunk);
+
+    ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    Blosc.setExecutor(executor);
+    props.put("cname", "lz4");
+    time("blosc lz4 shuffle, executor", new Blosc(props), chunk);
+    Blosc.setExecutor(null);
+    executor.shutdown();
+
+    Map<String, Object> deflateProps = new HashMap<>();
+    deflateProps.put("level", 1);
+    time("deflate level 1", new Deflate(deflateProps), chunk);
+  }
+
+  // temperature like values, with a little noise
+  static byte[] makeField() {
+    ByteBuffer bb = ByteBuffer.allocate(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    Random random = new Random(42);
+    int nx = 1024;
+    for (int i = 0; i < CHUNK_BYTES / 4; i++) {
+      int x = i % nx;
+      int y = i / nx;
+      bb.putFloat((float) (280 + 10 * Math.sin(x / 50.0) * Math.cos(y / 80.0) + 0.01 * random.nextGaussian()));
+    }
+    return bb.array();
+  }
+
+  static void time(String name, Filter filter, byte[] chunk) throws IOException {
+    byte[] encoded = filter.encode(chunk);
+    for (int i = 0; i < 3; i++) { // warm up
+      filter.decode(encoded);
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < NCHUNKS; i++) {
+      filter.decode(encoded);
+    }
+    double secs = (System.nanoTime() - start) * 1.0e-9;
+    double mbytes = (double) NCHUNKS * chunk.length / (1024 * 1024);
+    System.out.printf("%-30s ratio %5.2f decode %8.1f MB/s%n", name, (double) chunk.length / encoded.length,
+        mbytes / secs);
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package timing;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import ucar.nc2.filter.Bitshuffle;
+import ucar.nc2.filter.Deflate;
+import ucar.nc2.filter.Lz4;
+import ucar.nc2.filter.Shuffle;
+import ucar.nc2.filter.Zstd;
+
+/** Decode throughput of the Zstandard, LZ4 and bitshuffle filters compared to the Deflate filter. */
+public class TimingCompressors {
+
+  public static void main(String[] args) throws IOException {
+    byte[] chunk = TimingBlosc.makeField();
+
+    Map<String, Object> props = new HashMap<>();
+    TimingBlosc.time("zstd", new Zstd(props), chunk);
+    TimingBlosc.time("lz4", new Lz4(props), chunk);
+
+    props.put("elementsize", 4);
+    props.put("cname", "lz4");
+    TimingBlosc.time("bitshuffle lz4", new Bitshuffle(props), chunk);
+    props.put("cname", "zstd");
+    TimingBlosc.time("bitshuffle zstd", new Bitshuffle(props), chunk);
+    props.remove("cname");
+    TimingBlosc.time("bitshuffle", new Bitshuffle(props), chunk);
+    TimingBlosc.time("shuffle", new Shuffle(props), chunk);
+
+    Map<String, Object> deflateProps = new HashMap<>();
+    deflateProps.put("level", 1);
+    TimingBlosc.time("deflate level 1", new Deflate(deflateProps), chunk);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package timing;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import ucar.nc2.filter.Checksum32;
+import ucar.nc2.filter.Deflate;
+import ucar.nc2.filter.Filter;
+import ucar.nc2.filter.FilterPipeline;
+import ucar.nc2.filter.Filters;
+import ucar.nc2.filter.Shuffle;
+
+/**
+ * Decode throughput and bytes allocated per chunk of shuffle + deflate + fletcher32, as in HDF5 files,
+ * applying Filter.decode(byte[]) one filter after the other compared to a FilterPipeline.
+ */
+public class TimingFilterPipeline {
+  private static final int NCHUNKS = 16;
+
+  public static void main(String[] args) throws IOException {
+    byte[] chunk = TimingBlosc.makeField();
+
+    Map<String, Object> props = new HashMap<>();
+    props.put(Filters.Keys.ELEM_SIZE, 4);
+    props.put("level", 1);
+    Filter[] filters = {new Shuffle(props), new Deflate(props), new Checksum32(Checksum32.CType.FLETCHER)};
+    byte[] encoded = chunk;
+    for (Filter filter : filters) {
+      encoded = filter.encode(encoded);
+    }
+    FilterPipeline pipeline = new FilterPipeline(filters);
+
+    for (int round = 0; round < 2; round++) { // the first round warms up
+      long[] before = measure();
+      for (int i = 0; i < NCHUNKS; i++) {
+        byte[] data = encoded;
+        for (int j = filters.length - 1; j >= 0; j--) {
+          data = filters[j].decode(data);
+        }
+      }
+      report("byte[] filters", before, chunk.length);
+
+      before = measure();
+      for (int i = 0; i < NCHUNKS; i++) {
+        pipeline.decode(encoded, chunk.length);
+      }
+      report("filter pipeline", before, chunk.length);
+    }
+  }
+
+  private static long[] measure() {
+    return new long[] {System.nanoTime(), allocatedBytes()};
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static void report(String name, long[] before, int chunkBytes) {
+    double secs = (System.nanoTime() - before[0]) * 1.0e-9;
+    double allocated = (double) (allocatedBytes() - before[1]) / NCHUNKS / chunkBytes;
+    double mbytes = (double) NCHUNKS * chunkBytes / (1024 * 1024);
+    System.out.printf("%-20s decode %8.1f MB/s, allocated %5.2f x chunk size per chunk%n", name, mbytes / secs,
+        allocated);
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ucar.nc2.internal.iosp.hdf5.H5iospNew;
+import ucar.nc2.internal.iosp.netcdf3.N3iospNew;
+import ucar.nc2.iosp.FileSignature;
+import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.util.test.TestDir;
+
+/** NetcdfFiles.open() asks the IOSPs whose signature matches the file first. */
+public class TestOpenDispatch {
+
+  /** Never opens a file, counts how often it is asked. */
+  public static class SignedIosp extends N3iospNew {
+    static final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public boolean isValidFile(RandomAccessFile raf) {
+      calls.incrementAndGet();
+      return false;
+    }
+
+    @Override
+    public List<FileSignature> getFileSignatures() {
+      return ImmutableList.of(FileSignature.ofMagic("NOPE".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Override
+    public boolean requiresFileSignature() {
+      return false; // the signature is only a hint
+    }
+  }
+
+  /** Never opens a file, and has no signature. */
+  public static class UnsignedIosp extends SignedIosp {
+    static final AtomicInteger calls = new AtomicInteger();
+    static final Set<UnsignedIosp> asked =
+        Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    @Override
+    public boolean isValidFile(RandomAccessFile raf) {
+      calls.incrementAndGet();
+      asked.add(this);
+      return false;
+    }
+
+    @Override
+    public List<FileSignature> getFileSignatures() {
+      return ImmutableList.of();
+    }
+  }
+
+  /** Can only open files with its signature, counts how often it is created. */
+  public static class RequiredSignatureIosp extends SignedIosp {
+    static final AtomicInteger created = new AtomicInteger();
+
+    public RequiredSignatureIosp() {
+      created.incrementAndGet();
+    }
+
+    @Override
+    public boolean requiresFileSignature() {
+      return true;
+    }
+  }
+
+  @BeforeClass
+  public static void register() throws Exception {
+    NetcdfFiles.registerIOProvider(SignedIosp.class);
+    NetcdfFiles.registerIOProvider(UnsignedIosp.class);
+    NetcdfFiles.registerIOProvider(RequiredSignatureIosp.class);
+  }
+
+  @Test
+  public void shouldMatchSignature() {
+    byte[] header = {0, 0, 'C', 'D', 'F', 1};
+    assertThat(FileSignature.ofMagic(new byte[] {'C', 'D', 'F'}, 0, 2).matches(header, header.length, null)).isTrue();
+    assertThat(FileSignature.ofMagic(new byte[] {'C', 'D', 'F'}).matches(header, header.length, null)).isFalse();
+    assertThat(FileSignature.ofMagic(new byte[] {'C', 'D', 'F', 1}, 2).matches(header, 5, null)).isFalse();
+    assertThat(FileSignature.ofMagic(new byte[] {'C', 'D', 'F', 1}, 2).getHeaderSize()).isEqualTo(6);
+    assertThat(FileSignature.ofSuffix(".h5").matches(header, 0, "dir/File.H5")).isTrue();
+    assertThat(FileSignature.ofSuffix(".h5").matches(header, 0, "dir/file.nc")).isFalse();
+    assertThat(FileSignature.ofSuffix(".h5").getHeaderSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldOpenWithMatchingIosp() throws IOException {
+    SignedIosp.calls.set(0);
+    UnsignedIosp.calls.set(0);
+    UnsignedIosp.asked.clear();
+    try (NetcdfFile ncfile = NetcdfFiles.open(TestDir.cdmLocalTestDataDir + "example1.nc")) {
+      assertThat(ncfile.getIosp()).isInstanceOf(N3iospNew.class);
+    }
+    try (NetcdfFile ncfile = NetcdfFiles.open(TestDir.cdmLocalTestDataDir + "chunked.h5")) {
+      assertThat(ncfile.getIosp()).isInstanceOf(H5iospNew.class);
+    }
+    assertThat(SignedIosp.calls.get()).isEqualTo(0);
+    // registered without a signature, so still asked first
+    assertThat(UnsignedIosp.calls.get()).isEqualTo(2);
+    // by a new instance each time, since isValidFile() may keep state
+    assertThat(UnsignedIosp.asked).hasSize(2);
+  }
+
+  @Test
+  public void shouldAskAllWhenNoSignatureMatches() throws IOException {
+    SignedIosp.calls.set(0);
+    assertThat(NetcdfFiles.canOpen(TestDir.cdmLocalTestDataDir + "testNested.ncml")).isFalse();
+    assertThat(SignedIosp.calls.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotCreateIospWhoseSignatureIsRequired() throws IOException {
+    NetcdfFiles.canOpen(TestDir.cdmLocalTestDataDir + "example1.nc"); // build the dispatch table first
+    RequiredSignatureIosp.created.set(0);
+    assertThat(NetcdfFiles.canOpen(TestDir.cdmLocalTestDataDir + "testNested.ncml")).isFalse();
+    assertThat(RequiredSignatureIosp.created.get()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dataset;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.nc2.filter.ConvertMissing;
+import ucar.nc2.filter.Enhancement;
+import ucar.nc2.filter.FilterHelpers;
+import ucar.nc2.filter.ScaleOffset;
+import ucar.nc2.filter.UnsignedConversion;
+
+public class TestEnhancementChain {
+  private static final DataType[] NUMERIC_TYPES = {DataType.BYTE, DataType.UBYTE, DataType.SHORT, DataType.USHORT,
+      DataType.INT, DataType.UINT, DataType.LONG, DataType.ULONG, DataType.FLOAT, DataType.DOUBLE};
+
+  // the values the boxed, element by element conversion gives
+  private static Array expected(Array data, List<Enhancement> enhancements, DataType outType) {
+    double[] values = (double[]) data.get1DJavaArray(DataType.DOUBLE);
+    Array out = Array.factory(outType, data.getShape());
+    IndexIterator iterOut = out.getIndexIterator();
+    for (double value : values) {
+      for (Enhancement e : enhancements) {
+        value = e.convert(value);
+      }
+      iterOut.setObjectNext(value);
+    }
+    return out;
+  }
+
+  private static Array randomArray(DataType type, int[] shape, Random random) {
+    Array data = Array.factory(type, shape);
+    IndexIterator ii = data.getIndexIterator();
+    while (ii.hasNext()) {
+      switch (type.getPrimitiveClassType().getSimpleName()) {
+        case "float":
+          ii.setFloatNext(random.nextInt(10) == 0 ? Float.NaN : (float) random.nextGaussian() * 1000);
+          break;
+        case "double":
+          ii.setDoubleNext(random.nextInt(10) == 0 ? Double.NaN : random.nextGaussian() * 1.0e6);
+          break;
+        default:
+          ii.setLongNext(random.nextLong());
+      }
+    }
+    return data;
+  }
+
+  private static void assertSameValues(Array actual, Array expected) {
+    assertThat(actual.getDataType()).isEqualTo(expected.getDataType());
+    assertThat(actual.getShape()).isEqualTo(expected.getShape());
+    Object a = actual.get1DJavaArray(actual.getDataType());
+    Object e = expected.get1DJavaArray(expected.getDataType());
+    if (a instanceof double[]) {
+      assertThat(Arrays.equals((double[]) a, (double[]) e)).isTrue();
+    } else if (a instanceof float[]) {
+      assertThat(Arrays.equals((float[]) a, (float[]) e)).isTrue();
+    } else {
+      assertThat(Array.factory(actual.getDataType(), actual.getShape(), a).toString())
+          .isEqualTo(Array.factory(expected.getDataType(), expected.getShape(), e).toString());
+    }
+  }
+
+  private static ScaleOffset scaleOffset(DataType dtype, DataType astype) {
+    Map<String, Object> props = new HashMap<>();
+    props.put(ScaleOffset.Keys.OFFSET_KEY, 12.5);
+    props.put(ScaleOffset.Keys.SCALE_KEY, 1 / 0.01);
+    props.put(ScaleOffset.Keys.DTYPE_KEY, dtype);
+    props.put(ScaleOffset.Keys.ASTYPE_KEY, astype);
+    return new ScaleOffset(props);
+  }
+
+  @Test
+  public void shouldMatchBoxedConversion() {
+    Random random = new Random(5);
+    // small arrays are converted on this thread, large ones in parallel
+    int[][] shapes = {{}, {7}, {3, 1000}, {20, 5000}};
+    for (int[] shape : shapes) {
+      for (DataType type : NUMERIC_TYPES) {
+        Array data = randomArray(type, shape, random);
+        DataType unsignedType = type.isIntegral()
+            ? FilterHelpers.nextLarger(type.withSignedness(DataType.Signedness.UNSIGNED))
+                .withSignedness(DataType.Signedness.UNSIGNED)
+            : type;
+        UnsignedConversion unsigned = new UnsignedConversion(unsignedType, DataType.Signedness.UNSIGNED);
+        for (DataType outType : NUMERIC_TYPES) {
+          List<Enhancement> chain = Arrays.asList(unsigned, scaleOffset(outType, type));
+          assertSameValues(new EnhancementChain(chain, outType).convert(data), expected(data, chain, outType));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void shouldConvertMissingAndCustomEnhancements() {
+    Random random = new Random(6);
+    ConvertMissing missing =
+        new ConvertMissing(true, true, true, true, true, -1000, 1000, true, 0.5, new double[] {-999.0});
+    Enhancement custom = value -> Math.floor(value / 7);
+    for (DataType type : new DataType[] {DataType.FLOAT, DataType.DOUBLE}) {
+      Array data = randomArray(type, new int[] {300, 300}, random);
+      List<Enhancement> chain = Arrays.asList(missing, custom);
+      assertSameValues(new EnhancementChain(chain, type).convert(data), expected(data, chain, type));
+    }
+  }
+
+  @Test
+  public void shouldConvertViews() {
+    Random random = new Random(7);
+    for (DataType type : NUMERIC_TYPES) {
+      Array data = randomArray(type, new int[] {30, 40}, random);
+      List<Enhancement> chain = Arrays.asList(scaleOffset(DataType.DOUBLE, type));
+      for (Array view : new Array[] {data.transpose(0, 1), data.slice(1, 3), data.flip(0)}) {
+        assertSameValues(new EnhancementChain(chain, DataType.DOUBLE).convert(view),
+            expected(view, chain, DataType.DOUBLE));
+      }
+    }
+  }
+
+  @Test
+  public void shouldConvertUnsignedWithoutBoxing() {
+    // the values that DataType.widenNumberIfNegative() gives after narrowing to the unsigned type
+    double[] values = {-1.0e12, -129.5, -128, -1, -0.5, 0, 0.5, 127, 128, 255, 256, 32768, 65535, 65536, 2147483648.0,
+        4294967296.0, 1.0e12, Double.NaN, Double.POSITIVE_INFINITY};
+    Object[][] cases = {{DataType.USHORT, 0xffL}, {DataType.UINT, 0xffffL}, {DataType.ULONG, 0xffffffffL}};
+    for (Object[] c : cases) {
+      UnsignedConversion unsigned = new UnsignedConversion((DataType) c[0], DataType.Signedness.UNSIGNED);
+      double[] bulk = values.clone();
+      unsigned.convert(bulk, 0, bulk.length);
+      for (int i = 0; i < values.length; i++) {
+        double want = (long) (int) values[i] & (Long) c[1];
+        assertThat(unsigned.convert(values[i])).isEqualTo(want);
+        assertThat(bulk[i]).isEqualTo(want);
+      }
+    }
+    UnsignedConversion signed = new UnsignedConversion(DataType.INT, DataType.Signedness.SIGNED);
+    assertThat(signed.convert(-1.5)).isEqualTo(-1.5);
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.filter;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestBlosc {
+
+  private static final String DATA_DIR = "src/test/data/filter";
+
+  private static byte[] decoded_data;
+
+  @BeforeClass
+  public static void setUp() throws IOException {
+    decoded_data = readAsByteArray("raw_data");
+  }
+
+  private static byte[] readAsByteArray(String filename) throws IOException {
+    return Files.readAllBytes(Paths.get(DATA_DIR, filename));
+  }
+
+  // raw_data in the Blosc 1 chunk format (blocksize 32768, typesize 4), the lz4 and zlib chunks have split blocks
+  @Test
+  public void shouldDecodeReferenceChunks() throws IOException {
+    Filter filter = new Blosc(new HashMap<>());
+    for (String filename : new String[] {"blosc_lz4_shuffle", "blosc_zstd_bitshuffle", "blosc_zlib_noshuffle"}) {
+      assertThat(filter.decode(readAsByteArray(filename))).isEqualTo(decoded_data);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      Blosc.setExecutor(executor);
+      for (String filename : new String[] {"blosc_lz4_shuffle", "blosc_zstd_bitshuffle", "blosc_zlib_noshuffle"}) {
+        assertThat(filter.decode(readAsByteArray(filename))).isEqualTo(decoded_data);
+      }
+    } finally {
+      Blosc.setExecutor(null);
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldRoundTrip() throws IOException, UnknownFilterException {
+    byte[] random = new byte[100_003];
+    new Random(17).nextBytes(random);
+
+    Map<String, Object> zarr2 = new HashMap<>();
+    zarr2.put(Filters.Keys.NAME, "blosc");
+    zarr2.put("cname", "lz4");
+    zarr2.put("clevel", 5);
+    zarr2.put("shuffle", 1);
+    zarr2.put("blocksize", 0);
+    zarr2.put(Filters.Keys.ELEM_SIZE, 4);
+    checkRoundTrip(zarr2, random);
+
+    Map<String, Object> zarr3 = new HashMap<>();
+    zarr3.put(Filters.Keys.NAME, "blosc");
+    zarr3.put("cname", "zstd");
+    zarr3.put("clevel", 3);
+    zarr3.put("shuffle", "bitshuffle");
+    zarr3.put("typesize", 4);
+    zarr3.put("blocksize", 10_000);
+    checkRoundTrip(zarr3, random);
+
+    Map<String, Object> zlib = new HashMap<>();
+    zlib.put(Filters.Keys.NAME, "blosc");
+    zlib.put("cname", "zlib");
+    zlib.put("shuffle", 2);
+    zlib.put("typesize", 8);
+    zlib.put("blocksize", 4096);
+    checkRoundTrip(zlib, random);
+
+    Map<String, Object> autoshuffle = new HashMap<>();
+    autoshuffle.put(Filters.Keys.NAME, "blosc");
+    autoshuffle.put("shuffle", -1);
+    checkRoundTrip(autoshuffle, random);
+
+    Map<String, Object> hdf5 = new HashMap<>();
+    hdf5.put(Filters.Keys.ID, (short) 32001);
+    hdf5.put(Filters.Keys.DATA, new int[] {2, 2, 4, decoded_data.length, 5, 1, 4}); // zlib, shuffle
+    checkRoundTrip(hdf5, random);
+  }
+
+  private void checkRoundTrip(Map<String, Object> props, byte[] random) throws IOException, UnknownFilterException {
+    Filter filter = Filters.getFilter(props);
+    assertThat(filter).isInstanceOf(Blosc.class);
+
+    byte[] encoded = filter.encode(decoded_data);
+    assertThat(encoded.length).isLessThan(decoded_data.length / 10);
+    assertThat(filter.decode(encoded)).isEqualTo(decoded_data);
+
+    // incompressible, so stored as is
+    encoded = filter.encode(random);
+    assertThat(encoded.length).isAtMost(random.length + 16);
+    assertThat(filter.decode(encoded)).isEqualTo(random);
+
+    byte[] empty = filter.encode(new byte[0]);
+    assertThat(filter.decode(empty)).isEmpty();
+  }
+
+  @Test
+  public void shouldStoreUncompressedAtLevel0() throws IOException {
+    Map<String, Object> props = new HashMap<>();
+    props.put("clevel", 0);
+    Filter filter = new Blosc(props);
+    byte[] encoded = filter.encode(decoded_data);
+    assertThat(encoded.length).isEqualTo(decoded_data.length + 16);
+    assertThat(encoded[2] & 0x2).isEqualTo(0x2); // memcpyed
+    assertThat(filter.decode(encoded)).isEqualTo(decoded_data);
+  }
+
+  // raw_data compressed with blosclz by c-blosc 1.21.4: clevel 5 with shuffle, clevel 9 without
+  @Test
+  public void shouldDecodeBloscLzReferenceChunks() throws IOException {
+    Filter filter = new Blosc(new HashMap<>());
+    for (String filename : new String[] {"blosc_blosclz_shuffle", "blosc_blosclz_noshuffle"}) {
+      assertThat(filter.decode(readAsByteArray(filename))).isEqualTo(decoded_data);
+    }
+  }
+
+  @Test
+  public void shouldDecodeBloscLz() throws IOException {
+    byte[] stream = new byte[1 + 32 + 1 + 36 + 1 + 4 + 1 + 3];
+    int pos = 0;
+    stream[pos++] = 31; // 32 literals
+    for (int i = 0; i < 32; i++) {
+      stream[pos++] = (byte) i;
+    }
+    stream[pos++] = (byte) 0xE0; // long match, distance 32
+    for (int i = 0; i < 35; i++) {
+      stream[pos++] = (byte) 255;
+    }
+    stream[pos++] = 0;
+    stream[pos++] = 31;
+    stream[pos++] = (byte) 0x7F; // match of 5, 16-bit distance 8200
+    stream[pos++] = (byte) 255;
+    stream[pos++] = 0;
+    stream[pos++] = 8;
+    stream[pos++] = 2; // 3 literals
+    stream[pos++] = 'X';
+    stream[pos++] = 'Y';
+    stream[pos] = 'Z';
+
+    byte[] expected = new byte[32 + 8934 + 5 + 3];
+    for (int i = 0; i < 32; i++) {
+      expected[i] = (byte) i;
+    }
+    for (int i = 32; i < 32 + 8934; i++) {
+      expected[i] = expected[i - 32];
+    }
+    for (int i = 32 + 8934; i < 32 + 8934 + 5; i++) {
+      expected[i] = expected[i - 8200];
+    }
+    expected[expected.length - 3] = 'X';
+    expected[expected.length - 2] = 'Y';
+    expected[expected.length - 1] = 'Z';
+
+    assertThat(new Blosc(new HashMap<>()).decode(bloscLzChunk(stream, expected.length))).isEqualTo(expected);
+  }
+
+  @Test
+  public void shouldCopyMatchAtEndOfBloscLzStream() throws IOException {
+    byte[] stream = {3, 'a', 'b', 'c', 'd', (byte) 0xC0, 3}; // 4 literals, then a match of 8 at distance 4
+    byte[] expected = {'a', 'b', 'c', 'd', 'a', 'b', 'c', 'd', 'a', 'b', 'c', 'd'};
+    assertThat(new Blosc(new HashMap<>()).decode(bloscLzChunk(stream, expected.length))).isEqualTo(expected);
+  }
+
+  // one block, one blosclz stream
+  private static byte[] bloscLzChunk(byte[] stream, int nbytes) {
+    byte[] chunk = new byte[16 + 4 + 4 + stream.length];
+    chunk[0] = 2; // version
+    chunk[1] = 1;
+    chunk[2] = 0x10; // blosclz, no shuffle, not split
+    chunk[3] = 1; // typesize
+    writeInt(chunk, 4, nbytes);
+    writeInt(chunk, 8, nbytes);
+    writeInt(chunk, 12, chunk.length);
+    writeInt(chunk, 16, 20);
+    writeInt(chunk, 20, stream.length);
+    System.arraycopy(stream, 0, chunk, 24, stream.length);
+    return chunk;
+  }
+
+  @Test
+  public void shouldRejectCorruptChunks() throws IOException {
+    byte[] chunk = readAsByteArray("blosc_lz4_shuffle");
+    Filter filter = new Blosc(new HashMap<>());
+    checkRejected(filter, Arrays.copyOf(chunk, 100));
+
+    byte[] badStart = chunk.clone();
+    writeInt(badStart, 16, chunk.length - 2);
+    checkRejected(filter, badStart);
+
+    byte[] badVersion = chunk.clone();
+    badVersion[0] = 9;
+    checkRejected(filter, badVersion);
+  }
+
+  private void checkRejected(Filter filter, byte[] chunk) {
+    try {
+      filter.decode(chunk);
+    } catch (IOException e) {
+      return;
+    }
+    throw new AssertionError("corrupt chunk was decoded");
+  }
+
+  @Test
+  public void shouldTransposeBitsLikeBitshuffle() {
+    int nelems = 24;
+    int elemSize = 3;
+    byte[] data = new byte[nelems * elemSize];
+    new Random(3).nextBytes(data);
+
+    // bit k of byte j of element i -> bit (i % 8) of byte (i / 8) of row (8 * j + k)
+    byte[] expected = new byte[data.length];
+    for (int i = 0; i < nelems; i++) {
+      for (int j = 0; j < elemSize; j++) {
+        for (int k = 0; k < 8; k++) {
+          if ((data[i * elemSize + j] >> k & 1) != 0) {
+            expected[(8 * j + k) * nelems / 8 + i / 8] |= (byte) (1 << (i % 8));
+          }
+        }
+      }
+    }
+
+    byte[] encoded = new byte[data.length];
+    BitTranspose.encode(data, 0, encoded, 0, nelems, elemSize);
+    assertThat(encoded).isEqualTo(expected);
+    byte[] decoded = new byte[data.length];
+    BitTranspose.decode(encoded, 0, decoded, 0, nelems, elemSize);
+    assertThat(decoded).isEqualTo(data);
+  }
+
+  private static void writeInt(byte[] buf, int pos, int value) {
+    buf[pos] = (byte) value;
+    buf[pos + 1] = (byte) (value >>> 8);
+    buf[pos + 2] = (byte) (value >>> 16);
+    buf[pos + 3] = (byte) (value >>> 24);
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.filter;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.unidata.io.RandomAccessFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class TestFilterPipeline {
+
+  private static final String DATA_DIR = "src/test/data/filter";
+
+  private static byte[] decoded_data;
+
+  @BeforeClass
+  public static void setUp() throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(DATA_DIR + "/raw_data", "r")) {
+      decoded_data = new byte[(int) raf.length()];
+      raf.readFully(decoded_data);
+    }
+  }
+
+  private static Filter shuffle() {
+    Map<String, Object> props = new HashMap<>();
+    props.put(Filters.Keys.ELEM_SIZE, 4);
+    return new Shuffle(props);
+  }
+
+  private static Filter deflate() {
+    Map<String, Object> props = new HashMap<>();
+    props.put("level", 5);
+    return new Deflate(props);
+  }
+
+  private static Filter lz4() {
+    Map<String, Object> props = new HashMap<>();
+    props.put(Filters.Keys.ID, (short) 32004);
+    props.put(Filters.Keys.DATA, new int[] {4096});
+    return new Lz4(props);
+  }
+
+  private static Filter zstd() {
+    return new Zstd(new HashMap<>());
+  }
+
+  private static Filter bitshuffle() {
+    Map<String, Object> props = new HashMap<>();
+    props.put(Filters.Keys.DATA, new int[] {0, 3, 27, 4, 0, 2});
+    return new Bitshuffle(props);
+  }
+
+  private static Filter blosc() {
+    Map<String, Object> props = new HashMap<>();
+    props.put("cname", "lz4");
+    props.put("clevel", 5);
+    props.put("shuffle", 1);
+    props.put("typesize", 4);
+    return new Blosc(props);
+  }
+
+  private static byte[] encode(byte[] data, Filter... filters) throws IOException {
+    for (Filter f : filters) {
+      data = f.encode(data);
+    }
+    return data;
+  }
+
+  @Test
+  public void testDecode() throws IOException {
+    Filter[] filters = {shuffle(), deflate(), new Checksum32(Checksum32.CType.FLETCHER)};
+    byte[] encoded = encode(decoded_data, filters);
+    FilterPipeline pipeline = new FilterPipeline(filters);
+
+    byte[] first = pipeline.decode(encoded, decoded_data.length);
+    assertThat(first).isEqualTo(decoded_data);
+
+    // the result is not shared with the next chunk
+    Arrays.fill(first, (byte) 0);
+    assertThat(pipeline.decode(encoded, decoded_data.length)).isEqualTo(decoded_data);
+
+    // decoded size not known, or wrong
+    assertThat(pipeline.decode(encoded, -1)).isEqualTo(decoded_data);
+    assertThat(pipeline.decode(encoded, decoded_data.length / 2)).isEqualTo(decoded_data);
+    assertThat(pipeline.decode(encoded, decoded_data.length * 2)).isEqualTo(decoded_data);
+  }
+
+  @Test
+  public void testDecodeCompressors() throws IOException {
+    Filter[][] chains = {{shuffle(), lz4()}, {shuffle(), zstd()}, {bitshuffle()}, {blosc()},
+        {shuffle(), zstd(), new Checksum32(Checksum32.CType.CRC)}};
+    for (Filter[] filters : chains) {
+      byte[] encoded = encode(decoded_data, filters);
+      assertThat(new FilterPipeline(filters).decode(encoded, decoded_data.length)).isEqualTo(decoded_data);
+    }
+  }
+
+  @Test
+  public void testSkipMask() throws IOException {
+    Filter[] filters = {shuffle(), deflate(), new Checksum32(Checksum32.CType.FLETCHER)};
+    FilterPipeline pipeline = new FilterPipeline(filters);
+
+    // deflate was not applied to this chunk
+    byte[] encoded = encode(decoded_data, filters[0], filters[2]);
+    assertThat(pipeline.decode(encoded, decoded_data.length, 0x2)).isEqualTo(decoded_data);
+
+    // no filters applied
+    assertThat(pipeline.decode(decoded_data, decoded_data.length, 0x7)).isEqualTo(decoded_data);
+    assertThat(new FilterPipeline().decode(decoded_data, decoded_data.length)).isEqualTo(decoded_data);
+  }
+
+  @Test
+  public void testBufferDecode() throws IOException {
+    Filter[] filters = {shuffle(), deflate(), lz4(), zstd(), bitshuffle(), blosc(),
+        new Checksum32(Checksum32.CType.ADLER), new Checksum32(Checksum32.CType.FLETCHER)};
+    for (Filter filter : filters) {
+      byte[] encoded = filter.encode(decoded_data);
+
+      // input in the middle of a larger array
+      byte[] padded = new byte[encoded.length + 20];
+      System.arraycopy(encoded, 0, padded, 7, encoded.length);
+      ByteBuffer in = ByteBuffer.wrap(padded, 3, encoded.length + 10).slice();
+      in.position(4);
+      in.limit(4 + encoded.length);
+
+      // output into a larger array, at an offset
+      ByteBuffer out = ByteBuffer.wrap(new byte[decoded_data.length + 16]);
+      out.position(5);
+
+      ByteBuffer result = filter.decode(in, out);
+      assertThat(in.position()).isEqualTo(4);
+      assertThat(in.limit()).isEqualTo(4 + encoded.length);
+      assertThat(out.position()).isEqualTo(5);
+      assertThat(Filter.toArray(result)).isEqualTo(decoded_data);
+
+      // read only input, no output buffer
+      result = filter.decode(ByteBuffer.wrap(encoded).asReadOnlyBuffer(), null);
+      assertThat(Filter.toArray(result)).isEqualTo(decoded_data);
+    }
+  }
+
+  @Test
+  public void testScaleOffset() throws IOException {
+    String[] dtypes = {"<i1", "<u1", "<i2", ">u2", "<i4", ">u4", "<i8", "<u8", "<f4", ">f8"};
+    String[] astypes = {"|i1", "|u1", ">i2", "<u2", "<i4", "<u4", ">i8", "<u8", "<f4", "<f8"};
+    Random random = new Random(17);
+    byte[] stored = new byte[800];
+    random.nextBytes(stored);
+    for (String dtype : dtypes) {
+      for (String astype : astypes) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ScaleOffset.Keys.OFFSET_KEY, 100);
+        props.put(ScaleOffset.Keys.SCALE_KEY, 0.3);
+        props.put(ScaleOffset.Keys.DTYPE_KEY, dtype);
+        props.put(ScaleOffset.Keys.ASTYPE_KEY, astype);
+        ScaleOffset filter = new ScaleOffset(props);
+
+        // same as converting the Array
+        DataType type = dataType(astype);
+        DataType outType = dataType(dtype);
+        ByteOrder order = astype.startsWith(">") ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        ByteOrder outOrder = dtype.startsWith(">") ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        if (astype.startsWith("|")) {
+          order = ByteOrder.nativeOrder();
+        }
+        Array converted = filter.convert(FilterHelpers.bytesToArray(stored, type, order));
+        byte[] expected = FilterHelpers.arrayToBytes(converted, outType, outOrder);
+        assertThat(filter.decode(stored)).isEqualTo(expected);
+      }
+    }
+  }
+
+  private static DataType dataType(String type) {
+    switch (type.substring(1)) {
+      case "i1":
+        return DataType.BYTE;
+      case "u1":
+        return DataType.UBYTE;
+      case "i2":
+        return DataType.SHORT;
+      case "u2":
+        return DataType.USHORT;
+      case "i4":
+        return DataType.INT;
+      case "u4":
+        return DataType.UINT;
+      case "i8":
+        return DataType.LONG;
+      case "u8":
+        return DataType.ULONG;
+      case "f4":
+        return DataType.FLOAT;
+      default:
+        return DataType.DOUBLE;
+    }
+  }
+}
@@ -12,6 +12,7 @@ import ucar.unidata.io.RandomAccessFile;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -108,6 +109,76 @@ public class TestFilters {
     assertThat(out3).isEqualTo(decoded_data);
   }
 
+  @Test
+  public void testZstd() throws IOException, UnknownFilterException {
+    Map<String, Object> props = new HashMap<>();
+    props.put("id", "zstd");
+    props.put("level", 3);
+    Filter filter = Filters.getFilter(props);
+    assertThat(filter).isInstanceOf(Zstd.class);
+    testDecodeRoundTrip(filter, "zstd_level3");
+
+    // HDF5
+    props.clear();
+    props.put(Filters.Keys.ID, (short) 32015);
+    props.put(Filters.Keys.DATA, new int[] {3});
+    filter = Filters.getFilter(props);
+    assertThat(filter).isInstanceOf(Zstd.class);
+    testDecodeRoundTrip(filter, "zstd_level3");
+  }
+
+  @Test
+  public void testLz4() throws IOException, UnknownFilterException {
+    // HDF5 framing, 64k blocks
+    Map<String, Object> props = new HashMap<>();
+    props.put(Filters.Keys.ID, (short) 32004);
+    props.put(Filters.Keys.DATA, new int[] {65536});
+    Filter filter = Filters.getFilter(props);
+    assertThat(filter).isInstanceOf(Lz4.class);
+    testDecodeRoundTrip(filter, "lz4_hdf5");
+
+    // numcodecs framing
+    props.clear();
+    props.put("id", "lz4");
+    filter = Filters.getFilter(props);
+    byte[] encoded = filter.encode(decoded_data);
+    assertThat(encoded.length).isLessThan(decoded_data.length / 10);
+    assertThat(filter.decode(encoded)).isEqualTo(decoded_data);
+  }
+
+  @Test
+  public void testBitshuffle() throws IOException, UnknownFilterException {
+    // HDF5, element size 4, default block size
+    Map<String, Object> props = new HashMap<>();
+    props.put(Filters.Keys.ID, (short) 32008);
+    props.put(Filters.Keys.DATA, new int[] {0, 3, 27, 4, 0, 2});
+    Filter filter = Filters.getFilter(props);
+    assertThat(filter).isInstanceOf(Bitshuffle.class);
+    testDecodeRoundTrip(filter, "bitshuffle_lz4");
+
+    props.put(Filters.Keys.DATA, new int[] {0, 3, 27, 4, 0, 3, 3});
+    filter = Filters.getFilter(props);
+    testDecodeRoundTrip(filter, "bitshuffle_zstd");
+
+    // no compression, elements left over after the last multiple of 8
+    props.put(Filters.Keys.DATA, new int[] {0, 3, 27, 4, 16});
+    filter = Filters.getFilter(props);
+    byte[] data = Arrays.copyOf(decoded_data, 4 * 45);
+    byte[] encoded = filter.encode(data);
+    assertThat(Arrays.copyOfRange(encoded, 4 * 40, 4 * 45)).isEqualTo(Arrays.copyOfRange(data, 4 * 40, 4 * 45));
+    assertThat(filter.decode(encoded)).isEqualTo(data);
+  }
+
+  // the reference files were written by the C libraries, so only check that encoded data decodes back
+  private void testDecodeRoundTrip(Filter filter, String filename) throws IOException {
+    byte[] decoded = filter.decode(readAsByteArray(filename));
+    assertThat(decoded).isEqualTo(decoded_data);
+
+    byte[] encoded = filter.encode(decoded_data);
+    assertThat(encoded.length).isLessThan(decoded_data.length / 10);
+    assertThat(filter.decode(encoded)).isEqualTo(decoded_data);
+  }
+
   private void testEncodeDecode(Filter filter, String filename) throws IOException {
     // test encode
     byte[] out = filter.encode(decoded_data);
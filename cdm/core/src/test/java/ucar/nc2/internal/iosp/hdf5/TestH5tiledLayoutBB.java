@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.internal.iosp.hdf5;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ucar.ma2.Array;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.util.CompareNetcdf2;
+import ucar.unidata.util.test.TestDir;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+
+@Category(NeedsCdmUnitTest.class)
+public class TestH5tiledLayoutBB {
+  private static final String TEST_FILE =
+      TestDir.cdmUnitTestDir + "formats/netcdf4/ncom_relo_fukushima_1km_tmp_2011040800_t000.nc4";
+  private static final String VAR_NAME = "water_temp";
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    H5tiledLayoutBB.setExecutor(null);
+    H5tiledLayoutBB.setMaxPendingChunks(H5tiledLayoutBB.DEFAULT_MAX_PENDING_CHUNKS);
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldReadSameDataWithExecutor() throws Exception {
+    try (NetcdfFile ncfile = NetcdfFiles.open(TEST_FILE)) {
+      Variable v = ncfile.findVariable(VAR_NAME);
+      assertThat((Object) v).isNotNull();
+
+      H5tiledLayoutBB.setExecutor(null);
+      Array serial = v.read();
+
+      H5tiledLayoutBB.setExecutor(executor);
+      H5tiledLayoutBB.setMaxPendingChunks(2);
+      Array parallel = v.read();
+
+      assertThat(CompareNetcdf2.compareData(v.getShortName(), serial, parallel)).isTrue();
+    }
+  }
+
+  @Test
+  public void shouldReadSameSectionWithExecutor() throws Exception {
+    try (NetcdfFile ncfile = NetcdfFiles.open(TEST_FILE)) {
+      Variable v = ncfile.findVariable(VAR_NAME);
+      assertThat((Object) v).isNotNull();
+
+      // take every other element in each dimension
+      Section.Builder sb = Section.builder();
+      for (int len : v.getShape()) {
+        sb.appendRange(0, len - 1, 2);
+      }
+      Section section = sb.build();
+
+      H5tiledLayoutBB.setExecutor(null);
+      Array serial = v.read(section);
+
+      H5tiledLayoutBB.setExecutor(executor);
+      Array parallel = v.read(section);
+
+      assertThat(CompareNetcdf2.compareData(v.getShortName(), serial, parallel)).isTrue();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.ncml;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+
+public class TestAggCacheFile {
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static AggCacheFile.Record record(String id, long lastModified, double... times) {
+    Map<String, Array> data = new LinkedHashMap<>();
+    data.put("time", Array.factory(DataType.DOUBLE, new int[] {times.length}, times));
+    data.put("name", Array.factory(DataType.STRING, new int[] {1}, new Object[] {id + ".nc"}));
+    return new AggCacheFile.Record(id, lastModified, times.length, data);
+  }
+
+  @Test
+  public void shouldAppendRecords() throws IOException {
+    File file = new File(tempFolder.getRoot(), "agg/test.ncml" + AggCacheFile.SUFFIX);
+    AggCacheFile cache = new AggCacheFile(file, "joinExisting", "time");
+    assertThat(cache.readIndex()).isFalse();
+    assertThat(cache.write(Arrays.asList(record("a", 1, 0, 1, 2), record("b", 2, 3, 4)), false)).isTrue();
+    long firstLength = file.length();
+
+    AggCacheFile reader = new AggCacheFile(file, "joinExisting", "time");
+    assertThat(reader.readIndex()).isTrue();
+    assertThat(reader.getRecordCount()).isEqualTo(2);
+    assertThat(reader.getEntry("a").ncoords).isEqualTo(3);
+    assertThat(reader.getEntry("b").lastModified).isEqualTo(2);
+    assertThat(reader.getEntry("b").varNames).containsExactly("time", "name").inOrder();
+
+    // a changed dataset is appended, and replaces the earlier record
+    assertThat(reader.write(Collections.singletonList(record("a", 5, 7, 8)), false)).isTrue();
+    assertThat(file.length()).isGreaterThan(firstLength);
+
+    AggCacheFile again = new AggCacheFile(file, "joinExisting", "time");
+    assertThat(again.readIndex()).isTrue();
+    assertThat(again.getRecordCount()).isEqualTo(3);
+    assertThat(again.getEntries()).hasSize(2);
+    assertThat(again.getEntry("a").lastModified).isEqualTo(5);
+
+    Map<String, Map<String, Array>> data = again.readData();
+    assertThat((double[]) data.get("a").get("time").getStorage()).isEqualTo(new double[] {7, 8});
+    assertThat((double[]) data.get("b").get("time").getStorage()).isEqualTo(new double[] {3, 4});
+    assertThat(data.get("b").get("name").getObject(0)).isEqualTo("b.nc");
+
+    // rewrite drops the obsolete record
+    assertThat(again.write(Collections.singletonList(record("c", 9, 10)), true)).isTrue();
+    AggCacheFile rewritten = new AggCacheFile(file, "joinExisting", "time");
+    assertThat(rewritten.readIndex()).isTrue();
+    assertThat(rewritten.getRecordCount()).isEqualTo(1);
+    assertThat(rewritten.getEntry("a")).isNull();
+  }
+
+  @Test
+  public void shouldSkipRecordWithoutId() throws IOException {
+    File file = new File(tempFolder.getRoot(), "test.ncml" + AggCacheFile.SUFFIX);
+    AggCacheFile cache = new AggCacheFile(file, "joinExisting", "time");
+    cache.readIndex();
+    Map<String, Array> data = new LinkedHashMap<>();
+    data.put("flags", Array.factory(DataType.UBYTE, new int[] {2}, new byte[] {1, (byte) 200}));
+    data.put("code", Array.factory(DataType.CHAR, new int[] {1}, new char[] {'x'}));
+    assertThat(cache.write(Arrays.asList(record(null, 1, 0), new AggCacheFile.Record("a", 2, 1, data)), false))
+        .isTrue();
+
+    AggCacheFile reader = new AggCacheFile(file, "joinExisting", "time");
+    assertThat(reader.readIndex()).isTrue();
+    assertThat(reader.getRecordCount()).isEqualTo(1);
+    Map<String, Array> read = reader.readData(reader.getEntry("a"));
+    assertThat(read.get("flags").getDataType()).isEqualTo(DataType.UBYTE);
+    assertThat((byte[]) read.get("flags").getStorage()).isEqualTo(new byte[] {1, (byte) 200});
+    assertThat(read.get("code").getChar(0)).isEqualTo('x');
+  }
+
+  @Test
+  public void shouldIgnoreIncompleteRecord() throws IOException {
+    File file = new File(tempFolder.getRoot(), "test.ncml" + AggCacheFile.SUFFIX);
+    AggCacheFile cache = new AggCacheFile(file, "joinExisting", "time");
+    cache.readIndex();
+    cache.write(Arrays.asList(record("a", 1, 0, 1), record("b", 2, 2, 3)), false);
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(raf.length() - 3); // as if a write was interrupted
+    }
+    AggCacheFile reader = new AggCacheFile(file, "joinExisting", "time");
+    assertThat(reader.readIndex()).isTrue();
+    assertThat(reader.getEntries()).hasSize(1);
+    assertThat(reader.getEntry("a")).isNotNull();
+
+    // the next append replaces the incomplete record
+    assertThat(reader.write(Collections.singletonList(record("b", 2, 2, 3)), false)).isTrue();
+    AggCacheFile again = new AggCacheFile(file, "joinExisting", "time");
+    assertThat(again.readIndex()).isTrue();
+    assertThat(again.getRecordCount()).isEqualTo(2);
+    assertThat((double[]) again.readData().get("b").get("time").getStorage()).isEqualTo(new double[] {2, 3});
+  }
+
+  @Test
+  public void shouldNotReadOtherAggregation() throws IOException {
+    File file = new File(tempFolder.getRoot(), "test.ncml" + AggCacheFile.SUFFIX);
+    AggCacheFile cache = new AggCacheFile(file, "joinExisting", "time");
+    cache.readIndex();
+    cache.write(Collections.singletonList(record("a", 1, 0)), false);
+
+    AggCacheFile other = new AggCacheFile(file, "joinExisting", "run");
+    assertThat(other.readIndex()).isFalse();
+    assertThat(other.write(Collections.singletonList(record("a", 1, 0)), false)).isTrue(); // rewritten
+    assertThat(other.readIndex()).isTrue();
+    assertThat(new AggCacheFile(file, "joinExisting", "time").readIndex()).isFalse();
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.ncml;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.Variable;
+import ucar.nc2.dataset.NetcdfDataset;
+import ucar.unidata.util.test.TestDir;
+
+/** Reading a section of an outer aggregation on an Executor must give the same result as reading it serially. */
+public class TestAggParallelRead {
+  private static final String topDir = TestDir.cdmLocalTestDataDir + "ncml/";
+
+  private ExecutorService executor;
+
+  @Before
+  public void setExecutor() {
+    executor = Executors.newFixedThreadPool(3);
+  }
+
+  @After
+  public void resetExecutor() {
+    Aggregation.setExecutor(null);
+    Aggregation.setMaxPendingReads(2 * Runtime.getRuntime().availableProcessors());
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldReadJoinExistingSection() throws IOException, InvalidRangeException {
+    // jan.nc has 31 times, feb.nc 28
+    checkSection("aggExisting.xml", "T", "20:40,1:2,0:3");
+    checkSection("aggExisting.xml", "T", "0:58:3,:,2");
+  }
+
+  @Test
+  public void shouldReadJoinNewSection() throws IOException, InvalidRangeException {
+    checkSection("aggSynthetic.xml", "T", "0:2,1,0:3");
+    checkSection("aggSynthetic.xml", "T", "1:2,:,:");
+  }
+
+  @Test
+  public void shouldRecordMetrics() throws IOException, InvalidRangeException {
+    try (NetcdfDataset ncd = NcmlReader.readNcml("file:./" + topDir + "aggExisting.xml", null, null)
+        .build()) {
+      Aggregation agg = (Aggregation) ncd.getAggregation();
+      agg.getMetrics().reset();
+      ncd.findVariable("T").read(new Section("20:40,1:2,0:3"));
+      assertThat(agg.getMetrics().getOpenCount()).isAtLeast(2);
+      assertThat(agg.getMetrics().getReadCount()).isEqualTo(2);
+    }
+  }
+
+  private void checkSection(String ncml, String varName, String sectionSpec)
+      throws IOException, InvalidRangeException {
+    try (NetcdfDataset ncd = NcmlReader.readNcml("file:./" + topDir + ncml, null, null).build()) {
+      Variable v = ncd.findVariable(varName);
+      Section section = Section.fill(new Section(sectionSpec), v.getShape());
+
+      Aggregation.setExecutor(null);
+      Array expected = v.read(section);
+      assertThat(expected.getShape()).isEqualTo(section.getShape());
+
+      Aggregation.setExecutor(executor);
+      for (int maxPending : new int[] {1, 2, 8}) {
+        Aggregation.setMaxPendingReads(maxPending);
+        Array got = v.read(section);
+        assertThat(got.getShape()).isEqualTo(expected.getShape());
+        assertThat(got.get1DJavaArray(got.getDataType())).isEqualTo(expected.get1DJavaArray(expected.getDataType()));
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.util.test.TestDir;
+
+public class TestChunkCache {
+  private static final String TEST_FILE = TestDir.cdmLocalTestDataDir + "testCFGridWriter.nc4";
+
+  @After
+  public void tearDown() {
+    ChunkCache.disable();
+  }
+
+  @Test
+  public void shouldBeDisabledByDefault() {
+    assertThat(ChunkCache.getInstance()).isNull();
+  }
+
+  @Test
+  public void shouldCallLoaderOnce() throws IOException {
+    ChunkCache.enable(1000);
+    ChunkCache cache = ChunkCache.getInstance();
+    AtomicInteger nloads = new AtomicInteger();
+    try (RandomAccessFile raf = new RandomAccessFile(TEST_FILE, "r")) {
+      ChunkCache.VariableKey vkey = ChunkCache.makeVariableKey(raf, "var");
+      assertThat(vkey).isNotNull();
+      for (int i = 0; i < 3; i++) {
+        byte[] data = cache.get(vkey, new int[] {0, 10}, () -> {
+          nloads.incrementAndGet();
+          return new byte[100];
+        });
+        assertThat(data).hasLength(100);
+      }
+      assertThat(cache.getIfPresent(vkey, new int[] {0, 10})).isNotNull();
+      assertThat(cache.getIfPresent(vkey, new int[] {10, 0})).isNull();
+    }
+    assertThat(nloads.get()).isEqualTo(1);
+    // two from get() and one from getIfPresent()
+    assertThat(cache.getStats().hitCount()).isEqualTo(3);
+    assertThat(cache.getBytesDecoded()).isEqualTo(100);
+  }
+
+  @Test
+  public void shouldNotCountContainsInStats() throws IOException {
+    ChunkCache.enable(1000);
+    ChunkCache cache = ChunkCache.getInstance();
+    try (RandomAccessFile raf = new RandomAccessFile(TEST_FILE, "r")) {
+      ChunkCache.VariableKey vkey = ChunkCache.makeVariableKey(raf, "var");
+      cache.put(vkey, new int[] {0}, new byte[100]);
+      assertThat(cache.contains(vkey, new int[] {0})).isTrue();
+      assertThat(cache.contains(vkey, new int[] {1})).isFalse();
+    }
+    assertThat(cache.getStats().requestCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldBeBoundedByBytes() throws IOException {
+    ChunkCache.enable(1000);
+    ChunkCache cache = ChunkCache.getInstance();
+    try (RandomAccessFile raf = new RandomAccessFile(TEST_FILE, "r")) {
+      ChunkCache.VariableKey vkey = ChunkCache.makeVariableKey(raf, "var");
+      for (int i = 0; i < 100; i++) {
+        cache.put(vkey, new int[] {i}, new byte[100]);
+      }
+    }
+    assertThat(cache.getNumberOfChunks()).isLessThan(10L);
+  }
+
+  @Test
+  public void shouldKeepChunkNearlyAsBigAsCache() throws IOException {
+    ChunkCache.enable(1000);
+    ChunkCache cache = ChunkCache.getInstance();
+    try (RandomAccessFile raf = new RandomAccessFile(TEST_FILE, "r")) {
+      ChunkCache.VariableKey vkey = ChunkCache.makeVariableKey(raf, "var");
+      cache.put(vkey, new int[] {0}, new byte[900]);
+      assertThat(cache.contains(vkey, new int[] {0})).isTrue();
+    }
+    assertThat(cache.getStats().evictionCount()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import ucar.ma2.Section;
+
+public class TestLayoutBBTiled {
+
+  // one chunk of 4 bytes at the origin, then the given exception
+  private static LayoutBBTiled.DataChunkIterator failAfterFirstChunk(IOException error) {
+    return new LayoutBBTiled.DataChunkIterator() {
+      private boolean first = true;
+
+      public boolean hasNext() {
+        return true;
+      }
+
+      public LayoutBBTiled.DataChunk next() throws IOException {
+        if (!first) {
+          throw error;
+        }
+        first = false;
+        return new LayoutBBTiled.DataChunk() {
+          public int[] getOffset() {
+            return new int[] {0};
+          }
+
+          public ByteBuffer getByteBuffer() {
+            return ByteBuffer.wrap(new byte[] {1, 2, 3, 4});
+          }
+        };
+      }
+    };
+  }
+
+  @Test
+  public void shouldStopAtEndOfFile() {
+    LayoutBBTiled layout =
+        new LayoutBBTiled(failAfterFirstChunk(new EOFException()), new int[] {4}, 1, new Section(new int[] {8}));
+    assertThat(layout.hasNext()).isTrue();
+    assertThat(layout.next().getNelems()).isEqualTo(4);
+    assertThat(layout.hasNext()).isFalse();
+  }
+
+  @Test
+  public void shouldThrowOtherIOExceptions() {
+    IOException error = new IOException("read failed");
+    LayoutBBTiled layout = new LayoutBBTiled(failAfterFirstChunk(error), new int[] {4}, 1, new Section(new int[] {8}));
+    assertThat(layout.hasNext()).isTrue();
+    try {
+      layout.hasNext();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getCause()).isSameInstanceAs(error);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.unidata.util.test.TestDir;
+
+public class TestMMapRandomAccessFile {
+  private static final int SEGMENT_SIZE = 4096;
+  private static final int FILE_SIZE = 5 * SEGMENT_SIZE + 123;
+  private static final long MARKER_POS = 2 * SEGMENT_SIZE - 2; // spans two segments
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private byte[] contents;
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    contents = new byte[FILE_SIZE];
+    new Random(17).nextBytes(contents);
+    for (int i = 0; i < contents.length; i++) {
+      if (contents[i] == 'G')
+        contents[i] = 0;
+    }
+    System.arraycopy("GRIB".getBytes(StandardCharsets.US_ASCII), 0, contents, (int) MARKER_POS, 4);
+    file = tempFolder.newFile();
+    Files.write(file.toPath(), contents);
+  }
+
+  @Test
+  public void shouldReadAcrossSegments() throws IOException {
+    try (RandomAccessFile raf = new MMapRandomAccessFile(file.getPath(), "r", 100, SEGMENT_SIZE)) {
+      assertThat(raf.length()).isEqualTo(FILE_SIZE);
+
+      byte[] data = new byte[FILE_SIZE];
+      raf.readFully(data);
+      assertThat(data).isEqualTo(contents);
+      assertThat(raf.read()).isEqualTo(-1);
+      assertThat(raf.isAtEndOfFile()).isTrue();
+
+      raf.seek(SEGMENT_SIZE - 2);
+      int expected = ((contents[SEGMENT_SIZE - 2] & 0xff) << 24) + ((contents[SEGMENT_SIZE - 1] & 0xff) << 16)
+          + ((contents[SEGMENT_SIZE] & 0xff) << 8) + (contents[SEGMENT_SIZE + 1] & 0xff);
+      assertThat(raf.readInt()).isEqualTo(expected);
+      assertThat(raf.getFilePointer()).isEqualTo(SEGMENT_SIZE + 2);
+
+      raf.seek(FILE_SIZE - 10);
+      byte[] tail = new byte[20];
+      assertThat(raf.read(tail)).isEqualTo(10);
+      Assert.assertThrows(EOFException.class, () -> raf.readFully(new byte[1]));
+    }
+  }
+
+  @Test
+  public void shouldReadToByteChannel() throws IOException {
+    try (RandomAccessFile raf = new MMapRandomAccessFile(file.getPath(), "r", 100, SEGMENT_SIZE)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      long n = raf.readToByteChannel(Channels.newChannel(out), 1000, 3 * SEGMENT_SIZE);
+      assertThat(n).isEqualTo(3 * SEGMENT_SIZE);
+      assertThat(out.toByteArray()).isEqualTo(Arrays.copyOfRange(contents, 1000, 1000 + 3 * SEGMENT_SIZE));
+    }
+  }
+
+  @Test
+  public void shouldSearchForward() throws IOException {
+    KMPMatch match = new KMPMatch("GRIB".getBytes(StandardCharsets.US_ASCII));
+    try (RandomAccessFile raf = new MMapRandomAccessFile(file.getPath(), "r", 100, SEGMENT_SIZE)) {
+      raf.seek(10);
+      assertThat(raf.searchForward(match, -1)).isTrue();
+      assertThat(raf.getFilePointer()).isEqualTo(MARKER_POS);
+
+      raf.seek(MARKER_POS + 1);
+      assertThat(raf.searchForward(match, -1)).isFalse();
+      assertThat(raf.getFilePointer()).isEqualTo(FILE_SIZE);
+
+      raf.seek(0);
+      assertThat(raf.searchForward(match, (int) MARKER_POS)).isFalse();
+    }
+  }
+
+  @Test
+  public void shouldBeReadOnly() throws IOException {
+    Assert.assertThrows(IllegalArgumentException.class, () -> new MMapRandomAccessFile(file.getPath(), "rw"));
+    try (RandomAccessFile raf = new MMapRandomAccessFile(file.getPath(), "r")) {
+      Assert.assertThrows(IOException.class, () -> raf.write(1));
+    }
+  }
+
+  @Test
+  public void shouldOpenWithScheme() throws IOException {
+    try (RandomAccessFile raf = NetcdfFiles.getRaf("mmap:" + file.getPath(), -1)) {
+      assertThat(raf).isInstanceOf(MMapRandomAccessFile.class);
+      assertThat(raf.getLocation()).isEqualTo(file.getPath().replace('\\', '/'));
+      assertThat(raf.readBytes(FILE_SIZE)).isEqualTo(contents);
+    }
+
+    String location = TestDir.cdmLocalTestDataDir + "jan.nc";
+    try (NetcdfFile mapped = NetcdfFiles.open("mmap:" + location); NetcdfFile plain = NetcdfFiles.open(location)) {
+      assertThat(mapped.getVariables()).hasSize(plain.getVariables().size());
+      assertThat(mapped.findVariable("T").read().getStorage()).isEqualTo(plain.findVariable("T").read().getStorage());
+    }
+  }
+}
@@ -11,6 +11,8 @@ import java.nio.ByteOrder;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -249,6 +251,26 @@ public class TestRandomAccessFile {
     assertThat(arraysMatch(buff, UTF8_BYTES, offset, 0, len)).isTrue();
   }
 
+  @Test
+  public void testReadRanges() throws IOException {
+    testFile.seek(3);
+    List<ByteRange> ranges = Arrays.asList(new ByteRange(30, 4), new ByteRange(0, 5), new ByteRange(2, 10),
+        new ByteRange(7, 0), new ByteRange(TEST_FILE_LENGTH - 3, 3));
+    List<byte[]> result = testFile.readRanges(ranges);
+    assertThat(result).hasSize(ranges.size());
+    for (int i = 0; i < ranges.size(); i++) {
+      ByteRange r = ranges.get(i);
+      assertThat(result.get(i)).isEqualTo(Arrays.copyOfRange(UTF8_BYTES, (int) r.offset(), (int) r.end()));
+    }
+    // file pointer is unchanged
+    assertThat(testFile.getFilePointer()).isEqualTo(3);
+
+    // range past end of file
+    Assert.assertThrows(EOFException.class, () -> {
+      testFile.readRanges(Arrays.asList(new ByteRange(TEST_FILE_LENGTH - 3, 4)));
+    });
+  }
+
   @Test
   public void testSkipBytes() throws IOException {
     testFile.seek(0);
@@ -828,6 +850,75 @@ public class TestRandomAccessFile {
     tempFile.close();
   }
 
+  ///////////////////////////
+  // Test read-ahead
+  @Test
+  public void testReadAhead() throws IOException {
+    byte[] contents = new byte[100 * 1000];
+    new java.util.Random(42).nextBytes(contents);
+    byte[] marker = "GRIB".getBytes(StandardCharsets.UTF_8);
+    System.arraycopy(marker, 0, contents, 77777, marker.length);
+    String path = tempFolder.newFile().getAbsolutePath();
+    try (RandomAccessFile writeFile = new RandomAccessFile(path, "rw")) {
+      writeFile.write(contents);
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(path, "r", TEST_BUFFER_SIZE)) {
+      raf.setReadAhead(true);
+      assertThat(raf.isReadAhead()).isTrue();
+
+      // byte by byte scan, with small skips forward
+      int pos = 0;
+      while (pos < contents.length) {
+        raf.seek(pos);
+        assertThat((byte) raf.read()).isEqualTo(contents[pos]);
+        pos += 1 + pos % 7;
+      }
+      // the buffer has grown
+      assertThat(raf.getBufferSize()).isGreaterThan(TEST_BUFFER_SIZE);
+
+      // chunked scan
+      raf.seek(0);
+      byte[] chunk = new byte[333];
+      for (int start = 0; start + chunk.length <= contents.length; start += chunk.length) {
+        raf.readFully(chunk);
+        assertThat(arraysMatch(chunk, contents, 0, start, chunk.length)).isTrue();
+      }
+
+      // search across buffer boundaries
+      raf.seek(0);
+      assertThat(raf.searchForward(new KMPMatch(marker), -1)).isTrue();
+      assertThat(raf.getFilePointer()).isEqualTo(77777);
+
+      // random access goes back to the original buffer size
+      raf.seek(5);
+      raf.seek(90000);
+      assertThat((byte) raf.read()).isEqualTo(contents[90000]);
+      raf.seek(10);
+      assertThat((byte) raf.read()).isEqualTo(contents[10]);
+      assertThat(raf.getBufferSize()).isEqualTo(TEST_BUFFER_SIZE);
+    }
+  }
+
+  @Test
+  public void testNoReadAheadInMemory() throws IOException {
+    byte[] contents = new byte[10 * 1000];
+    new java.util.Random(42).nextBytes(contents);
+    try (RandomAccessFile raf = new InMemoryRandomAccessFile("memory", contents)) {
+      raf.setReadAhead(true);
+      assertThat(raf.isReadAhead()).isFalse();
+
+      // reading to the end and back again refills the buffer
+      for (int i = 0; i < 2; i++) {
+        raf.seek(0);
+        byte[] data = new byte[contents.length];
+        raf.readFully(data);
+        assertThat(data).isEqualTo(contents);
+        assertThat(raf.read()).isEqualTo(-1);
+      }
+    }
+  }
+
   /**
    * Elementwise comparison of subsections of two byte arrays
    * 
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.util.DiskCache2;
+import ucar.unidata.io.TestRemoteRandomAccessFile.MemoryRemoteFile;
+
+public class TestRemoteBlockCache {
+  private static final String URL = "memory://shared";
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void tearDown() {
+    RemoteBlockCache.disable();
+  }
+
+  @Test
+  public void shouldBeDisabledByDefault() {
+    assertThat(RemoteBlockCache.getInstance()).isNull();
+  }
+
+  @Test
+  public void shouldShareBlocksBetweenFiles() throws IOException {
+    RemoteBlockCache.enable(100 * 1000);
+    RemoteBlockCache cache = RemoteBlockCache.getInstance();
+    byte[] contents = TestRemoteRandomAccessFile.makeContents();
+
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(URL, contents, 0, "v1")) {
+      assertThat(readAll(raf)).isEqualTo(contents);
+      assertThat(raf.requests.get()).isGreaterThan(0);
+    }
+    long fetched = cache.getBytesFetched();
+    assertThat(fetched).isEqualTo(contents.length);
+
+    // a second file on the same object starts warm
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(URL, contents, 0, "v1")) {
+      assertThat(readAll(raf)).isEqualTo(contents);
+      assertThat(raf.requests.get()).isEqualTo(0);
+    }
+    assertThat(cache.getBytesFetched()).isEqualTo(fetched);
+    assertThat(cache.getBytesSaved()).isAtLeast((long) contents.length);
+    assertThat(cache.getHitRatio()).isGreaterThan(0.0);
+
+    // a new version of the object does not see the old blocks
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(URL, contents, 0, "v2")) {
+      readAll(raf);
+      assertThat(raf.requests.get()).isGreaterThan(0);
+    }
+  }
+
+  @Test
+  public void shouldUseLastModifiedWithoutETag() throws IOException {
+    RemoteBlockCache.enable(100 * 1000);
+    byte[] contents = TestRemoteRandomAccessFile.makeContents();
+    try (MemoryRemoteFile raf = modifiedAt(contents, 1000)) {
+      readAll(raf);
+    }
+    try (MemoryRemoteFile raf = modifiedAt(contents, 1000)) {
+      assertThat(readAll(raf)).isEqualTo(contents);
+      assertThat(raf.requests.get()).isEqualTo(0);
+    }
+    // same length, modified later
+    try (MemoryRemoteFile raf = modifiedAt(contents, 2000)) {
+      readAll(raf);
+      assertThat(raf.requests.get()).isGreaterThan(0);
+    }
+  }
+
+  @Test
+  public void shouldNotShareBlocksWithoutVersion() throws IOException {
+    RemoteBlockCache.enable(100 * 1000);
+    RemoteBlockCache cache = RemoteBlockCache.getInstance();
+    byte[] contents = TestRemoteRandomAccessFile.makeContents();
+    for (int i = 0; i < 2; i++) {
+      // no ETag, and a last modified date of 0
+      try (MemoryRemoteFile raf = new MemoryRemoteFile(URL, contents, 0, null)) {
+        assertThat(readAll(raf)).isEqualTo(contents);
+        assertThat(raf.requests.get()).isGreaterThan(0);
+        assertThat(raf.readRanges(Arrays.asList(new ByteRange(150, 300))).get(0))
+            .isEqualTo(Arrays.copyOfRange(contents, 150, 450));
+      }
+    }
+    assertThat(cache.getNumberOfBlocks()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldBeBoundedByBytes() throws IOException {
+    RemoteBlockCache.enable(1000);
+    RemoteBlockCache cache = RemoteBlockCache.getInstance();
+    for (int i = 0; i < 100; i++) {
+      cache.get(RemoteBlockCache.makeFileKey(URL, "v1", 100), i, () -> new byte[100]);
+    }
+    assertThat(cache.getNumberOfBlocks()).isLessThan(10L);
+    assertThat(cache.getMissCount()).isEqualTo(100);
+  }
+
+  @Test
+  public void shouldKeepBlocksOnDisk() throws IOException {
+    DiskCache2 diskCache = new DiskCache2(tempFolder.getRoot().getAbsolutePath(), false, 60, -1);
+    RemoteBlockCache.enable(100 * 1000, diskCache);
+    byte[] contents = TestRemoteRandomAccessFile.makeContents();
+
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(URL, contents, 0, "v1")) {
+      readAll(raf);
+    }
+
+    // memory is cleared, but the blocks are still on disk
+    RemoteBlockCache.enable(100 * 1000, diskCache);
+    RemoteBlockCache cache = RemoteBlockCache.getInstance();
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(URL, contents, 0, "v1")) {
+      assertThat(readAll(raf)).isEqualTo(contents);
+      assertThat(raf.requests.get()).isEqualTo(0);
+    }
+    assertThat(cache.getDiskHitCount()).isGreaterThan(0L);
+    assertThat(cache.getMissCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldServeRangeReads() throws IOException {
+    RemoteBlockCache.enable(100 * 1000);
+    byte[] contents = TestRemoteRandomAccessFile.makeContents();
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(URL, contents, 0, "v1")) {
+      readAll(raf);
+    }
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(URL, contents, 0, "v1")) {
+      byte[] data = raf.readRanges(Arrays.asList(new ByteRange(150, 300))).get(0);
+      assertThat(data).isEqualTo(Arrays.copyOfRange(contents, 150, 450));
+      assertThat(raf.requests.get()).isEqualTo(0);
+    }
+  }
+
+  private static MemoryRemoteFile modifiedAt(byte[] contents, long lastModified) {
+    return new MemoryRemoteFile(URL, contents, 0, null) {
+      @Override
+      public long getLastModified() {
+        return lastModified;
+      }
+    };
+  }
+
+  private static byte[] readAll(RandomAccessFile raf) throws IOException {
+    byte[] data = new byte[(int) raf.length()];
+    raf.seek(0);
+    raf.readFully(data);
+    return data;
+  }
+}
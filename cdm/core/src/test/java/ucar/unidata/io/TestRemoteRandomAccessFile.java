@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Test vectored reads in RemoteRandomAccessFile, using an in-memory remote file */
+public class TestRemoteRandomAccessFile {
+
+  private static final int FILE_SIZE = 1000;
+
+  /** Serves bytes from memory and counts the remote requests */
+  static class MemoryRemoteFile extends RemoteRandomAccessFile {
+    private final byte[] contents;
+    private final String etag;
+    final AtomicInteger requests = new AtomicInteger();
+
+    MemoryRemoteFile(byte[] contents, long maxCacheSize) {
+      this("memory://test", contents, maxCacheSize, null);
+    }
+
+    MemoryRemoteFile(String url, byte[] contents, long maxCacheSize, String etag) {
+      super(url, 100, maxCacheSize);
+      this.contents = contents;
+      this.etag = etag;
+    }
+
+    @Override
+    public int readRemote(long pos, byte[] buff, int offset, int len) {
+      requests.incrementAndGet();
+      int n = (int) Math.min(len, contents.length - pos);
+      System.arraycopy(contents, (int) pos, buff, offset, n);
+      return n;
+    }
+
+    @Override
+    public long length() {
+      return contents.length;
+    }
+
+    @Override
+    protected String getETag() {
+      return etag;
+    }
+
+    @Override
+    public void closeRemote() {}
+  }
+
+  static byte[] makeContents() {
+    byte[] contents = new byte[FILE_SIZE];
+    for (int i = 0; i < FILE_SIZE; i++) {
+      contents[i] = (byte) i;
+    }
+    return contents;
+  }
+
+  @Test
+  public void testCoalesce() {
+    List<ByteRange> ranges = Arrays.asList(new ByteRange(500, 10), new ByteRange(0, 10), new ByteRange(15, 10),
+        new ByteRange(5, 10), new ByteRange(200, 0), new ByteRange(100, 10));
+
+    // gap of 5 merges [0,10), [5,15) and [15,25), leaves the others alone, and drops the empty range
+    assertThat(RemoteRandomAccessFile.coalesce(ranges, 5, 1000))
+        .containsExactly(new ByteRange(0, 25), new ByteRange(100, 10), new ByteRange(500, 10)).inOrder();
+
+    // a large gap merges everything up to the size limit
+    assertThat(RemoteRandomAccessFile.coalesce(ranges, 1000, 200))
+        .containsExactly(new ByteRange(0, 110), new ByteRange(500, 10)).inOrder();
+
+    // no gap still merges touching and overlapping ranges
+    assertThat(RemoteRandomAccessFile.coalesce(ranges, 0, 1000))
+        .containsExactly(new ByteRange(0, 25), new ByteRange(100, 10), new ByteRange(500, 10)).inOrder();
+  }
+
+  @Test
+  public void testReadRanges() throws IOException {
+    byte[] contents = makeContents();
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(contents, 0)) {
+      List<ByteRange> ranges = Arrays.asList(new ByteRange(990, 10), new ByteRange(0, 10), new ByteRange(5, 20),
+          new ByteRange(300, 0), new ByteRange(400, 50));
+      raf.seek(123);
+      int before = raf.requests.get();
+      List<byte[]> result = raf.readRanges(ranges);
+
+      assertThat(result).hasSize(ranges.size());
+      for (int i = 0; i < ranges.size(); i++) {
+        ByteRange r = ranges.get(i);
+        assertThat(result.get(i)).isEqualTo(Arrays.copyOfRange(contents, (int) r.offset(), (int) r.end()));
+      }
+      // with the default gap, all ranges are read with a single request
+      assertThat(raf.requests.get() - before).isEqualTo(1);
+      assertThat(raf.getFilePointer()).isEqualTo(123);
+    }
+  }
+
+  @Test
+  public void testReadRangesFromCache() throws IOException {
+    byte[] contents = makeContents();
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(contents, 10 * FILE_SIZE)) {
+      byte[] buff = new byte[FILE_SIZE];
+      raf.seek(0);
+      raf.readFully(buff);
+      int before = raf.requests.get();
+
+      List<ByteRange> ranges = new ArrayList<>();
+      ranges.add(new ByteRange(50, 100));
+      ranges.add(new ByteRange(700, 250));
+      List<byte[]> result = raf.readRanges(ranges);
+      assertThat(result.get(0)).isEqualTo(Arrays.copyOfRange(contents, 50, 150));
+      assertThat(result.get(1)).isEqualTo(Arrays.copyOfRange(contents, 700, 950));
+      // everything was already in the read cache
+      assertThat(raf.requests.get()).isEqualTo(before);
+    }
+  }
+
+  @Test
+  public void testReadRangesPastEnd() throws IOException {
+    try (MemoryRemoteFile raf = new MemoryRemoteFile(makeContents(), 0)) {
+      List<ByteRange> ranges = Arrays.asList(new ByteRange(0, 10), new ByteRange(FILE_SIZE - 5, 10));
+      Assert.assertThrows(EOFException.class, () -> raf.readRanges(ranges));
+    }
+  }
+}
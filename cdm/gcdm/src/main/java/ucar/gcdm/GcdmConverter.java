@@ -4,7 +4,6 @@
  */
 package ucar.gcdm;
 
-import static ucar.nc2.iosp.IospHelper.convertByteToChar;
 import static ucar.nc2.iosp.IospHelper.convertCharToByte;
 
 import com.google.common.base.Preconditions;
@@ -502,100 +501,183 @@ public class GcdmConverter {
   }
 
   private static Object decodePrimitiveData(Data data, DataType dataType) {
+    final Object storage = makeStorage(dataType, countPrimitiveData(data, dataType));
+    decodePrimitiveData(data, dataType, storage, 0);
+    return storage;
+  }
+
+  /**
+   * Decode primitive data directly into the storage of an Array, for example one allocated before the data arrives.
+   *
+   * @param protoData must not be vlen or structure data.
+   * @param storage the Array storage, as from Array.getStorage(), matching the data type.
+   * @param offset the index in storage of the first element.
+   * @return the number of elements decoded.
+   */
+  public static int decodeData(GcdmNetcdfProto.Data protoData, Object storage, int offset) {
+    Preconditions.checkArgument(protoData.getVlenDataCount() == 0 && !protoData.hasMembers());
+    return decodePrimitiveData(protoData, convertDataType(protoData.getDataType()), storage, offset);
+  }
+
+  private static int countPrimitiveData(Data data, DataType dataType) {
+    switch (dataType) {
+      case CHAR:
+      case ENUM1:
+      case UBYTE:
+      case BYTE:
+        return data.getByteDataCount() == 0 ? 0 : data.getByteData(0).size();
+      case SHORT:
+      case INT:
+        return data.getIntDataCount();
+      case ENUM2:
+      case USHORT:
+      case ENUM4:
+      case UINT:
+        return data.getUintDataCount();
+      case LONG:
+        return data.getLongDataCount();
+      case ULONG:
+        return data.getUlongDataCount();
+      case FLOAT:
+        return data.getFloatDataCount();
+      case DOUBLE:
+        return data.getDoubleDataCount();
+      case STRING:
+        return data.getStringDataCount();
+      case OPAQUE:
+        return data.getByteDataCount();
+      default:
+        throw new IllegalStateException("Unknown datatype " + dataType);
+    }
+  }
+
+  private static Object makeStorage(DataType dataType, int n) {
+    switch (dataType) {
+      case CHAR:
+        return new char[n];
+      case ENUM1:
+      case UBYTE:
+      case BYTE:
+        return new byte[n];
+      case SHORT:
+      case ENUM2:
+      case USHORT:
+        return new short[n];
+      case INT:
+      case ENUM4:
+      case UINT:
+        return new int[n];
+      case LONG:
+      case ULONG:
+        return new long[n];
+      case FLOAT:
+        return new float[n];
+      case DOUBLE:
+        return new double[n];
+      case STRING:
+      case OPAQUE:
+        return new Object[n];
+      default:
+        throw new IllegalStateException("Unknown datatype " + dataType);
+    }
+  }
+
+  // use the indexed getters, which dont box the values
+  private static int decodePrimitiveData(Data data, DataType dataType, Object storage, int offset) {
+    final int n = countPrimitiveData(data, dataType);
     switch (dataType) {
       case CHAR: {
-        return convertByteToChar(data.getByteData(0).toByteArray());
+        final char[] array = (char[]) storage;
+        final ByteString bytes = data.getByteData(0);
+        for (int i = 0; i < n; i++) {
+          array[offset + i] = (char) DataType.unsignedByteToShort(bytes.byteAt(i)); // NOTE: not Unicode !
+        }
+        break;
       }
       case ENUM1:
       case UBYTE:
       case BYTE: {
-        return data.getByteData(0).toByteArray();
+        if (n > 0) {
+          data.getByteData(0).copyTo((byte[]) storage, offset);
+        }
+        break;
       }
       case SHORT: {
-        int i = 0;
-        final short[] array = new short[data.getIntDataCount()];
-        for (int val : data.getIntDataList()) {
-          array[i++] = (short) val;
+        final short[] array = (short[]) storage;
+        for (int i = 0; i < n; i++) {
+          array[offset + i] = (short) data.getIntData(i);
         }
-        return array;
+        break;
       }
       case INT: {
-        int i = 0;
-        final int[] array = new int[data.getIntDataCount()];
-        for (int val : data.getIntDataList()) {
-          array[i++] = val;
+        final int[] array = (int[]) storage;
+        for (int i = 0; i < n; i++) {
+          array[offset + i] = data.getIntData(i);
         }
-        return array;
+        break;
       }
       case ENUM2:
       case USHORT: {
-        int i = 0;
-        final short[] array = new short[data.getUintDataCount()];
-        for (int val : data.getUintDataList()) {
-          array[i++] = (short) val;
+        final short[] array = (short[]) storage;
+        for (int i = 0; i < n; i++) {
+          array[offset + i] = (short) data.getUintData(i);
         }
-        return array;
+        break;
       }
       case ENUM4:
       case UINT: {
-        int i = 0;
-        final int[] array = new int[data.getUintDataCount()];
-        for (int val : data.getUintDataList()) {
-          array[i++] = val;
+        final int[] array = (int[]) storage;
+        for (int i = 0; i < n; i++) {
+          array[offset + i] = data.getUintData(i);
         }
-        return array;
+        break;
       }
       case LONG: {
-        int i = 0;
-        final long[] array = new long[data.getLongDataCount()];
-        for (long val : data.getLongDataList()) {
-          array[i++] = val;
+        final long[] array = (long[]) storage;
+        for (int i = 0; i < n; i++) {
+          array[offset + i] = data.getLongData(i);
         }
-        return array;
+        break;
       }
       case ULONG: {
-        int i = 0;
-        final long[] array = new long[data.getUlongDataCount()];
-        for (long val : data.getUlongDataList()) {
-          array[i++] = val;
+        final long[] array = (long[]) storage;
+        for (int i = 0; i < n; i++) {
+          array[offset + i] = data.getUlongData(i);
         }
-        return array;
+        break;
       }
       case FLOAT: {
-        int i = 0;
-        final float[] array = new float[data.getFloatDataCount()];
-        for (float val : data.getFloatDataList()) {
-          array[i++] = val;
+        final float[] array = (float[]) storage;
+        for (int i = 0; i < n; i++) {
+          array[offset + i] = data.getFloatData(i);
         }
-        return array;
+        break;
       }
       case DOUBLE: {
-        int i = 0;
-        final double[] array = new double[data.getDoubleDataCount()];
-        for (double val : data.getDoubleDataList()) {
-          array[i++] = val;
+        final double[] array = (double[]) storage;
+        for (int i = 0; i < n; i++) {
+          array[offset + i] = data.getDoubleData(i);
         }
-        return array;
+        break;
       }
       case STRING: {
-        int i = 0;
-        final Object[] array = new Object[data.getStringDataCount()];
-        for (String val : data.getStringDataList()) {
-          array[i++] = val;
+        final Object[] array = (Object[]) storage;
+        for (int i = 0; i < n; i++) {
+          array[offset + i] = data.getStringData(i);
         }
-        return array;
+        break;
       }
       case OPAQUE: {
-        int i = 0;
-        final Object[] array = new Object[data.getByteDataCount()];
-        for (ByteString val : data.getByteDataList()) {
-          array[i++] = ByteBuffer.wrap(val.toByteArray());
+        final Object[] array = (Object[]) storage;
+        for (int i = 0; i < n; i++) {
+          array[offset + i] = ByteBuffer.wrap(data.getByteData(i).toByteArray());
         }
-        return array;
+        break;
       }
       default:
         throw new IllegalStateException("Unknown datatype " + dataType);
     }
+    return n;
   }
 
   private static Array decodeVlenData(Data vlenData) {
@@ -8,16 +8,20 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
-import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import ucar.gcdm.GcdmConverter;
 import ucar.gcdm.GcdmGrpc;
+import ucar.gcdm.GcdmNetcdfProto.Data;
 import ucar.gcdm.GcdmNetcdfProto.DataRequest;
 import ucar.gcdm.GcdmNetcdfProto.DataResponse;
 import ucar.gcdm.GcdmNetcdfProto.Header;
@@ -25,6 +29,7 @@ import ucar.gcdm.GcdmNetcdfProto.HeaderRequest;
 import ucar.gcdm.GcdmNetcdfProto.HeaderResponse;
 import ucar.ma2.Array;
 import ucar.ma2.ArrayStructure;
+import ucar.ma2.DataType;
 import ucar.ma2.Section;
 import ucar.ma2.StructureDataIterator;
 import ucar.nc2.Group;
@@ -52,49 +57,159 @@ public class GcdmNetcdfFile extends NetcdfFile {
 
   @Nullable
   protected Array readData(Variable variable, Section sectionWanted) throws IOException {
+    return startRead(variable, sectionWanted).await();
+  }
+
+  /** Send all the requests before waiting for any, they are in flight concurrently on the one channel. */
+  @Override
+  public List<Array> readArrays(List<Variable> variables) throws IOException {
+    final List<DataCall> calls = new ArrayList<>();
+    try {
+      for (Variable variable : variables) {
+        boolean direct = !variable.hasCachedData() && !variable.isMemberOfStructure();
+        calls.add(direct ? startRead(variable, variable.getShapeAsSection()) : null);
+      }
+      final List<Array> result = new ArrayList<>();
+      for (int i = 0; i < variables.size(); i++) {
+        result.add(calls.get(i) == null ? variables.get(i).read() : calls.get(i).await());
+      }
+      return result;
+    } finally {
+      for (DataCall call : calls) {
+        if (call != null) {
+          call.cancel();
+        }
+      }
+    }
+  }
+
+  private DataCall startRead(Variable variable, Section sectionWanted) {
     final String spec = ParsedSectionSpec.makeSectionSpecString(variable, sectionWanted.getRanges());
     if (logger.isDebugEnabled()) {
       final long expected = sectionWanted.computeSize() * variable.getElementSize();
       logger.debug("GcdmNetcdfFile data request for spec=({})\n url='{}'\n path='{}' request bytes = {}\n", spec,
           this.remoteURI, this.path, expected);
     }
-    final Stopwatch stopwatch = Stopwatch.createStarted();
-
-    final List<Array> results = new ArrayList<>();
-    long size = 0;
+    final DataCall call = new DataCall(variable, sectionWanted);
     final DataRequest request = DataRequest.newBuilder().setLocation(this.path).setVariableSpec(spec).build();
-    try {
-      final Iterator<DataResponse> responses =
-          blockingStub.withDeadlineAfter(MAX_DATA_WAIT_SECONDS, TimeUnit.SECONDS).getNetcdfData(request);
-      while (responses.hasNext()) {
-        final DataResponse response = responses.next();
+    asyncStub.withDeadlineAfter(MAX_DATA_WAIT_SECONDS, TimeUnit.SECONDS).getNetcdfData(request, call);
+    return call;
+  }
+
+  /**
+   * Receives the DataResponses of one data request.
+   * The next response is only requested once the previous one has been decoded, so a fast server can't fill up memory.
+   * Primitive data is decoded straight into the storage of the result Array.
+   */
+  private static class DataCall implements ClientResponseObserver<DataRequest, DataResponse> {
+    private final Variable variable;
+    private final Section section;
+    private final CompletableFuture<Array> done = new CompletableFuture<>();
+    private final Stopwatch stopwatch = Stopwatch.createStarted();
+    private final Array result; // null if not primitive
+    private final List<Array> results = new ArrayList<>();
+    private int nelems; // number decoded into result
+    private volatile ClientCallStreamObserver<DataRequest> requestStream;
+
+    DataCall(Variable variable, Section section) {
+      this.variable = variable;
+      this.section = section;
+      DataType dataType = variable.getDataType();
+      boolean isPrimitive =
+          (dataType.isNumeric() || dataType.isString() || dataType.isEnum()) && !variable.isVariableLength();
+      this.result = isPrimitive ? Array.factory(dataType, section.getShape()) : null;
+    }
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<DataRequest> requestStream) {
+      this.requestStream = requestStream;
+      requestStream.disableAutoRequestWithInitial(1);
+    }
+
+    @Override
+    public void onNext(DataResponse response) {
+      if (done.isDone()) {
+        return;
+      }
+      try {
         if (response.hasError()) {
           throw new IOException(response.getError().getMessage());
         }
-        final Array result = GcdmConverter.decodeData(response.getData());
-        results.add(result);
-        size += result.getSize() * variable.getElementSize();
+        final Data data = response.getData();
+        if (result != null) {
+          final DataType dataType = GcdmConverter.convertDataType(data.getDataType());
+          if (dataType.getPrimitiveClassType() != variable.getDataType().getPrimitiveClassType()) {
+            throw new IOException("Unexpected data type " + dataType + " for " + variable.getFullName());
+          }
+          long expected = 1;
+          for (int i = 0; i < data.getShapesCount(); i++) {
+            expected *= data.getShapes(i);
+          }
+          if (nelems + expected > result.getSize()) {
+            throw new IOException("Too much data received for " + variable.getFullName());
+          }
+          nelems += GcdmConverter.decodeData(data, result.getStorage(), nelems);
+        } else {
+          results.add(GcdmConverter.decodeData(data));
+        }
         if (logger.isDebugEnabled()) {
-          logger.debug("  readArrayData bytes received = {}", result.getSize() * variable.getElementSize());
+          logger.debug("  readArrayData bytes received = {}", data.getSerializedSize());
         }
+        requestStream.request(1);
+
+      } catch (IOException | RuntimeException e) {
+        // the server doesnt end the stream after an error response
+        done.completeExceptionally(e);
+        requestStream.cancel("readData failed", null);
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      done.completeExceptionally(t);
+    }
+
+    @Override
+    public void onCompleted() {
+      if (result == null) {
+        done.complete(results.size() == 1 ? results.get(0)
+            : Array.factoryCopy(variable.getDataType(), section.getShape(), results));
+      } else if (nelems != result.getSize()) {
+        done.completeExceptionally(new IOException(
+            "Received " + nelems + " of " + result.getSize() + " values for " + variable.getFullName()));
+      } else {
+        done.complete(result);
       }
+    }
 
-    } catch (StatusRuntimeException e) {
-      logger.warn("readData failed: ", e);
-      throw new IOException(e);
+    Array await() throws IOException {
+      try {
+        final Array data = done.get();
+        long size = data.getSize() * variable.getElementSize();
+        logger.debug(" ** received={} took={} rate={} MB/sec", size, stopwatch.stop(),
+            ((double) size) / stopwatch.elapsed(TimeUnit.MICROSECONDS));
+        return data;
+
+      } catch (InterruptedException e) {
+        cancel();
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("readData interrupted");
 
-    } catch (Throwable t) {
-      logger.debug(" ** failed after {}", stopwatch);
-      logger.warn("readData failed: ", t);
-      throw new IOException(t);
+      } catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        logger.debug(" ** failed after {}", stopwatch);
+        logger.warn("readData failed: ", cause);
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException(cause);
+      }
     }
-    logger.debug(" ** received={} took={} rate={} MB/sec", size, stopwatch.stop(),
-        ((double) size) / stopwatch.elapsed(TimeUnit.MICROSECONDS));
 
-    if (results.size() == 1) {
-      return results.get(0);
-    } else {
-      return Array.factoryCopy(variable.getDataType(), sectionWanted.getShape(), results);
+    void cancel() {
+      if (!done.isDone() && requestStream != null) {
+        requestStream.cancel("readData cancelled", null);
+      }
     }
   }
 
@@ -123,14 +238,14 @@ public class GcdmNetcdfFile extends NetcdfFile {
   private final String remoteURI;
   private final String path;
   private final ManagedChannel channel;
-  private final GcdmGrpc.GcdmBlockingStub blockingStub;
+  private final GcdmGrpc.GcdmStub asyncStub;
 
   private GcdmNetcdfFile(Builder<?> builder) {
     super(builder);
     this.remoteURI = builder.remoteURI;
     this.path = builder.path;
     this.channel = builder.channel;
-    this.blockingStub = builder.blockingStub;
+    this.asyncStub = GcdmGrpc.newStub(channel);
   }
 
   public Builder<?> toBuilder() {
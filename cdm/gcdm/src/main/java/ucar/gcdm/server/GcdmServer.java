@@ -5,12 +5,23 @@
 package ucar.gcdm.server;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import ucar.gcdm.GcdmGrpc.GcdmImplBase;
 import ucar.gcdm.GcdmNetcdfProto;
 import ucar.gcdm.GcdmNetcdfProto.DataRequest;
@@ -24,6 +35,7 @@ import ucar.ma2.ArrayStructureW;
 import ucar.ma2.DataType;
 import ucar.ma2.Index;
 import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
 import ucar.ma2.Section;
 import ucar.ma2.StructureData;
 import ucar.ma2.StructureDataIterator;
@@ -32,7 +44,11 @@ import ucar.nc2.NetcdfFile;
 import ucar.nc2.ParsedSectionSpec;
 import ucar.nc2.Sequence;
 import ucar.nc2.Variable;
+import ucar.nc2.dataset.DatasetUrl;
 import ucar.nc2.dataset.NetcdfDatasets;
+import ucar.nc2.util.cache.FileCache;
+import ucar.nc2.util.cache.FileCacheIF;
+import ucar.nc2.util.cache.FileFactory;
 import ucar.nc2.write.ChunkingIndex;
 
 /** Server that manages startup/shutdown of a gCDM Server. */
@@ -44,10 +60,27 @@ public class GcdmServer {
   private static final int SEQUENCE_CHUNK = 1000;
   private static final int PORT = 16111;
 
+  private final int port;
+  private final FileCacheIF fileCache;
+  private final ExecutorService readExecutor;
   private Server server;
 
-  private void start() throws IOException {
-    server = ServerBuilder.forPort(PORT).addService(new GcdmImpl()).build().start();
+  public GcdmServer() {
+    this(PORT);
+  }
+
+  /** A server listening on the given port, or on any free port if 0. */
+  public GcdmServer(int port) {
+    this.port = port;
+    // keep recently used files open, many requests are for the same files. Every 15 minutes, or when more than 100
+    // are open, the least recently used files that aren't in use are closed until 10 remain.
+    this.fileCache = new FileCache("GcdmServer", 10, 100, -1, 15 * 60);
+    this.readExecutor = Executors
+        .newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("GcdmServer-read-%d").setDaemon(true).build());
+  }
+
+  public void start() throws IOException {
+    server = ServerBuilder.forPort(port).addService(new GcdmImpl(fileCache, readExecutor)).build().start();
     Runtime.getRuntime().addShutdownHook(new Thread(() -> {
       // Use stderr here since the logger may have been reset by its JVM shutdown hook.
       System.err.println("*** shutting down gRPC server since JVM is shutting down");
@@ -59,14 +92,21 @@ public class GcdmServer {
       System.err.println("*** server shut down");
     }));
 
-    logger.info("Server started, listening on " + PORT);
-    System.out.println("---> Server started, listening on " + PORT); // Used for gradle startDaemon
+    logger.info("Server started, listening on " + getPort());
+    System.out.println("---> Server started, listening on " + getPort()); // Used for gradle startDaemon
+  }
+
+  /** The port the server listens on, once started. */
+  public int getPort() {
+    return server.getPort();
   }
 
-  private void stop() throws InterruptedException {
+  public void stop() throws InterruptedException {
     if (server != null) {
       server.shutdown().awaitTermination(30, TimeUnit.SECONDS);
     }
+    readExecutor.shutdown();
+    fileCache.clearCache(true);
   }
 
   /** Await termination on the main thread since the grpc library uses daemon threads. */
@@ -84,11 +124,26 @@ public class GcdmServer {
   }
 
   static class GcdmImpl extends GcdmImplBase {
+    private static final FileFactory fileFactory = NetcdfDatasets::openFile;
+
+    private final FileCacheIF fileCache;
+    private final Executor readExecutor;
+
+    GcdmImpl(FileCacheIF fileCache, Executor readExecutor) {
+      this.fileCache = fileCache;
+      this.readExecutor = readExecutor;
+    }
+
+    /** Get the file from the cache, or open it. Closing it returns it to the cache. */
+    private NetcdfFile acquireFile(String location) throws IOException {
+      return (NetcdfFile) fileCache.acquire(fileFactory, DatasetUrl.findDatasetUrl(location));
+    }
+
     @Override
     public void getNetcdfHeader(HeaderRequest req, StreamObserver<HeaderResponse> responseObserver) {
       logger.info("GcdmServer getHeader " + req.getLocation());
       final HeaderResponse.Builder response = HeaderResponse.newBuilder();
-      try (NetcdfFile ncfile = NetcdfDatasets.openFile(req.getLocation(), null)) {
+      try (NetcdfFile ncfile = acquireFile(req.getLocation())) {
         final Header.Builder header = Header.newBuilder().setLocation(req.getLocation())
             .setRoot(GcdmConverter.encodeGroup(ncfile.getRootGroup(), 100).build());
         response.setHeader(header);
@@ -107,25 +162,37 @@ public class GcdmServer {
       final Stopwatch stopwatch = Stopwatch.createStarted();
       long size = -1;
 
-      try (NetcdfFile ncfile = NetcdfDatasets.openFile(req.getLocation(), null)) { // LOOK cache ncfile?
+      NetcdfFile ncfile = null;
+      boolean streaming = false; // the ChunkStreamer closes the file when it is done
+      try {
+        ncfile = acquireFile(req.getLocation());
         final ParsedSectionSpec varSection = ParsedSectionSpec.parseVariableSection(ncfile, req.getVariableSpec());
         final Variable var = varSection.getVariable();
         if (var instanceof Sequence) {
           size = getSequenceData(ncfile, varSection, responseObserver);
+          responseObserver.onCompleted();
         } else {
           final Section wantSection = varSection.getArraySection();
           size = var.getElementSize() * wantSection.computeSize();
-          getNetcdfData(ncfile, varSection, responseObserver);
+          if (size > MAX_MESSAGE && responseObserver instanceof ServerCallStreamObserver) {
+            final List<Section> chunks = makeChunks(wantSection, MAX_MESSAGE / var.getElementSize());
+            streaming = true;
+            new ChunkStreamer(ncfile, var, chunks, (ServerCallStreamObserver<DataResponse>) responseObserver,
+                readExecutor).start();
+          } else {
+            getNetcdfData(ncfile, varSection, responseObserver);
+            responseObserver.onCompleted();
+          }
         }
-        responseObserver.onCompleted();
       } catch (Throwable t) {
         logger.warn("GcdmServer getData failed ", t);
         t.printStackTrace();
-        final DataResponse.Builder response =
-            DataResponse.newBuilder().setLocation(req.getLocation()).setVariableSpec(req.getVariableSpec());
-        response.setError(
-            GcdmNetcdfProto.Error.newBuilder().setMessage(t.getMessage() == null ? "N/A" : t.getMessage()).build());
-        responseObserver.onNext(response.build());
+        responseObserver.onNext(makeError(req.getLocation(), req.getVariableSpec(), t));
+        responseObserver.onCompleted();
+      } finally {
+        if (ncfile != null && !streaming) {
+          closeQuietly(ncfile);
+        }
       }
 
       logger.debug(" ** size={} took={}", size, stopwatch.stop());
@@ -148,21 +215,54 @@ public class GcdmServer {
         StreamObserver<DataResponse> responseObserver) throws IOException, InvalidRangeException {
 
       final Variable var = varSection.getVariable();
-      final Section section = varSection.getArraySection();
       long maxChunkElems = MAX_MESSAGE / var.getElementSize();
+      for (Section chunkSection : makeChunks(varSection.getArraySection(), maxChunkElems)) {
+        getOneChunk(ncfile, new ParsedSectionSpec(var, chunkSection), responseObserver);
+      }
+    }
+
+    /** Split the wanted section of a variable into sections of at most maxChunkElems. */
+    private static List<Section> makeChunks(Section section, long maxChunkElems) throws InvalidRangeException {
+      final List<Section> chunks = new ArrayList<>();
       final ChunkingIndex index = new ChunkingIndex(section.getShape());
       while (index.currentElement() < index.getSize()) {
         final int[] chunkOrigin = index.getCurrentCounter();
         final int[] chunkShape = index.computeChunkShape(maxChunkElems);
-        final Section chunkSection = new Section(chunkOrigin, chunkShape);
-        final ParsedSectionSpec spec = new ParsedSectionSpec(var, chunkSection);
-        getOneChunk(ncfile, spec, responseObserver);
+        // the chunk is relative to the wanted section
+        final List<Range> ranges = new ArrayList<>();
+        for (int i = 0; i < chunkOrigin.length; i++) {
+          final Range range = section.getRange(i);
+          final int first = range.first() + chunkOrigin[i] * range.stride();
+          ranges.add(new Range(range.getName(), first, first + (chunkShape[i] - 1) * range.stride(), range.stride()));
+        }
+        chunks.add(new Section(ranges));
         index.setCurrentCounter(index.currentElement() + (int) Index.computeSize(chunkShape));
       }
+      return chunks;
+    }
+
+    private static DataResponse makeError(String location, String spec, Throwable t) {
+      final DataResponse.Builder response = DataResponse.newBuilder().setLocation(location).setVariableSpec(spec);
+      response.setError(
+          GcdmNetcdfProto.Error.newBuilder().setMessage(t.getMessage() == null ? "N/A" : t.getMessage()).build());
+      return response.build();
+    }
+
+    private static void closeQuietly(NetcdfFile ncfile) {
+      try {
+        ncfile.close();
+      } catch (IOException e) {
+        logger.warn("GcdmServer close failed ", e);
+      }
     }
 
     private void getOneChunk(NetcdfFile ncfile, ParsedSectionSpec varSection,
         StreamObserver<DataResponse> responseObserver) throws IOException, InvalidRangeException {
+      responseObserver.onNext(readChunk(ncfile, varSection));
+    }
+
+    private static DataResponse readChunk(NetcdfFile ncfile, ParsedSectionSpec varSection)
+        throws IOException, InvalidRangeException {
 
       final String spec = varSection.makeSectionSpecString();
       final Variable var = varSection.getVariable();
@@ -173,9 +273,8 @@ public class GcdmServer {
 
       final Array data = var.read(wantSection);
       response.setData(GcdmConverter.encodeData(data.getDataType(), data));
-
-      responseObserver.onNext(response.build());
-      logger.debug("Send one chunk {} size={} bytes", spec, data.getSize() * varSection.getVariable().getElementSize());
+      logger.debug("Read one chunk {} size={} bytes", spec, data.getSize() * varSection.getVariable().getElementSize());
+      return response.build();
     }
 
     // TODO count >= SEQUENCE_CHUNK is not covered in tests
@@ -206,5 +305,106 @@ public class GcdmServer {
       }
       return (long) (start + count) * members.getStructureSize();
     }
+
+    /**
+     * Sends the chunks of a large data request. The next chunk is read while the previous one is on the wire,
+     * and a chunk is only sent when the client is ready for it, see ServerCallStreamObserver.isReady().
+     * Nothing blocks the gRPC threads: sending is driven by the onReady handler and by the completion of reads.
+     * Closes the file when done.
+     */
+    private static class ChunkStreamer {
+      private final NetcdfFile ncfile;
+      private final Variable var;
+      private final List<Section> chunks;
+      private final ServerCallStreamObserver<DataResponse> responseObserver;
+      private final Executor readExecutor;
+
+      private int next; // next chunk to read
+      private CompletableFuture<DataResponse> reading; // at most one read at a time
+      private boolean finished;
+      private volatile boolean cancelled;
+
+      ChunkStreamer(NetcdfFile ncfile, Variable var, List<Section> chunks,
+          ServerCallStreamObserver<DataResponse> responseObserver, Executor readExecutor) {
+        this.ncfile = ncfile;
+        this.var = var;
+        this.chunks = chunks;
+        this.responseObserver = responseObserver;
+        this.readExecutor = readExecutor;
+      }
+
+      // must be called from the service method
+      void start() {
+        responseObserver.setOnReadyHandler(this::drain);
+        responseObserver.setOnCancelHandler(() -> {
+          cancelled = true;
+          drain();
+        });
+        drain();
+      }
+
+      private CompletableFuture<DataResponse> read(Section chunkSection) {
+        final CompletableFuture<DataResponse> result = new CompletableFuture<>();
+        try {
+          readExecutor.execute(() -> {
+            try {
+              result.complete(readChunk(ncfile, new ParsedSectionSpec(var, chunkSection)));
+            } catch (Throwable t) {
+              result.completeExceptionally(t);
+            }
+            drain();
+          });
+        } catch (RejectedExecutionException e) { // the server is shutting down
+          result.completeExceptionally(e);
+        }
+        return result;
+      }
+
+      /** Send what can be sent, start the next read. Called again when a read completes or the client is ready. */
+      private synchronized void drain() {
+        while (!finished) {
+          if (reading == null) {
+            if (cancelled || next == chunks.size()) {
+              finish(null);
+              return;
+            }
+            reading = read(chunks.get(next++));
+          }
+          if (!reading.isDone()) {
+            return;
+          }
+          if (cancelled) {
+            finish(null);
+            return;
+          }
+          if (!responseObserver.isReady()) {
+            return;
+          }
+          final DataResponse response;
+          try {
+            response = reading.get();
+          } catch (ExecutionException | InterruptedException e) {
+            finish(e.getCause() != null ? e.getCause() : e);
+            return;
+          }
+          // read ahead the next chunk while this one is sent
+          reading = next < chunks.size() ? read(chunks.get(next++)) : null;
+          responseObserver.onNext(response);
+        }
+      }
+
+      private void finish(@Nullable Throwable failure) {
+        finished = true;
+        closeQuietly(ncfile);
+        if (cancelled) {
+          return;
+        }
+        if (failure != null) {
+          logger.warn("GcdmServer getData failed ", failure);
+          responseObserver.onNext(makeError(ncfile.getLocation(), var.getFullName(), failure));
+        }
+        responseObserver.onCompleted();
+      }
+    }
   } // GcdmImpl
 }
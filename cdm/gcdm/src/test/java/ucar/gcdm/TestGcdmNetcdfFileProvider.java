@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.gcdm;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.gcdm.client.GcdmNetcdfFile;
+import ucar.gcdm.server.GcdmServer;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Variable;
+import ucar.nc2.dataset.NetcdfDatasets;
+import ucar.nc2.write.NetcdfFormatWriter;
+import ucar.unidata.util.test.TestDir;
+
+/** Open gcdm urls through NetcdfDatasets, against a server in this process. */
+public class TestGcdmNetcdfFileProvider {
+  private static boolean permitCaching;
+  private static GcdmServer server;
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @BeforeClass
+  public static void startServer() throws Exception {
+    // make sure to fetch data through gcdm every time
+    permitCaching = Variable.permitCaching;
+    Variable.permitCaching = false;
+    server = new GcdmServer(0);
+    server.start();
+  }
+
+  @AfterClass
+  public static void stopServer() throws Exception {
+    try {
+      if (server != null)
+        server.stop();
+    } finally {
+      Variable.permitCaching = permitCaching;
+    }
+  }
+
+  private static String gcdmUrl(String filename) {
+    return "gcdm://localhost:" + server.getPort() + "/" + Paths.get(filename).toAbsolutePath();
+  }
+
+  @Test
+  public void shouldReadLikeLocalFile() throws Exception {
+    checkFile(TestDir.cdmLocalTestDataDir + "example1.nc");
+    checkFile("../../dap4/src/test/data/resources/nctestfiles/test_atomic_array.nc");
+    checkFile("../../dap4/src/test/data/resources/nctestfiles/test_enum_array.nc");
+  }
+
+  @Test
+  public void shouldReadSection() throws Exception {
+    String filename = TestDir.cdmLocalTestDataDir + "example1.nc";
+    try (NetcdfFile ncfile = NetcdfDatasets.openFile(filename, null);
+        NetcdfFile gcdmFile = NetcdfDatasets.openFile(gcdmUrl(filename), null)) {
+      Array expected = ncfile.findVariable("T").read("1,0:2:2,1:2");
+      Array data = gcdmFile.findVariable("T").read("1,0:2:2,1:2");
+      checkEquals(data, expected);
+    }
+  }
+
+  @Test
+  public void shouldStreamLargeSection() throws Exception {
+    String filename = tempFolder.newFile().getAbsolutePath();
+    NetcdfFormatWriter.Builder writerBuilder = NetcdfFormatWriter.createNewNetcdf3(filename);
+    writerBuilder.addDimension("dimension", 14_000_000);
+    writerBuilder.addVariable("values", DataType.INT, "dimension");
+    try (NetcdfFormatWriter writer = writerBuilder.build()) {
+      writer.write("values", Array.makeArray(DataType.INT, 14_000_000, 0, 1));
+    }
+
+    try (NetcdfFile gcdmFile = NetcdfDatasets.openFile(gcdmUrl(filename), null)) {
+      Variable variable = gcdmFile.findVariable("values");
+      Section section = new Section("1000000:13999999");
+      assertThat(section.computeSize() * variable.getElementSize()).isGreaterThan(GcdmServer.MAX_MESSAGE);
+
+      Array data = variable.read(section);
+      int[] expected = new int[(int) section.computeSize()];
+      for (int i = 0; i < expected.length; i++) {
+        expected[i] = i + 1000000;
+      }
+      assertThat(Arrays.equals((int[]) data.get1DJavaArray(DataType.INT), expected)).isTrue();
+    }
+  }
+
+  @Test
+  public void shouldStreamLargeStridedSection() throws Exception {
+    String filename = tempFolder.newFile().getAbsolutePath();
+    NetcdfFormatWriter.Builder writerBuilder = NetcdfFormatWriter.createNewNetcdf3(filename);
+    writerBuilder.addDimension("dimension", 14_000_000);
+    writerBuilder.addVariable("values", DataType.DOUBLE, "dimension");
+    try (NetcdfFormatWriter writer = writerBuilder.build()) {
+      writer.write("values", Array.makeArray(DataType.DOUBLE, 14_000_000, 0, 1));
+    }
+
+    try (NetcdfFile gcdmFile = NetcdfDatasets.openFile(gcdmUrl(filename), null)) {
+      Variable variable = gcdmFile.findVariable("values");
+      // the chunks must be taken from the wanted section, not from the start of the variable
+      Section section = new Section("1000001:13999999:2");
+      assertThat(section.computeSize() * variable.getElementSize()).isGreaterThan(GcdmServer.MAX_MESSAGE);
+
+      Array data = variable.read(section);
+      double[] expected = new double[(int) section.computeSize()];
+      for (int i = 0; i < expected.length; i++) {
+        expected[i] = 1000001 + 2 * i;
+      }
+      assertThat(Arrays.equals((double[]) data.get1DJavaArray(DataType.DOUBLE), expected)).isTrue();
+    }
+  }
+
+  private void checkFile(String filename) throws Exception {
+    try (NetcdfFile ncfile = NetcdfDatasets.openFile(filename, null);
+        NetcdfFile gcdmFile = NetcdfDatasets.openFile(gcdmUrl(filename), null)) {
+      assertThat(gcdmFile).isInstanceOf(GcdmNetcdfFile.class);
+
+      List<Variable> variables = new ArrayList<>();
+      for (Variable v : ncfile.getVariables()) {
+        variables.add(gcdmFile.findVariable(v.getFullNameEscaped()));
+      }
+      // all requests in flight at once
+      List<Array> results = gcdmFile.readArrays(variables);
+      for (int i = 0; i < variables.size(); i++) {
+        Array expected = ncfile.getVariables().get(i).read();
+        checkEquals(results.get(i), expected);
+        // one at a time
+        checkEquals(variables.get(i).read(), expected);
+      }
+    }
+  }
+
+  private void checkEquals(Array data, Array expected) {
+    assertThat(data.getShape()).isEqualTo(expected.getShape());
+    assertThat(data.copyTo1DJavaArray()).isEqualTo(expected.copyTo1DJavaArray());
+  }
+}
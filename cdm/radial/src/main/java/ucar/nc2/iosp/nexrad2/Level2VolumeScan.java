@@ -195,71 +195,77 @@ public class Level2VolumeScan {
 
     long message_offset31 = 0;
     int recno = 0;
-    while (true) {
+    boolean readAhead = raf.isReadAhead();
+    raf.setReadAhead(true); // records are read front to back
+    try {
+      while (true) {
 
-      Level2Record r = Level2Record.factory(raf, recno++, message_offset31);
-      if (r == null) {
-        break;
-      }
-      if (showData) {
-        r.dump2(System.out);
-      }
-      // skip non-data messages
-      if (r.message_type == 31) {
-        message_offset31 = message_offset31 + (r.message_size * 2 + 12 - 2432);
-      }
-
-      if (r.message_type != 1 && r.message_type != 31) {
-        if (showMessages) {
-          r.dumpMessage(System.out);
+        Level2Record r = Level2Record.factory(raf, recno++, message_offset31);
+        if (r == null) {
+          break;
+        }
+        if (showData) {
+          r.dump2(System.out);
+        }
+        // skip non-data messages
+        if (r.message_type == 31) {
+          message_offset31 = message_offset31 + (r.message_size * 2 + 12 - 2432);
         }
-        continue;
-      }
-
-      // some global params
-      if (vcp == 0) {
-        vcp = r.vcp;
-      }
-      if (first == null) {
-        first = r;
-      }
-      last = r;
-
-      if (runCheck && !r.checkOk()) {
-        continue;
-      }
 
-      if (r.hasReflectData) {
-        reflectivity.add(r);
-      }
-      if (r.hasDopplerData) {
-        doppler.add(r);
-      }
+        if (r.message_type != 1 && r.message_type != 31) {
+          if (showMessages) {
+            r.dumpMessage(System.out);
+          }
+          continue;
+        }
 
-      if (r.message_type == 31) {
-        if (r.hasHighResREFData) {
-          highReflectivity.add(r);
+        // some global params
+        if (vcp == 0) {
+          vcp = r.vcp;
         }
-        if (r.hasHighResVELData) {
-          highVelocity.add(r);
+        if (first == null) {
+          first = r;
         }
-        if (r.hasHighResSWData) {
-          highSpectrum.add(r);
+        last = r;
+
+        if (runCheck && !r.checkOk()) {
+          continue;
         }
-        if (r.hasHighResZDRData) {
-          highDiffReflectivity.add(r);
+
+        if (r.hasReflectData) {
+          reflectivity.add(r);
         }
-        if (r.hasHighResPHIData) {
-          highDiffPhase.add(r);
+        if (r.hasDopplerData) {
+          doppler.add(r);
         }
-        if (r.hasHighResRHOData) {
-          highCorreCoefficient.add(r);
+
+        if (r.message_type == 31) {
+          if (r.hasHighResREFData) {
+            highReflectivity.add(r);
+          }
+          if (r.hasHighResVELData) {
+            highVelocity.add(r);
+          }
+          if (r.hasHighResSWData) {
+            highSpectrum.add(r);
+          }
+          if (r.hasHighResZDRData) {
+            highDiffReflectivity.add(r);
+          }
+          if (r.hasHighResPHIData) {
+            highDiffPhase.add(r);
+          }
+          if (r.hasHighResRHOData) {
+            highCorreCoefficient.add(r);
+          }
         }
-      }
 
-      if ((cancelTask != null) && cancelTask.isCancel()) {
-        return;
+        if ((cancelTask != null) && cancelTask.isCancel()) {
+          return;
+        }
       }
+    } finally {
+      raf.setReadAhead(readAhead);
     }
     if (debugRadials) {
       System.out.println(" reflect ok= " + reflectivity.size() + " doppler ok= " + doppler.size());
@@ -670,6 +676,8 @@ public class Level2VolumeScan {
    * @throws IOException on read error
    */
   private void uncompress(RandomAccessFile inputRaf, String ufilename) throws IOException {
+    boolean readAhead = inputRaf.isReadAhead();
+    inputRaf.setReadAhead(true); // compressed blocks are read front to back
 
     FileLock lock = null;
     boolean needsDelete = false;
@@ -777,6 +785,8 @@ public class Level2VolumeScan {
         }
       }
       throw t;
+    } finally {
+      inputRaf.setReadAhead(readAhead);
     } // try-with-resource
   }
 
@@ -5,9 +5,11 @@
 
 package ucar.nc2.iosp.zarr;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import ucar.ma2.ArrayObject;
+import ucar.ma2.DataType;
 import ucar.nc2.Attribute;
 import ucar.nc2.Dimension;
 import ucar.nc2.Group;
@@ -23,6 +25,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.ByteOrder;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Class to read Zarr metadata from a RandomAccessDirectory and map it to a CDM Object
@@ -51,6 +54,7 @@ public class ZarrHeader {
     private RandomAccessDirectoryItem var;
     private ZArray zarray;
     private Map<Integer, Long> initializedChunks; // track any uninitialized chunks for var
+    private Map<Integer, Long> chunkOffsets; // byte position of each initialized chunk
     private List<Attribute> attrs; // list of variable attributes
     private long dataOffset; // byte position where data starts
 
@@ -62,6 +66,7 @@ public class ZarrHeader {
       this.var = var;
       this.attrs = null;
       this.initializedChunks = new HashMap<>();
+      this.chunkOffsets = new HashMap<>();
       this.dataOffset = -1;
       if (var != null) {
         try {
@@ -101,6 +106,7 @@ public class ZarrHeader {
         this.var = null; // skip rest of var is unrecognized files found
       }
       this.initializedChunks.put(index, item.length());
+      this.chunkOffsets.put(index, item.startIndex());
       // if data offset is uninitialized, set here
       if (this.dataOffset < 0) {
         this.dataOffset = item.startIndex();
@@ -112,7 +118,7 @@ public class ZarrHeader {
         return; // do nothing if no variable is in progress
       }
       try {
-        makeVariable(var, dataOffset, zarray, initializedChunks, attrs);
+        makeVariable(var, dataOffset, zarray, initializedChunks, chunkOffsets, attrs);
       } catch (ZarrFormatException ex) {
         logger.error(ex.getMessage());
       }
@@ -127,6 +133,10 @@ public class ZarrHeader {
    */
   public void read() throws IOException {
     List<RandomAccessDirectoryItem> items = this.rootRaf.getFilesInPath(this.rootLocation);
+    if (isZarrV3(items)) {
+      readV3(items);
+      return;
+    }
     DelayedVarMaker delayedVarMaker = new DelayedVarMaker();
 
     List<Attribute> grp_attrs = null;
@@ -169,11 +179,143 @@ public class ZarrHeader {
     delayedVarMaker.makeVar();
   }
 
+  private static boolean isZarrV3(List<RandomAccessDirectoryItem> items) {
+    return items.stream()
+        .anyMatch(item -> ZarrUtils.trimLocation(item.getLocation()).endsWith('/' + ZarrKeys.ZARR_JSON));
+  }
+
+  /**
+   * Create CDM object from a Zarr v3 store.
+   * Each group and array has a zarr.json holding its attributes, and in sorted order it comes after the chunks
+   * and children, so all metadata is read first (parents before children) and the remaining files are then
+   * assigned to their array as chunks.
+   */
+  private void readV3(List<RandomAccessDirectoryItem> items) {
+    List<RandomAccessDirectoryItem> metadata = new ArrayList<>();
+    List<RandomAccessDirectoryItem> data = new ArrayList<>();
+    for (RandomAccessDirectoryItem item : items) {
+      if (ZarrUtils.trimLocation(item.getLocation()).endsWith('/' + ZarrKeys.ZARR_JSON)) {
+        metadata.add(item);
+      } else {
+        data.add(item);
+      }
+    }
+    metadata.sort(Comparator.comparingInt((RandomAccessDirectoryItem item) -> pathDepth(item.getLocation()))
+        .thenComparing(RandomAccessDirectoryItem::getLocation));
+
+    Map<String, V3VarMaker> arrays = new LinkedHashMap<>(); // keyed by the array path
+    for (RandomAccessDirectoryItem item : metadata) {
+      String location = ZarrUtils.trimLocation(item.getLocation());
+      try {
+        RandomAccessFile raf = item.getOrOpenRaf();
+        raf.seek(0); // reset in case file has previously been opened by another iosp
+        JsonNode root = objectMapper.readValue(raf, JsonNode.class);
+        String nodeType = root.path(ZarrKeys.NODE_TYPE).asText();
+        if ("group".equals(nodeType)) {
+          JsonNode attrs = root.path(ZarrKeys.ATTRIBUTES);
+          makeGroup(item, attrs.isObject() ? makeAttributes(objectMapper.convertValue(attrs, HashMap.class)) : null);
+        } else if ("array".equals(nodeType)) {
+          arrays.put(location.substring(0, location.lastIndexOf('/')),
+              new V3VarMaker(location, new ZarrV3Array(root, objectMapper)));
+        } else {
+          throw new ZarrFormatException(ZarrKeys.NODE_TYPE, nodeType);
+        }
+      } catch (IOException | ZarrFormatException | IllegalArgumentException ex) {
+        // skip object if metadata invalid
+        logger.error(new ZarrFormatException(ex.getMessage()).getMessage());
+      }
+    }
+
+    // every other file is a chunk of the closest enclosing array
+    for (RandomAccessDirectoryItem item : data) {
+      String location = ZarrUtils.trimLocation(item.getLocation());
+      int pos = location.length();
+      while ((pos = location.lastIndexOf('/', pos - 1)) > 0) {
+        V3VarMaker maker = arrays.get(location.substring(0, pos));
+        if (maker != null) {
+          maker.addChunk(location.substring(pos + 1), item);
+          break;
+        }
+      }
+    }
+
+    for (V3VarMaker maker : arrays.values()) {
+      maker.makeVar();
+    }
+  }
+
+  private static int pathDepth(String location) {
+    String path = ZarrUtils.trimLocation(location);
+    int depth = 0;
+    for (int i = 0; i < path.length(); i++) {
+      if (path.charAt(i) == '/') {
+        depth++;
+      }
+    }
+    return depth;
+  }
+
+  /**
+   * Collects the chunks of a Zarr v3 array, then creates the Variable
+   */
+  private class V3VarMaker {
+    private final String location; // location of the zarr.json
+    private final ZarrV3Array zarray;
+    private final Map<Integer, Long> initializedChunks = new HashMap<>();
+    private final Map<Integer, Long> chunkOffsets = new HashMap<>();
+    private long dataOffset = -1;
+
+    V3VarMaker(String location, ZarrV3Array zarray) {
+      this.location = location;
+      this.zarray = zarray;
+    }
+
+    void addChunk(String key, RandomAccessDirectoryItem item) {
+      int index = zarray.getChunkIndex(key);
+      if (index < 0) {
+        logger.debug("{}: ignoring file {} that is not a chunk", location, key);
+        return;
+      }
+      initializedChunks.put(index, item.length());
+      chunkOffsets.put(index, item.startIndex());
+      if (dataOffset < 0 || item.startIndex() < dataOffset) {
+        dataOffset = item.startIndex();
+      }
+    }
+
+    void makeVar() {
+      String vname = ZarrUtils.getObjectNameFromPath(location);
+      logger.trace("evaluating {}", vname);
+
+      // dimensions are only shared if they all have names
+      String[] dimNames = zarray.getDimensionNames();
+      if (dimNames != null && Arrays.stream(dimNames).anyMatch(Objects::isNull)) {
+        dimNames = null;
+      }
+
+      ZarrV3Array.Sharding sharding = zarray.getSharding();
+      List<Filter> filters = sharding == null ? zarray.getFilters() : sharding.getFilters();
+      String compressorName = filters.isEmpty() ? "none"
+          : filters.stream().map(Filter::getName).collect(Collectors.joining(","));
+
+      VInfo vinfo = new VInfo(zarray.getChunks(), zarray.getFillValue(), null,
+          sharding == null ? zarray.getByteOrder() : sharding.getByteOrder(), zarray.getOrder(), zarray.getSeparator(),
+          zarray.getFilters(), dataOffset, initializedChunks, chunkOffsets, sharding);
+      try {
+        addVariable(location, vname, zarray.getDataType(), zarray.getShape(), dimNames, vinfo,
+            makeAttributes(zarray.getAttributes()), compressorName);
+      } catch (ZarrFormatException ex) {
+        logger.error(ex.getMessage());
+      }
+    }
+  }
+
   private void makeGroup(RandomAccessDirectoryItem item, List<Attribute> attrs) {
     // make new Group
     Group.Builder group = Group.builder();
     String location = ZarrUtils.trimLocation(item.getLocation());
-    if (location.equals(this.rootLocation + '/' + ZarrKeys.ZGROUP)) {
+    if (location.equals(this.rootLocation + '/' + ZarrKeys.ZGROUP)
+        || location.equals(this.rootLocation + '/' + ZarrKeys.ZARR_JSON)) {
       group = this.rootGroup;
     }
     // set Group name
@@ -197,14 +339,12 @@ public class ZarrHeader {
   }
 
   private void makeVariable(RandomAccessDirectoryItem item, long dataOffset, ZArray zarray,
-      Map<Integer, Long> initializedChunks, List<Attribute> attrs) throws ZarrFormatException {
-    // make new Variable
-    Variable.Builder<?> var = Variable.builder();
+      Map<Integer, Long> initializedChunks, Map<Integer, Long> chunkOffsets, List<Attribute> attrs)
+      throws ZarrFormatException {
     String location = ZarrUtils.trimLocation(item.getLocation());
 
     // set var name
     String vname = ZarrUtils.getObjectNameFromPath(location);
-    var.setName(vname);
     logger.trace("evaluating {}", vname);
 
     // Check if var has named dimensions by looking for _ARRAY_DIMENSIONS attribute.
@@ -213,7 +353,6 @@ public class ZarrHeader {
     // See under "Client Parameters" on https://docs.unidata.ucar.edu/nug/current/nczarr_head.html
     // We do nothing to check how that's set.
     String[] dimNames = null;
-    boolean hasNamedDimensions = false;
 
     if (attrs != null) {
 
@@ -230,7 +369,6 @@ public class ZarrHeader {
             for (int i = 0; i < aodSize; ++i) {
               dimNames[i] = (String) aod1.get(i);
             }
-            hasNamedDimensions = true;
           } catch (final Exception exc) {
             logger.debug("  Could not extract _ARRAY_DIMENSIONS for {}, {}", vname, exc.getMessage());
           }
@@ -238,16 +376,46 @@ public class ZarrHeader {
       }
     }
 
+    // check that dimensions and chunks match
+    int[] shape = zarray.getShape();
+    int[] chunks = zarray.getChunks();
+    if (shape.length != chunks.length) {
+      throw new ZarrFormatException();
+    }
+
+    // create VInfo
+    VInfo vinfo = new VInfo(chunks, zarray.getFillValue(), zarray.getCompressor(), zarray.getByteOrder(),
+        zarray.getOrder(), zarray.getSeparator(), zarray.getFilters(), dataOffset, initializedChunks, chunkOffsets,
+        null);
+
+    final Filter compressor = zarray.getCompressor();
+    String compressorName = compressor == null ? "none" : compressor.getName();
+
+    addVariable(location, vname, zarray.getDataType(), shape, dimNames, vinfo, attrs, compressorName);
+  }
+
+  /**
+   * Add a variable to its parent group, shared by Zarr v2 and v3
+   *
+   * @param location location of the variable's metadata file
+   * @param dimNames dimension names, or null if the dimensions are anonymous
+   */
+  private void addVariable(String location, String vname, DataType dataType, int[] shape, String[] dimNames,
+      VInfo vinfo, List<Attribute> attrs, String compressorName) throws ZarrFormatException {
+    // make new Variable
+    Variable.Builder<?> var = Variable.builder();
+    var.setName(vname);
+
+    boolean hasNamedDimensions = dimNames != null;
+
     // set variable datatype
-    var.setDataType(zarray.getDataType());
+    var.setDataType(dataType);
 
     // find variable's group or throw if non-existent.
     final Group.Builder parentGroup = findGroup(location);
 
     // create and set dimensions
     // If hasNamedDimensions set above, we will want to share var's dimensions with the group.
-    int[] shape = zarray.getShape();
-
     if (hasNamedDimensions && shape.length != dimNames.length) {
       throw new ZarrFormatException("Array " + vname + " has dimensions attribute count that does not match its rank.");
     }
@@ -283,15 +451,6 @@ public class ZarrHeader {
     }
     var.addDimensions(dims);
 
-    // check that dimensions and chunks match
-    int[] chunks = zarray.getChunks();
-    if (shape.length != chunks.length) {
-      throw new ZarrFormatException();
-    }
-
-    // create VInfo
-    VInfo vinfo = new VInfo(chunks, zarray.getFillValue(), zarray.getCompressor(), zarray.getByteOrder(),
-        zarray.getOrder(), zarray.getSeparator(), zarray.getFilters(), dataOffset, initializedChunks);
     var.setSPobject(vinfo);
 
     // Include some info from .zarray file in attributes for display when showing variable detail.
@@ -299,12 +458,7 @@ public class ZarrHeader {
     if (attrs == null) {
       attrs = new ArrayList<>();
     }
-    final Filter compressor = zarray.getCompressor();
-    if (compressor == null) {
-      attrs.add(new Attribute("_Compressor", "none"));
-    } else {
-      attrs.add(new Attribute("_Compressor", zarray.getCompressor().getName()));
-    }
+    attrs.add(new Attribute("_Compressor", compressorName));
 
     // add current attributes, if any exist
     var.addAttributes(attrs);
@@ -320,28 +474,31 @@ public class ZarrHeader {
       // read attributes from file
       raf.seek(0);
       Map<String, Object> attrMap = objectMapper.readValue(raf, HashMap.class);
-
-      // create Attribute objects
-      List<Attribute> attrs = new ArrayList<>();
-      attrMap.keySet().forEach(key -> {
-        Attribute.Builder attr = Attribute.builder(key);
-        Object val = attrMap.get(key);
-        if (val instanceof Collection<?>) {
-          attr.setValues(Arrays.asList(((Collection) val).toArray()), false);
-        } else if (val instanceof Number) {
-          attr.setNumericValue((Number) val, false);
-        } else {
-          attr.setStringValue((String) val);
-        }
-        attrs.add(attr.build());
-      });
-      return attrs;
+      return makeAttributes(attrMap);
     } catch (IOException ioe) {
       ZarrIosp.logger.error(new ZarrFormatException().getMessage());
     }
     return null;
   }
 
+  private static List<Attribute> makeAttributes(Map<String, Object> attrMap) {
+    // create Attribute objects
+    List<Attribute> attrs = new ArrayList<>();
+    attrMap.keySet().forEach(key -> {
+      Attribute.Builder attr = Attribute.builder(key);
+      Object val = attrMap.get(key);
+      if (val instanceof Collection<?>) {
+        attr.setValues(Arrays.asList(((Collection) val).toArray()), false);
+      } else if (val instanceof Number) {
+        attr.setNumericValue((Number) val, false);
+      } else {
+        attr.setStringValue(val == null ? null : val.toString());
+      }
+      attrs.add(attr.build());
+    });
+    return attrs;
+  }
+
   /**
    * Get chunk number from file name
    */
@@ -368,7 +525,7 @@ public class ZarrHeader {
     int[] shape = zarray.getShape();
     int[] chunkSize = zarray.getChunks();
     for (int i = 0; i < nDims; i++) {
-      nChunks[i] = (int) Math.ceil(shape[i] / chunkSize[i]);
+      nChunks[i] = (shape[i] + chunkSize[i] - 1) / chunkSize[i];
     }
     return ZarrUtils.subscriptsToIndex(subs, nChunks);
   }
@@ -397,9 +554,12 @@ public class ZarrHeader {
     private final List<Filter> filters;
     private final long offset;
     private final Map<Integer, Long> initializedChunks;
+    private final Map<Integer, Long> chunkOffsets;
+    private final ZarrV3Array.Sharding sharding;
 
     VInfo(int[] chunks, Object fillValue, Filter compressor, ByteOrder byteOrder, ZArray.Order order, String separator,
-        List<Filter> filters, long offset, Map<Integer, Long> initializedChunks) {
+        List<Filter> filters, long offset, Map<Integer, Long> initializedChunks, Map<Integer, Long> chunkOffsets,
+        ZarrV3Array.Sharding sharding) {
       this.chunks = chunks;
       this.fillValue = fillValue;
       this.byteOrder = byteOrder;
@@ -409,6 +569,8 @@ public class ZarrHeader {
       this.filters = filters;
       this.offset = offset;
       this.initializedChunks = initializedChunks;
+      this.chunkOffsets = chunkOffsets;
+      this.sharding = sharding;
     }
 
     public int[] getChunks() {
@@ -447,6 +609,16 @@ public class ZarrHeader {
       return this.initializedChunks;
     }
 
+    /** byte position of each initialized chunk in the RandomAccessDirectory */
+    public Map<Integer, Long> getChunkOffsets() {
+      return this.chunkOffsets;
+    }
+
+    /** Zarr v3 sharding, or null if not sharded */
+    public ZarrV3Array.Sharding getSharding() {
+      return this.sharding;
+    }
+
   }
 
 }
@@ -29,7 +29,7 @@ public class ZarrIosp extends AbstractIOServiceProvider {
   static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   private static final String fileTypeId = "Zarr";
-  private static final String fileTypeDescription = "Zarr v2 formatted dataset";
+  private static final String fileTypeDescription = "Zarr v2 or v3 formatted dataset";
 
   private ZarrHeader header;
 
@@ -83,7 +83,8 @@ public class ZarrIosp extends AbstractIOServiceProvider {
     Object fillValue = getFillValue(vinfo, dataType);
 
     // create layout object
-    Layout layout = new ZarrLayoutBB(v2, section, this.raf);
+    Layout layout = vinfo.getSharding() != null ? new ZarrShardedLayoutBB(v2, section, this.raf)
+        : new ZarrLayoutBB(v2, section, this.raf);
     Object data = IospHelper.readDataFill((LayoutBB) layout, dataType, fillValue);
 
     Array array = Array.factory(dataType, section.getShape(), data);
@@ -0,0 +1,759 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.annotation.Nullable;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.ma2.StructureData;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Structure;
+import ucar.nc2.Variable;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.filter.Filter;
+import ucar.nc2.filter.Filters;
+import ucar.nc2.filter.UnknownFilterException;
+import ucar.nc2.iosp.IOServiceProviderWriter;
+import ucar.nc2.util.CancelTask;
+import ucar.nc2.write.Nc4Chunking;
+import ucar.nc2.write.Nc4ChunkingDefault;
+import ucar.nc2.write.NetcdfFileFormat;
+import ucar.nc2.write.NetcdfFormatWriter;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * IOServiceProviderWriter for Zarr v2 stores.
+ * Writes a directory store, or a zip store if the location ends with ".zip".
+ * Chunk shapes, deflate level and shuffle are taken from the Nc4Chunking, as for netcdf-4.
+ * The chunks touched by a single writeData() call are encoded concurrently if an Executor is given.
+ *
+ * <pre>
+ * NetcdfFormatWriter.Builder writerb = ZarrIospWriter.createNewZarr(location, null);
+ * writerb.addDimension("x", 100);
+ * writerb.addVariable("v", DataType.FLOAT, "x");
+ * try (NetcdfFormatWriter writer = writerb.build()) {
+ *   writer.write("v", dataArray);
+ * }
+ * </pre>
+ */
+public class ZarrIospWriter extends ZarrIosp implements IOServiceProviderWriter {
+
+  /**
+   * Create a new Zarr store.
+   *
+   * @param location directory to create (must not exist or be empty), or zip file if it ends with ".zip".
+   * @param chunker chunking strategy, or null for the default netcdf-4 chunking and compression.
+   * @return NetcdfFormatWriter.Builder that writes Zarr.
+   */
+  public static NetcdfFormatWriter.Builder createNewZarr(String location, @Nullable Nc4Chunking chunker) {
+    return createNewZarr(location, chunker, null);
+  }
+
+  /**
+   * Create a new Zarr store.
+   *
+   * @param location directory to create (must not exist or be empty), or zip file if it ends with ".zip".
+   * @param chunker chunking strategy, or null for the default netcdf-4 chunking and compression.
+   * @param executor encode chunks on this Executor, or null to encode on the calling thread.
+   * @return NetcdfFormatWriter.Builder that writes Zarr.
+   */
+  public static NetcdfFormatWriter.Builder createNewZarr(String location, @Nullable Nc4Chunking chunker,
+      @Nullable Executor executor) {
+    // NETCDF4 so that NetcdfCopier allows nested groups
+    return NetcdfFormatWriter.builder().setNewFile(true).setFormat(NetcdfFileFormat.NETCDF4).setLocation(location)
+        .setChunker(chunker).setIosp(new ZarrIospWriter(chunker, executor));
+  }
+
+  private static final String ZIP_EXT = ".zip";
+  private static final int FORMAT_VERSION = 2;
+  private static final String ARRAY_DIMENSIONS = "_ARRAY_DIMENSIONS";
+  private static final String COMPRESSOR_ATT = "_Compressor"; // added by ZarrHeader, do not write it back
+  private static final ObjectWriter jsonWriter = new ObjectMapper().writerWithDefaultPrettyPrinter();
+
+  private final Nc4Chunking chunker;
+  private final Executor executor;
+  private final Map<Variable, ZVar> zvars = new HashMap<>();
+
+  private Path storeRoot; // root directory of the store; a temporary directory for zip stores
+  private Path zipFile; // null for directory stores
+  private boolean fill = true;
+  private boolean isClosed;
+
+  public ZarrIospWriter(@Nullable Nc4Chunking chunker) {
+    this(chunker, null);
+  }
+
+  public ZarrIospWriter(@Nullable Nc4Chunking chunker, @Nullable Executor executor) {
+    this.chunker = (chunker == null) ? new Nc4ChunkingDefault() : chunker;
+    this.executor = executor;
+  }
+
+  @Override
+  public void create(String filename, NetcdfFile ncfile, int extra, long preallocateSize, boolean largeFile)
+      throws IOException {
+    this.ncfile = ncfile;
+    this.location = filename;
+
+    Path path = Paths.get(filename);
+    if (filename.endsWith(ZIP_EXT)) {
+      this.zipFile = path;
+      this.storeRoot = Files.createTempDirectory("zarr");
+    } else {
+      if (Files.exists(path)) {
+        if (!Files.isDirectory(path)) {
+          throw new IOException("Zarr store " + filename + " exists and is not a directory");
+        }
+        try (Stream<Path> contents = Files.list(path)) {
+          if (contents.findAny().isPresent()) {
+            throw new IOException("Zarr store " + filename + " already exists and is not empty");
+          }
+        }
+      }
+      this.storeRoot = path;
+    }
+
+    writeGroup(ncfile.getRootGroup(), storeRoot);
+  }
+
+  @Override
+  public void openForWriting(RandomAccessFile raf, NetcdfFile ncfile, CancelTask cancelTask) throws IOException {
+    throw new IOException("Zarr writing is create only, cannot open existing store " + raf.getLocation());
+  }
+
+  @Override
+  public void setFill(boolean fill) {
+    this.fill = fill;
+  }
+
+  @Override
+  public void writeData(Variable v2, Section section, Array values) throws IOException, InvalidRangeException {
+    ZVar zvar = zvars.get(v2);
+    if (zvar == null) {
+      throw new IllegalArgumentException("Variable " + v2.getFullName() + " is not in this Zarr store");
+    }
+    zvar.extendShape(section);
+
+    // the range of chunk indices touched by the section in each dimension
+    int rank = zvar.shape.length;
+    int[] first = new int[rank];
+    int[] last = new int[rank];
+    for (int i = 0; i < rank; i++) {
+      Range r = section.getRange(i);
+      if (r.stride() != 1) {
+        throw new InvalidRangeException("Zarr writing requires stride 1, section = " + section);
+      }
+      first[i] = r.first() / zvar.chunks[i];
+      last[i] = r.last() / zvar.chunks[i];
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    int[] chunkIndex = first.clone();
+    boolean done = false;
+    while (!done) {
+      tasks.add(new ChunkWriter(zvar, chunkIndex.clone(), section, values));
+      // odometer over chunk indices
+      done = true;
+      for (int i = rank - 1; i >= 0; i--) {
+        if (chunkIndex[i] < last[i]) {
+          chunkIndex[i]++;
+          done = false;
+          break;
+        }
+        chunkIndex[i] = first[i];
+      }
+    }
+
+    if (executor == null || tasks.size() == 1) {
+      for (Callable<Void> task : tasks) {
+        callTask(task);
+      }
+    } else {
+      CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+      for (Callable<Void> task : tasks) {
+        completionService.submit(task);
+      }
+      try {
+        for (int i = 0; i < tasks.size(); i++) {
+          completionService.take().get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while writing " + v2.getFullName(), e);
+      } catch (ExecutionException e) {
+        rethrow(e.getCause());
+      }
+    }
+  }
+
+  private static void callTask(Callable<Void> task) throws IOException, InvalidRangeException {
+    try {
+      task.call();
+    } catch (Exception e) {
+      rethrow(e);
+    }
+  }
+
+  private static void rethrow(Throwable t) throws IOException, InvalidRangeException {
+    if (t instanceof IOException)
+      throw (IOException) t;
+    if (t instanceof InvalidRangeException)
+      throw (InvalidRangeException) t;
+    if (t instanceof RuntimeException)
+      throw (RuntimeException) t;
+    if (t instanceof Error)
+      throw (Error) t;
+    throw new IOException(t);
+  }
+
+  @Override
+  public int appendStructureData(Structure s, StructureData sdata) {
+    throw new UnsupportedOperationException("Zarr writing does not support Structures");
+  }
+
+  @Override
+  public boolean rewriteHeader(boolean largeFile) {
+    return false;
+  }
+
+  @Override
+  public void updateAttribute(Variable v2, Attribute att) throws IOException {
+    if (v2 == null) {
+      // global attributes live in the root group
+      Map<String, Object> attrs = makeAttributes(ncfile.getRootGroup().attributes(), null);
+      attrs.put(att.getShortName(), attributeValue(att));
+      writeJson(storeRoot.resolve(ZarrKeys.ZATTRS), attrs);
+    } else {
+      ZVar zvar = zvars.get(v2);
+      if (zvar == null) {
+        throw new IllegalArgumentException("Variable " + v2.getFullName() + " is not in this Zarr store");
+      }
+      if (att.getShortName().equals(CDM.FILL_VALUE)) {
+        // the fill value is only kept in the .zarray, which is where ZarrHeader reads it
+        zvar.fillValue = makeFillValue(att);
+        writeZarray(zvar);
+        return;
+      }
+      zvar.attributes.put(att.getShortName(), attributeValue(att));
+      writeJson(zvar.dir.resolve(ZarrKeys.ZATTRS), zvar.attributes);
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    for (ZVar zvar : zvars.values()) {
+      if (zvar.shapeChanged) {
+        writeZarray(zvar);
+        zvar.shapeChanged = false;
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
+    if (storeRoot != null) {
+      flush();
+      if (zipFile != null) {
+        try {
+          writeZip(storeRoot, zipFile);
+        } finally {
+          deleteTree(storeRoot);
+        }
+      }
+    }
+    super.close();
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////
+  // metadata
+
+  private void writeGroup(Group group, Path dir) throws IOException {
+    Files.createDirectories(dir);
+    Map<String, Object> zgroup = new LinkedHashMap<>();
+    zgroup.put(ZarrKeys.ZARR_FORMAT, FORMAT_VERSION);
+    writeJson(dir.resolve(ZarrKeys.ZGROUP), zgroup);
+
+    Map<String, Object> attrs = makeAttributes(group.attributes(), null);
+    if (!attrs.isEmpty()) {
+      writeJson(dir.resolve(ZarrKeys.ZATTRS), attrs);
+    }
+
+    for (Variable v : group.getVariables()) {
+      ZVar zvar = new ZVar(v, dir.resolve(v.getShortName()));
+      Files.createDirectories(zvar.dir);
+      writeZarray(zvar);
+      writeJson(zvar.dir.resolve(ZarrKeys.ZATTRS), zvar.attributes);
+      zvars.put(v, zvar);
+    }
+
+    for (Group nested : group.getGroups()) {
+      writeGroup(nested, dir.resolve(nested.getShortName()));
+    }
+  }
+
+  private void writeZarray(ZVar zvar) throws IOException {
+    // keys in alphabetical order, as written by zarr-python
+    Map<String, Object> zarray = new LinkedHashMap<>();
+    zarray.put(ZarrKeys.CHUNKS, zvar.chunks);
+    zarray.put(ZarrKeys.COMPRESSOR, zvar.compressorProps);
+    zarray.put(ZarrKeys.DIMENSION_SEPARATOR, ZArray.DEFAULT_SEPARATOR);
+    zarray.put(ZarrKeys.DTYPE, zvar.dtype);
+    zarray.put(ZarrKeys.FILL_VALUE, jsonNumber(zvar.fillValue));
+    zarray.put(ZarrKeys.FILTERS, zvar.filterProps.isEmpty() ? null : zvar.filterProps);
+    zarray.put(ZarrKeys.ORDER, ZArray.Order.C.name());
+    zarray.put(ZarrKeys.SHAPE, zvar.shape);
+    zarray.put(ZarrKeys.ZARR_FORMAT, FORMAT_VERSION);
+    writeJson(zvar.dir.resolve(ZarrKeys.ZARRAY), zarray);
+  }
+
+  private static Map<String, Object> makeAttributes(Iterable<Attribute> atts, @Nullable List<Dimension> dims) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    for (Attribute att : atts) {
+      String name = att.getShortName();
+      if (name.equals(ARRAY_DIMENSIONS) || name.equals(COMPRESSOR_ATT)) {
+        continue; // we make our own
+      }
+      Object value = attributeValue(att);
+      if (value != null) {
+        result.put(name, value);
+      }
+    }
+    if (dims != null && !dims.isEmpty() && dims.stream().allMatch(d -> d.getShortName() != null)) {
+      result.put(ARRAY_DIMENSIONS, dims.stream().map(Dimension::getShortName).collect(Collectors.toList()));
+    }
+    return result;
+  }
+
+  @Nullable
+  private static Number makeFillValue(@Nullable Attribute fillAtt) {
+    return (fillAtt != null && !fillAtt.isString()) ? fillAtt.getNumericValue() : null;
+  }
+
+  @Nullable
+  private static Object attributeValue(Attribute att) {
+    if (att.isString()) {
+      if (att.getLength() == 1) {
+        return att.getStringValue();
+      }
+      List<String> values = new ArrayList<>();
+      for (int i = 0; i < att.getLength(); i++) {
+        values.add((String) att.getValue(i));
+      }
+      return values;
+    }
+    if (!att.getDataType().isNumeric()) {
+      return null; // opaque, structures, etc
+    }
+    if (att.getLength() == 1) {
+      return jsonNumber(att.getNumericValue());
+    }
+    List<Object> values = new ArrayList<>();
+    for (int i = 0; i < att.getLength(); i++) {
+      values.add(jsonNumber(att.getNumericValue(i)));
+    }
+    return values;
+  }
+
+  // JSON has no NaN or infinity; zarr uses these strings instead
+  @Nullable
+  private static Object jsonNumber(@Nullable Number val) {
+    if (val == null) {
+      return null;
+    }
+    double d = val.doubleValue();
+    if (Double.isNaN(d)) {
+      return "NaN";
+    } else if (Double.isInfinite(d)) {
+      return d > 0 ? "Infinity" : "-Infinity";
+    }
+    return val;
+  }
+
+  private static void writeJson(Path path, Object value) throws IOException {
+    jsonWriter.writeValue(path.toFile(), value);
+  }
+
+  private static String makeDtype(Variable v) {
+    DataType dataType = v.getDataType();
+    switch (dataType) {
+      case BYTE:
+        return "|i1";
+      case UBYTE:
+        return "|u1";
+      case CHAR:
+        return "|S1";
+      case SHORT:
+        return "<i2";
+      case USHORT:
+        return "<u2";
+      case INT:
+        return "<i4";
+      case UINT:
+        return "<u4";
+      case LONG:
+        return "<i8";
+      case ULONG:
+        return "<u8";
+      case FLOAT:
+        return "<f4";
+      case DOUBLE:
+        return "<f8";
+      default:
+        throw new IllegalArgumentException(
+            "Zarr writing does not support data type " + dataType + " for variable " + v.getFullName());
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////
+  // data
+
+  /** Zarr specific information about a Variable being written */
+  private class ZVar {
+    private final Variable v;
+    private final Path dir;
+    private final DataType dataType;
+    private final String dtype;
+    private final int[] shape; // grows along unlimited dimensions as data is written
+    private final int[] chunks;
+    private Number fillValue;
+    private final Map<String, Object> compressorProps; // null if no compression
+    private final List<Map<String, Object>> filterProps = new ArrayList<>();
+    private final Filter compressor; // null if no compression
+    private final List<Filter> filters = new ArrayList<>();
+    private final Map<String, Object> attributes;
+    private boolean shapeChanged;
+
+    ZVar(Variable v, Path dir) throws IOException {
+      if (v instanceof Structure) {
+        throw new IllegalArgumentException("Zarr writing does not support Structures: " + v.getFullName());
+      }
+      this.v = v;
+      this.dir = dir;
+      this.dataType = v.getDataType();
+      this.dtype = makeDtype(v);
+      this.shape = v.getShape();
+      this.attributes = makeAttributes(v.attributes(), v.getDimensions());
+      this.attributes.remove(CDM.FILL_VALUE); // written as the fill_value of the .zarray
+
+      // chunking from the Nc4Chunking, as for netcdf-4; zarr chunks must have non-zero size
+      long[] want = chunker.isChunked(v) ? chunker.computeChunking(v) : null;
+      this.chunks = new int[shape.length];
+      for (int i = 0; i < shape.length; i++) {
+        long size = (want == null || i >= want.length) ? shape[i] : Math.min(want[i], shape[i]);
+        chunks[i] = (int) Math.max(1, size);
+      }
+
+      this.fillValue = makeFillValue(v.findAttribute(CDM.FILL_VALUE));
+
+      try {
+        int deflateLevel = chunker.getDeflateLevel(v);
+        if (deflateLevel > 0) {
+          // shuffle is ignored unless deflating, as for netcdf-4
+          if (chunker.isShuffle(v) && v.getElementSize() > 1) {
+            Map<String, Object> props = new LinkedHashMap<>();
+            props.put(Filters.Keys.ELEM_SIZE, v.getElementSize());
+            props.put(Filters.Keys.NAME, "shuffle");
+            filterProps.add(props);
+            filters.add(Filters.getFilter(new HashMap<>(props)));
+          }
+          compressorProps = new LinkedHashMap<>();
+          compressorProps.put(Filters.Keys.NAME, "zlib");
+          compressorProps.put("level", deflateLevel);
+          compressor = Filters.getFilter(new HashMap<>(compressorProps));
+        } else {
+          compressorProps = null;
+          compressor = null;
+        }
+      } catch (UnknownFilterException e) {
+        throw new IOException(e);
+      }
+    }
+
+    // unlimited dimensions grow to hold the data, others must already be big enough
+    void extendShape(Section section) throws InvalidRangeException {
+      if (section.getRank() != shape.length) {
+        throw new InvalidRangeException("Section rank " + section.getRank() + " does not match variable "
+            + v.getFullName() + " rank " + shape.length);
+      }
+      for (int i = 0; i < shape.length; i++) {
+        int end = section.getRange(i).last() + 1;
+        if (end > shape[i]) {
+          if (!v.getDimension(i).isUnlimited()) {
+            throw new InvalidRangeException(
+                "Section " + section + " is outside of variable " + v.getFullName() + " dimension " + i);
+          }
+          shape[i] = end;
+          shapeChanged = true;
+        }
+      }
+    }
+
+    Path chunkPath(int[] chunkIndex) {
+      if (chunkIndex.length == 0) {
+        return dir.resolve("0");
+      }
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < chunkIndex.length; i++) {
+        if (i > 0) {
+          sb.append(ZArray.DEFAULT_SEPARATOR);
+        }
+        sb.append(chunkIndex[i]);
+      }
+      return dir.resolve(sb.toString());
+    }
+
+    byte[] encode(Array chunk) throws IOException {
+      byte[] data = toBytes(chunk);
+      for (Filter filter : filters) {
+        data = filter.encode(data);
+      }
+      if (compressor != null) {
+        data = compressor.encode(data);
+      }
+      return data;
+    }
+
+    Array decode(byte[] data) throws IOException {
+      if (compressor != null) {
+        data = compressor.decode(data);
+      }
+      for (int i = filters.size() - 1; i >= 0; i--) {
+        data = filters.get(i).decode(data);
+      }
+      return fromBytes(data);
+    }
+
+    private byte[] toBytes(Array chunk) {
+      ByteBuffer bb = ByteBuffer.allocate((int) chunk.getSize() * v.getElementSize()).order(ByteOrder.LITTLE_ENDIAN);
+      IndexIterator ii = chunk.getIndexIterator();
+      switch (dataType) {
+        case CHAR:
+          while (ii.hasNext())
+            bb.put((byte) ii.getCharNext());
+          break;
+        case BYTE:
+        case UBYTE:
+          while (ii.hasNext())
+            bb.put(ii.getByteNext());
+          break;
+        case SHORT:
+        case USHORT:
+          while (ii.hasNext())
+            bb.putShort(ii.getShortNext());
+          break;
+        case INT:
+        case UINT:
+          while (ii.hasNext())
+            bb.putInt(ii.getIntNext());
+          break;
+        case LONG:
+        case ULONG:
+          while (ii.hasNext())
+            bb.putLong(ii.getLongNext());
+          break;
+        case FLOAT:
+          while (ii.hasNext())
+            bb.putFloat(ii.getFloatNext());
+          break;
+        case DOUBLE:
+          while (ii.hasNext())
+            bb.putDouble(ii.getDoubleNext());
+          break;
+        default:
+          throw new IllegalStateException("Unsupported data type " + dataType);
+      }
+      return bb.array();
+    }
+
+    private Array fromBytes(byte[] data) {
+      ByteBuffer bb = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+      Array chunk = Array.factory(dataType, chunks);
+      IndexIterator ii = chunk.getIndexIterator();
+      switch (dataType) {
+        case CHAR:
+          while (ii.hasNext())
+            ii.setCharNext((char) (bb.get() & 0xff));
+          break;
+        case BYTE:
+        case UBYTE:
+          while (ii.hasNext())
+            ii.setByteNext(bb.get());
+          break;
+        case SHORT:
+        case USHORT:
+          while (ii.hasNext())
+            ii.setShortNext(bb.getShort());
+          break;
+        case INT:
+        case UINT:
+          while (ii.hasNext())
+            ii.setIntNext(bb.getInt());
+          break;
+        case LONG:
+        case ULONG:
+          while (ii.hasNext())
+            ii.setLongNext(bb.getLong());
+          break;
+        case FLOAT:
+          while (ii.hasNext())
+            ii.setFloatNext(bb.getFloat());
+          break;
+        case DOUBLE:
+          while (ii.hasNext())
+            ii.setDoubleNext(bb.getDouble());
+          break;
+        default:
+          throw new IllegalStateException("Unsupported data type " + dataType);
+      }
+      return chunk;
+    }
+
+    // a chunk that has not been written yet
+    Array makeEmptyChunk() {
+      Array chunk = Array.factory(dataType, chunks);
+      if (fill && fillValue != null) {
+        IndexIterator ii = chunk.getIndexIterator();
+        if (dataType.isFloatingPoint()) {
+          double val = fillValue.doubleValue();
+          while (ii.hasNext())
+            ii.setDoubleNext(val);
+        } else if (dataType == DataType.CHAR) {
+          char val = (char) fillValue.intValue();
+          while (ii.hasNext())
+            ii.setCharNext(val);
+        } else {
+          long val = fillValue.longValue();
+          while (ii.hasNext())
+            ii.setLongNext(val);
+        }
+      }
+      return chunk;
+    }
+  }
+
+  /** Merge the part of the written values that falls in one chunk into that chunk, and write it out. */
+  private static class ChunkWriter implements Callable<Void> {
+    private final ZVar zvar;
+    private final int[] chunkIndex;
+    private final Section section;
+    private final Array values;
+
+    ChunkWriter(ZVar zvar, int[] chunkIndex, Section section, Array values) {
+      this.zvar = zvar;
+      this.chunkIndex = chunkIndex;
+      this.section = section;
+      this.values = values;
+    }
+
+    @Override
+    public Void call() throws IOException, InvalidRangeException {
+      int rank = chunkIndex.length;
+      int[] chunkOrigin = new int[rank];
+      for (int i = 0; i < rank; i++) {
+        chunkOrigin[i] = chunkIndex[i] * zvar.chunks[i];
+      }
+      Section chunkSection = new Section(chunkOrigin, zvar.chunks);
+      Section intersect = chunkSection.intersect(section);
+
+      // if the chunk is only partly written, start from what is already there
+      Path path = zvar.chunkPath(chunkIndex);
+      Array chunk;
+      if (intersect.computeSize() == chunkSection.computeSize()) {
+        chunk = Array.factory(zvar.dataType, zvar.chunks);
+      } else if (Files.exists(path)) {
+        chunk = zvar.decode(Files.readAllBytes(path));
+      } else {
+        chunk = zvar.makeEmptyChunk();
+      }
+
+      Section inValues = intersect.shiftOrigin(section);
+      Section inChunk = intersect.shiftOrigin(chunkSection);
+      MAMath.copy(chunk.section(inChunk.getRanges()), values.section(inValues.getRanges()));
+
+      Files.write(path, zvar.encode(chunk));
+      return null;
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////
+  // zip stores
+
+  // zarr zip stores use uncompressed entries, since the chunks are already compressed
+  private static void writeZip(Path dir, Path zipFile) throws IOException {
+    List<Path> paths;
+    try (Stream<Path> walk = Files.walk(dir)) {
+      paths = walk.filter(p -> !p.equals(dir)).sorted().collect(Collectors.toList());
+    }
+    Path parent = zipFile.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    try (OutputStream os = Files.newOutputStream(zipFile); ZipOutputStream zos = new ZipOutputStream(os)) {
+      for (Path path : paths) {
+        String name = dir.relativize(path).toString().replace('\\', '/');
+        byte[] bytes = Files.isDirectory(path) ? new byte[0] : Files.readAllBytes(path);
+        if (Files.isDirectory(path)) {
+          name += "/";
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(bytes.length);
+        entry.setCompressedSize(bytes.length);
+        entry.setCrc(crc.getValue());
+        zos.putNextEntry(entry);
+        zos.write(bytes);
+        zos.closeEntry();
+      }
+    }
+  }
+
+  private static void deleteTree(Path dir) throws IOException {
+    try (Stream<Path> walk = Files.walk(dir)) {
+      List<Path> paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+      for (Path path : paths) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+}
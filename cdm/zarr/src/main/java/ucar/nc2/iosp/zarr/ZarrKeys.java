@@ -15,6 +15,7 @@ public final class ZarrKeys {
   public static final String ZATTRS = ".zattrs";
   public static final String ZGROUP = ".zgroup";
   public static final String ZMETADATA = ".zmetadata";
+  public static final String ZARR_JSON = "zarr.json"; // Zarr v3 metadata, for both groups and arrays
 
   // key names
   public static final String SHAPE = "shape";
@@ -26,4 +27,20 @@ public final class ZarrKeys {
   public static final String FILTERS = "filters";
   public static final String DIMENSION_SEPARATOR = "dimension_separator";
 
+  // Zarr v3 key names
+  public static final String ZARR_FORMAT = "zarr_format";
+  public static final String NODE_TYPE = "node_type";
+  public static final String DATA_TYPE = "data_type";
+  public static final String CHUNK_GRID = "chunk_grid";
+  public static final String CHUNK_SHAPE = "chunk_shape";
+  public static final String CHUNK_KEY_ENCODING = "chunk_key_encoding";
+  public static final String SEPARATOR = "separator";
+  public static final String CODECS = "codecs";
+  public static final String INDEX_CODECS = "index_codecs";
+  public static final String INDEX_LOCATION = "index_location";
+  public static final String ATTRIBUTES = "attributes";
+  public static final String DIMENSION_NAMES = "dimension_names";
+  public static final String NAME = "name";
+  public static final String CONFIGURATION = "configuration";
+
 }
@@ -1,17 +1,22 @@
 package ucar.nc2.iosp.zarr;
 
+import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Range;
 import ucar.ma2.Section;
 import ucar.nc2.Dimension;
 import ucar.nc2.Variable;
 import ucar.nc2.filter.Filter;
+import ucar.nc2.filter.FilterPipeline;
+import ucar.nc2.iosp.ChunkCache;
 import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutBBTiled;
+import ucar.unidata.io.ByteRange;
 import ucar.unidata.io.RandomAccessFile;
 
 import java.io.IOException;
 import java.nio.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -20,11 +25,13 @@ import java.util.Map;
  */
 public class ZarrLayoutBB implements LayoutBB {
 
+  // when the raf prefers range reads, the raw bytes of up to this many bytes of chunks are read with one call
+  private static final long MAX_PREFETCH_BYTES = 64L * 1024 * 1024;
+
   private LayoutBBTiled delegate;
 
   private RandomAccessFile raf;
   private ByteOrder byteOrder;
-  private final long varOffset; // start of variable data in raf
   private final Section want;
 
   private int[] chunkSize; // number of elements per chunks
@@ -33,29 +40,42 @@ public class ZarrLayoutBB implements LayoutBB {
   private int totalNChunks; // total number of chunks
   private boolean F_order = false; // F order storage?
   private Map<Integer, Long> initializedChunks; // set of chunks that exist as files and their compressed size
-  private Filter compressor;
-  private List<Filter> filters;
+  private Map<Integer, Long> chunkOffsets; // start position of each initialized chunk in raf
+  private FilterPipeline pipeline; // the filters, then the compressor
+  private int decodedChunkSize; // bytes in a decoded chunk, or -1 if too large for an array
+  private ChunkCache chunkCache; // null if not caching
+  private ChunkCache.VariableKey cacheKey;
+  private final boolean prefetch; // read the wanted chunks in batches with raf.readRanges()
+  private final Map<Integer, byte[]> prefetched = new HashMap<>(); // raw bytes read ahead, by chunk number
 
   public ZarrLayoutBB(Variable v2, Section wantSection, RandomAccessFile raf) {
     // var data info
     this.raf = raf;
     ZarrHeader.VInfo vinfo = (ZarrHeader.VInfo) v2.getSPobject();
     this.byteOrder = vinfo.getByteOrder();
-    this.varOffset = vinfo.getOffset();
-    this.compressor = vinfo.getCompressor();
-    this.filters = vinfo.getFilters();
+    List<Filter> filters = new ArrayList<>(vinfo.getFilters());
+    if (vinfo.getCompressor() != null) {
+      filters.add(vinfo.getCompressor());
+    }
+    this.pipeline = new FilterPipeline(filters);
 
+    ChunkCache cache = ChunkCache.getInstance();
+    if (cache != null) {
+      this.cacheKey = ChunkCache.makeVariableKey(raf, v2.getFullName());
+      this.chunkCache = (cacheKey == null) ? null : cache;
+    }
 
     // fill in chunk info
     this.chunkSize = vinfo.getChunks();
     int ndims = this.chunkSize.length;
     this.initializedChunks = vinfo.getInitializedChunks();
+    this.chunkOffsets = vinfo.getChunkOffsets();
     this.nChunks = new int[ndims];
     this.totalNChunks = 1;
     for (int i = 0; i < ndims; i++) {
       Dimension dim = v2.getDimension(i);
       // round up nchunks if not evenly divisible by chunk size
-      this.nChunks[i] = (int) Math.ceil(dim.getLength() / this.chunkSize[i]);
+      this.nChunks[i] = (dim.getLength() + this.chunkSize[i] - 1) / this.chunkSize[i];
       this.totalNChunks *= nChunks[i];
     }
 
@@ -76,6 +96,12 @@ public class ZarrLayoutBB implements LayoutBB {
     }
 
     this.elemSize = v2.getDataType().getSize();
+    long nbytes = elemSize;
+    for (int size : chunkSize) {
+      nbytes *= size;
+    }
+    this.decodedChunkSize = (nbytes <= Integer.MAX_VALUE - 8) ? (int) nbytes : -1;
+    this.prefetch = raf.prefersRangeReads();
 
     // create delegate and chunk iterator
     ZarrLayoutBB.DataChunkIterator iter = new ZarrLayoutBB.DataChunkIterator();
@@ -106,25 +132,61 @@ public class ZarrLayoutBB implements LayoutBB {
 
     private int[] currChunk; // current chunk in subscript coords
     private int chunkNum; // current chunk as flat index
-    private long currOffset; // byte position of current chunk
-
+    private int prefetchEnd; // chunks before this one have been considered for prefetching
 
     DataChunkIterator() {
       this.currChunk = new int[chunkSize.length];
       this.chunkNum = 0;
-      this.currOffset = varOffset; // start at start of variable data
     }
 
     public boolean hasNext() {
       return this.chunkNum < totalNChunks;
     }
 
-    public LayoutBBTiled.DataChunk next() {
-      DataChunk chunk = new ZarrLayoutBB.DataChunk(this.currChunk, this.chunkNum, this.currOffset);
+    public LayoutBBTiled.DataChunk next() throws IOException {
+      if (prefetch && this.chunkNum >= this.prefetchEnd) {
+        readBatch();
+      }
+      DataChunk chunk =
+          new ZarrLayoutBB.DataChunk(this.currChunk, this.chunkNum, chunkOffsets.getOrDefault(this.chunkNum, -1L));
       incrementChunk();
       return chunk;
     }
 
+    // read the raw bytes of the next wanted chunks, starting at the current one
+    private void readBatch() throws IOException {
+      List<Integer> toRead = new ArrayList<>();
+      List<ByteRange> ranges = new ArrayList<>();
+      long nbytes = 0;
+      int num = this.chunkNum;
+      int[] index = new int[nChunks.length];
+      for (; num < totalNChunks && nbytes < MAX_PREFETCH_BYTES; num++) {
+        long dataLength = initializedChunks.getOrDefault(num, 0L);
+        if (dataLength == 0) {
+          continue; // will be fill
+        }
+        int rem = num;
+        for (int i = index.length - 1; i >= 0; i--) {
+          index[i] = rem % nChunks[i];
+          rem /= nChunks[i];
+        }
+        DataChunk chunk = new ZarrLayoutBB.DataChunk(index, num, chunkOffsets.getOrDefault(num, -1L));
+        if (!chunk.isWanted()) {
+          continue;
+        }
+        toRead.add(num);
+        ranges.add(new ByteRange(chunk.rafOffset, (int) dataLength));
+        nbytes += dataLength;
+      }
+      this.prefetchEnd = num;
+      if (!ranges.isEmpty()) {
+        List<byte[]> raw = raf.readRanges(ranges);
+        for (int i = 0; i < toRead.size(); i++) {
+          prefetched.put(toRead.get(i), raw.get(i));
+        }
+      }
+    }
+
     private void incrementChunk() {
       // increment index from inner dimension outward
       int i = this.currChunk.length - 1;
@@ -133,7 +195,6 @@ public class ZarrLayoutBB implements LayoutBB {
         i--;
       }
       this.currChunk[i]++;
-      this.currOffset += initializedChunks.getOrDefault(this.chunkNum, (long) 0);
       this.chunkNum = ZarrUtils.subscriptsToIndex(this.currChunk, nChunks);
     }
   }
@@ -158,6 +219,18 @@ public class ZarrLayoutBB implements LayoutBB {
       return this.offset;
     }
 
+    // true if the chunk intersects the wanted section and is not already in the chunk cache
+    boolean isWanted() {
+      try {
+        if (!new Section(this.offset, chunkSize).intersects(want)) {
+          return false;
+        }
+      } catch (InvalidRangeException e) {
+        return false; // leave it to LayoutBBTiled
+      }
+      return chunkCache == null || !chunkCache.contains(cacheKey, this.offset);
+    }
+
     public ByteBuffer getByteBuffer() throws IOException {
       // read the data
       byte[] data;
@@ -169,22 +242,28 @@ public class ZarrLayoutBB implements LayoutBB {
         return result;
       }
 
-      data = new byte[(int) dataLength];
-      raf.seek(this.rafOffset);
-      // raf.read(data, 0, (int)dataLength);
-      raf.readFully(data);
-
-      // apply compressor
-      data = compressor.decode(data);
-      // apply filters in reverse order
-      for (int i = filters.size() - 1; i >= 0; i--) {
-        data = filters.get(i).decode(data);
+      if (chunkCache != null) {
+        data = chunkCache.get(cacheKey, this.offset, () -> decode(dataLength));
+      } else {
+        data = decode(dataLength);
       }
 
       ByteBuffer result = ByteBuffer.wrap(data);
       result.order(byteOrder);
       return result;
     }
+
+    private byte[] decode(long dataLength) throws IOException {
+      byte[] data = prefetched.remove(this.chunkNum);
+      if (data == null) {
+        data = new byte[(int) dataLength];
+        raf.seek(this.rafOffset);
+        raf.readFully(data);
+      }
+
+      // apply compressor, then filters in reverse order
+      return pipeline.decode(data, decodedChunkSize);
+    }
   }
 
 }
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.nc2.Variable;
+import ucar.nc2.filter.FilterPipeline;
+import ucar.nc2.iosp.ChunkCache;
+import ucar.nc2.iosp.LayoutBB;
+import ucar.nc2.iosp.LayoutBBTiled;
+import ucar.unidata.io.ByteRange;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * A tiled layout for Zarr v3 arrays using the sharding_indexed codec.
+ * Only the shards that intersect the wanted section are visited. The index of each shard is read once
+ * (and kept by the variable's {@link ZarrV3Array.Sharding}), then each wanted inner chunk is read with a single
+ * ranged read, uncompressed and filtered. If the raf prefers range reads, the wanted inner chunks of a shard
+ * are read together with one call to {@link RandomAccessFile#readRanges}.
+ */
+public class ZarrShardedLayoutBB implements LayoutBB {
+
+  private final LayoutBBTiled delegate;
+
+  private final RandomAccessFile raf;
+  private final ZarrV3Array.Sharding sharding;
+  private final Section want;
+  private final int[] shape; // variable shape
+  private final int[] shardShape; // number of elements per shard
+  private final int[] chunkShape; // number of elements per inner chunk
+  private final int[] nShards; // number of shards per dimension
+  private final ByteOrder byteOrder;
+  private final FilterPipeline pipeline;
+  private final int decodedChunkSize; // bytes in a decoded inner chunk, or -1 if too large for an array
+  private final Map<Integer, Long> initializedShards; // shards that exist as files and their size
+  private final Map<Integer, Long> shardOffsets; // start position of each initialized shard in raf
+  private ChunkCache chunkCache; // null if not caching
+  private ChunkCache.VariableKey cacheKey;
+
+  public ZarrShardedLayoutBB(Variable v2, Section wantSection, RandomAccessFile raf) {
+    this.raf = raf;
+    this.want = wantSection;
+    ZarrHeader.VInfo vinfo = (ZarrHeader.VInfo) v2.getSPobject();
+    this.sharding = vinfo.getSharding();
+    this.byteOrder = sharding.getByteOrder();
+    this.pipeline = new FilterPipeline(sharding.getFilters());
+    this.initializedShards = vinfo.getInitializedChunks();
+    this.shardOffsets = vinfo.getChunkOffsets();
+
+    ChunkCache cache = ChunkCache.getInstance();
+    if (cache != null) {
+      this.cacheKey = ChunkCache.makeVariableKey(raf, v2.getFullName());
+      this.chunkCache = (cacheKey == null) ? null : cache;
+    }
+
+    this.shape = v2.getShape();
+    this.shardShape = vinfo.getChunks();
+    this.chunkShape = sharding.getChunkShape();
+    this.nShards = new int[shape.length];
+    for (int i = 0; i < shape.length; i++) {
+      nShards[i] = (shape[i] + shardShape[i] - 1) / shardShape[i];
+    }
+
+    int elemSize = v2.getDataType().getSize();
+    long nbytes = elemSize;
+    for (int size : chunkShape) {
+      nbytes *= size;
+    }
+    this.decodedChunkSize = (nbytes <= Integer.MAX_VALUE - 8) ? (int) nbytes : -1;
+    delegate = new LayoutBBTiled(new DataChunkIterator(), chunkShape, elemSize, want);
+  }
+
+  @Override
+  public long getTotalNelems() {
+    return delegate.getTotalNelems();
+  }
+
+  @Override
+  public int getElemSize() {
+    return delegate.getElemSize();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return delegate.hasNext();
+  }
+
+  @Override
+  public LayoutBB.Chunk next() {
+    return delegate.next();
+  }
+
+  /** Iterates over the stored inner chunks of the shards that intersect the wanted section */
+  private class DataChunkIterator implements LayoutBBTiled.DataChunkIterator {
+    private final int[] firstShard;
+    private final int[] lastShard;
+    private final int[] currShard; // next shard to read, in subscript coords
+    private boolean done; // true when all intersecting shards have been read
+    private final Deque<DataChunk> pending = new ArrayDeque<>(); // wanted inner chunks of the current shard
+    private IOException error; // from reading a shard index in hasNext()
+
+    DataChunkIterator() {
+      int rank = shape.length;
+      this.firstShard = new int[rank];
+      this.lastShard = new int[rank];
+      for (int i = 0; i < rank; i++) {
+        Range r = want.getRange(i);
+        firstShard[i] = r.first() / shardShape[i];
+        lastShard[i] = r.last() / shardShape[i];
+      }
+      this.currShard = firstShard.clone();
+      this.done = want.computeSize() == 0;
+    }
+
+    // the stored chunks are only known once the shard index is read, so look ahead here; missing shards and
+    // chunks are left to the fill value of the result array
+    @Override
+    public boolean hasNext() {
+      if (pending.isEmpty() && error == null) {
+        try {
+          while (pending.isEmpty() && !done) {
+            readShard(currShard);
+            incrementShard();
+          }
+        } catch (IOException e) {
+          error = e; // thrown by next()
+        }
+      }
+      return !pending.isEmpty() || error != null;
+    }
+
+    @Override
+    public LayoutBBTiled.DataChunk next() throws IOException {
+      if (!hasNext()) {
+        throw new IllegalStateException("no more chunks");
+      }
+      if (error != null) {
+        IOException e = error;
+        error = null;
+        throw e;
+      }
+      return pending.removeFirst();
+    }
+
+    private void incrementShard() {
+      for (int i = currShard.length - 1; i >= 0; i--) {
+        if (currShard[i] < lastShard[i]) {
+          currShard[i]++;
+          return;
+        }
+        currShard[i] = firstShard[i];
+      }
+      done = true;
+    }
+
+    // queue the stored inner chunks of this shard that intersect the wanted section
+    private void readShard(int[] shard) throws IOException {
+      int shardNum = ZarrUtils.subscriptsToIndex(shard, nShards);
+      long shardLength = initializedShards.getOrDefault(shardNum, 0L);
+      if (shardLength == 0) {
+        return; // shard does not exist, leave it as fill
+      }
+      long shardStart = shardOffsets.get(shardNum);
+      long[] index = getIndex(shardNum, shardStart, shardLength);
+
+      int rank = shard.length;
+      int[] shardOrigin = new int[rank];
+      int[] first = new int[rank];
+      int[] last = new int[rank];
+      for (int i = 0; i < rank; i++) {
+        shardOrigin[i] = shard[i] * shardShape[i];
+        Range r = want.getRange(i);
+        int lo = Math.max(r.first(), shardOrigin[i]);
+        int hi = Math.min(r.last(), shardOrigin[i] + shardShape[i] - 1);
+        first[i] = (lo - shardOrigin[i]) / chunkShape[i];
+        last[i] = (hi - shardOrigin[i]) / chunkShape[i];
+      }
+
+      int[] chunksPerShard = sharding.getChunksPerShard();
+      int[] inner = first.clone();
+      while (true) {
+        int innerNum = ZarrUtils.subscriptsToIndex(inner, chunksPerShard);
+        long offset = index[2 * innerNum];
+        if (offset >= 0) {
+          int[] origin = new int[rank];
+          for (int i = 0; i < rank; i++) {
+            origin[i] = shardOrigin[i] + inner[i] * chunkShape[i];
+          }
+          pending.add(new DataChunk(origin, shardStart + offset, (int) index[2 * innerNum + 1]));
+        }
+        // odometer over inner chunks
+        int i = rank - 1;
+        while (i >= 0 && inner[i] == last[i]) {
+          inner[i] = first[i];
+          i--;
+        }
+        if (i < 0) {
+          break;
+        }
+        inner[i]++;
+      }
+
+      if (raf.prefersRangeReads()) {
+        prefetch();
+      }
+    }
+
+    // read the raw bytes of the pending chunks that are not in the chunk cache
+    private void prefetch() throws IOException {
+      List<DataChunk> toRead = new ArrayList<>();
+      List<ByteRange> ranges = new ArrayList<>();
+      for (DataChunk chunk : pending) {
+        if (chunkCache == null || !chunkCache.contains(cacheKey, chunk.offset)) {
+          toRead.add(chunk);
+          ranges.add(new ByteRange(chunk.rafOffset, chunk.nbytes));
+        }
+      }
+      if (!ranges.isEmpty()) {
+        List<byte[]> raw = raf.readRanges(ranges);
+        for (int i = 0; i < toRead.size(); i++) {
+          toRead.get(i).prefetched = raw.get(i);
+        }
+      }
+    }
+
+    private long[] getIndex(int shardNum, long shardStart, long shardLength) throws IOException {
+      long[] index = sharding.getCachedIndex(shardNum);
+      if (index == null) {
+        int indexSize = sharding.getIndexSize();
+        if (indexSize > shardLength) {
+          throw new IOException("Zarr shard " + shardNum + " is too small to hold its index");
+        }
+        byte[] raw = new byte[indexSize];
+        raf.seek(shardStart + sharding.getIndexPosition(shardLength));
+        raf.readFully(raw);
+        index = sharding.decodeIndex(shardNum, raw);
+      }
+      return index;
+    }
+  }
+
+  private class DataChunk implements LayoutBBTiled.DataChunk {
+    private final int[] offset; // start indices of chunk in elements
+    private final long rafOffset; // start position of chunk in bytes
+    private final int nbytes;
+    private byte[] prefetched; // raw bytes read ahead, if any
+
+    DataChunk(int[] offset, long rafOffset, int nbytes) {
+      this.offset = offset;
+      this.rafOffset = rafOffset;
+      this.nbytes = nbytes;
+    }
+
+    @Override
+    public int[] getOffset() {
+      return offset;
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer() throws IOException {
+      byte[] data;
+      if (chunkCache != null) {
+        data = chunkCache.get(cacheKey, this.offset, this::decode);
+      } else {
+        data = decode();
+      }
+      ByteBuffer result = ByteBuffer.wrap(data);
+      result.order(byteOrder);
+      return result;
+    }
+
+    private byte[] decode() throws IOException {
+      byte[] data = prefetched;
+      prefetched = null;
+      if (data == null) {
+        data = new byte[nbytes];
+        raf.seek(rafOffset);
+        raf.readFully(data);
+      }
+      // apply codecs in reverse order
+      return pipeline.decode(data, decodedChunkSize);
+    }
+  }
+}
@@ -0,0 +1,471 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import ucar.ma2.DataType;
+import ucar.nc2.filter.Filter;
+
+/**
+ * Java representation of Zarr v3 array metadata (zarr.json with node_type "array").
+ * Only the regular chunk grid is supported. Codecs are mapped onto the same model as Zarr v2: an optional
+ * transpose, the bytes codec giving the byte order, then a list of bytes-to-bytes filters.
+ * The bytes codec may instead be sharding_indexed, in which case the chunks of the grid are shards holding
+ * an index and a number of inner chunks, see {@link Sharding}.
+ */
+public class ZarrV3Array {
+
+  // maps zarr v3 data types to CDM datatypes
+  private static final Map<String, DataType> dataTypeMap;
+
+  static {
+    dataTypeMap = new HashMap<>();
+    dataTypeMap.put("bool", DataType.BOOLEAN);
+    dataTypeMap.put("int8", DataType.BYTE);
+    dataTypeMap.put("uint8", DataType.UBYTE);
+    dataTypeMap.put("int16", DataType.SHORT);
+    dataTypeMap.put("uint16", DataType.USHORT);
+    dataTypeMap.put("int32", DataType.INT);
+    dataTypeMap.put("uint32", DataType.UINT);
+    dataTypeMap.put("int64", DataType.LONG);
+    dataTypeMap.put("uint64", DataType.ULONG);
+    dataTypeMap.put("float32", DataType.FLOAT);
+    dataTypeMap.put("float64", DataType.DOUBLE);
+  }
+
+  private static final String REGULAR_GRID = "regular";
+  private static final String DEFAULT_KEY_ENCODING = "default";
+  private static final String V2_KEY_ENCODING = "v2";
+  private static final String DEFAULT_KEY_PREFIX = "c";
+  private static final String INDEX_AT_START = "start";
+  private static final long EMPTY_CHUNK = -1L; // 2^64 - 1 as an unsigned long
+  // decoded shard indexes kept per variable, least recently used are evicted
+  private static final long MAX_INDEX_CACHE_BYTES = 16L * 1024 * 1024;
+
+  private final int[] shape;
+  private final int[] chunks;
+  private final DataType dataType;
+  private final Object fillValue;
+  private final ByteOrder byteOrder;
+  private final ZArray.Order order;
+  private final List<Filter> filters;
+  private final boolean defaultKeyEncoding;
+  private final String separator;
+  private final Sharding sharding;
+  private final Map<String, Object> attributes;
+  private final String[] dimensionNames;
+
+  /**
+   * Parse the metadata of a Zarr v3 array.
+   *
+   * @param root parsed zarr.json
+   * @param objectMapper used to convert attributes
+   * @throws ZarrFormatException if the metadata is invalid or uses features that are not supported.
+   */
+  @SuppressWarnings("unchecked")
+  public ZarrV3Array(JsonNode root, ObjectMapper objectMapper) throws ZarrFormatException {
+    this.shape = readInts(root.path(ZarrKeys.SHAPE), ZarrKeys.SHAPE);
+
+    JsonNode grid = root.path(ZarrKeys.CHUNK_GRID);
+    if (!REGULAR_GRID.equals(grid.path(ZarrKeys.NAME).asText())) {
+      throw new ZarrFormatException(ZarrKeys.CHUNK_GRID, grid.path(ZarrKeys.NAME).asText());
+    }
+    this.chunks = readInts(grid.path(ZarrKeys.CONFIGURATION).path(ZarrKeys.CHUNK_SHAPE), ZarrKeys.CHUNK_SHAPE);
+    if (chunks.length != shape.length) {
+      throw new ZarrFormatException(ZarrKeys.CHUNK_SHAPE, grid.toString());
+    }
+
+    String dtype = root.path(ZarrKeys.DATA_TYPE).asText();
+    this.dataType = dataTypeMap.get(dtype);
+    if (this.dataType == null) {
+      throw new ZarrFormatException(ZarrKeys.DATA_TYPE, dtype);
+    }
+    this.fillValue = parseFillValue(root.path(ZarrKeys.FILL_VALUE), this.dataType);
+
+    JsonNode keyEncoding = root.path(ZarrKeys.CHUNK_KEY_ENCODING);
+    String encodingName = keyEncoding.path(ZarrKeys.NAME).asText(DEFAULT_KEY_ENCODING);
+    if (DEFAULT_KEY_ENCODING.equals(encodingName)) {
+      this.defaultKeyEncoding = true;
+      this.separator = keyEncoding.path(ZarrKeys.CONFIGURATION).path(ZarrKeys.SEPARATOR).asText("/");
+    } else if (V2_KEY_ENCODING.equals(encodingName)) {
+      this.defaultKeyEncoding = false;
+      this.separator = keyEncoding.path(ZarrKeys.CONFIGURATION).path(ZarrKeys.SEPARATOR).asText(".");
+    } else {
+      throw new ZarrFormatException(ZarrKeys.CHUNK_KEY_ENCODING, encodingName);
+    }
+    if (!separator.equals("/") && !separator.equals(".")) {
+      throw new ZarrFormatException(ZarrKeys.SEPARATOR, separator);
+    }
+
+    CodecChain codecs = new CodecChain(root.path(ZarrKeys.CODECS), shape.length, objectMapper);
+    this.byteOrder = codecs.byteOrder;
+    this.order = codecs.order;
+    this.filters = codecs.filters;
+    this.sharding = codecs.sharding;
+    if (sharding != null) {
+      if (order != ZArray.Order.C || !filters.isEmpty()) {
+        throw new ZarrFormatException("Codecs around sharding_indexed are not supported");
+      }
+      for (int i = 0; i < chunks.length; i++) {
+        if (sharding.chunkShape[i] <= 0 || chunks[i] % sharding.chunkShape[i] != 0) {
+          throw new ZarrFormatException(ZarrKeys.CHUNK_SHAPE, root.path(ZarrKeys.CODECS).toString());
+        }
+      }
+      sharding.setChunksPerShard(chunks);
+    }
+
+    JsonNode attrs = root.path(ZarrKeys.ATTRIBUTES);
+    this.attributes = attrs.isObject() ? objectMapper.convertValue(attrs, Map.class) : Collections.emptyMap();
+
+    JsonNode dimNames = root.path(ZarrKeys.DIMENSION_NAMES);
+    if (dimNames.isArray() && dimNames.size() == shape.length) {
+      this.dimensionNames = new String[shape.length];
+      for (int i = 0; i < shape.length; i++) {
+        JsonNode name = dimNames.get(i);
+        dimensionNames[i] = (name == null || name.isNull()) ? null : name.asText();
+      }
+    } else {
+      this.dimensionNames = null;
+    }
+  }
+
+  public int[] getShape() {
+    return shape;
+  }
+
+  /** The chunk shape of the chunk grid, which is the shard shape if sharded. */
+  public int[] getChunks() {
+    return chunks;
+  }
+
+  public DataType getDataType() {
+    return dataType;
+  }
+
+  public Object getFillValue() {
+    return fillValue;
+  }
+
+  public ByteOrder getByteOrder() {
+    return byteOrder;
+  }
+
+  public ZArray.Order getOrder() {
+    return order;
+  }
+
+  public List<Filter> getFilters() {
+    return filters;
+  }
+
+  public String getSeparator() {
+    return separator;
+  }
+
+  /** Sharding information, or null if not sharded. */
+  @Nullable
+  public Sharding getSharding() {
+    return sharding;
+  }
+
+  public Map<String, Object> getAttributes() {
+    return attributes;
+  }
+
+  /** Dimension names, or null if not given. Individual names may be null. */
+  @Nullable
+  public String[] getDimensionNames() {
+    return dimensionNames;
+  }
+
+  /**
+   * Get the flat chunk number from a chunk key, relative to the array.
+   *
+   * @param key eg "c/0/1" for the default encoding or "0.1" for the v2 encoding
+   * @return chunk number, or -1 if the key is not a chunk key of this array
+   */
+  public int getChunkIndex(String key) {
+    String indices = key;
+    if (defaultKeyEncoding) {
+      if (key.equals(DEFAULT_KEY_PREFIX)) {
+        indices = "";
+      } else if (key.startsWith(DEFAULT_KEY_PREFIX + separator)) {
+        indices = key.substring(DEFAULT_KEY_PREFIX.length() + separator.length());
+      } else {
+        return -1;
+      }
+    }
+
+    int nDims = shape.length;
+    int[] subs = new int[nDims];
+    if (nDims == 0) {
+      return (indices.isEmpty() || indices.equals("0")) ? 0 : -1;
+    }
+    String[] parts = indices.split(separator.equals(".") ? "\\." : separator, -1);
+    if (parts.length != nDims) {
+      return -1;
+    }
+    int[] nChunks = new int[nDims];
+    for (int i = 0; i < nDims; i++) {
+      try {
+        subs[i] = Integer.parseInt(parts[i]);
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+      nChunks[i] = (shape[i] + chunks[i] - 1) / chunks[i];
+      if (subs[i] < 0 || subs[i] >= nChunks[i]) {
+        return -1;
+      }
+    }
+    return ZarrUtils.subscriptsToIndex(subs, nChunks);
+  }
+
+  private static int[] readInts(JsonNode node, String field) throws ZarrFormatException {
+    if (!node.isArray()) {
+      throw new ZarrFormatException(field, node.toString());
+    }
+    int[] result = new int[node.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = node.get(i).asInt();
+    }
+    return result;
+  }
+
+  private static Object parseFillValue(JsonNode node, DataType dataType) {
+    if (node.isMissingNode() || node.isNull()) {
+      return null;
+    } else if (node.isBoolean()) {
+      return node.asBoolean() ? 1 : 0;
+    } else if (node.isInt()) {
+      return node.asInt();
+    } else if (node.isLong()) {
+      return node.longValue();
+    } else if (node.isNumber()) {
+      return node.asDouble();
+    }
+    String text = node.asText();
+    // floating point fill values may be given as their hex bit pattern
+    if (text.startsWith("0x")) {
+      long bits = Long.parseUnsignedLong(text.substring(2), 16);
+      if (dataType == DataType.FLOAT) {
+        return Float.intBitsToFloat((int) bits);
+      } else if (dataType == DataType.DOUBLE) {
+        return Double.longBitsToDouble(bits);
+      }
+    }
+    return text; // NaN, Infinity, -Infinity are handled by the IOSP
+  }
+
+  /**
+   * The result of parsing a list of codecs.
+   */
+  private static class CodecChain {
+    private ZArray.Order order = ZArray.Order.C;
+    private ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+    private final List<Filter> filters = new ArrayList<>();
+    private Sharding sharding;
+
+    @SuppressWarnings("unchecked")
+    CodecChain(JsonNode codecs, int rank, ObjectMapper objectMapper) throws ZarrFormatException {
+      if (!codecs.isArray()) {
+        throw new ZarrFormatException(ZarrKeys.CODECS, codecs.toString());
+      }
+      boolean sawBytes = false;
+      for (Iterator<JsonNode> iter = codecs.elements(); iter.hasNext();) {
+        JsonNode codec = iter.next();
+        String name = codec.path(ZarrKeys.NAME).asText();
+        JsonNode config = codec.path(ZarrKeys.CONFIGURATION);
+
+        if (!sawBytes) { // array-to-array and array-to-bytes codecs
+          if (ZarrV3Codecs.TRANSPOSE.equals(name)) {
+            this.order = parseTranspose(config.path(ZarrKeys.ORDER), rank);
+          } else if (ZarrV3Codecs.BYTES.equals(name)) {
+            String endian = config.path("endian").asText("little");
+            this.byteOrder = "big".equals(endian) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            sawBytes = true;
+          } else if (ZarrV3Codecs.SHARDING.equals(name)) {
+            this.sharding = new Sharding(config, rank, objectMapper);
+            sawBytes = true;
+          } else {
+            throw new ZarrFormatException(ZarrKeys.CODECS, name);
+          }
+        } else { // bytes-to-bytes codecs
+          Map<String, Object> props =
+              config.isObject() ? objectMapper.convertValue(config, Map.class) : Collections.emptyMap();
+          filters.add(ZarrV3Codecs.makeFilter(name, props));
+        }
+      }
+      if (!sawBytes) {
+        throw new ZarrFormatException(ZarrKeys.CODECS, codecs.toString());
+      }
+    }
+
+    // only the identity and reversed permutations map to C and F order
+    private static ZArray.Order parseTranspose(JsonNode order, int rank) throws ZarrFormatException {
+      if (order.isTextual()) {
+        try {
+          return ZArray.Order.valueOf(order.asText());
+        } catch (IllegalArgumentException e) {
+          throw new ZarrFormatException(ZarrV3Codecs.TRANSPOSE, order.toString());
+        }
+      }
+      boolean identity = true;
+      boolean reversed = true;
+      for (int i = 0; i < rank; i++) {
+        int axis = order.path(i).asInt(-1);
+        identity &= (axis == i);
+        reversed &= (axis == rank - i - 1);
+      }
+      if (order.size() != rank || !(identity || reversed)) {
+        throw new ZarrFormatException(ZarrV3Codecs.TRANSPOSE, order.toString());
+      }
+      return identity ? ZArray.Order.C : ZArray.Order.F;
+    }
+  }
+
+  /**
+   * The sharding_indexed codec. Each chunk of the array's chunk grid is a shard, stored as one object holding
+   * inner chunks plus an index of (offset, nbytes) pairs, one per inner chunk in C order.
+   * The index is read once per shard and kept, so each inner chunk can then be read with a single ranged read.
+   */
+  public static class Sharding {
+    private final int[] chunkShape;
+    private final ByteOrder byteOrder;
+    private final List<Filter> filters;
+    private final ByteOrder indexByteOrder;
+    private final List<Filter> indexFilters;
+    private final int indexExtraBytes;
+    private final boolean indexAtEnd;
+    private int[] chunksPerShard;
+    private int nChunksPerShard;
+    private final Cache<Integer, long[]> indexCache = CacheBuilder.newBuilder().maximumWeight(MAX_INDEX_CACHE_BYTES)
+        .weigher((Integer shardNum, long[] index) -> 8 * index.length).build();
+
+    private Sharding(JsonNode config, int rank, ObjectMapper objectMapper) throws ZarrFormatException {
+      this.chunkShape = readInts(config.path(ZarrKeys.CHUNK_SHAPE), ZarrKeys.CHUNK_SHAPE);
+      if (chunkShape.length != rank) {
+        throw new ZarrFormatException(ZarrKeys.CHUNK_SHAPE, config.toString());
+      }
+
+      CodecChain inner = new CodecChain(config.path(ZarrKeys.CODECS), rank, objectMapper);
+      if (inner.sharding != null || inner.order != ZArray.Order.C) {
+        throw new ZarrFormatException("Nested sharding and transpose within shards are not supported");
+      }
+      this.byteOrder = inner.byteOrder;
+      this.filters = inner.filters;
+
+      JsonNode indexCodecs = config.path(ZarrKeys.INDEX_CODECS);
+      if (indexCodecs.isMissingNode()) {
+        this.indexByteOrder = ByteOrder.LITTLE_ENDIAN;
+        this.indexFilters = Collections.emptyList();
+      } else {
+        CodecChain index = new CodecChain(indexCodecs, 1, objectMapper);
+        if (index.sharding != null) {
+          throw new ZarrFormatException(ZarrKeys.INDEX_CODECS, indexCodecs.toString());
+        }
+        this.indexByteOrder = index.byteOrder;
+        this.indexFilters = index.filters;
+      }
+      // the index has a fixed size, so only checksums are allowed on it
+      int extra = 0;
+      for (Filter f : indexFilters) {
+        if (!(f instanceof ZarrV3Codecs.Crc32c)) {
+          throw new ZarrFormatException(ZarrKeys.INDEX_CODECS, f.getName());
+        }
+        extra += 4;
+      }
+      this.indexExtraBytes = extra;
+      this.indexAtEnd = !INDEX_AT_START.equals(config.path(ZarrKeys.INDEX_LOCATION).asText());
+    }
+
+    private void setChunksPerShard(int[] shardShape) {
+      this.chunksPerShard = new int[shardShape.length];
+      int n = 1;
+      for (int i = 0; i < shardShape.length; i++) {
+        chunksPerShard[i] = shardShape[i] / chunkShape[i];
+        n *= chunksPerShard[i];
+      }
+      this.nChunksPerShard = n;
+    }
+
+    /** Shape of the inner chunks. */
+    public int[] getChunkShape() {
+      return chunkShape;
+    }
+
+    /** Number of inner chunks in each dimension of a shard. */
+    public int[] getChunksPerShard() {
+      return chunksPerShard;
+    }
+
+    /** Byte order of the inner chunks. */
+    public ByteOrder getByteOrder() {
+      return byteOrder;
+    }
+
+    /** Bytes-to-bytes filters of the inner chunks, in encoding order. */
+    public List<Filter> getFilters() {
+      return filters;
+    }
+
+    /** Size of the shard index in bytes. */
+    public int getIndexSize() {
+      return 16 * nChunksPerShard + indexExtraBytes;
+    }
+
+    /**
+     * Position of the index relative to the start of the shard.
+     *
+     * @param shardLength length of the shard in bytes.
+     */
+    public long getIndexPosition(long shardLength) {
+      return indexAtEnd ? shardLength - getIndexSize() : 0;
+    }
+
+    /** Get a previously read shard index, or null. */
+    @Nullable
+    long[] getCachedIndex(int shardNum) {
+      return indexCache.getIfPresent(shardNum);
+    }
+
+    /**
+     * Decode a shard index and keep it for later reads.
+     *
+     * @param shardNum flat shard number
+     * @param raw the bytes of the index as stored
+     * @return (offset, nbytes) pairs for each inner chunk; offset is -1 for chunks that are not stored.
+     */
+    long[] decodeIndex(int shardNum, byte[] raw) throws IOException {
+      for (int i = indexFilters.size() - 1; i >= 0; i--) {
+        raw = indexFilters.get(i).decode(raw);
+      }
+      LongBuffer lb = ByteBuffer.wrap(raw).order(indexByteOrder).asLongBuffer();
+      long[] index = new long[2 * nChunksPerShard];
+      lb.get(index);
+      for (int i = 0; i < nChunksPerShard; i++) {
+        if (index[2 * i] == EMPTY_CHUNK && index[2 * i + 1] == EMPTY_CHUNK) {
+          index[2 * i] = -1;
+        }
+      }
+      indexCache.put(shardNum, index);
+      return index;
+    }
+  }
+}
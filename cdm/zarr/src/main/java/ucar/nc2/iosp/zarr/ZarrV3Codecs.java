@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import ucar.nc2.filter.Filter;
+import ucar.nc2.filter.Filters;
+import ucar.nc2.filter.UnknownFilterException;
+import ucar.nc2.util.IO;
+
+/**
+ * Maps Zarr v3 bytes-to-bytes codecs to CDM Filters.
+ * The v3 core codecs gzip and crc32c are implemented here, others (eg "blosc", "numcodecs.zlib")
+ * are looked up with Filters.getFilter(), using the codec configuration as the filter properties.
+ */
+class ZarrV3Codecs {
+  // codec names
+  static final String BYTES = "bytes";
+  static final String TRANSPOSE = "transpose";
+  static final String SHARDING = "sharding_indexed";
+  static final String GZIP = "gzip";
+  static final String CRC32C = "crc32c";
+
+  private static final String NUMCODECS_PREFIX = "numcodecs.";
+
+  /**
+   * Make the Filter for a bytes-to-bytes codec.
+   *
+   * @param name codec name
+   * @param config codec configuration, may be empty
+   * @throws ZarrFormatException if the codec is unknown
+   */
+  static Filter makeFilter(String name, Map<String, Object> config) throws ZarrFormatException {
+    switch (name) {
+      case GZIP:
+        Object level = config.get("level");
+        return new Gzip(level instanceof Number ? ((Number) level).intValue() : 5);
+      case CRC32C:
+        return new Crc32c();
+      default:
+        Map<String, Object> props = new HashMap<>(config);
+        props.put(Filters.Keys.NAME,
+            name.startsWith(NUMCODECS_PREFIX) ? name.substring(NUMCODECS_PREFIX.length()) : name);
+        try {
+          return Filters.getFilter(props);
+        } catch (UnknownFilterException | RuntimeException ex) {
+          throw new ZarrFormatException(ZarrKeys.CODECS, name);
+        }
+    }
+  }
+
+  /** The Zarr v3 gzip codec, RFC 1952 framing around deflate. */
+  static class Gzip extends Filter {
+    private final int level;
+
+    Gzip(int level) {
+      this.level = level;
+    }
+
+    @Override
+    public String getName() {
+      return GZIP;
+    }
+
+    @Override
+    public int getId() {
+      return -1;
+    }
+
+    @Override
+    public byte[] encode(byte[] dataIn) throws IOException {
+      ByteArrayOutputStream os = new ByteArrayOutputStream(dataIn.length);
+      try (GZIPOutputStream gos = new GZIPOutputStream(os) {
+        {
+          def.setLevel(level);
+        }
+      }) {
+        gos.write(dataIn);
+      }
+      return os.toByteArray();
+    }
+
+    @Override
+    public byte[] decode(byte[] dataIn) throws IOException {
+      try (GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(dataIn));
+          ByteArrayOutputStream os = new ByteArrayOutputStream(8 * dataIn.length)) {
+        IO.copyB(gis, os, IO.default_socket_buffersize);
+        return os.toByteArray();
+      }
+    }
+  }
+
+  /** The Zarr v3 crc32c codec: a little endian CRC-32C (Castagnoli) checksum after the data. */
+  static class Crc32c extends Filter {
+    private static final int nbytes = 4;
+    private static final int[] table = new int[256];
+
+    static {
+      for (int i = 0; i < 256; i++) {
+        int crc = i;
+        for (int j = 0; j < 8; j++) {
+          crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x82F63B78 : crc >>> 1;
+        }
+        table[i] = crc;
+      }
+    }
+
+    static int checksum(byte[] data, int offset, int len) {
+      int crc = ~0;
+      for (int i = offset; i < offset + len; i++) {
+        crc = (crc >>> 8) ^ table[(crc ^ data[i]) & 0xff];
+      }
+      return ~crc;
+    }
+
+    @Override
+    public String getName() {
+      return CRC32C;
+    }
+
+    @Override
+    public int getId() {
+      return -1;
+    }
+
+    @Override
+    public byte[] encode(byte[] dataIn) {
+      int crc = checksum(dataIn, 0, dataIn.length);
+      byte[] dataOut = new byte[dataIn.length + nbytes];
+      System.arraycopy(dataIn, 0, dataOut, 0, dataIn.length);
+      for (int i = 0; i < nbytes; i++) {
+        dataOut[dataIn.length + i] = (byte) (crc >>> (8 * i));
+      }
+      return dataOut;
+    }
+
+    @Override
+    public byte[] decode(byte[] dataIn) throws IOException {
+      int len = dataIn.length - nbytes;
+      if (len < 0) {
+        throw new IOException("crc32c: data is too short to hold a checksum");
+      }
+      int stored = 0;
+      for (int i = 0; i < nbytes; i++) {
+        stored |= (dataIn[len + i] & 0xff) << (8 * i);
+      }
+      if (stored != checksum(dataIn, 0, len)) {
+        throw new IOException("crc32c: checksum does not match");
+      }
+      byte[] dataOut = new byte[len];
+      System.arraycopy(dataIn, 0, dataOut, 0, len);
+      return dataOut;
+    }
+  }
+}
@@ -9,12 +9,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import thredds.inventory.*;
 import ucar.nc2.util.cache.FileCacheable;
+import ucar.unidata.io.ByteRange;
 import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.io.spi.RandomAccessFileProvider;
 
 import java.io.*;
 import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * This class allows a directory structure to be read in memory as a single file.
@@ -214,6 +216,96 @@ public class RandomAccessDirectory extends ucar.unidata.io.RandomAccessFile impl
     return n;
   }
 
+  /**
+   * Read several byte ranges, reading the ranges that fall in different files concurrently.
+   * Each file gets all of its ranges in one call to its own {@link RandomAccessFile#readRanges}, so remote files
+   * may in turn merge them. Ranges that span more than one file are read one at a time.
+   */
+  @Override
+  public List<byte[]> readRanges(List<ByteRange> ranges) throws IOException {
+    byte[][] result = new byte[ranges.size()][];
+
+    // group the ranges by the file that holds them
+    Map<RandomAccessDirectoryItem, List<Integer>> rangesByItem = new LinkedHashMap<>();
+    List<Integer> spanning = new ArrayList<>();
+    for (int i = 0; i < ranges.size(); i++) {
+      ByteRange range = ranges.get(i);
+      RandomAccessDirectoryItem item = findItem(range.offset());
+      if (item != null && range.end() <= item.startIndex() + item.length()) {
+        rangesByItem.computeIfAbsent(item, k -> new ArrayList<>()).add(i);
+      } else {
+        spanning.add(i);
+      }
+    }
+
+    // files are opened here, since getOrOpenRaf is not thread safe; each task then has a file to itself
+    List<Callable<List<byte[]>>> tasks = new ArrayList<>(rangesByItem.size());
+    for (Map.Entry<RandomAccessDirectoryItem, List<Integer>> entry : rangesByItem.entrySet()) {
+      RandomAccessFile raf = entry.getKey().getOrOpenRaf();
+      long start = entry.getKey().startIndex();
+      List<ByteRange> local = new ArrayList<>(entry.getValue().size());
+      for (int i : entry.getValue()) {
+        ByteRange range = ranges.get(i);
+        local.add(new ByteRange(range.offset() - start, range.length()));
+      }
+      tasks.add(() -> raf.readRanges(local));
+    }
+    List<List<byte[]>> results = invokeAll(tasks);
+    int task = 0;
+    for (List<Integer> indices : rangesByItem.values()) {
+      List<byte[]> data = results.get(task++);
+      for (int j = 0; j < indices.size(); j++) {
+        result[indices.get(j)] = data.get(j);
+      }
+    }
+
+    if (!spanning.isEmpty()) {
+      List<ByteRange> spanningRanges = new ArrayList<>(spanning.size());
+      for (int i : spanning) {
+        spanningRanges.add(ranges.get(i));
+      }
+      List<byte[]> data = super.readRanges(spanningRanges);
+      for (int j = 0; j < spanning.size(); j++) {
+        result[spanning.get(j)] = data.get(j);
+      }
+    }
+    return Arrays.asList(result);
+  }
+
+  /** Remote stores, eg cdms3:, prefer range reads; local directory and zip stores do not. */
+  @Override
+  public boolean prefersRangeReads() {
+    return isRemote(this.location);
+  }
+
+  // a store with a protocol other than file: is remote; a single letter before the colon is a Windows drive
+  private static boolean isRemote(String location) {
+    int colon = location.indexOf(':');
+    return colon > 1 && !location.regionMatches(true, 0, "file:", 0, 5);
+  }
+
+  // the item holding the byte at pos, or null if pos is past the end of the store
+  private RandomAccessDirectoryItem findItem(long pos) {
+    // children are in store order, so find the last one that starts at or before pos
+    int lo = 0;
+    int hi = this.children.size() - 1;
+    int found = -1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (this.children.get(mid).startIndex() <= pos) {
+        found = mid;
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    if (found < 0) {
+      return null;
+    }
+    RandomAccessDirectoryItem item = this.children.get(found);
+    return pos < item.startIndex() + item.length() ? item : null;
+  }
+
   /**
    * Not implemented - use write methods on the leaf RandomAccessFile
    * e.g. getCurrentFile().write()
@@ -0,0 +1,121 @@
+#!/usr/bin/env python
+# coding: utf-8
+
+# Writes a small Zarr v3 store by hand (no zarr-python needed), following the v3 spec:
+# https://zarr-specs.readthedocs.io/en/latest/v3/core/v3.0.html
+#
+# zarr_v3_test_data.zarr/
+#   zarr.json            root group with attributes
+#   unsharded/           float32 (20, 30), chunks (10, 10), bytes + gzip
+#   sharded/             int32 (20, 30), shards (10, 20) of inner chunks (5, 5), bytes + gzip,
+#                        index with crc32c at the end of the shard. Inner chunk (0, 0) is not stored.
+#   grp/nested/          uint8 (4,), chunks (2,), v2 chunk key encoding, no compression
+
+import gzip
+import json
+import os
+import shutil
+import struct
+
+STORE = '../zarr_v3_test_data.zarr'
+
+
+def crc32c(data):
+    crc = 0xffffffff
+    for b in data:
+        crc ^= b
+        for _ in range(8):
+            crc = (crc >> 1) ^ 0x82f63b78 if crc & 1 else crc >> 1
+    return crc ^ 0xffffffff
+
+
+def write(path, data):
+    path = os.path.join(STORE, path)
+    os.makedirs(os.path.dirname(path), exist_ok=True)
+    with open(path, 'wb') as f:
+        f.write(data)
+
+
+def write_json(path, obj):
+    write(path, json.dumps(obj, indent=2).encode())
+
+
+def chunk_bytes(fmt, value, origin, shape, chunk):
+    # C order values of one chunk, padded with fill past the array edge
+    out = b''
+    for i in range(origin[0], origin[0] + chunk[0]):
+        for j in range(origin[1], origin[1] + chunk[1]):
+            out += struct.pack(fmt, value(i, j) if i < shape[0] and j < shape[1] else 0)
+    return out
+
+
+def gz(data):
+    return gzip.compress(data, compresslevel=1, mtime=0)
+
+
+if os.path.exists(STORE):
+    shutil.rmtree(STORE)
+
+write_json('zarr.json', {'zarr_format': 3, 'node_type': 'group', 'attributes': {'title': 'zarr v3 test'}})
+
+# unsharded float array
+shape = [20, 30]
+write_json('unsharded/zarr.json', {
+    'zarr_format': 3, 'node_type': 'array', 'shape': shape, 'data_type': 'float32',
+    'chunk_grid': {'name': 'regular', 'configuration': {'chunk_shape': [10, 10]}},
+    'chunk_key_encoding': {'name': 'default', 'configuration': {'separator': '/'}},
+    'fill_value': 'NaN',
+    'codecs': [{'name': 'bytes', 'configuration': {'endian': 'little'}},
+               {'name': 'gzip', 'configuration': {'level': 1}}],
+    'attributes': {'units': 'K'}, 'dimension_names': ['y', 'x']})
+for ci in range(2):
+    for cj in range(3):
+        data = chunk_bytes('<f', lambda i, j: float(i * 30 + j), [ci * 10, cj * 10], shape, [10, 10])
+        write('unsharded/c/%d/%d' % (ci, cj), gz(data))
+
+# sharded int array
+shard = [10, 20]
+inner = [5, 5]
+per_shard = [shard[0] // inner[0], shard[1] // inner[1]]
+write_json('sharded/zarr.json', {
+    'zarr_format': 3, 'node_type': 'array', 'shape': shape, 'data_type': 'int32',
+    'chunk_grid': {'name': 'regular', 'configuration': {'chunk_shape': shard}},
+    'chunk_key_encoding': {'name': 'default', 'configuration': {'separator': '/'}},
+    'fill_value': -1,
+    'codecs': [{'name': 'sharding_indexed', 'configuration': {
+        'chunk_shape': inner,
+        'codecs': [{'name': 'bytes', 'configuration': {'endian': 'little'}},
+                   {'name': 'gzip', 'configuration': {'level': 1}}],
+        'index_codecs': [{'name': 'bytes', 'configuration': {'endian': 'little'}}, {'name': 'crc32c'}],
+        'index_location': 'end'}}],
+    'attributes': {}, 'dimension_names': ['y', 'x']})
+for si in range(2):
+    for sj in range(2):
+        body = b''
+        index = [(0xffffffffffffffff, 0xffffffffffffffff)] * (per_shard[0] * per_shard[1])
+        # store inner chunks in reverse order, so offsets do not follow the index order
+        for ii in reversed(range(per_shard[0])):
+            for jj in reversed(range(per_shard[1])):
+                origin = [si * shard[0] + ii * inner[0], sj * shard[1] + jj * inner[1]]
+                if origin[1] >= shape[1]:
+                    continue  # entirely past the array edge
+                if origin == [0, 0]:
+                    continue  # leave one chunk missing, to be read as fill
+                data = gz(chunk_bytes('<i', lambda i, j: i * 30 + j, origin, shape, inner))
+                index[ii * per_shard[1] + jj] = (len(body), len(data))
+                body += data
+        index_bytes = b''.join(struct.pack('<QQ', off, n) for off, n in index)
+        index_bytes += struct.pack('<I', crc32c(index_bytes))
+        write('sharded/c/%d/%d' % (si, sj), body + index_bytes)
+
+# nested group, v2 chunk key encoding
+write_json('grp/zarr.json', {'zarr_format': 3, 'node_type': 'group', 'attributes': {}})
+write_json('grp/nested/zarr.json', {
+    'zarr_format': 3, 'node_type': 'array', 'shape': [4], 'data_type': 'uint8',
+    'chunk_grid': {'name': 'regular', 'configuration': {'chunk_shape': [2]}},
+    'chunk_key_encoding': {'name': 'v2', 'configuration': {'separator': '.'}},
+    'fill_value': 0,
+    'codecs': [{'name': 'bytes'}],
+    'attributes': {}})
+write('grp/nested/0', bytes([1, 2]))
+write('grp/nested/1', bytes([3, 4]))
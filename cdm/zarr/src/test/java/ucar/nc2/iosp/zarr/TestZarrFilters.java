@@ -7,6 +7,7 @@ import ucar.ma2.Array;
 import ucar.ma2.DataType;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.NetcdfFiles;
+import ucar.nc2.iosp.ChunkCache;
 
 import java.io.IOException;
 
@@ -84,6 +85,22 @@ public class TestZarrFilters {
     assertThat(hasExpectedValues(data, 1, 0)).isTrue();
   }
 
+  @Test
+  public void testReadCompressedDataWithChunkCache() throws IOException {
+    ChunkCache.enable(10 * 1000 * 1000);
+    try {
+      ChunkCache cache = ChunkCache.getInstance();
+      for (int i = 0; i < 2; i++) {
+        Array data = ncfile.findVariable("comp_filt/Adler_shuffle_deflate").read();
+        assertThat(hasExpectedValues(data, 1, 0)).isTrue();
+      }
+      assertThat(cache.getNumberOfChunks()).isGreaterThan(0L);
+      assertThat(cache.getStats().hitCount()).isGreaterThan(0L);
+    } finally {
+      ChunkCache.disable();
+    }
+  }
+
   private static boolean hasExpectedValues(Array data, int scale, float offset) {
     // For scaled data, 1/scale is the last significant digit
     double e = 1 / (double) scale;
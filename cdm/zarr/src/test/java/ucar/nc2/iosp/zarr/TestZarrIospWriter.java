@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.util.CompareNetcdf2;
+import ucar.nc2.write.Nc4ChunkingStrategyNone;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+public class TestZarrIospWriter {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static Array makeData() {
+    int[] shape = {6, 8};
+    Array data = Array.factory(DataType.FLOAT, shape);
+    for (int i = 0; i < data.getSize(); i++) {
+      data.setFloat(i, i * 0.5f);
+    }
+    return data;
+  }
+
+  private static void writeZarr(NetcdfFormatWriter.Builder writerb, Array data)
+      throws IOException, InvalidRangeException {
+    writerb.addAttribute(new Attribute("title", "zarr writer test"));
+    writerb.addDimension("y", 6);
+    writerb.addDimension("x", 8);
+    writerb.addVariable("temp", DataType.FLOAT, "y x").addAttribute(new Attribute("units", "K"));
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      // write in two pieces that do not line up with the chunks
+      writer.write("temp", new int[] {0, 0}, data.section(new int[] {0, 0}, new int[] {3, 8}));
+      writer.write("temp", new int[] {3, 0}, data.section(new int[] {3, 0}, new int[] {3, 8}));
+    }
+  }
+
+  private static void checkZarr(String location, Array expected) throws IOException {
+    try (NetcdfFile ncfile = NetcdfFiles.open(location)) {
+      assertThat(ncfile.getRootGroup().findAttributeString("title", null)).isEqualTo("zarr writer test");
+      Variable v = ncfile.findVariable("temp");
+      assertThat((Object) v).isNotNull();
+      assertThat(v.getShape()).isEqualTo(expected.getShape());
+      assertThat(v.findAttributeString("units", null)).isEqualTo("K");
+      assertThat(CompareNetcdf2.compareData(v.getShortName(), expected, v.read())).isTrue();
+    }
+  }
+
+  @Test
+  public void testWriteDirectoryStore() throws Exception {
+    String location = new File(tempFolder.getRoot(), "test.zarr").getPath();
+    Array data = makeData();
+    writeZarr(ZarrIospWriter.createNewZarr(location, null), data);
+    assertThat(new File(location, ".zgroup").exists()).isTrue();
+    assertThat(new File(location, "temp/.zarray").exists()).isTrue();
+    checkZarr(location, data);
+  }
+
+  @Test
+  public void testWriteUncompressedStore() throws Exception {
+    String location = new File(tempFolder.getRoot(), "uncompressed.zarr").getPath();
+    Array data = makeData();
+    writeZarr(ZarrIospWriter.createNewZarr(location, new Nc4ChunkingStrategyNone()), data);
+    checkZarr(location, data);
+  }
+
+  @Test
+  public void testWriteZipStore() throws Exception {
+    String location = new File(tempFolder.getRoot(), "test.zip").getPath();
+    Array data = makeData();
+    writeZarr(ZarrIospWriter.createNewZarr(location, null), data);
+    assertThat(new File(location).isFile()).isTrue();
+    checkZarr(location, data);
+  }
+
+  @Test
+  public void testWriteWithExecutor() throws Exception {
+    String location = new File(tempFolder.getRoot(), "parallel.zarr").getPath();
+    Array data = makeData();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      writeZarr(ZarrIospWriter.createNewZarr(location, null, executor), data);
+    } finally {
+      executor.shutdownNow();
+    }
+    checkZarr(location, data);
+  }
+
+  @Test
+  public void testWriteFillValueInZarray() throws Exception {
+    String location = new File(tempFolder.getRoot(), "fill.zarr").getPath();
+    NetcdfFormatWriter.Builder writerb = ZarrIospWriter.createNewZarr(location, null);
+    writerb.addDimension("x", 8);
+    writerb.addVariable("temp", DataType.FLOAT, "x").addAttribute(new Attribute(CDM.FILL_VALUE, -999.0f));
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      writer.write("temp", new int[] {0}, makeData().section(new int[] {0, 0}, new int[] {1, 4}).reduce());
+    }
+
+    String zarray = new String(Files.readAllBytes(new File(location, "temp/.zarray").toPath()), StandardCharsets.UTF_8);
+    String zattrs = new String(Files.readAllBytes(new File(location, "temp/.zattrs").toPath()), StandardCharsets.UTF_8);
+    assertThat(zarray).contains("-999.0");
+    assertThat(zattrs).doesNotContain(CDM.FILL_VALUE);
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(location)) {
+      Variable v = ncfile.findVariable("temp");
+      assertThat((Object) v).isNotNull();
+      assertThat(v.read().getFloat(7)).isEqualTo(-999.0f);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testRefuseNonEmptyDirectory() throws Exception {
+    File dir = tempFolder.newFolder("notempty.zarr");
+    assertThat(new File(dir, "other").createNewFile()).isTrue();
+    writeZarr(ZarrIospWriter.createNewZarr(dir.getPath(), null), makeData());
+  }
+}
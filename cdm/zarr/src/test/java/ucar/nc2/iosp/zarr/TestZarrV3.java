@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.Index;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+/**
+ * Read a Zarr v3 store, made by src/test/data/scripts/make_zarr_v3_test_data.py
+ */
+public class TestZarrV3 {
+
+  private static final String FILE_PATH = ZarrTestsCommon.LOCAL_TEST_DATA_PATH + "zarr_v3_test_data.zarr/";
+
+  private static NetcdfFile ncfile;
+
+  @BeforeClass
+  public static void setUpTests() throws IOException {
+    ncfile = NetcdfFiles.open(FILE_PATH);
+  }
+
+  @AfterClass
+  public static void cleanUpTests() throws IOException {
+    ncfile.close();
+  }
+
+  @Test
+  public void testReadMetadata() {
+    assertThat(ncfile.getRootGroup().findAttributeString("title", null)).isEqualTo("zarr v3 test");
+    assertThat((Object) ncfile.findDimension("y")).isNotNull();
+    assertThat((Object) ncfile.findDimension("x")).isNotNull();
+
+    Variable unsharded = ncfile.findVariable("unsharded");
+    assertThat((Object) unsharded).isNotNull();
+    assertThat(unsharded.getDataType()).isEqualTo(DataType.FLOAT);
+    assertThat(unsharded.getShape()).isEqualTo(new int[] {20, 30});
+    assertThat(unsharded.findAttributeString("units", null)).isEqualTo("K");
+    assertThat(unsharded.findAttributeString("_Compressor", null)).isEqualTo("gzip");
+
+    Variable sharded = ncfile.findVariable("sharded");
+    assertThat((Object) sharded).isNotNull();
+    assertThat(sharded.getDataType()).isEqualTo(DataType.INT);
+    assertThat(sharded.getShape()).isEqualTo(new int[] {20, 30});
+
+    Variable nested = ncfile.findVariable("grp/nested");
+    assertThat((Object) nested).isNotNull();
+    assertThat(nested.getDataType()).isEqualTo(DataType.UBYTE);
+  }
+
+  @Test
+  public void testReadUnsharded() throws IOException, InvalidRangeException {
+    Variable v = ncfile.findVariable("unsharded");
+    checkValues(v.read(), new Section(v.getShape()), false);
+    Section section = new Section("3:12,15:25:2");
+    checkValues(v.read(section), section, false);
+  }
+
+  @Test
+  public void testReadSharded() throws IOException, InvalidRangeException {
+    Variable v = ncfile.findVariable("sharded");
+    checkValues(v.read(), new Section(v.getShape()), true);
+
+    // crosses all four shards
+    Section section = new Section("3:12,15:25");
+    checkValues(v.read(section), section, true);
+
+    // lies entirely within the missing inner chunk
+    Array fill = v.read("1:3,1:3");
+    while (fill.hasNext()) {
+      assertThat(fill.nextInt()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void testReadV2KeyEncoding() throws IOException {
+    Array data = ncfile.findVariable("grp/nested").read();
+    assertThat((int[]) data.get1DJavaArray(DataType.INT)).isEqualTo(new int[] {1, 2, 3, 4});
+  }
+
+  // value at (i, j) is i * 30 + j, except for the inner chunk at the origin of the sharded array, which is not stored
+  private static void checkValues(Array data, Section section, boolean hasMissingChunk) {
+    assertThat(data.getShape()).isEqualTo(section.getShape());
+    Index index = data.getIndex();
+    int[] counter = new int[2];
+    for (int i = 0; i < section.getShape(0); i++) {
+      for (int j = 0; j < section.getShape(1); j++) {
+        int y = section.getOrigin(0) + i * section.getStride(0);
+        int x = section.getOrigin(1) + j * section.getStride(1);
+        counter[0] = i;
+        counter[1] = j;
+        double expected = (hasMissingChunk && y < 5 && x < 5) ? -1 : y * 30 + x;
+        assertThat(data.getDouble(index.set(counter))).isEqualTo(expected);
+      }
+    }
+  }
+}
@@ -11,6 +11,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import ucar.nc2.NetcdfFiles;
 import ucar.nc2.iosp.zarr.ZarrTestsCommon;
+import ucar.unidata.io.ByteRange;
 import ucar.unidata.io.KMPMatch;
 
 import java.io.ByteArrayOutputStream;
@@ -261,6 +262,41 @@ public class TestRandomAccessDirectory {
     });
   }
 
+  @Test
+  public void testReadRanges() throws IOException {
+    for (RandomAccessFile raf : stores) {
+      _testReadRanges(raf);
+    }
+  }
+
+  private void _testReadRanges(RandomAccessFile raf) throws IOException {
+    // ranges within one file, spanning two files, empty, and at the end of the store
+    List<ByteRange> ranges = Arrays.asList(new ByteRange(FILE_SIZE * 2 + 5, 10), new ByteRange(0, FILE_SIZE),
+        new ByteRange(FILE_SIZE * 4 - 2, 4), new ByteRange(FILE_SIZE, 0), new ByteRange(EXPECTED_SIZE - 7, 7),
+        new ByteRange(3, 8));
+    raf.seek(11);
+    List<byte[]> result = raf.readRanges(ranges);
+    assertThat(result).hasSize(ranges.size());
+    for (int i = 0; i < ranges.size(); i++) {
+      ByteRange r = ranges.get(i);
+      byte[] expected = new byte[r.length()];
+      for (int j = 0; j < expected.length; j++) {
+        // every file in the store has the same contents
+        expected[j] = UTF8_BYTES[(int) ((r.offset() + j) % FILE_SIZE)];
+      }
+      assertThat(result.get(i)).isEqualTo(expected);
+    }
+    assertThat(raf.getFilePointer()).isEqualTo(11);
+  }
+
+  @Test
+  public void testPrefersRangeReads() {
+    // directory, object and zip stores, in the order of setUpTests()
+    assertThat(stores.get(0).prefersRangeReads()).isFalse();
+    assertThat(stores.get(1).prefersRangeReads()).isTrue();
+    assertThat(stores.get(2).prefersRangeReads()).isFalse();
+  }
+
   @Test
   public void testSearchForward() throws IOException {
     for (RandomAccessFile raf : stores) {
@@ -201,6 +201,44 @@ public abstract class D4DSP {
     }
   }
 
+  /**
+   * @return true if this DSP can fetch part of the data with {@link #loadConstrainedDAP(String)}
+   */
+  public boolean isConstrainable() {
+    return false;
+  }
+
+  /**
+   * Fetch and compile the data selected by a constraint, instead of the whole dataset.
+   * The DMR and variable data of this DSP are not changed.
+   *
+   * @param ce the constraint, not URL encoded
+   * @return the compiler, holding the response DMR and the data and checksums of its top level variables
+   * @throws IOException
+   */
+  public D4DataCompiler loadConstrainedDAP(String ce) throws IOException {
+    throw new DapException("Constrained requests are not supported: " + this.location);
+  }
+
+  /**
+   * Compile a response to a constrained request, which has been set with setStream.
+   * The response is described by the DMR that precedes the data, not by the DMR of the dataset.
+   *
+   * @return the compiler, holding the response DMR and the data and checksums of its top level variables
+   * @throws IOException
+   */
+  protected D4DataCompiler compileConstrainedDAP() throws IOException {
+    try {
+      DapDataset datadmr = parseDMR(readDMR());
+      D4DataCompiler compiler = new D4DataCompiler(this, datadmr, this.checksummode, this.remoteorder);
+      compiler.compile();
+      return compiler;
+    } finally {
+      this.stream.close();
+      this.streamclosed = true;
+    }
+  }
+
   public void loadContext(DapContext cxt, RequestMode mode) {
     switch (mode) {
       case DMR:
@@ -243,6 +281,22 @@ public abstract class D4DSP {
     }
   }
 
+  /**
+   * Like getMethodUrl(mode, csum), but with the given constraint in place of any in the original url.
+   */
+  protected String getMethodUrl(RequestMode mode, ChecksumMode csum, String ce) throws DapException {
+    String original = xuri.getQueryFields().get(DapConstants.CONSTRAINTTAG);
+    xuri.insertQueryField(DapConstants.CONSTRAINTTAG, ce);
+    try {
+      return getMethodUrl(mode, csum);
+    } finally {
+      if (original == null)
+        xuri.removeQueryField(DapConstants.CONSTRAINTTAG);
+      else
+        xuri.insertQueryField(DapConstants.CONSTRAINTTAG, original);
+    }
+  }
+
   protected String getMethodUrl(RequestMode mode, ChecksumMode csum) throws DapException {
     xuri.removeQueryField(DapConstants.CHECKSUMTAG);
     csum = ChecksumMode.asTrueFalse(csum);
@@ -47,6 +47,9 @@ public class D4DataCompiler {
   protected Map<DapVariable, Long> localchecksummap = new HashMap<>();
   protected Map<DapVariable, Long> remotechecksummap = new HashMap<>();
 
+  // The compiled data of each top level variable
+  protected Map<DapVariable, D4Array> datamap = new HashMap<>();
+
   //////////////////////////////////////////////////
   // Constructor(s)
 
@@ -59,8 +62,23 @@ public class D4DataCompiler {
    */
 
   public D4DataCompiler(D4DSP dsp, ChecksumMode checksummode, ByteOrder remoteorder) throws DapException {
+    this(dsp, dsp.getDMR(), checksummode, remoteorder);
+  }
+
+  /**
+   * Constructor for a data stream that is described by a DMR other than the dsp's,
+   * as when the server applies a constraint.
+   *
+   * @param dsp the D4DSP
+   * @param dmr the DMR that describes the data stream
+   * @param checksummode
+   * @param remoteorder
+   */
+
+  public D4DataCompiler(D4DSP dsp, DapDataset dmr, ChecksumMode checksummode, ByteOrder remoteorder)
+      throws DapException {
     this.dsp = dsp;
-    this.dmr = this.dsp.getDMR();
+    this.dmr = dmr;
     this.stream = this.dsp.getStream();
     this.checksummode = ChecksumMode.asTrueFalse(checksummode);
     this.remoteorder = remoteorder;
@@ -79,6 +97,14 @@ public class D4DataCompiler {
     return null;
   }
 
+  public DapDataset getDMR() {
+    return this.dmr;
+  }
+
+  public Map<DapVariable, D4Array> getVariableDataMap() {
+    return this.datamap;
+  }
+
   protected void setChecksum(DapConstants.ChecksumSource src, DapVariable dvar, Long csum) {
     switch (src) {
       case LOCAL:
@@ -109,7 +135,9 @@ public class D4DataCompiler {
       D4Array data = new D4Array(schemeFor(vv), this.dsp, vv).setStorage(storage);
       assert data.getArray() == null;
       data.setArray(createArray(vv, data.getStorage()));
-      this.dsp.addVariableData(vv, data);
+      this.datamap.put(vv, data);
+      if (this.dmr == this.dsp.getDMR())
+        this.dsp.addVariableData(vv, data);
     }
   }
 
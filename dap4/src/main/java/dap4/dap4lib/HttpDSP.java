@@ -114,6 +114,26 @@ public class HttpDSP extends D4DSP {
     }
   }
 
+  @Override
+  public boolean isConstrainable() {
+    return true;
+  }
+
+  /**
+   * Request only the data selected by a constraint.
+   *
+   * @param ce the constraint, not URL encoded
+   * @throws IOException
+   */
+  @Override
+  public D4DataCompiler loadConstrainedDAP(String ce) throws IOException {
+    String methodurl = getMethodUrl(RequestMode.DAP, this.checksummode, ce);
+    try (InputStream stream = makeRequest(methodurl)) {
+      setStream(stream, RequestMode.DAP);
+      return compileConstrainedDAP();
+    }
+  }
+
   //////////////////////////////////////////////////
   // Request/Response methods
 
@@ -5,6 +5,7 @@
 
 package dap4.dap4lib.cdm.nc2;
 
+import dap4.core.ce.CEConstraint;
 import dap4.core.dmr.*;
 import dap4.core.util.*;
 import dap4.dap4lib.*;
@@ -19,6 +20,7 @@ import ucar.nc2.dataset.NetcdfDataset;
 import ucar.nc2.iosp.IospHelper;
 import ucar.nc2.util.CancelTask;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URISyntaxException;
 import java.nio.channels.WritableByteChannel;
 import java.util.*;
@@ -44,9 +46,68 @@ public class DapNetcdfFile extends NetcdfFile {
   //////////////////////////////////////////////////
   // Constants
 
+  // Total size of the recently fetched variable sections kept, when reading lazily
+  protected static final long SECTIONCACHEMAXBYTES = 16 * 1000 * 1000;
+
   //////////////////////////////////////////////////
   // Type Declarations
 
+  // Identify a fetched section of a variable
+  protected static class SectionKey {
+    final Variable var;
+    final Section section;
+
+    SectionKey(Variable var, Section section) {
+      this.var = var;
+      this.section = section;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof SectionKey))
+        return false;
+      SectionKey other = (SectionKey) o;
+      return this.var == other.var && this.section.equals(other.section);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(this.var) + this.section.hashCode();
+    }
+  }
+
+  // A read of a variable section that is waiting to be fetched
+  protected static class PendingRead {
+    final int index; // into the caller's result
+    final Variable var;
+    final DapVariable dapvar;
+    final Section section;
+    Array result = null;
+    IOException error = null;
+    boolean done = false;
+
+    PendingRead(int index, Variable var, DapVariable dapvar, Section section) {
+      this.index = index;
+      this.var = var;
+      this.dapvar = dapvar;
+      this.section = section;
+    }
+
+    List<Slice> getSlices() throws DapException {
+      if (this.var.getRank() == 0)
+        return null;
+      List<Slice> slices = new ArrayList<>();
+      int[] shape = this.var.getShape();
+      for (int i = 0; i < shape.length; i++) {
+        Range r = this.section.getRange(i);
+        slices.add(new Slice(r.first(), r.last() + 1, r.stride(), shape[i]));
+      }
+      return slices;
+    }
+  }
+
   protected static class NullCancelTask implements CancelTask {
     public boolean isCancel() {
       return false;
@@ -103,6 +164,14 @@ public class DapNetcdfFile extends NetcdfFile {
   // Variable map
   protected Map<Variable, Array> arraymap = null;
 
+  // Recently fetched sections, when reading lazily; least recently used first
+  protected final Map<SectionKey, Array> sectioncache = new LinkedHashMap<>(16, 0.75f, true);
+  protected long sectioncachebytes = 0; // total size of the cached sections
+
+  // Lazy reads waiting for a request; those that arrive while a request is in flight are batched into the next one
+  protected final List<PendingRead> pendingreads = new ArrayList<>();
+  protected boolean fetching = false; // a request is in flight
+
   /////////////////////////////////////////////////
   // Constructor(s)
 
@@ -189,6 +258,10 @@ public class DapNetcdfFile extends NetcdfFile {
       return;
     closed = true; // avoid circular calls
     dsp = null;
+    synchronized (this.sectioncache) {
+      this.sectioncache.clear();
+      this.sectioncachebytes = 0;
+    }
   }
 
   //////////////////////////////////////////////////
@@ -216,7 +289,7 @@ public class DapNetcdfFile extends NetcdfFile {
    * Do a bulk read on a list of Variables and
    * return a corresponding list of Array that contains the results
    * of a full read on each Variable.
-   * TODO: optimize to make only a single server call and cache the results.
+   * When reading lazily, the variables are fetched with a single server call.
    *
    * @param variables List of type Variable
    * @return List of Array, one for each Variable in the input.
@@ -225,9 +298,24 @@ public class DapNetcdfFile extends NetcdfFile {
 
   @Override
   public List<Array> readArrays(List<Variable> variables) throws IOException {
+    List<Variable> lazyvars = new ArrayList<>();
+    for (Variable variable : variables) {
+      if (isLazy(variable))
+        lazyvars.add(variable);
+    }
+    List<Array> lazydata;
+    try {
+      lazydata = readLazy(lazyvars, Collections.nCopies(lazyvars.size(), null));
+    } catch (InvalidRangeException ire) {
+      throw new IOException(ire);
+    }
     List<Array> result = new ArrayList<Array>();
+    int next = 0;
     for (Variable variable : variables) {
-      result.add(variable.read());
+      if (next < lazyvars.size() && lazyvars.get(next) == variable)
+        result.add(lazydata.get(next++));
+      else
+        result.add(variable.read());
     }
     return result;
   }
@@ -279,6 +367,10 @@ public class DapNetcdfFile extends NetcdfFile {
     // takes into account any constraint used in forming the dataDMR.
     // We use the Section to produce a view of the underlying variable array.
 
+    // Fetch only this section, if we can
+    if (isLazy(cdmvar))
+      return readLazy(Collections.singletonList(cdmvar), Collections.singletonList(section)).get(0);
+
     // Read and compile the DAP4 data
     // Ensure that the DSP has data
     ensuredata();
@@ -299,6 +391,230 @@ public class DapNetcdfFile extends NetcdfFile {
     return result;
   }
 
+  //////////////////////////////////////////////////
+  // Lazy reads
+
+  /**
+   * A variable is read lazily, i.e. by asking the server for just the wanted section, if the DSP supports
+   * constraints, the whole dataset has not already been loaded, and the variable is a top level atomic variable.
+   * The dataset must not be constrained by the url, since the server applies constraints to the whole dataset.
+   *
+   * @param cdmvar the variable
+   * @return true if cdmvar is read lazily
+   */
+  protected boolean isLazy(Variable cdmvar) {
+    if (this.closed || this.daploaded || !this.dsp.isConstrainable())
+      return false;
+    if (this.cxt.get(DapConstants.CONSTRAINTTAG) != null)
+      return false;
+    DapNode dapnode = this.cdmCompiler.getNodeMap().get(cdmvar);
+    if (!(dapnode instanceof DapVariable))
+      return false;
+    DapVariable dapvar = (DapVariable) dapnode;
+    return dapvar.isTopLevel() && dapvar.isAtomic() && !CDMUtil.hasVLEN(cdmvar);
+  }
+
+  /**
+   * Read sections of lazily read variables, from the cache if possible, otherwise from the server.
+   *
+   * @param vars the variables, all of which must be lazy
+   * @param sections the section of each variable; null means the whole variable
+   * @return the data, one Array for each variable, which the caller may modify
+   */
+  protected List<Array> readLazy(List<Variable> vars, List<Section> sections)
+      throws IOException, InvalidRangeException {
+    Array[] results = new Array[vars.size()];
+    List<PendingRead> reads = new ArrayList<>();
+    for (int i = 0; i < vars.size(); i++) {
+      Variable var = vars.get(i);
+      Section section = Section.fill(sections.get(i), var.getShape());
+      if (var.getRank() != section.getRank())
+        throw new InvalidRangeException(String.format("Section rank != %s rank", var.getFullName()));
+      if (section.computeSize() == 0) {
+        results[i] = Array.factory(var.getDataType(), section.getShape());
+        continue;
+      }
+      results[i] = findCached(var, section);
+      if (results[i] == null)
+        reads.add(new PendingRead(i, var, (DapVariable) this.cdmCompiler.getNodeMap().get(var), section));
+    }
+    if (!reads.isEmpty()) {
+      fetch(reads);
+      for (PendingRead read : reads) {
+        results[read.index] = read.result;
+        if (read.result.getSizeBytes() <= SECTIONCACHEMAXBYTES) {
+          cacheSection(new SectionKey(read.var, read.section), read.result);
+          results[read.index] = read.result.copy(); // the cached array must not be modified
+        }
+      }
+    }
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Add a section to the cache, then drop the least recently used sections until the cache holds no more than
+   * SECTIONCACHEMAXBYTES.
+   */
+  protected void cacheSection(SectionKey key, Array array) {
+    synchronized (this.sectioncache) {
+      Array old = this.sectioncache.put(key, array);
+      if (old != null)
+        this.sectioncachebytes -= old.getSizeBytes();
+      this.sectioncachebytes += array.getSizeBytes();
+      Iterator<Array> iter = this.sectioncache.values().iterator();
+      while (this.sectioncachebytes > SECTIONCACHEMAXBYTES && iter.hasNext()) {
+        this.sectioncachebytes -= iter.next().getSizeBytes();
+        iter.remove();
+      }
+    }
+  }
+
+  /**
+   * Look for a cached section of the variable that contains the wanted section.
+   *
+   * @return a copy of the wanted section, or null if not cached
+   */
+  protected Array findCached(Variable var, Section want) throws InvalidRangeException {
+    synchronized (this.sectioncache) {
+      SectionKey key = new SectionKey(var, want);
+      Array array = this.sectioncache.get(key);
+      if (array != null)
+        return array.copy();
+      for (Map.Entry<SectionKey, Array> entry : this.sectioncache.entrySet()) {
+        if (entry.getKey().var != var)
+          continue;
+        List<Range> ranges = relativeRanges(entry.getKey().section, want);
+        if (ranges != null) {
+          this.sectioncache.get(entry.getKey()); // mark as recently used
+          return entry.getValue().sectionNoReduce(ranges).copy();
+        }
+      }
+    }
+    return null;
+  }
+
+  // The ranges of want relative to have, or null if have does not contain want
+  protected static List<Range> relativeRanges(Section have, Section want) throws InvalidRangeException {
+    List<Range> ranges = new ArrayList<>();
+    for (int i = 0; i < want.getRank(); i++) {
+      Range h = have.getRange(i);
+      Range w = want.getRange(i);
+      if (w.first() < h.first() || w.last() > h.last() || (w.first() - h.first()) % h.stride() != 0)
+        return null;
+      if (w.length() > 1 && w.stride() % h.stride() != 0)
+        return null;
+      int stride = (w.length() > 1) ? w.stride() / h.stride() : 1;
+      ranges.add(new Range((w.first() - h.first()) / h.stride(), (w.last() - h.first()) / h.stride(), stride));
+    }
+    return ranges;
+  }
+
+  /**
+   * Wait until the reads have been fetched. If no request is in flight, this thread makes one for all the reads
+   * that are waiting, including those from other threads; otherwise it waits for the request in flight to finish.
+   *
+   * @param reads the reads of this thread
+   */
+  protected void fetch(List<PendingRead> reads) throws IOException {
+    synchronized (this.pendingreads) {
+      this.pendingreads.addAll(reads);
+    }
+    while (true) {
+      List<PendingRead> batch;
+      synchronized (this.pendingreads) {
+        while (this.fetching && !isDone(reads)) {
+          try {
+            this.pendingreads.wait();
+          } catch (InterruptedException e) {
+            this.pendingreads.removeAll(reads);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + this.location);
+          }
+        }
+        if (isDone(reads))
+          break;
+        this.fetching = true;
+        batch = takeBatch();
+      }
+      try {
+        fetchBatch(batch);
+      } finally {
+        synchronized (this.pendingreads) {
+          this.fetching = false;
+          this.pendingreads.notifyAll();
+        }
+      }
+    }
+    for (PendingRead read : reads) {
+      if (read.error != null)
+        throw read.error;
+    }
+  }
+
+  protected static boolean isDone(List<PendingRead> reads) {
+    for (PendingRead read : reads) {
+      if (!read.done)
+        return false;
+    }
+    return true;
+  }
+
+  // Take the waiting reads that can go in one request: a constraint has at most one section per variable
+  protected List<PendingRead> takeBatch() {
+    List<PendingRead> batch = new ArrayList<>();
+    Set<Variable> vars = new HashSet<>();
+    for (Iterator<PendingRead> iter = this.pendingreads.iterator(); iter.hasNext();) {
+      PendingRead read = iter.next();
+      if (vars.add(read.var)) {
+        batch.add(read);
+        iter.remove();
+      }
+    }
+    return batch;
+  }
+
+  // Make one constrained request for all the reads in the batch
+  protected void fetchBatch(List<PendingRead> batch) {
+    try {
+      CEConstraint ce = new CEConstraint(this.dmr);
+      for (PendingRead read : batch)
+        ce.addVariable(read.dapvar, read.getSlices());
+      D4DataCompiler response = this.dsp.loadConstrainedDAP(ce.toConstraintString());
+      if (this.checksummode == ChecksumMode.TRUE)
+        verifyChecksums(response.getDMR().getTopVariables(),
+            response.getChecksumMap(DapConstants.ChecksumSource.REMOTE),
+            response.getChecksumMap(DapConstants.ChecksumSource.LOCAL));
+
+      // the response has its own DMR, so match variables by name
+      Map<String, D4Array> datamap = new HashMap<>();
+      for (Map.Entry<DapVariable, D4Array> entry : response.getVariableDataMap().entrySet())
+        datamap.put(entry.getKey().getFQN(), entry.getValue());
+      for (PendingRead read : batch) {
+        D4Array data = datamap.get(read.dapvar.getFQN());
+        if (data == null)
+          throw new IOException("No data for variable: " + read.var.getFullName());
+        Array array = data.getArray();
+        int[] shape = read.section.getShape();
+        if (!Arrays.equals(array.getShape(), shape)) {
+          if (array.getSize() != read.section.computeSize())
+            throw new IOException(String.format("Variable %s: expected shape %s, got %s", read.var.getFullName(),
+                Arrays.toString(shape), Arrays.toString(array.getShape())));
+          array = array.reshape(shape);
+        }
+        read.result = array;
+        read.done = true;
+      }
+    } catch (IOException | RuntimeException e) {
+      IOException ioe = (e instanceof IOException) ? (IOException) e : new IOException(e);
+      for (PendingRead read : batch) {
+        if (!read.done) {
+          read.error = ioe;
+          read.done = true;
+        }
+      }
+    }
+  }
+
   protected void loadContext() {
     this.cxt.put(DapConstants.ChecksumSource.REMOTE, this.dsp.getChecksumMap(DapConstants.ChecksumSource.REMOTE));
     this.cxt.put(DapConstants.ChecksumSource.LOCAL, this.dsp.getChecksumMap(DapConstants.ChecksumSource.LOCAL));
@@ -312,7 +628,12 @@ public class DapNetcdfFile extends NetcdfFile {
 
     if (cmode != ChecksumMode.TRUE)
       return;
-    for (DapVariable dvar : dmr.getTopVariables()) {
+    verifyChecksums(dmr.getTopVariables(), remotechecksummap, localchecksummap);
+  }
+
+  protected void verifyChecksums(List<DapVariable> vars, Map<DapVariable, Long> remotechecksummap,
+      Map<DapVariable, Long> localchecksummap) throws DapException {
+    for (DapVariable dvar : vars) {
       // Verify the calculated checksums
       Long remotechecksum = remotechecksummap.get(dvar);
       Long localchecksum = localchecksummap.get(dvar);
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package dap4.dap4lib.cdm.nc2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import dap4.core.util.DapConstants;
+import dap4.core.util.DapContext;
+import dap4.core.util.DapException;
+import dap4.dap4lib.D4DataCompiler;
+import dap4.dap4lib.DSPRegistry;
+import dap4.dap4lib.RawDSP;
+import dap4.dap4lib.RequestMode;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.Variable;
+
+/** Reads of variable sections are sent to the server as constraints, and the results are cached. */
+public class TestLazyRead {
+  private static final String dir = "../dap4/src/test/data/resources/rawtestfiles/";
+
+  /** Serves the constrained responses that are in the raw test files, and records the constraints asked for. */
+  public static class ConstrainableDSP extends RawDSP {
+    static final List<String> constraints = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public boolean dspMatch(String location, DapContext context) {
+      return location.contains("test_one_vararray") && super.dspMatch(location, context);
+    }
+
+    @Override
+    public boolean isConstrainable() {
+      return true;
+    }
+
+    @Override
+    public D4DataCompiler loadConstrainedDAP(String ce) throws IOException {
+      constraints.add(ce);
+      String name;
+      if (ce.equals("/t[1]"))
+        name = "test_one_vararray.4.nc.dap";
+      else if (ce.equals("/t[0:1]"))
+        name = "test_one_vararray.5.nc.dap";
+      else
+        throw new DapException("No response for constraint: " + ce);
+      try (FileInputStream stream = new FileInputStream(dir + name)) {
+        setStream(stream, RequestMode.DAP);
+        return compileConstrainedDAP();
+      }
+    }
+  }
+
+  private String url;
+
+  @Before
+  public void register() {
+    ConstrainableDSP.constraints.clear();
+    DapNetcdfFile.dspregistry.register(ConstrainableDSP.class, DSPRegistry.FIRST);
+    url = "file://" + new File(dir + "test_one_vararray.nc.dap").getAbsolutePath() + "?" + DapConstants.CHECKSUMTAG
+        + "=false";
+  }
+
+  @After
+  public void unregister() {
+    DapNetcdfFile.dspregistry.unregister(ConstrainableDSP.class);
+  }
+
+  @Test
+  public void shouldFetchSectionsOnly() throws IOException, InvalidRangeException {
+    int[] expected;
+    try (DapNetcdfFile full = new DapNetcdfFile(url.replace("?", "?" + DapConstants.CONSTRAINTTAG + "=/t&"))) {
+      // a constrained url is read in full
+      expected = (int[]) full.findVariable("t").read().copyTo1DJavaArray();
+      assertThat(ConstrainableDSP.constraints).isEmpty();
+    }
+
+    try (DapNetcdfFile ncfile = new DapNetcdfFile(url)) {
+      // bypass the caching of small variables by Variable
+      Variable t = ncfile.findVariable("t");
+      Array one = ncfile.readData(t, new Section("1"));
+      assertThat((int[]) one.copyTo1DJavaArray()).isEqualTo(new int[] {expected[1]});
+      assertThat(ConstrainableDSP.constraints).containsExactly("/t[1]");
+
+      Array all = ncfile.readData(t, t.getShapeAsSection());
+      assertThat((int[]) all.copyTo1DJavaArray()).isEqualTo(expected);
+      assertThat(ConstrainableDSP.constraints).containsExactly("/t[1]", "/t[0:1]").inOrder();
+
+      // served from the cache, which the caller can't modify
+      all.setInt(0, -1);
+      ncfile.readData(t, new Section("1")).setInt(0, -1);
+      assertThat((int[]) t.read().copyTo1DJavaArray()).isEqualTo(expected);
+      assertThat((int[]) ncfile.readData(t, new Section("0")).copyTo1DJavaArray()).isEqualTo(new int[] {expected[0]});
+      assertThat((int[]) ncfile.readArrays(Collections.singletonList(t)).get(0).copyTo1DJavaArray())
+          .isEqualTo(expected);
+      assertThat(ConstrainableDSP.constraints).hasSize(2);
+    }
+  }
+
+  @Test
+  public void shouldBoundCacheByTotalBytes() throws IOException, InvalidRangeException {
+    try (DapNetcdfFile ncfile = new DapNetcdfFile(url)) {
+      Variable t = ncfile.findVariable("t");
+      int n = (int) (DapNetcdfFile.SECTIONCACHEMAXBYTES / 3);
+      for (int i = 0; i < 4; i++) {
+        ncfile.cacheSection(new DapNetcdfFile.SectionKey(t, new Section(new int[] {i}, new int[] {1})),
+            Array.factory(DataType.BYTE, new int[] {n}));
+      }
+      assertThat(ncfile.sectioncache).hasSize(3);
+      assertThat(ncfile.sectioncachebytes).isEqualTo(3L * n);
+      // the least recently used section was dropped
+      assertThat(ncfile.findCached(t, new Section("0"))).isNull();
+      assertThat(ncfile.findCached(t, new Section("3"))).isNotNull();
+    }
+  }
+}
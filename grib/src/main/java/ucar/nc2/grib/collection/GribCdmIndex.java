@@ -6,6 +6,9 @@
 package ucar.nc2.grib.collection;
 
 import com.beust.jcommander.*;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
 import java.nio.charset.StandardCharsets;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
@@ -33,6 +36,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Formatter;
@@ -876,7 +880,8 @@ public class GribCdmIndex implements IndexReader {
   /////////////////////////////////////////////////////////////////////////////////////
   // manipulate the ncx without building a gc
   private static final boolean debug = false;
-  private GribCollectionProto.GribCollection gribCollectionIndex;
+  private String indexTopDir; // set by openIndex
+  private List<GribCollectionProto.MFile> indexMFiles; // set by openIndex
   private final Logger logger;
 
   public GribCdmIndex(Logger logger) {
@@ -891,11 +896,9 @@ public class GribCdmIndex implements IndexReader {
       GribCollectionType type = getType(raf);
       if (type == GribCollectionType.Partition1 || type == GribCollectionType.Partition2) {
         if (openIndex(raf, logger)) {
-          String topDir = gribCollectionIndex.getTopDir();
-          int n = gribCollectionIndex.getMfilesCount(); // partition index files stored in MFiles
-          for (int i = 0; i < n; i++) {
-            GribCollectionProto.MFile mfilep = gribCollectionIndex.getMfiles(i);
-            callback.addChild(topDir, mfilep.getFilename(), mfilep.getLastModified());
+          // partition index files stored in MFiles
+          for (GribCollectionProto.MFile mfilep : indexMFiles) {
+            callback.addChild(indexTopDir, mfilep.getFilename(), mfilep.getLastModified());
           }
           return true;
         }
@@ -920,10 +923,8 @@ public class GribCdmIndex implements IndexReader {
       // GribCollectionType type = getType(raf);
       // if (type == GribCollectionType.GRIB1 || type == GribCollectionType.GRIB2) {
       if (openIndex(raf, logger)) {
-        File protoDir = new File(gribCollectionIndex.getTopDir());
-        int n = gribCollectionIndex.getMfilesCount();
-        for (int i = 0; i < n; i++) {
-          GribCollectionProto.MFile mfilep = gribCollectionIndex.getMfiles(i);
+        File protoDir = new File(indexTopDir);
+        for (GribCollectionProto.MFile mfilep : indexMFiles) {
           result.add(new GcMFile(protoDir, mfilep.getFilename(), mfilep.getLastModified(), mfilep.getLength(),
               mfilep.getIndex()));
         }
@@ -962,7 +963,8 @@ public class GribCdmIndex implements IndexReader {
 
       byte[] m = new byte[size];
       indexRaf.readFully(m);
-      gribCollectionIndex = GribCollectionProto.GribCollection.parseFrom(m);
+      indexMFiles = new ArrayList<>();
+      indexTopDir = decodeFileList(CodedInputStream.newInstance(m), indexMFiles);
       return true;
 
     } catch (Throwable t) {
@@ -971,6 +973,31 @@ public class GribCdmIndex implements IndexReader {
     }
   }
 
+  /**
+   * Only decode topDir and mfiles from a GribCollection message, the datasets, variables and partitions are skipped
+   * without being decoded. The whole message is scanned, since protobuf does not promise any order of the fields.
+   *
+   * @param input the GribCollection message
+   * @param mfiles the mfiles are added to this list
+   * @return topDir, or "" if not set
+   */
+  static String decodeFileList(CodedInputStream input, List<GribCollectionProto.MFile> mfiles) throws IOException {
+    String topDir = "";
+    while (true) {
+      int tag = input.readTag();
+      if (tag == 0)
+        break;
+      int fieldNumber = WireFormat.getTagFieldNumber(tag);
+      if (fieldNumber == 2)
+        topDir = input.readStringRequireUtf8();
+      else if (fieldNumber == 3)
+        mfiles.add(input.readMessage(GribCollectionProto.MFile.parser(), ExtensionRegistryLite.getEmptyRegistry()));
+      else
+        input.skipField(tag);
+    }
+    return topDir;
+  }
+
   ///////////////////////////////////////////////////////////////////////////////////////////////////////
 
   private static class CommandLine {
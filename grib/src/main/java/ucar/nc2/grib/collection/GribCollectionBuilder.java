@@ -5,6 +5,8 @@
 
 package ucar.nc2.grib.collection;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import thredds.featurecollection.FeatureCollectionConfig;
 import thredds.inventory.CollectionManager;
@@ -25,7 +27,12 @@ import ucar.nc2.util.CloseableIterator;
 import ucar.unidata.util.StringUtil2;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
 /**
  * Superclass to build indexes for collections of Grib files.
@@ -260,6 +267,105 @@ abstract class GribCollectionBuilder {
     Set<Long> getCoordinateRuntimes();
   }
 
+  /** The gbx9 index of one file, or why it could not be read or created. */
+  protected static class FileIndex {
+    final MFile mfile;
+    @Nullable
+    final GribIndex index;
+    @Nullable
+    final IOException failure;
+
+    FileIndex(MFile mfile, @Nullable GribIndex index, @Nullable IOException failure) {
+      this.mfile = mfile;
+      this.index = index;
+      this.failure = failure;
+    }
+  }
+
+  /**
+   * Reads or creates the gbx9 index of each file, and returns them in the order of the files, so that the records
+   * are added to the collection in the same order no matter how many are indexed at once. With more than one
+   * thread, up to 2 * nthreads files are indexed ahead of the one returned by next(), on threads that are
+   * stopped by close().
+   */
+  protected class IndexReader implements AutoCloseable {
+    private final Iterator<MFile> files;
+    @Nullable
+    private final ExecutorService exec;
+    private final int maxPending;
+    private final ArrayDeque<FutureTask<FileIndex>> pending = new ArrayDeque<>();
+
+    /**
+     * @param files the files of the collection
+     * @param nthreads the number of files indexed at once, see FeatureCollectionConfig.GribConfig.indexThreads
+     */
+    IndexReader(Iterator<MFile> files, int nthreads) {
+      this.files = files;
+      this.exec = (nthreads > 1) ? Executors.newFixedThreadPool(nthreads,
+          new ThreadFactoryBuilder().setNameFormat("grib-index-%d").setDaemon(true).build()) : null;
+      this.maxPending = 2 * nthreads;
+    }
+
+    /** The index of the next file, or null when there are no more files. */
+    @Nullable
+    FileIndex next() throws IOException {
+      if (exec == null)
+        return files.hasNext() ? readIndex(files.next()) : null;
+
+      while (pending.size() < maxPending && files.hasNext()) {
+        MFile mfile = files.next();
+        FutureTask<FileIndex> task = new FutureTask<>(() -> readIndex(mfile));
+        exec.execute(task);
+        pending.addLast(task);
+      }
+      return pending.isEmpty() ? null : waitFor(pending.removeFirst());
+    }
+
+    /** Cancel the files not yet started, if the collection was abandoned, and stop the threads. */
+    @Override
+    public void close() {
+      for (FutureTask<FileIndex> task : pending)
+        task.cancel(false);
+      pending.clear();
+      if (exec != null)
+        exec.shutdown();
+    }
+
+    private FileIndex readIndex(MFile mfile) {
+      try {
+        GribIndex index;
+        if (Grib.debugGbxIndexOnly) {
+          index = GribIndex.open(isGrib1, mfile);
+        } else {
+          // this is where gbx9 files get recreated
+          index = GribIndex.readOrCreateIndexFromSingleFile(isGrib1, mfile, CollectionUpdateType.test, logger);
+        }
+        return new FileIndex(mfile, index, null);
+
+      } catch (IOException ioe) {
+        return new FileIndex(mfile, null, ioe);
+      }
+    }
+
+    private FileIndex waitFor(FutureTask<FileIndex> task) throws IOException {
+      try {
+        return task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while indexing GRIB file");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException)
+          throw (IOException) cause;
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        if (cause instanceof Error)
+          throw (Error) cause;
+        throw new IOException(cause);
+      }
+    }
+  }
+
   @Immutable
   protected static class GroupAndRuntime {
     private final int hashCode;
@@ -466,7 +466,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     final int ndups, nrecords, nmissing;
 
     // read in on demand
-    private SparseArray<Record> sa; // for GC only; lazily read; same array shape as variable, minus x and y
+    private SparseRecords sa; // for GC only; lazily read; same array shape as variable, minus x and y
 
     protected VariableIndex(GroupGC g, GribCollectionMutable.VariableIndex gcVar) {
       this.group = g;
@@ -515,14 +515,21 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
         for (int i = 0; i < ntrack; i++)
           track[i] = proto.getTrack(i);
 
+        // keep the records in columns, not as Record objects: these stay in memory as long as the collection does
         int n = proto.getRecordsCount();
-        List<Record> records = new ArrayList<>(n);
+        int[] fileno = new int[n];
+        long[] pos = new long[n];
+        int[] bmsOffset = new int[n];
+        int[] drsOffset = new int[n];
         for (int i = 0; i < n; i++) {
           GribCollectionProto.Record pr = proto.getRecords(i);
-          records.add(new Record(pr.getFileno(), pr.getStartPos(), pr.getBmsOffset(), pr.getDrsOffset()));
+          fileno[i] = pr.getFileno();
+          pos[i] = pr.getStartPos();
+          bmsOffset[i] = pr.getBmsOffset();
+          drsOffset[i] = pr.getDrsOffset();
         }
         int ndups = proto.getNdups();
-        this.sa = new SparseArray<>(size, track, records, ndups);
+        this.sa = new SparseRecords(size, track, fileno, pos, bmsOffset, drsOffset, ndups);
 
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
         logger.error(" file={} recordsLen={} recordPos={}", indexFilename, recordsLen, recordsPos);
@@ -531,11 +538,11 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
     }
 
     synchronized Record getRecordAt(int sourceIndex) {
-      return sa.getContent(sourceIndex);
+      return sa.getRecord(sourceIndex);
     }
 
     synchronized Record getRecordAt(int[] sourceIndex) {
-      return sa.getContent(sourceIndex);
+      return sa.getRecord(sourceIndex);
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -618,7 +625,7 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
 
         want[count++] = idx;
       }
-      return sa.getContent(want);
+      return sa.getRecord(want);
     }
 
     public List<Coordinate> getCoordinates() {
@@ -654,14 +661,21 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
       return coordIndex;
     }
 
-    public SparseArray<Record> getSparseArray() {
-      return sa;
+    /** The records as a SparseArray, made on each call. For debugging and display, null if not read in. */
+    @Nullable
+    public synchronized SparseArray<Record> getSparseArray() {
+      return sa == null ? null : sa.toSparseArray();
     }
 
     public int countNRecords() {
       return sa == null ? -1 : sa.countNotMissing();
     }
 
+    /** Approximate number of bytes used by the records in memory, 0 if not read in. */
+    public long getRecordsMemoryUsed() {
+      return sa == null ? 0 : sa.getMemoryUsed();
+    }
+
     public int getTableVersion() {
       return info.tableVersion;
     }
@@ -7,6 +7,7 @@ package ucar.nc2.grib.collection;
 
 import com.google.common.base.Throwables;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ucar.nc2.grib.coord.CoordinateTime2D;
@@ -22,11 +23,21 @@ import ucar.nc2.grib.grib1.Grib1SectionProductDefinition;
 import ucar.nc2.grib.grib1.tables.Grib1Customizer;
 import ucar.nc2.grib.grib2.Grib2Record;
 import ucar.nc2.grib.grib2.Grib2RecordScanner;
+import ucar.nc2.grib.grib2.Grib2SectionBitMap;
+import ucar.nc2.grib.grib2.Grib2SectionData;
+import ucar.nc2.grib.grib2.Grib2SectionDataRepresentation;
 import ucar.nc2.grib.grib2.table.Grib2Tables;
+import ucar.unidata.io.InMemoryRandomAccessFile;
 import ucar.unidata.io.RandomAccessFile;
 import javax.annotation.concurrent.Immutable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Grib Data Reader.
@@ -39,6 +50,29 @@ import java.util.*;
 public abstract class GribDataReader {
   private static final Logger logger = LoggerFactory.getLogger(GribDataReader.class);
 
+  // experimental multithreading
+  private static volatile Executor executor;
+  private static volatile int maxPendingRecords = 2 * Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Decode records concurrently on the given Executor. The raw bytes of each record are still read on the
+   * calling thread, in file order; only the unpacking (JPEG2000, PNG, complex packing, etc) is run on the Executor,
+   * and each record is written into its own part of the result. Default is null, meaning that records are decoded
+   * on the calling thread.
+   */
+  public static void setExecutor(Executor exec) {
+    executor = exec;
+  }
+
+  /**
+   * Set the maximum number of records that are read and waiting to be decoded when an Executor is set.
+   * This bounds the memory used by a single read. Default is 2 * number of processors.
+   */
+  public static void setMaxPendingRecords(int maxPending) {
+    if (maxPending < 1)
+      throw new IllegalArgumentException("maxPendingRecords must be > 0");
+    maxPendingRecords = maxPending;
+  }
 
   public static GribDataReader factory(GribCollectionImmutable gribCollection,
       GribCollectionImmutable.VariableIndex vindex) {
@@ -50,6 +84,29 @@ public abstract class GribDataReader {
 
   protected abstract float[] readData(RandomAccessFile rafData, DataRecord dr) throws IOException;
 
+  /**
+   * Read some of the points of a record.
+   * This implementation reads the whole record and picks out the wanted points.
+   *
+   * @param points indices (y * nx + x) of the wanted points
+   * @return values of the wanted points, in the same order as points
+   */
+  protected float[] readData(RandomAccessFile rafData, DataRecord dr, int[] points) throws IOException {
+    float[] data = readData(rafData, dr);
+    float[] result = new float[points.length];
+    for (int i = 0; i < points.length; i++) {
+      result[i] = data[points[i]];
+    }
+    return result;
+  }
+
+  /**
+   * The part of the data file that is needed to decode a record.
+   *
+   * @return start and end position of the record's bytes in rafData
+   */
+  protected abstract long[] getRecordExtent(RandomAccessFile rafData, DataRecord dr) throws IOException;
+
   protected abstract void show(RandomAccessFile rafData, long dataPos) throws IOException;
 
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -235,6 +292,7 @@ public abstract class GribDataReader {
    */
   private void read(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
+    ParallelRecordReader parallel = makeParallelReader(dataReceiver);
 
     int currFile = -1;
     RandomAccessFile rafData = null;
@@ -269,10 +327,13 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
-        GdsHorizCoordSys hcs = vindex.group.getGdsHorizCoordSys();
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        if (parallel != null)
+          parallel.add(rafData, dr, vindex.group.getGdsHorizCoordSys());
+        else
+          readData(rafData, dr, vindex.group.getGdsHorizCoordSys(), dataReceiver);
       }
+      if (parallel != null)
+        parallel.finish();
 
     } finally {
       if (rafData != null)
@@ -280,6 +341,121 @@ public abstract class GribDataReader {
     }
   }
 
+  private void readData(RandomAccessFile rafData, DataRecord dr, GdsHorizCoordSys hcs, DataReceiverIF dataReceiver)
+      throws IOException {
+    readData(rafData, dr, hcs, dataReceiver.getWantedPoints(hcs.nx, hcs.ny), dataReceiver);
+  }
+
+  // only decode the wanted points when the receiver wants part of the horizontal grid
+  private void readData(RandomAccessFile rafData, DataRecord dr, GdsHorizCoordSys hcs, @Nullable int[] points,
+      DataReceiverIF dataReceiver) throws IOException {
+    if (points != null) {
+      dataReceiver.addPoints(readData(rafData, dr, points), dr.resultIndex);
+    } else {
+      float[] data = readData(rafData, dr);
+      dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+    }
+  }
+
+  @Nullable
+  private ParallelRecordReader makeParallelReader(DataReceiverIF dataReceiver) {
+    Executor exec = executor;
+    if (exec == null || records.size() < 2 || Grib.debugIndexOnly || Grib.debugGbxIndexOnly)
+      return null;
+    return new ParallelRecordReader(exec, maxPendingRecords, dataReceiver);
+  }
+
+  // Reads the bytes of each record on the calling thread, in the order they are added (file order),
+  // and decodes up to maxPending of them ahead on the executor.
+  private class ParallelRecordReader {
+    private final Executor exec;
+    private final int maxPending;
+    private final DataReceiverIF dataReceiver;
+    private final ArrayDeque<FutureTask<Void>> pending = new ArrayDeque<>();
+
+    ParallelRecordReader(Executor exec, int maxPending, DataReceiverIF dataReceiver) {
+      this.exec = exec;
+      this.maxPending = maxPending;
+      this.dataReceiver = dataReceiver;
+    }
+
+    void add(RandomAccessFile rafData, DataRecord dr, GdsHorizCoordSys hcs) throws IOException {
+      while (pending.size() >= maxPending)
+        waitFor(pending.removeFirst());
+
+      int[] points = dataReceiver.getWantedPoints(hcs.nx, hcs.ny); // not thread safe, so ask here
+      long[] extent = getRecordExtent(rafData, dr);
+      byte[] bytes = new byte[Math.toIntExact(extent[1] - extent[0])];
+      rafData.seek(extent[0]);
+      rafData.readFully(bytes);
+      RandomAccessFile recordRaf = new RecordRandomAccessFile(rafData.getLocation(), extent[0], bytes);
+
+      FutureTask<Void> task = new FutureTask<>(() -> {
+        readData(recordRaf, dr, hcs, points, dataReceiver);
+        return null;
+      });
+      try {
+        exec.execute(task);
+      } catch (RejectedExecutionException e) {
+        task.run(); // executor is saturated or shut down, decode on this thread
+      }
+      pending.addLast(task);
+    }
+
+    void finish() throws IOException {
+      while (!pending.isEmpty())
+        waitFor(pending.removeFirst());
+    }
+
+    private void waitFor(FutureTask<Void> task) throws IOException {
+      try {
+        task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while decoding GRIB record");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException)
+          throw (IOException) cause;
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        if (cause instanceof Error)
+          throw (Error) cause;
+        throw new IOException(cause);
+      }
+    }
+  }
+
+  // The bytes of one record, at the same positions as in the data file, so the record decodes exactly as it
+  // would from there.
+  private static class RecordRandomAccessFile extends InMemoryRandomAccessFile {
+
+    RecordRandomAccessFile(String location, long start, byte[] bytes) {
+      super(location, bytes);
+      bufferStart = start;
+      dataEnd = start + bytes.length;
+      filePosition = start;
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+      if (pos < bufferStart || pos > dataEnd)
+        throw new IOException(
+            String.format("Seek to %d is outside of the record [%d, %d) in %s", pos, bufferStart, dataEnd, location));
+      filePosition = pos;
+      endOfFile = pos == dataEnd;
+    }
+
+    @Override
+    protected int read_(long pos, byte[] b, int offset, int len) {
+      if (pos >= dataEnd)
+        return -1;
+      len = (int) Math.min(len, dataEnd - pos);
+      System.arraycopy(buffer, (int) (pos - bufferStart), b, offset, len);
+      return len;
+    }
+  }
+
   private void show(SubsetParams validation) {
     if (validation == null)
       return;
@@ -288,6 +464,7 @@ public abstract class GribDataReader {
 
   private void readPartitioned(DataReceiverIF dataReceiver) throws IOException {
     Collections.sort(records);
+    ParallelRecordReader parallel = makeParallelReader(dataReceiver);
 
     PartitionCollectionImmutable.DataRecord lastRecord = null;
     RandomAccessFile rafData = null;
@@ -321,10 +498,13 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
-        GdsHorizCoordSys hcs = dr.hcs;
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        if (parallel != null)
+          parallel.add(rafData, dr, dr.hcs);
+        else
+          readData(rafData, dr, dr.hcs, dataReceiver);
       }
+      if (parallel != null)
+        parallel.finish();
 
     } finally {
       if (rafData != null)
@@ -362,6 +542,16 @@ public abstract class GribDataReader {
   public interface DataReceiverIF {
     void addData(float[] data, int resultIndex, int nx);
 
+    /**
+     * The indices (y * nx + x) of the points wanted from a horizontal grid, in the order they are stored in the
+     * result, or null if the whole grid is wanted.
+     */
+    @Nullable
+    int[] getWantedPoints(int nx, int ny);
+
+    /** Add the values of the points from getWantedPoints() */
+    void addPoints(float[] values, int resultIndex);
+
     void setDataToZero(); // only used when debugging with gbx/ncx only, to fake the data
 
     Array getArray();
@@ -369,9 +559,12 @@ public abstract class GribDataReader {
 
   public static class DataReceiver implements DataReceiverIF {
     private Array dataArray;
+    private final float[] storage;
     private final RangeIterator yRange;
     private final RangeIterator xRange;
     private final int horizSize;
+    private int[] points; // wanted points, for a grid with pointsNx columns
+    private int pointsNx;
 
     DataReceiver(int[] shape, RangeIterator yRange, RangeIterator xRange) {
       this.yRange = yRange;
@@ -387,6 +580,7 @@ public abstract class GribDataReader {
       float[] data = new float[(int) len];
       Arrays.fill(data, Float.NaN); // prefill primitive array
       dataArray = Array.factory(DataType.FLOAT, shape, data);
+      storage = data;
     }
 
     @Override
@@ -402,6 +596,31 @@ public abstract class GribDataReader {
       }
     }
 
+    @Override
+    @Nullable
+    public int[] getWantedPoints(int nx, int ny) {
+      if (horizSize >= nx * ny) {
+        return null; // cheaper to unpack the whole grid
+      }
+      if (points == null || pointsNx != nx) {
+        int[] result = new int[horizSize];
+        int count = 0;
+        for (int y : yRange) {
+          for (int x : xRange) {
+            result[count++] = y * nx + x;
+          }
+        }
+        points = result;
+        pointsNx = nx;
+      }
+      return points;
+    }
+
+    @Override
+    public void addPoints(float[] values, int resultIndex) {
+      System.arraycopy(values, 0, storage, resultIndex * horizSize, horizSize);
+    }
+
     // optimization
     @Override
     public void setDataToZero() {
@@ -459,12 +678,30 @@ public abstract class GribDataReader {
 
   private static class Grib2DataReader extends GribDataReader {
     private final Grib2Tables cust;
+    // reused by the records that have to be unpacked in full; taken while in use, so concurrent decodes get their own
+    private final AtomicReference<float[]> work = new AtomicReference<>();
 
     Grib2DataReader(GribCollectionImmutable gribCollection, GribCollectionImmutable.VariableIndex vindex) {
       super(gribCollection, vindex);
       this.cust = (Grib2Tables) gribCollection.cust;
     }
 
+    @Override
+    protected float[] readData(RandomAccessFile rafData, GribDataReader.DataRecord dr, int[] points)
+        throws IOException {
+      GdsHorizCoordSys hcs = dr.hcs;
+      long dataPos = dr.record.pos + dr.record.drsOffset;
+      long bmsPos = (dr.record.bmsOffset > 0) ? dr.record.pos + dr.record.bmsOffset : 0;
+      float[] buff = work.getAndSet(null);
+      if (buff == null || buff.length < hcs.gdsNumberPoints) {
+        buff = new float[hcs.gdsNumberPoints];
+      }
+      float[] result = Grib2Record.readData(rafData, dataPos, bmsPos, hcs.gdsNumberPoints, hcs.getScanMode(),
+          hcs.nxRaw, hcs.nyRaw, hcs.nptsInLine, points, buff);
+      work.set(buff);
+      return result;
+    }
+
     @Override
     protected float[] readData(RandomAccessFile rafData, GribDataReader.DataRecord dr) throws IOException {
       GdsHorizCoordSys hcs = dr.hcs;
@@ -474,6 +711,18 @@ public abstract class GribDataReader {
           hcs.nyRaw, hcs.nptsInLine);
     }
 
+    // the bitmap, if it comes from an earlier field of the message, through the end of the data section
+    @Override
+    protected long[] getRecordExtent(RandomAccessFile rafData, DataRecord dr) throws IOException {
+      long dataPos = dr.record.pos + dr.record.drsOffset;
+      rafData.seek(dataPos);
+      new Grib2SectionDataRepresentation(rafData);
+      new Grib2SectionBitMap(rafData);
+      Grib2SectionData dataSection = new Grib2SectionData(rafData);
+      long start = (dr.record.bmsOffset > 0) ? Math.min(dataPos, dr.record.pos + dr.record.bmsOffset) : dataPos;
+      return new long[] {start, dataSection.getStartingPosition() + dataSection.getMsgLength()};
+    }
+
     @Override
     protected void show(RandomAccessFile rafData, long pos) throws IOException {
       Grib2Record gr = Grib2RecordScanner.findRecordByDrspos(rafData, pos);
@@ -506,6 +755,14 @@ public abstract class GribDataReader {
       return Grib1Record.readData(rafData, dr.record.pos);
     }
 
+    // the whole message
+    @Override
+    protected long[] getRecordExtent(RandomAccessFile rafData, DataRecord dr) throws IOException {
+      rafData.seek(dr.record.pos);
+      Grib1Record gr = new Grib1Record(rafData);
+      return new long[] {dr.record.pos, gr.getIs().getEndPos()};
+    }
+
     @Override
     protected void show(RandomAccessFile rafData, long dataPos) throws IOException {
       rafData.seek(dataPos);
@@ -349,8 +349,8 @@ public abstract class PartitionCollectionImmutable extends GribCollectionImmutab
         }
 
         vpart.readRecords(); // make sure sparse array has been read in.
-        if (vpart.getSparseArray() != null) {
-          SparseArray<Record> sa = vpart.getSparseArray();
+        SparseArray<Record> sa = vpart.getSparseArray();
+        if (sa != null) {
           sa.showMissing(f);
         }
       }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import ucar.nc2.grib.coord.SparseArray;
+
+/**
+ * The records of a GribCollectionImmutable.VariableIndex, stored as primitive columns instead of a
+ * SparseArray of Record objects. Conceptually a multidim array with shape[n] and totalsize, where
+ * track[totalsize] = {0 = missing, else = index+1 into the columns}.
+ * The track uses bytes or shorts when there are few enough records, and the bmsOffset and drsOffset
+ * columns are not stored when they are all zero (always for GRIB1).
+ * A Record is only made when asked for.
+ */
+@Immutable
+class SparseRecords {
+  private final int[] shape; // multidim sizes
+  private final int[] stride; // for index calculation
+  private final int ndups;
+
+  // one of these, the narrowest that can hold the number of records
+  private final byte[] track8;
+  private final short[] track16;
+  private final int[] track32;
+
+  private final int[] fileno;
+  private final long[] pos;
+  @Nullable
+  private final int[] bmsOffset; // null if all zero
+  @Nullable
+  private final int[] drsOffset; // null if all zero
+
+  /**
+   * @param shape multidim sizes
+   * @param track 1-based index into the columns, 0 = missing, size = product of shape
+   * @param fileno Record.fileno of each record
+   * @param pos Record.pos of each record
+   * @param bmsOffset Record.bmsOffset of each record
+   * @param drsOffset Record.drsOffset of each record
+   * @param ndups duplicates found when creating
+   */
+  SparseRecords(int[] shape, int[] track, int[] fileno, long[] pos, int[] bmsOffset, int[] drsOffset, int ndups) {
+    int totalSize = 1;
+    for (int size : shape)
+      totalSize *= size;
+    if (track.length != totalSize)
+      throw new IllegalStateException("track len " + track.length + " != totalSize " + totalSize);
+
+    this.shape = shape.clone();
+    this.stride = new int[shape.length];
+    int product = 1;
+    for (int ii = shape.length - 1; ii >= 0; ii--) {
+      stride[ii] = product;
+      product *= shape[ii];
+    }
+
+    int nrecords = fileno.length;
+    if (nrecords <= 0xff) {
+      this.track8 = new byte[track.length];
+      for (int i = 0; i < track.length; i++)
+        track8[i] = (byte) checkTrack(track[i], nrecords);
+      this.track16 = null;
+      this.track32 = null;
+    } else if (nrecords <= 0xffff) {
+      this.track8 = null;
+      this.track16 = new short[track.length];
+      for (int i = 0; i < track.length; i++)
+        track16[i] = (short) checkTrack(track[i], nrecords);
+      this.track32 = null;
+    } else {
+      this.track8 = null;
+      this.track16 = null;
+      this.track32 = track.clone();
+      for (int t : track)
+        checkTrack(t, nrecords);
+    }
+
+    this.fileno = fileno;
+    this.pos = pos;
+    this.bmsOffset = allZero(bmsOffset) ? null : bmsOffset;
+    this.drsOffset = allZero(drsOffset) ? null : drsOffset;
+    this.ndups = ndups;
+  }
+
+  private static int checkTrack(int t, int nrecords) {
+    if (t < 0 || t > nrecords)
+      throw new IllegalStateException("track " + t + " not in [0, " + nrecords + "]");
+    return t;
+  }
+
+  private static boolean allZero(int[] values) {
+    for (int v : values)
+      if (v != 0)
+        return false;
+    return true;
+  }
+
+  // 1-based index into the columns, 0 = missing
+  private int getTrack(int idx) {
+    if (track8 != null)
+      return track8[idx] & 0xff;
+    if (track16 != null)
+      return track16[idx] & 0xffff;
+    return track32[idx];
+  }
+
+  /** The record at this index into the track, or null if missing. */
+  @Nullable
+  GribCollectionImmutable.Record getRecord(int idx) {
+    int recno = getTrack(idx) - 1;
+    if (recno < 0)
+      return null; // missing
+    return new GribCollectionImmutable.Record(fileno[recno], pos[recno], bmsOffset == null ? 0 : bmsOffset[recno],
+        drsOffset == null ? 0 : drsOffset[recno]);
+  }
+
+  /** The record at this multidim index, or null if missing. */
+  @Nullable
+  GribCollectionImmutable.Record getRecord(int[] index) {
+    assert index.length == shape.length;
+    int where = 0;
+    for (int ii = 0; ii < index.length; ii++)
+      where += index[ii] * stride[ii];
+    return getRecord(where);
+  }
+
+  int getTotalSize() {
+    return shape.length == 0 ? 1 : shape[0] * stride[0];
+  }
+
+  int countNotMissing() {
+    int result = 0;
+    int n = getTotalSize();
+    for (int idx = 0; idx < n; idx++)
+      if (getTrack(idx) > 0)
+        result++;
+    return result;
+  }
+
+  /** Approximate number of bytes used by the track and the columns. */
+  long getMemoryUsed() {
+    long trackBytes = track8 != null ? track8.length : track16 != null ? 2L * track16.length : 4L * track32.length;
+    long columnBytes = 4L * fileno.length + 8L * pos.length + (bmsOffset == null ? 0 : 4L * bmsOffset.length)
+        + (drsOffset == null ? 0 : 4L * drsOffset.length);
+    return trackBytes + columnBytes;
+  }
+
+  /** Make the equivalent SparseArray of Record objects, for debugging and display. */
+  SparseArray<GribCollectionImmutable.Record> toSparseArray() {
+    int n = getTotalSize();
+    int[] track = new int[n];
+    for (int idx = 0; idx < n; idx++)
+      track[idx] = getTrack(idx);
+    List<GribCollectionImmutable.Record> records = new ArrayList<>(fileno.length);
+    for (int recno = 0; recno < fileno.length; recno++)
+      records.add(new GribCollectionImmutable.Record(fileno[recno], pos[recno],
+          bmsOffset == null ? 0 : bmsOffset[recno], drsOffset == null ? 0 : drsOffset[recno]));
+    return new SparseArray<>(shape, track, records, ndups);
+  }
+
+  @Override
+  public String toString() {
+    return "SparseRecords{shape=" + Arrays.toString(shape) + ", nrecords=" + fileno.length + ", ndups=" + ndups + '}';
+  }
+}
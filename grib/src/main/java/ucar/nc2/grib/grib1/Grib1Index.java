@@ -190,24 +190,30 @@ public class Grib1Index extends GribIndex {
         dataRaf = raf;
       }
 
-      Grib1RecordScanner scan = new Grib1RecordScanner(dataRaf);
-      while (scan.hasNext()) {
-        Grib1Record r = scan.next();
-        if (r == null)
-          break; // done
-        records.add(r);
-
-        Grib1SectionGridDefinition gdss = r.getGDSsection();
-        Integer index = gdsMap.get(gdss.calcCRC());
-        if (gdss.getPredefinedGridDefinition() >= 0) // skip predefined gds - they dont have raw bytes
-          index = 0;
-        else if (index == null) {
-          gdsList.add(gdss);
-          index = gdsList.size() - 1;
-          gdsMap.put(gdss.calcCRC(), index);
-          rootBuilder.addGdsList(makeGdsProto(gdss));
+      boolean readAhead = dataRaf.isReadAhead();
+      dataRaf.setReadAhead(true); // records are scanned front to back
+      try {
+        Grib1RecordScanner scan = new Grib1RecordScanner(dataRaf);
+        while (scan.hasNext()) {
+          Grib1Record r = scan.next();
+          if (r == null)
+            break; // done
+          records.add(r);
+
+          Grib1SectionGridDefinition gdss = r.getGDSsection();
+          Integer index = gdsMap.get(gdss.calcCRC());
+          if (gdss.getPredefinedGridDefinition() >= 0) // skip predefined gds - they dont have raw bytes
+            index = 0;
+          else if (index == null) {
+            gdsList.add(gdss);
+            index = gdsList.size() - 1;
+            gdsMap.put(gdss.calcCRC(), index);
+            rootBuilder.addGdsList(makeGdsProto(gdss));
+          }
+          rootBuilder.addRecords(makeRecordProto(r, index));
         }
-        rootBuilder.addRecords(makeRecordProto(r, index));
+      } finally {
+        dataRaf.setReadAhead(readAhead);
       }
 
       if (records.isEmpty())
@@ -81,6 +81,51 @@ public class Grib2DataReader {
    */
 
   public float[] getData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs) throws IOException {
+    readBitmap(raf, bitmapSection);
+
+    raf.seek(startPos + 5); // skip past first 5 bytes in data section, now ready to read
+
+    float[] data = decode(raf, gdrs);
+
+    // int scanMode = gds.getGds().getScanMode();
+    // int nx = gds.getGds().getNx(); // needs some smarts for different type Grids
+    scanningModeCheck(data, scanMode, nx);
+
+    return data;
+  }
+
+  /**
+   * Read the values of some of the points of the grid, without making the whole grid when the packing allows it.
+   * For simple packing, and complex packing without spatial differencing, only the wanted values are unpacked.
+   * Complex packing with spatial differencing must be unpacked in full, but into the work array if one is
+   * given, and only the wanted values are scaled. Other packings unpack the whole grid and pick out the wanted
+   * values.
+   *
+   * @param points indices (y * nx + x) of the wanted points in the grid returned by getData(), ie after the
+   *        scan mode has been applied
+   * @param work if not null and at least the number of points in the grid, reused as work space
+   * @return values of the wanted points, in the same order as points
+   */
+  public float[] getData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs, int[] points,
+      @Nullable float[] work) throws IOException {
+    readBitmap(raf, bitmapSection);
+
+    raf.seek(startPos + 5); // skip past first 5 bytes in data section, now ready to read
+
+    int[] stored = toStoredIndices(points);
+    switch (dataTemplate) {
+      case 0:
+        return getPoints0(raf, (Grib2Drs.Type0) gdrs, stored);
+      case 2:
+        return getPoints2(raf, (Grib2Drs.Type2) gdrs, stored);
+      case 3:
+        return getData3(raf, (Grib2Drs.Type3) gdrs, stored, work);
+      default:
+        return pick(decode(raf, gdrs), stored);
+    }
+  }
+
+  private void readBitmap(RandomAccessFile raf, Grib2SectionBitMap bitmapSection) throws IOException {
     this.bitmap = bitmapSection.getBitmap(raf);
     this.bitmapIndicator = bitmapSection.getBitMapIndicator();
 
@@ -91,38 +136,26 @@ public class Grib2DataReader {
         throw new IllegalStateException("Bitmap section length!= grid length");
       }
     }
+  }
 
-    raf.seek(startPos + 5); // skip past first 5 bytes in data section, now ready to read
-
-    float[] data;
+  // unpack the whole grid, in the order it is stored
+  private float[] decode(RandomAccessFile raf, Grib2Drs gdrs) throws IOException {
     switch (dataTemplate) {
       case 0:
-        data = getData0(raf, (Grib2Drs.Type0) gdrs);
-        break;
+        return getData0(raf, (Grib2Drs.Type0) gdrs);
       case 2:
-        data = getData2(raf, (Grib2Drs.Type2) gdrs);
-        break;
+        return getData2(raf, (Grib2Drs.Type2) gdrs);
       case 3:
-        data = getData3(raf, (Grib2Drs.Type3) gdrs);
-        break;
+        return getData3(raf, (Grib2Drs.Type3) gdrs, null, null);
       case 40:
-        data = getData40(raf, (Grib2Drs.Type40) gdrs);
-        break;
+        return getData40(raf, (Grib2Drs.Type40) gdrs);
       case 41:
-        data = getData41(raf, (Grib2Drs.Type0) gdrs);
-        break;
+        return getData41(raf, (Grib2Drs.Type0) gdrs);
       case 50002:
-        data = getData50002(raf, (Grib2Drs.Type50002) gdrs);
-        break;
+        return getData50002(raf, (Grib2Drs.Type50002) gdrs);
       default:
         throw new UnsupportedOperationException("Unsupported DRS type = " + dataTemplate);
     }
-
-    // int scanMode = gds.getGds().getScanMode();
-    // int nx = gds.getGds().getNx(); // needs some smarts for different type Grids
-    scanningModeCheck(data, scanMode, nx);
-
-    return data;
   }
 
   @Nullable
@@ -248,6 +281,37 @@ public class Grib2DataReader {
     return data;
   }
 
+  // Grid point data - simple packing, only at the stored indices
+  private float[] getPoints0(RandomAccessFile raf, Grib2Drs.Type0 gdrs, int[] stored) throws IOException {
+    int nb = gdrs.numberOfBits;
+    int D = gdrs.decimalScaleFactor;
+    float DD = (float) java.lang.Math.pow((double) 10, (double) D);
+    float R = gdrs.referenceValue;
+    int E = gdrs.binaryScaleFactor;
+    float EE = (float) java.lang.Math.pow(2.0, (double) E);
+
+    int[] ranks = (bitmap == null) ? null : bitmapRanks();
+    float[] data = new float[stored.length];
+    BitReader reader = new BitReader(raf, startPos + 5);
+    int next = -1; // the value the reader is positioned at, so neighbouring points are read without seeking
+    for (int k = 0; k < stored.length; k++) {
+      int i = stored[k];
+      if (bitmap != null) {
+        if (!GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
+          data[k] = staticMissingValue;
+          continue;
+        }
+        i = rank(ranks, i);
+      }
+      if (i != next) {
+        reader.setBitOffset(i * nb);
+      }
+      data[k] = (R + reader.bits2UInt(nb) * EE) / DD;
+      next = i + 1;
+    }
+    return data;
+  }
+
   /*
    * Data template 7.2 – Grid point data – complex packing
    * Note: For most templates, details of the packing process are described in Regulation 92.9.4.
@@ -379,6 +443,110 @@ public class Grib2DataReader {
     return data;
   }
 
+  // Grid point data - complex packing, only at the stored indices.
+  // The groups are found from their lengths and widths, so only the wanted values are unpacked.
+  private float[] getPoints2(RandomAccessFile raf, Grib2Drs.Type2 gdrs, int[] stored) throws IOException {
+    int mvm = gdrs.missingValueManagement;
+    float mv = getMissingValue(gdrs);
+
+    float DD = (float) java.lang.Math.pow((double) 10, (double) gdrs.decimalScaleFactor);
+    float R = gdrs.referenceValue;
+    float EE = (float) java.lang.Math.pow(2.0, (double) gdrs.binaryScaleFactor);
+    float ref_val = R / DD;
+
+    int NG = gdrs.numberOfGroups;
+    if (NG == 0) {
+      return pick(nGroups0(bitmapIndicator, ref_val, mv), stored);
+    }
+
+    BitReader reader = new BitReader(raf, startPos + 5);
+
+    // the group descriptors are read the same way as getData2()
+    int[] X1 = new int[NG];
+    int nb = gdrs.numberOfBits;
+    if (nb != 0) {
+      for (int i = 0; i < NG; i++) {
+        X1[i] = (int) reader.bits2UInt(nb);
+      }
+    }
+
+    int[] NB = new int[NG];
+    nb = gdrs.bitsGroupWidths;
+    if (nb != 0) {
+      reader.incrByte();
+      for (int i = 0; i < NG; i++) {
+        NB[i] = (int) reader.bits2UInt(nb);
+      }
+    }
+
+    int[] L = new int[NG];
+    int ref = gdrs.referenceGroupLength;
+    int len_inc = gdrs.lengthIncrement;
+    nb = gdrs.bitsScaledGroupLength;
+
+    reader.incrByte();
+    for (int i = 0; i < NG; i++) {
+      L[i] = ref + (int) reader.bits2UInt(nb) * len_inc;
+    }
+    L[NG - 1] = gdrs.lengthLastGroup; // enter Length of Last Group
+
+    // the X2 values start on the next byte; find where each group starts, as a value index and a bit offset
+    reader.incrByte();
+    BitReader values = new BitReader(raf, raf.getFilePointer());
+    int[] groupStart = new int[NG + 1];
+    int[] groupBitStart = new int[NG + 1];
+    for (int i = 0; i < NG; i++) {
+      groupStart[i + 1] = groupStart[i] + L[i];
+      groupBitStart[i + 1] = groupBitStart[i] + L[i] * NB[i];
+    }
+
+    int[] ranks = (bitmap == null) ? null : bitmapRanks();
+    float[] data = new float[stored.length];
+    int nextBit = -1; // the bit the reader is positioned at
+    for (int k = 0; k < stored.length; k++) {
+      int idx = stored[k];
+      if (bitmap != null) {
+        if (!GribNumbers.testBitIsSet(bitmap[idx / 8], idx % 8)) {
+          data[k] = mv;
+          continue;
+        }
+        idx = rank(ranks, idx);
+      }
+      if (idx >= groupStart[NG]) {
+        continue; // not in any group, getData2() leaves it as zero
+      }
+      int i = findGroup(groupStart, NG, idx);
+      if (NB[i] == 0) {
+        data[k] = (mvm == 0) ? (R + X1[i] * EE) / DD : mv;
+      } else {
+        int bit = groupBitStart[i] + (idx - groupStart[i]) * NB[i];
+        if (bit != nextBit) {
+          values.setBitOffset(bit);
+        }
+        int X2 = (int) values.bits2UInt(NB[i]);
+        nextBit = bit + NB[i];
+        if (mvm != 0 && X2 == bitsmv1[NB[i]]) {
+          data[k] = mv;
+        } else {
+          data[k] = (R + (X1[i] + X2) * EE) / DD;
+        }
+      }
+    }
+    return data;
+  }
+
+  // the group that holds value idx, skipping empty groups
+  private static int findGroup(int[] groupStart, int NG, int idx) {
+    int i = Arrays.binarySearch(groupStart, 0, NG + 1, idx);
+    if (i < 0) {
+      i = -i - 2;
+    }
+    while (i < NG - 1 && groupStart[i + 1] <= idx) {
+      i++;
+    }
+    return i;
+  }
+
 
   /*
    * from wgrib unpk_complex():
@@ -461,7 +629,10 @@ public class Grib2DataReader {
    * (4) Overall minimum will be negative in most cases. First bit should indicate the sign: 0 if positive, 1 if
    * negative.
    */
-  private float[] getData3(RandomAccessFile raf, Grib2Drs.Type3 gdrs) throws IOException {
+  // If stored is not null, only the values at those indices are returned, and when there are no missing values
+  // only those are scaled. If work is not null and large enough, the values are unpacked into it.
+  private float[] getData3(RandomAccessFile raf, Grib2Drs.Type3 gdrs, @Nullable int[] stored, @Nullable float[] work)
+      throws IOException {
     int mvm = gdrs.missingValueManagement;
     float mv = getMissingValue(gdrs);
 
@@ -472,7 +643,8 @@ public class Grib2DataReader {
 
     int NG = gdrs.numberOfGroups;
     if (NG == 0) {
-      return nGroups0(bitmapIndicator, ref_val, mv);
+      float[] data = nGroups0(bitmapIndicator, ref_val, mv);
+      return (stored == null) ? data : pick(data, stored);
     }
 
     BitReader reader = new BitReader(raf, startPos + 5);
@@ -507,11 +679,7 @@ public class Grib2DataReader {
       }
 
     } else {
-      float[] data = new float[totalNPoints];
-      for (int i = 0; i < totalNPoints; i++) {
-        data[i] = mv;
-      }
-      return data;
+      return missing(mv, stored);
     }
 
     // [ww +1]-xx Get reference values for groups (X1's)
@@ -572,24 +740,16 @@ public class Grib2DataReader {
     if (mvm != 0) {
       if (totalL != totalNPoints) {
         logger.warn("NPoints != gds.nPts: " + totalL + "!=" + totalNPoints);
-        float[] data = new float[totalNPoints];
-        for (int i = 0; i < totalNPoints; i++) {
-          data[i] = mv;
-        }
-        return data;
+        return missing(mv, stored);
       }
     } else {
       if (totalL != dataNPoints) {
         logger.warn("NPoints != drs.nPts: " + totalL + "!=" + totalNPoints);
-        float[] data = new float[totalNPoints];
-        for (int i = 0; i < totalNPoints; i++) {
-          data[i] = mv;
-        }
-        return data;
+        return missing(mv, stored);
       }
     }
 
-    float[] data = new float[totalNPoints];
+    float[] data = (work != null && work.length >= totalNPoints) ? work : new float[totalNPoints];
 
     // [zz +1 ]-nn get X2 values and calculate the results Y using formula
     // formula used to create values, Y * 10**D = R + (X1 + X2) * 2**E
@@ -702,14 +862,31 @@ public class Grib2DataReader {
     // E = THE BINARY SCALE FACTOR
     // D = THE DECIMAL SCALE FACTOR
 
+    if (stored != null && mvm == 0) { // only scale the wanted values
+      int[] ranks = (bitmap == null) ? null : bitmapRanks();
+      float[] result = new float[stored.length];
+      for (int k = 0; k < stored.length; k++) {
+        int i = stored[k];
+        if (bitmap != null) {
+          if (!GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
+            result[k] = mv;
+            continue;
+          }
+          i = rank(ranks, i);
+        }
+        result[k] = (R + (data[i] * EE)) / DD;
+      }
+      return result;
+    }
+
     if (mvm == 0) { // no missing values
-      for (int i = 0; i < data.length; i++) {
+      for (int i = 0; i < totalNPoints; i++) {
         data[i] = (R + (data[i] * EE)) / DD;
       }
     } else if (mvm == 1 || mvm == 2) { // missing value == 1 || missing value == 2
       int count2 = 0;
       float[] tmp = new float[totalNPoints];
-      for (int i = 0; i < data.length; i++) {
+      for (int i = 0; i < totalNPoints; i++) {
         if (dataBitMap[i]) {
           tmp[i] = (R + (data[count2++] * EE)) / DD;
         } else { // mvm = 1 or 2
@@ -733,6 +910,12 @@ public class Grib2DataReader {
       data = tmp;
     }
 
+    return (stored == null) ? data : pick(data, stored);
+  }
+
+  private float[] missing(float mv, @Nullable int[] stored) {
+    float[] data = new float[(stored == null) ? totalNPoints : stored.length];
+    Arrays.fill(data, mv);
     return data;
   }
 
@@ -1094,6 +1277,50 @@ public class Grib2DataReader {
    * (3) If bit number 4 is set, the first row scan is as defined by previous flags.
    */
 
+  // where each point of the grid returned by getData() is in the stored data, the inverse of scanningModeCheck()
+  private int[] toStoredIndices(int[] points) {
+    if ((scanMode == 0) || (scanMode == 64)) {
+      return points;
+    }
+    boolean flipAll = !GribUtils.scanModeXisPositive(scanMode);
+    boolean flipOdd = !flipAll && !GribUtils.scanModeSameDirection(scanMode);
+    if (!flipAll && !flipOdd) {
+      return points;
+    }
+    int[] stored = new int[points.length];
+    for (int k = 0; k < points.length; k++) {
+      int row = points[k] / nx;
+      int col = points[k] % nx;
+      stored[k] = (flipAll || row % 2 != 0) ? row * nx + nx - col - 1 : points[k];
+    }
+    return stored;
+  }
+
+  // number of bits set in the bitmap before each of its bytes
+  private int[] bitmapRanks() {
+    int[] ranks = new int[bitmap.length];
+    int count = 0;
+    for (int i = 0; i < bitmap.length; i++) {
+      ranks[i] = count;
+      count += Integer.bitCount(bitmap[i] & 0xff);
+    }
+    return ranks;
+  }
+
+  // index of point i in the packed values, which only hold the points whose bit is set
+  private int rank(int[] ranks, int i) {
+    int before = (bitmap[i / 8] & 0xff) >>> (8 - i % 8);
+    return ranks[i / 8] + Integer.bitCount(before);
+  }
+
+  private static float[] pick(float[] data, int[] indices) {
+    float[] result = new float[indices.length];
+    for (int k = 0; k < indices.length; k++) {
+      result[k] = data[indices[k]];
+    }
+    return result;
+  }
+
   /*
    * Flag table 3.4 – Scanning mode
    * Bit No. Value Meaning
@@ -226,22 +226,28 @@ public class Grib2Index extends GribIndex {
         dataRaf = raf;
       }
 
-      Grib2RecordScanner scan = new Grib2RecordScanner(dataRaf);
-      while (scan.hasNext()) {
-        Grib2Record r = scan.next();
-        if (r == null)
-          break; // done
-        records.add(r);
-
-        Grib2SectionGridDefinition gdss = r.getGDSsection();
-        Integer index = gdsMap.get(gdss.calcCRC());
-        if (index == null) {
-          gdsList.add(gdss);
-          index = gdsList.size() - 1;
-          gdsMap.put(gdss.calcCRC(), index);
-          rootBuilder.addGdsList(makeGdsProto(gdss));
+      boolean readAhead = dataRaf.isReadAhead();
+      dataRaf.setReadAhead(true); // records are scanned front to back
+      try {
+        Grib2RecordScanner scan = new Grib2RecordScanner(dataRaf);
+        while (scan.hasNext()) {
+          Grib2Record r = scan.next();
+          if (r == null)
+            break; // done
+          records.add(r);
+
+          Grib2SectionGridDefinition gdss = r.getGDSsection();
+          Integer index = gdsMap.get(gdss.calcCRC());
+          if (index == null) {
+            gdsList.add(gdss);
+            index = gdsList.size() - 1;
+            gdsMap.put(gdss.calcCRC(), index);
+            rootBuilder.addGdsList(makeGdsProto(gdss));
+          }
+          rootBuilder.addRecords(makeRecordProto(r, index, r.getGDS().scanMode));
         }
-        rootBuilder.addRecords(makeRecordProto(r, index, r.getGDS().scanMode));
+      } finally {
+        dataRaf.setReadAhead(readAhead);
       }
 
       if (records.isEmpty())
@@ -328,6 +328,55 @@ public class Grib2Record {
     return data;
   }
 
+  /**
+   * Read some of the points of a data array: use when you want to be independent of the GribRecord.
+   * Where the packing allows, only the wanted points are unpacked, see {@link Grib2DataReader#getData(RandomAccessFile,
+   * Grib2SectionBitMap, Grib2Drs, int[], float[])}. Thin grids are unpacked and regridded in full.
+   *
+   * @param raf from this RandomAccessFile
+   * @param drsPos Grib2SectionDataRepresentation starts here
+   * @param bmsPos if non-zero, use the bms that starts here
+   * @param gdsNumberPoints gdss.getNumberPoints()
+   * @param scanMode gds.scanMode
+   * @param nx gds.nx
+   * @param ny gds.ny
+   * @param nptsInLine for thin grids, else null
+   * @param points indices (y * nx + x) of the wanted points in the array returned by readData()
+   * @param work if not null and at least gdsNumberPoints long, reused as work space
+   * @return values of the wanted points, in the same order as points
+   * @throws IOException on read error
+   */
+  public static float[] readData(RandomAccessFile raf, long drsPos, long bmsPos, int gdsNumberPoints, int scanMode,
+      int nx, int ny, int[] nptsInLine, int[] points, @Nullable float[] work) throws IOException {
+    if (nptsInLine != null) {
+      float[] data = readData(raf, drsPos, bmsPos, gdsNumberPoints, scanMode, nx, ny, nptsInLine);
+      float[] result = new float[points.length];
+      for (int i = 0; i < points.length; i++) {
+        result[i] = data[points[i]];
+      }
+      return result;
+    }
+
+    raf.seek(drsPos);
+    Grib2SectionDataRepresentation drs = new Grib2SectionDataRepresentation(raf);
+    Grib2SectionBitMap bms = new Grib2SectionBitMap(raf);
+    Grib2SectionData dataSection = new Grib2SectionData(raf);
+
+    if (bmsPos > 0)
+      bms = Grib2SectionBitMap.factory(raf, bmsPos);
+
+    Grib2DataReader reader = new Grib2DataReader(drs.getDataTemplate(), gdsNumberPoints, drs.getDataPoints(), scanMode,
+        nx, dataSection.getStartingPosition(), dataSection.getMsgLength());
+
+    Grib2Drs gdrs = drs.getDrs(raf);
+
+    float[] data = reader.getData(raf, bms, gdrs, points, work);
+
+    if (getlastRecordRead)
+      lastRecordRead = Grib2RecordScanner.findRecordByDrspos(raf, drsPos);
+    return data;
+  }
+
   public void check(RandomAccessFile raf, Formatter f) throws IOException {
     long messLen = is.getMessageLength();
     long startPos = is.getStartPos();
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package timing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thredds.featurecollection.FeatureCollectionConfig;
+import thredds.filesystem.MFileOS;
+import thredds.inventory.CollectionUpdateType;
+import ucar.nc2.grib.collection.GribCdmIndex;
+import ucar.nc2.grib.collection.GribCollectionImmutable;
+import ucar.nc2.grib.coord.SparseArray;
+
+/**
+ * Heap used by the records of all the variables of a GRIB collection, as read by VariableIndex.readRecords(),
+ * compared to the SparseArray of Record objects that readRecords() used to keep. The arguments are ncx4 files, or
+ * GRIB files to index; without arguments, copies of some of the test files are indexed in a temporary directory.
+ * Run with a small fixed heap (e.g. -Xms512m -Xmx512m) so that System.gc() gives steady numbers.
+ */
+public class MemoryGribRecords {
+  private static final Logger logger = LoggerFactory.getLogger(MemoryGribRecords.class);
+  private static final String dir = "../grib/src/test/data/";
+  private static final String[] files = {"thinGrid.grib2", "GFS_Global_onedeg_20220627.TotalPrecip.Out24hrs.grib2",
+      "ofs_atl.grib2", "Lannion.pds31.grib2", "berkes.grib2", "rap-native.grib2", "cosmo-eu.grib2"};
+  private static final int NCOPIES = 20; // each copy is a separate collection, to measure more than the noise
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    List<File> paths = new ArrayList<>();
+    if (args.length > 0) {
+      for (String arg : args) {
+        paths.add(new File(arg));
+      }
+    } else {
+      File tempDir = Files.createTempDirectory("MemoryGribRecords").toFile();
+      for (int i = 0; i < NCOPIES; i++) {
+        File copyDir = new File(tempDir, Integer.toString(i));
+        copyDir.mkdir();
+        for (String name : files) {
+          File copy = new File(copyDir, name);
+          Files.copy(new File(dir + name).toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+          paths.add(copy);
+        }
+      }
+    }
+
+    List<GribCollectionImmutable> collections = new ArrayList<>();
+    List<GribCollectionImmutable.VariableIndex> vars = new ArrayList<>();
+    for (File path : paths) {
+      GribCollectionImmutable gc = open(path);
+      if (gc == null) {
+        System.out.printf("cant open %s%n", path);
+        continue;
+      }
+      collections.add(gc);
+      for (GribCollectionImmutable.Dataset ds : gc.getDatasets()) {
+        for (GribCollectionImmutable.GroupGC group : ds.getGroups()) {
+          vars.addAll(group.getVariables());
+        }
+      }
+    }
+
+    // the first reads load classes and open the index files
+    int nwarmup = Math.min(vars.size(), 3);
+    for (GribCollectionImmutable.VariableIndex vi : vars.subList(0, nwarmup)) {
+      vi.readRecords();
+    }
+    vars = vars.subList(nwarmup, vars.size());
+
+    long before = usedMemory();
+    long nrecords = 0;
+    for (GribCollectionImmutable.VariableIndex vi : vars) {
+      vi.readRecords();
+      nrecords += Math.max(vi.countNRecords(), 0);
+    }
+    long columns = usedMemory() - before;
+
+    // what readRecords() used to keep
+    before = usedMemory();
+    List<SparseArray<GribCollectionImmutable.Record>> sparseArrays = new ArrayList<>(vars.size());
+    for (GribCollectionImmutable.VariableIndex vi : vars) {
+      sparseArrays.add(vi.getSparseArray());
+    }
+    long objects = usedMemory() - before;
+
+    // sparseArrays must stay reachable until measured
+    System.out.printf("%d collections, %d variables, %d records%n", collections.size(), sparseArrays.size(),
+        nrecords);
+    System.out.printf("  columns        %10d bytes (%.1f/record)%n", columns, (double) columns / nrecords);
+    System.out.printf("  Record objects %10d bytes (%.1f/record)%n", objects, (double) objects / nrecords);
+    for (GribCollectionImmutable gc : collections) {
+      gc.close();
+    }
+  }
+
+  private static GribCollectionImmutable open(File path) throws IOException {
+    FeatureCollectionConfig config = new FeatureCollectionConfig();
+    if (path.getName().endsWith(GribCdmIndex.NCX_SUFFIX)) {
+      return GribCdmIndex.openCdmIndex(path.getPath(), config, false, logger);
+    }
+    boolean isGrib1 = !path.getName().contains("grib2");
+    return GribCdmIndex.openGribCollectionFromDataFile(isGrib1, new MFileOS(path), CollectionUpdateType.test, config,
+        new Formatter(), logger);
+  }
+
+  private static long usedMemory() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(100);
+      used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+    }
+    return used;
+  }
+}
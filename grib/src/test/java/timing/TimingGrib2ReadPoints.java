@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package timing;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import ucar.nc2.grib.grib2.Grib2Gds;
+import ucar.nc2.grib.grib2.Grib2Record;
+import ucar.nc2.grib.grib2.Grib2RecordScanner;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * Time to get a 10x10 box from a GRIB2 record, decoding the whole record and picking the points, compared to
+ * decoding only the points. Uses the biggest record of each data template that has a point decode (simple packing
+ * and complex packing, with and without spatial differencing), in the files given as arguments, or in some of the
+ * test files.
+ */
+public class TimingGrib2ReadPoints {
+  private static final String dir = "../grib/src/test/data/";
+  private static final String[] files = {"Eumetsat.VerticalPerspective.grib2", "ds.snow.grib2", "ds.sky.grib2",
+      "pdsScale.pds1.grib2", "sref.pds2.grib2", "cosmo-eu.grib2", "rap-native.grib2", "ofs_atl.grib2",
+      "Lannion.pds31.grib2", "MRMS_LowLevelCompositeReflectivity_00.50_20141207-072038.grib2"};
+  private static final int NREADS = 50;
+
+  public static void main(String[] args) throws IOException {
+    String[] paths = args.length > 0 ? args : prefix(files);
+    Map<Integer, String> biggestFile = new HashMap<>();
+    Map<Integer, Integer> biggestNpts = new HashMap<>();
+    for (String path : paths) {
+      try (RandomAccessFile raf = new RandomAccessFile(path, "r")) {
+        Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+        while (scanner.hasNext()) {
+          Grib2Record gr = scanner.next();
+          int template = gr.getDataRepresentationSection().getDataTemplate();
+          int npts = gr.getGDSsection().getNumberPoints();
+          boolean decodesPoints = template == 0 || template == 2 || template == 3;
+          if (decodesPoints && !gr.getGDS().isThin() && npts > biggestNpts.getOrDefault(template, 0)) {
+            biggestFile.put(template, path);
+            biggestNpts.put(template, npts);
+          }
+        }
+      }
+    }
+
+    for (Map.Entry<Integer, String> entry : biggestFile.entrySet()) {
+      time(entry.getValue(), entry.getKey(), biggestNpts.get(entry.getKey()));
+    }
+  }
+
+  private static void time(String path, int template, int wantNpts) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(path, "r")) {
+      Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+      while (scanner.hasNext()) {
+        Grib2Record gr = scanner.next();
+        if (gr.getDataRepresentationSection().getDataTemplate() != template
+            || gr.getGDSsection().getNumberPoints() != wantNpts) {
+          continue;
+        }
+        Grib2Gds gds = gr.getGDS();
+        long drsPos = gr.getDataRepresentationSection().getStartingPosition();
+        int nx = gds.getNxRaw();
+        int ny = gds.getNyRaw();
+        int[] points = box(nx, ny / 2, Math.min(ny / 2 + 10, ny), nx / 2, Math.min(nx / 2 + 10, nx));
+        float[] work = new float[wantNpts];
+
+        for (int i = 0; i < 5; i++) { // warm up
+          readFull(raf, gr, drsPos, points);
+          Grib2Record.readData(raf, drsPos, 0, wantNpts, gr.getScanMode(), nx, ny, null, points, work);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < NREADS; i++) {
+          readFull(raf, gr, drsPos, points);
+        }
+        double fullMsecs = (System.nanoTime() - start) * 1.0e-6 / NREADS;
+        start = System.nanoTime();
+        for (int i = 0; i < NREADS; i++) {
+          Grib2Record.readData(raf, drsPos, 0, wantNpts, gr.getScanMode(), nx, ny, null, points, work);
+        }
+        double pointsMsecs = (System.nanoTime() - start) * 1.0e-6 / NREADS;
+        System.out.printf("template %2d %9d points: full %8.3f ms, 10x10 box %8.3f ms (%s)%n", template, wantNpts,
+            fullMsecs, pointsMsecs, path);
+        return;
+      }
+    }
+  }
+
+  private static float[] readFull(RandomAccessFile raf, Grib2Record gr, long drsPos, int[] points)
+      throws IOException {
+    Grib2Gds gds = gr.getGDS();
+    float[] data = Grib2Record.readData(raf, drsPos, 0, gr.getGDSsection().getNumberPoints(), gr.getScanMode(),
+        gds.getNxRaw(), gds.getNyRaw(), null);
+    float[] result = new float[points.length];
+    for (int i = 0; i < points.length; i++) {
+      result[i] = data[points[i]];
+    }
+    return result;
+  }
+
+  private static int[] box(int nx, int y0, int y1, int x0, int x1) {
+    int[] points = new int[(y1 - y0) * (x1 - x0)];
+    int count = 0;
+    for (int y = y0; y < y1; y++) {
+      for (int x = x0; x < x1; x++) {
+        points[count++] = y * nx + x;
+      }
+    }
+    return points;
+  }
+
+  private static String[] prefix(String[] names) {
+    String[] result = new String[names.length];
+    for (int i = 0; i < names.length; i++) {
+      result[i] = dir + names[i];
+    }
+    return result;
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.protobuf.CodedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/** Test decoding only topDir and mfiles from a GribCollection message. */
+public class TestGribCdmIndexFileList {
+  private static final GribCollectionProto.MFile mfile1 = makeMFile("one.grib2", 0);
+  private static final GribCollectionProto.MFile mfile2 = makeMFile("two.grib2", 1);
+
+  private static GribCollectionProto.MFile makeMFile(String filename, int index) {
+    return GribCollectionProto.MFile.newBuilder().setFilename(filename).setLastModified(1000 + index)
+        .setLength(2000 + index).setIndex(index).build();
+  }
+
+  @Test
+  public void shouldDecodeTopDirAndMFiles() throws IOException {
+    GribCollectionProto.GribCollection gc = GribCollectionProto.GribCollection.newBuilder().setName("name")
+        .setTopDir("/data/grib").addMfiles(mfile1).addMfiles(mfile2)
+        .addDataset(GribCollectionProto.Dataset.getDefaultInstance()).setCenter(7).setVersion(3).build();
+
+    List<GribCollectionProto.MFile> mfiles = new ArrayList<>();
+    String topDir = GribCdmIndex.decodeFileList(CodedInputStream.newInstance(gc.toByteArray()), mfiles);
+    assertThat(topDir).isEqualTo("/data/grib");
+    assertThat(mfiles).containsExactly(mfile1, mfile2).inOrder();
+  }
+
+  @Test
+  public void shouldDecodeEmptyMessage() throws IOException {
+    List<GribCollectionProto.MFile> mfiles = new ArrayList<>();
+    String topDir = GribCdmIndex.decodeFileList(CodedInputStream.newInstance(new byte[0]), mfiles);
+    assertThat(topDir).isEmpty();
+    assertThat(mfiles).isEmpty();
+  }
+
+  @Test
+  public void shouldDecodeFieldsInAnyOrder() throws IOException {
+    // parsers must accept the fields in any order, and repeated fields split by other fields
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    GribCollectionProto.GribCollection.newBuilder().addMfiles(mfile1).build().writeTo(bytes);
+    GribCollectionProto.GribCollection.newBuilder().addDataset(GribCollectionProto.Dataset.getDefaultInstance())
+        .setCenter(7).build().writeTo(bytes);
+    GribCollectionProto.GribCollection.newBuilder().addMfiles(mfile2).setTopDir("/data/grib").build()
+        .writeTo(bytes);
+    GribCollectionProto.GribCollection expected = GribCollectionProto.GribCollection.parseFrom(bytes.toByteArray());
+
+    List<GribCollectionProto.MFile> mfiles = new ArrayList<>();
+    String topDir = GribCdmIndex.decodeFileList(CodedInputStream.newInstance(bytes.toByteArray()), mfiles);
+    assertThat(topDir).isEqualTo(expected.getTopDir());
+    assertThat(mfiles).containsExactlyElementsIn(expected.getMfilesList()).inOrder();
+    assertThat(mfiles).containsExactly(mfile1, mfile2).inOrder();
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import thredds.featurecollection.FeatureCollectionConfig;
+import thredds.featurecollection.FeatureCollectionType;
+import thredds.inventory.CollectionUpdateType;
+
+/** Indexing the files of a collection on several threads must give the same ncx4 index as one at a time. */
+public class TestGribCollectionBuilderParallel {
+  private static final Logger logger = LoggerFactory.getLogger(TestGribCollectionBuilderParallel.class);
+  private static final String dir = "../grib/src/test/data/";
+  private static final String[] files = {"GFS_Global_onedeg_20220627.TotalPrecip.Out24hrs.grib2",
+      "GFS_Global_onedeg_20220627_0000.TotalPrecip.Out48hrs.grib2", "berkes.grib2", "cosmo-eu.grib2",
+      "sref.pds2.grib2", "HLYA10.grib2"};
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldWriteSameIndexAsSequential() throws IOException {
+    File collectionDir = tempFolder.newFolder("collection");
+    for (String filename : files) {
+      Files.copy(Paths.get(dir + filename), collectionDir.toPath().resolve(filename));
+    }
+
+    byte[] parallel = buildIndex(collectionDir, 4);
+    byte[] sequential = buildIndex(collectionDir, 1);
+    assertThat(parallel).isEqualTo(sequential);
+  }
+
+  // build the ncx4 index from scratch, return its bytes
+  private static byte[] buildIndex(File collectionDir, int indexThreads) throws IOException {
+    File[] indexes = collectionDir.listFiles((d, name) -> name.endsWith(".gbx9") || name.endsWith(".ncx4"));
+    for (File index : indexes) {
+      assertThat(index.delete()).isTrue();
+    }
+
+    String spec = collectionDir.getPath() + "/.*grib2$";
+    FeatureCollectionConfig config = new FeatureCollectionConfig("testParallel", "path", FeatureCollectionType.GRIB2,
+        spec, null, null, null, null, null);
+    assertThat(config.gribConfig.setOption("indexThreads", Integer.toString(indexThreads))).isTrue();
+    assertThat(GribCdmIndex.updateGribCollection(config, CollectionUpdateType.always, logger)).isTrue();
+
+    File ncx4 = GribCdmIndex.getTopIndexFileFromConfig(config);
+    assertThat(ncx4).isNotNull();
+    assertThat(collectionDir.list((d, name) -> name.endsWith(".gbx9"))).hasLength(files.length);
+    return Files.readAllBytes(ncx4.toPath());
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+/** Decoding the records of a read on an Executor must give the same result as decoding them one after another. */
+@RunWith(Parameterized.class)
+public class TestGribDataReaderParallel {
+  private static final String dir = "../grib/src/test/data/";
+
+  @Parameterized.Parameters(name = "{0}")
+  public static List<String> getTestParameters() {
+    return Arrays.asList("GFS_Global_onedeg_20220627.TotalPrecip.Out24hrs.grib2", "berkes.grib2",
+        "single_point_gds.grib1");
+  }
+
+  @Parameterized.Parameter()
+  public String filename;
+
+  private ExecutorService executor;
+
+  @Before
+  public void setExecutor() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void resetExecutor() {
+    GribDataReader.setExecutor(null);
+    GribDataReader.setMaxPendingRecords(2 * Runtime.getRuntime().availableProcessors());
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldReadSameAsSerial() throws IOException, InvalidRangeException {
+    try (NetcdfFile nc = NetcdfFiles.open(dir + filename)) {
+      int count = 0;
+      for (Variable var : nc.getVariables()) {
+        int rank = var.getRank();
+        if (rank < 3 || var.getDataType() != DataType.FLOAT)
+          continue;
+        int[] shape = var.getShape();
+        Section section = null;
+        if (shape[rank - 2] > 2 && shape[rank - 1] > 2) {
+          int[] origin = new int[rank];
+          int[] size = shape.clone();
+          origin[rank - 2] = 1;
+          size[rank - 2] = shape[rank - 2] / 2;
+          origin[rank - 1] = 1;
+          size[rank - 1] = shape[rank - 1] / 2;
+          section = new Section(origin, size);
+        }
+
+        GribDataReader.setExecutor(null);
+        Array expected = var.read();
+        Array expectedSection = (section == null) ? null : var.read(section);
+
+        GribDataReader.setExecutor(executor);
+        GribDataReader.setMaxPendingRecords(2); // so that reading waits for decoding
+        assertThat((float[]) var.read().copyTo1DJavaArray()).isEqualTo(expected.copyTo1DJavaArray());
+        if (section != null) {
+          assertThat((float[]) var.read(section).copyTo1DJavaArray())
+              .isEqualTo(expectedSection.copyTo1DJavaArray());
+        }
+        count++;
+      }
+      assertThat(count).isGreaterThan(0);
+    }
+  }
+}
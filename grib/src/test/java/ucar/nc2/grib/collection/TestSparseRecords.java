@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import ucar.nc2.grib.coord.SparseArray;
+
+/** SparseRecords must find the same records as a SparseArray of Records, whatever the width of its track. */
+public class TestSparseRecords {
+
+  @Test
+  public void shouldMatchSparseArray() {
+    checkSameAsSparseArray(new int[] {3, 10, 10}, 0);
+    checkSameAsSparseArray(new int[] {3, 10, 10}, 100);
+    checkSameAsSparseArray(new int[] {40, 100, 10}, 3);
+    checkSameAsSparseArray(new int[] {200, 400}, 0);
+  }
+
+  @Test
+  public void shouldUseLessMemory() {
+    // byte track, no bms or drs offsets
+    Columns small = new Columns(new int[] {10, 10}, 0);
+    assertThat(small.makeRecords().getMemoryUsed()).isEqualTo(100 + small.n * (4 + 8));
+
+    // short track
+    Columns grib2 = new Columns(new int[] {100, 100}, 100);
+    assertThat(grib2.makeRecords().getMemoryUsed()).isEqualTo(2 * 10000 + grib2.n * (4 + 8 + 4 + 4));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldRejectBadTrack() {
+    new SparseRecords(new int[] {2}, new int[] {1, 2}, new int[1], new long[1], new int[1], new int[1], 0);
+  }
+
+  private void checkSameAsSparseArray(int[] shape, int bmsOffset) {
+    Columns columns = new Columns(shape, bmsOffset);
+    SparseRecords records = columns.makeRecords();
+    SparseArray<GribCollectionImmutable.Record> sa = columns.makeSparseArray();
+    assertThat(records.getTotalSize()).isEqualTo(sa.getTotalSize());
+    assertThat(records.countNotMissing()).isEqualTo(sa.countNotMissing());
+
+    for (int idx = 0; idx < sa.getTotalSize(); idx++) {
+      checkEquals(records.getRecord(idx), sa.getContent(idx));
+    }
+    int[] last = new int[shape.length];
+    for (int i = 0; i < shape.length; i++) {
+      last[i] = shape[i] - 1;
+    }
+    checkEquals(records.getRecord(last), sa.getContent(last));
+
+    SparseArray<GribCollectionImmutable.Record> copy = records.toSparseArray();
+    for (int idx = 0; idx < sa.getTotalSize(); idx++) {
+      checkEquals(copy.getContent(idx), sa.getContent(idx));
+    }
+  }
+
+  // every 7th missing, the records in reverse order
+  private static class Columns {
+    final int[] shape;
+    final int[] track;
+    final int n;
+    final int[] fileno;
+    final long[] pos;
+    final int[] bms;
+    final int[] drs;
+
+    Columns(int[] shape, int bmsOffset) {
+      this.shape = shape;
+      int totalSize = 1;
+      for (int size : shape) {
+        totalSize *= size;
+      }
+      track = new int[totalSize];
+      List<Integer> present = new ArrayList<>();
+      for (int idx = 0; idx < totalSize; idx++) {
+        if (idx % 7 != 3) {
+          present.add(idx);
+        }
+      }
+      n = present.size();
+      fileno = new int[n];
+      pos = new long[n];
+      bms = new int[n];
+      drs = new int[n];
+      for (int recno = 0; recno < n; recno++) {
+        track[present.get(n - 1 - recno)] = recno + 1;
+        fileno[recno] = recno % 5;
+        pos[recno] = 1000L * recno + Integer.MAX_VALUE;
+        bms[recno] = bmsOffset == 0 ? 0 : bmsOffset + recno;
+        drs[recno] = bmsOffset == 0 ? 0 : recno;
+      }
+    }
+
+    SparseRecords makeRecords() {
+      return new SparseRecords(shape, track, fileno, pos, bms, drs, 0);
+    }
+
+    SparseArray<GribCollectionImmutable.Record> makeSparseArray() {
+      List<GribCollectionImmutable.Record> records = new ArrayList<>();
+      for (int recno = 0; recno < n; recno++) {
+        records.add(new GribCollectionImmutable.Record(fileno[recno], pos[recno], bms[recno], drs[recno]));
+      }
+      return new SparseArray<>(shape, track, records, 0);
+    }
+  }
+
+  private void checkEquals(GribCollectionImmutable.Record record, GribCollectionImmutable.Record expected) {
+    if (expected == null) {
+      assertThat(record).isNull();
+      return;
+    }
+    assertThat(record).isNotNull();
+    assertThat(record.fileno).isEqualTo(expected.fileno);
+    assertThat(record.pos).isEqualTo(expected.pos);
+    assertThat(record.bmsOffset).isEqualTo(expected.bmsOffset);
+    assertThat(record.drsOffset).isEqualTo(expected.drsOffset);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.unidata.io.RandomAccessFile;
+
+/** Reading some of the points of a record must give the same values as reading the whole record. */
+public class TestGrib2ReadPoints {
+  private static final String dir = "../grib/src/test/data/";
+  private static final String[] files = {"Eumetsat.VerticalPerspective.grib2", "ds.snow.grib2", "ds.sky.grib2",
+      "pdsScale.pds1.grib2", "sref.pds2.grib2", "cosmo-eu.grib2", "rap-native.grib2", "thinGrid.grib2"};
+
+  @Test
+  public void shouldMatchFullRead() throws IOException {
+    Set<Integer> templates = new HashSet<>();
+    Random random = new Random(42);
+    for (String file : files) {
+      try (RandomAccessFile raf = new RandomAccessFile(dir + file, "r")) {
+        Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+        int nrecords = 0;
+        while (scanner.hasNext() && nrecords++ < 20) {
+          Grib2Record gr = scanner.next();
+          Grib2Gds gds = gr.getGDS();
+          long drsPos = gr.getDataRepresentationSection().getStartingPosition();
+          int npts = gr.getGDSsection().getNumberPoints();
+          int[] nptsInLine = gds.isThin() ? gds.getNptsInLine() : null;
+          templates.add(gr.getDataRepresentationSection().getDataTemplate());
+
+          float[] full = Grib2Record.readData(raf, drsPos, 0, npts, gr.getScanMode(), gds.getNxRaw(), gds.getNyRaw(),
+              nptsInLine);
+          int nx = gds.isThin() ? gds.getNx() : gds.getNxRaw();
+          int ny = full.length / nx;
+
+          List<int[]> subsets = new ArrayList<>();
+          // a box in the middle, the last row, the last column and some scattered points
+          subsets.add(box(nx, ny / 3, Math.min(ny / 3 + 10, ny), nx / 2, Math.min(nx / 2 + 10, nx)));
+          subsets.add(box(nx, ny - 1, ny, 0, nx));
+          subsets.add(box(nx, 0, ny, nx - 1, nx));
+          int[] scattered = new int[50];
+          for (int i = 0; i < scattered.length; i++) {
+            scattered[i] = random.nextInt(full.length);
+          }
+          subsets.add(scattered);
+
+          float[] work = new float[npts + 7]; // a reused work array may be longer than the grid
+          for (int[] points : subsets) {
+            float[] expected = new float[points.length];
+            for (int i = 0; i < points.length; i++) {
+              expected[i] = full[points[i]];
+            }
+            float[] got = Grib2Record.readData(raf, drsPos, 0, npts, gr.getScanMode(), gds.getNxRaw(), gds.getNyRaw(),
+                nptsInLine, points, work);
+            assertThat(got).isEqualTo(expected);
+            Arrays.fill(work, 999.0f); // garbage from the last record must not matter
+          }
+        }
+      }
+    }
+    assertThat(templates).containsAtLeast(0, 2, 3);
+  }
+
+  @Test
+  public void shouldReadSectionOfVariable() throws IOException, InvalidRangeException {
+    try (NetcdfFile nc = NetcdfFiles.open(dir + "ds.sky.grib2")) {
+      Variable var = nc.findVariable("Total_cloud_cover_surface");
+      int[] shape = var.getShape();
+      int rank = shape.length;
+      Array all = var.read();
+
+      int[] origin = new int[rank];
+      int[] size = shape.clone();
+      origin[rank - 2] = 30;
+      size[rank - 2] = 10;
+      origin[rank - 1] = 110;
+      size[rank - 1] = 7;
+      Section section = new Section(origin, size);
+      Array part = var.read(section);
+      assertThat((float[]) part.copyTo1DJavaArray())
+          .isEqualTo((float[]) all.section(origin, size).copyTo1DJavaArray());
+    }
+  }
+
+  private static int[] box(int nx, int y0, int y1, int x0, int x1) {
+    int[] points = new int[(y1 - y0) * (x1 - x0)];
+    int count = 0;
+    for (int y = y0; y < y1; y++) {
+      for (int x = x0; x < x1; x++) {
+        points[count++] = y * nx + x;
+      }
+    }
+    return points;
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.units;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of values that are expensive to compute but immutable, with a bounded number of entries. Lookups don't lock.
+ * When the cache is full it's emptied, which suits a working set that's usually much smaller than the bound.
+ *
+ * Instances are thread-safe.
+ */
+final class BoundedCache<K, V> {
+  private final int maxSize;
+  private final ConcurrentHashMap<K, V> map = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs an empty cache.
+   *
+   * @param maxSize The largest number of entries.
+   */
+  BoundedCache(final int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the cached value of a key.
+   *
+   * @param key The key. Shall not be <code>null</code>.
+   * @return The value, or <code>null</code> if it isn't cached.
+   */
+  V get(final K key) {
+    return map.get(key);
+  }
+
+  /**
+   * Caches the value of a key.
+   *
+   * @param key The key. Shall not be <code>null</code>.
+   * @param value The value. Shall not be <code>null</code>.
+   */
+  void put(final K key, final V value) {
+    if (map.size() >= maxSize) {
+      map.clear();
+    }
+    map.put(key, value);
+  }
+
+  /**
+   * Returns the number of cached values.
+   *
+   * @return The number of cached values.
+   */
+  int size() {
+    return map.size();
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.units;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A converter between units that are scaled and offset derived units. The chain of units is flattened when the
+ * converter is created into a list of multiplications, divisions and additions, which are applied to whole arrays one
+ * after the other, in the order and with the precision that the units themselves use. So the results are the same as
+ * those of {@link UnitImpl.MyConverter}, without a virtual call per unit and per value.
+ *
+ * Instances are immutable.
+ */
+final class CompiledConverter extends ConverterImpl {
+  private static final byte MULTIPLY = 0;
+  private static final byte DIVIDE = 1;
+  private static final byte ADD = 2;
+
+  private final byte[] ops;
+  private final double[] constants;
+  private final float[] floatConstants;
+
+  private CompiledConverter(final Unit fromUnit, final Unit toUnit, final List<Op> ops) throws ConversionException {
+    super(fromUnit, toUnit);
+    this.ops = new byte[ops.size()];
+    this.constants = new double[ops.size()];
+    this.floatConstants = new float[ops.size()];
+    for (int i = 0; i < ops.size(); i++) {
+      this.ops[i] = ops.get(i).op;
+      this.constants[i] = ops.get(i).constant;
+      this.floatConstants[i] = (float) ops.get(i).constant;
+    }
+  }
+
+  /**
+   * Creates a converter between two units.
+   *
+   * @param fromUnit The unit from which to convert.
+   * @param toUnit The unit to which to convert.
+   * @return A compiled converter if both units are scaled or offset derived units, else a
+   *         {@link UnitImpl.MyConverter}.
+   * @throws ConversionException The units are not convertible.
+   */
+  static Converter compile(final Unit fromUnit, final Unit toUnit) throws ConversionException {
+    final List<Op> toDerived = new ArrayList<>();
+    final List<Op> fromDerived = new ArrayList<>();
+    if (!addOps(fromUnit, true, toDerived) || !addOps(toUnit, false, fromDerived)) {
+      return new UnitImpl.MyConverter(fromUnit, toUnit);
+    }
+    // a unit converts from its derived unit innermost first
+    for (int i = fromDerived.size(); --i >= 0;) {
+      toDerived.add(fromDerived.get(i));
+    }
+    return new CompiledConverter(fromUnit, toUnit, toDerived);
+  }
+
+  /**
+   * Appends the operations of a unit, outermost first, as in its toDerivedUnit() and fromDerivedUnit() methods.
+   *
+   * @return <code>false</code> if the unit isn't a chain of scaled and offset units of a derived unit.
+   */
+  private static boolean addOps(Unit unit, final boolean toDerived, final List<Op> ops) {
+    while (true) {
+      if (unit instanceof ScaledUnit) {
+        final double scale = ((ScaledUnit) unit).getScale();
+        if (scale != 1) { // multiplying or dividing by one is exact
+          ops.add(new Op(toDerived ? MULTIPLY : DIVIDE, scale));
+        }
+        unit = ((ScaledUnit) unit).getUnit();
+      } else if (unit instanceof OffsetUnit) {
+        // subtracting is the same as adding the negation
+        final double offset = ((OffsetUnit) unit).getOffset();
+        ops.add(new Op(ADD, toDerived ? offset : -offset));
+        unit = ((OffsetUnit) unit).getUnit();
+      } else {
+        return unit instanceof DerivedUnitImpl;
+      }
+    }
+  }
+
+  public double convert(final double amount) {
+    double value = amount;
+    for (int i = 0; i < ops.length; i++) {
+      switch (ops[i]) {
+        case MULTIPLY:
+          value *= constants[i];
+          break;
+        case DIVIDE:
+          value /= constants[i];
+          break;
+        default:
+          value += constants[i];
+      }
+    }
+    return value;
+  }
+
+  public float[] convert(final float[] input, final float[] output) {
+    float[] values = input;
+    for (int i = 0; i < ops.length; i++) {
+      final float constant = floatConstants[i];
+      switch (ops[i]) {
+        case MULTIPLY:
+          for (int j = 0; j < input.length; j++) {
+            output[j] = values[j] * constant;
+          }
+          break;
+        case DIVIDE:
+          for (int j = 0; j < input.length; j++) {
+            output[j] = values[j] / constant;
+          }
+          break;
+        default:
+          for (int j = 0; j < input.length; j++) {
+            output[j] = values[j] + constant;
+          }
+      }
+      values = output;
+    }
+    if (values != output) {
+      System.arraycopy(input, 0, output, 0, input.length);
+    }
+    return output;
+  }
+
+  public double[] convert(final double[] input, final double[] output) {
+    double[] values = input;
+    for (int i = 0; i < ops.length; i++) {
+      final double constant = constants[i];
+      switch (ops[i]) {
+        case MULTIPLY:
+          for (int j = 0; j < input.length; j++) {
+            output[j] = values[j] * constant;
+          }
+          break;
+        case DIVIDE:
+          for (int j = 0; j < input.length; j++) {
+            output[j] = values[j] / constant;
+          }
+          break;
+        default:
+          for (int j = 0; j < input.length; j++) {
+            output[j] = values[j] + constant;
+          }
+      }
+      values = output;
+    }
+    if (values != output) {
+      System.arraycopy(input, 0, output, 0, input.length);
+    }
+    return output;
+  }
+
+  private static final class Op {
+    final byte op;
+    final double constant;
+
+    Op(final byte op, final double constant) {
+      this.op = op;
+      this.constant = constant;
+    }
+  }
+}
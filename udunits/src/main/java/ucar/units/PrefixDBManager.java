@@ -16,7 +16,7 @@ public final class PrefixDBManager implements Serializable {
   /**
    * @serial
    */
-  private static PrefixDB instance;
+  private static volatile PrefixDB instance;
 
   /**
    * Gets the current prefix database.
@@ -25,11 +25,17 @@ public final class PrefixDBManager implements Serializable {
    * @throws PrefixDBException
    *         The current prefix database couldn't be created.
    */
-  public static synchronized PrefixDB instance() throws PrefixDBException {
-    if (instance == null) {
-      instance = StandardPrefixDB.instance();
+  public static PrefixDB instance() throws PrefixDBException {
+    PrefixDB result = instance;
+    if (result == null) {
+      synchronized (PrefixDBManager.class) {
+        if (instance == null) {
+          instance = StandardPrefixDB.instance();
+        }
+        result = instance;
+      }
     }
-    return instance;
+    return result;
   }
 
   /**
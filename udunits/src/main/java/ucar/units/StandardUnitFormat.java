@@ -19,7 +19,8 @@ import java.util.TimeZone;
 /**
  * Standard formatter/parser for unit specifications.
  * <p/>
- * Instances of this class are thread-compatible but not thread-safe.
+ * {@link #parse(String, UnitDB)} is thread-safe: it runs a parser kept by the calling thread. The methods generated by
+ * JavaCC, such as {@link #unitSpec(UnitDB)}, use the state of the instance and are not.
  *
  * @author Steven R. Emmerson
  */
@@ -33,6 +34,11 @@ public final class StandardUnitFormat extends UnitFormatImpl implements Standard
    */
   private static StandardUnitFormat _instance;
 
+  /**
+   * The parser of each thread. The JavaCC parser keeps its state in the instance, so it can't be shared.
+   */
+  private static final ThreadLocal<StandardUnitFormat> parsers = ThreadLocal.withInitial(StandardUnitFormat::new);
+
   /**
    * The date formatter.
    *
@@ -95,7 +101,7 @@ public final class StandardUnitFormat extends UnitFormatImpl implements Standard
 
   /**
    * Decodes a unit specification. An unrecognized unit is made into
-   * an UnknownUnit.
+   * an UnknownUnit. This method is thread-safe.
    *
    * @param spec The unit specification to be decoded.
    * @param unitDB The unit database to use.
@@ -116,10 +122,11 @@ public final class StandardUnitFormat extends UnitFormatImpl implements Standard
     if (spec == null)
       throw new UnitParseException(spec);
 
-    ReInit(new StringReader(spec.trim()));
+    StandardUnitFormat parser = parsers.get();
+    parser.ReInit(new StringReader(spec.trim()));
 
     try {
-      Unit unit = unitSpec(unitDB);
+      Unit unit = parser.unitSpec(unitDB);
       return unit;
     } catch (TokenMgrError e) {
       throw new UnitParseException(spec, e);
@@ -255,7 +255,7 @@ public final class TimeScaleUnit extends UnitImpl {
    * @throws ConversionException <code>outputUnit</code> is not a TimeScaleUnit.
    */
   @Override
-  public Converter getConverterTo(final Unit outputUnit) throws ConversionException {
+  protected Converter createConverterTo(final Unit outputUnit) throws ConversionException {
     return new MyConverter(this, outputUnit);
   }
 
@@ -40,6 +40,11 @@ public class UnitDBImpl implements UnitDB, Serializable {
    */
   private final Map<String, Unit> symbolMap;
 
+  /**
+   * The number of changes to this database, so that units parsed from it can be cached.
+   */
+  private transient volatile int modificationCount;
+
   /**
    * Constructs from the expected number of names and symbols. The sizes will
    * be used to construct the initial database but will not limit its growth.
@@ -67,6 +72,7 @@ public class UnitDBImpl implements UnitDB, Serializable {
     unitSet.addAll(that.unitSet);
     nameMap.putAll(that.nameMap);
     symbolMap.putAll(that.symbolMap);
+    modified();
   }
 
   /**
@@ -295,7 +301,11 @@ public class UnitDBImpl implements UnitDB, Serializable {
    */
   private void addByName(final String name, final Unit newUnit) throws UnitExistsException {
     if (name != null) {
-      addUnique(nameMap, canonicalize(name), newUnit);
+      try {
+        addUnique(nameMap, canonicalize(name), newUnit);
+      } finally {
+        modified();
+      }
     }
   }
 
@@ -312,10 +322,28 @@ public class UnitDBImpl implements UnitDB, Serializable {
    */
   private void addBySymbol(final String symbol, final Unit newUnit) throws UnitExistsException {
     if (symbol != null) {
-      addUnique(symbolMap, symbol, newUnit);
+      try {
+        addUnique(symbolMap, symbol, newUnit);
+      } finally {
+        modified();
+      }
     }
   }
 
+  private synchronized void modified() {
+    modificationCount++;
+  }
+
+  /**
+   * Returns the number of changes to this database. Units parsed from the database may be cached while this count
+   * stays the same.
+   *
+   * @return The number of changes to this database.
+   */
+  int getModificationCount() {
+    return modificationCount;
+  }
+
   /**
    * Adds a unique unit to a map..
    * 
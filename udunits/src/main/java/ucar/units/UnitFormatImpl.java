@@ -15,10 +15,28 @@ package ucar.units;
 public abstract class UnitFormatImpl implements UnitFormat {
 
   private static final long serialVersionUID = 1L;
-  private static final Object MUTEX = new Object();
+  private static final int MAX_CACHED_UNITS = 1000;
 
   /**
-   * Parses a unit specification. This method is thread-safe.
+   * The units parsed from a unit database, while the database doesn't change.
+   */
+  private static final class ParsedUnits {
+    final UnitDBImpl unitDB;
+    final int modificationCount;
+    final BoundedCache<String, Unit> units = new BoundedCache<>(MAX_CACHED_UNITS);
+
+    ParsedUnits(final UnitDBImpl unitDB, final int modificationCount) {
+      this.unitDB = unitDB;
+      this.modificationCount = modificationCount;
+    }
+  }
+
+  private transient volatile ParsedUnits parsedUnits;
+
+  /**
+   * Parses a unit specification using the default unit database. This method is thread-safe if
+   * {@link #parse(String, UnitDB)} is, and doesn't lock. Units are immutable, so the units parsed from a
+   * {@link UnitDBImpl} are cached until the database is changed.
    * 
    * @param spec
    *        The unit specification (e.g. "m/s");
@@ -39,9 +57,25 @@ public abstract class UnitFormatImpl implements UnitFormat {
    */
   public final Unit parse(final String spec) throws NoSuchUnitException, UnitParseException, SpecificationException,
       UnitDBException, PrefixDBException, UnitSystemException {
-    synchronized (MUTEX) {
-      return parse(spec, UnitDBManager.instance());
+    final UnitDB unitDB = UnitDBManager.instance();
+    if (spec == null || !(unitDB instanceof UnitDBImpl)) {
+      return parse(spec, unitDB);
+    }
+    // read the count before parsing, so a unit parsed while the database changes is only cached under the old count
+    final int modificationCount = ((UnitDBImpl) unitDB).getModificationCount();
+    ParsedUnits cache = parsedUnits;
+    if (cache == null || cache.unitDB != unitDB || cache.modificationCount != modificationCount) {
+      cache = new ParsedUnits((UnitDBImpl) unitDB, modificationCount);
+      parsedUnits = cache;
+    }
+    Unit unit = cache.units.get(spec);
+    if (unit == null) {
+      unit = parse(spec, unitDB);
+      if (unit != null) {
+        cache.units.put(spec, unit);
+      }
     }
+    return unit;
   }
 
   /**
@@ -23,6 +23,22 @@ public abstract class UnitImpl implements Unit, Serializable {
    */
   private final UnitName id;
 
+  /**
+   * The converter last returned by getConverterTo(), so that converting value after value to the same unit doesn't
+   * create a converter each time. Converters are immutable.
+   */
+  private transient volatile LastConverter lastConverter;
+
+  private static final class LastConverter {
+    final Unit outputUnit;
+    final Converter converter;
+
+    LastConverter(final Unit outputUnit, final Converter converter) {
+      this.outputUnit = outputUnit;
+      this.converter = converter;
+    }
+  }
+
   /**
    * Constructs with no ID.
    */
@@ -239,7 +255,7 @@ public abstract class UnitImpl implements Unit, Serializable {
 
   /**
    * Gets a Converter for converting numeric values from this unit to another,
-   * compatible unit.
+   * compatible unit. The converter to the unit last asked for is reused.
    * 
    * @param outputUnit
    *        The unit to which to convert the numeric values.
@@ -248,7 +264,27 @@ public abstract class UnitImpl implements Unit, Serializable {
    *         The units aren't convertible.
    */
   public Converter getConverterTo(final Unit outputUnit) throws ConversionException {
-    return new MyConverter(this, outputUnit);
+    LastConverter last = lastConverter;
+    if (last == null || last.outputUnit != outputUnit) {
+      last = new LastConverter(outputUnit, createConverterTo(outputUnit));
+      lastConverter = last;
+    }
+    return last.converter;
+  }
+
+  /**
+   * Creates a Converter for converting numeric values from this unit to
+   * another, compatible unit. Scaled and offset derived units get a converter
+   * that is compiled to a list of arithmetic operations.
+   * 
+   * @param outputUnit
+   *        The unit to which to convert the numeric values.
+   * @return A converter of values from this unit to the other unit.
+   * @throws ConversionException
+   *         The units aren't convertible.
+   */
+  protected Converter createConverterTo(final Unit outputUnit) throws ConversionException {
+    return CompiledConverter.compile(this, outputUnit);
   }
 
   /**
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2024 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.units;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+/**
+ * Tests parsing units from several threads, and the caches of parsed units and converters.
+ */
+public class TestUnitCaches {
+  private static final String[] SPECS = {"K", "m/s", "km", "hours since 1970-01-01", "days since 1900-1-1 0:0:0",
+      "degC", "furlong/fortnight", "3.5 m2.s-1", "kg m-2 s-1", "lg(re 1 mW)", "mb", "knot", "nosuchunit"};
+
+  @Test
+  public void testConcurrentParse() throws Exception {
+    final UnitFormat format = StandardUnitFormat.instance();
+    final UnitDB unitDB = UnitDBManager.instance();
+    final List<Unit> expected = new ArrayList<>();
+    for (String spec : SPECS) {
+      expected.add(format.parse(spec, unitDB));
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<Boolean>> results = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        results.add(executor.submit(() -> {
+          for (int i = 0; i < 500; i++) {
+            for (int j = 0; j < SPECS.length; j++) {
+              // bypasses the cache of parsed units
+              if (!expected.get(j).equals(format.parse(SPECS[j], unitDB))) {
+                return false;
+              }
+            }
+          }
+          return true;
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testParsedUnitsAreCachedUntilTheDatabaseChanges() throws Exception {
+    final UnitFormat format = UnitFormatManager.instance();
+    assertSame(format.parse("km/h"), format.parse("km/h"));
+
+    final String name = "testunitcachesmeter";
+    final Unit unknown = format.parse(name);
+    assertTrue(unknown instanceof UnknownUnit);
+    final Unit meter = format.parse("m");
+    UnitDBManager.instance().addUnit(meter.clone(UnitName.newUnitName(name)));
+    final Unit known = format.parse(name);
+    assertFalse(known instanceof UnknownUnit);
+    assertTrue(known.isCompatible(meter));
+    assertEquals(1.0, known.convertTo(1.0, meter), 0.0);
+  }
+
+  @Test
+  public void testConvertersAreCachedAndCompiled() throws Exception {
+    final UnitFormat format = UnitFormatManager.instance();
+    final Unit from = format.parse("km");
+    final Unit to = format.parse("ft");
+    final Converter converter = from.getConverterTo(to);
+    assertSame(converter, from.getConverterTo(to));
+    assertSame(converter, format.parse("km").getConverterTo(format.parse("ft")));
+    assertTrue(converter instanceof CompiledConverter);
+
+    final Unit bels = format.parse("lg(re 1 mW)");
+    assertFalse(bels.getConverterTo(format.parse("ln(re 1 W)")) instanceof CompiledConverter);
+    assertTrue(format.parse("hours since 1970-01-01").getConverterTo(
+        format.parse("seconds since 2000-01-01")) instanceof TimeScaleUnit.MyConverter);
+  }
+
+  @Test
+  public void testCompiledConvertersMatchUnitConversions() throws Exception {
+    final String[][] pairs = {{"km", "m"}, {"m", "km"}, {"degC", "degF"}, {"degF", "K"}, {"K", "degC"},
+        {"m/s", "knot"}, {"3.5 m2.s-1", "cm2/h"}, {"kg m-2 s-1", "g cm-2 day-1"}, {"Pa", "hPa"}, {"m", "m"}};
+    final UnitFormat format = UnitFormatManager.instance();
+    final Random random = new Random(25);
+    final double[] values = new double[1000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10);
+    }
+    values[0] = Double.NaN;
+    values[1] = Double.POSITIVE_INFINITY;
+    values[2] = -0.0;
+    values[3] = 0.0;
+    final float[] floats = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      floats[i] = (float) values[i];
+    }
+
+    for (String[] pair : pairs) {
+      final Unit from = format.parse(pair[0]);
+      final Unit to = format.parse(pair[1]);
+      final Converter compiled = CompiledConverter.compile(from, to);
+      final Converter reference = new UnitImpl.MyConverter(from, to);
+      assertTrue(pair[0], compiled instanceof CompiledConverter);
+
+      for (int i = 0; i < values.length; i++) {
+        assertEquals(pair[0], Double.doubleToLongBits(reference.convert(values[i])),
+            Double.doubleToLongBits(compiled.convert(values[i])));
+        assertEquals(pair[0], Float.floatToIntBits(reference.convert(floats[i])),
+            Float.floatToIntBits(compiled.convert(floats[i])));
+      }
+      assertTrue(pair[0], Arrays.equals(reference.convert(values), compiled.convert(values)));
+      assertTrue(pair[0], Arrays.equals(reference.convert(floats), compiled.convert(floats)));
+      final double[] inPlace = values.clone();
+      assertTrue(pair[0], Arrays.equals(reference.convert(values), compiled.convert(inPlace, inPlace)));
+      final float[] floatsInPlace = floats.clone();
+      assertTrue(pair[0], Arrays.equals(reference.convert(floats), compiled.convert(floatsInPlace, floatsInPlace)));
+    }
+  }
+}
@@ -9,7 +9,6 @@ import thredds.featurecollection.FeatureCollectionConfig;
 import thredds.inventory.MFile;
 import ucar.nc2.grib.collection.GribCdmIndex;
 import ucar.nc2.grib.collection.GribCollectionImmutable;
-import ucar.nc2.grib.collection.GribCollectionImmutable.Record;
 import ucar.nc2.grib.collection.PartitionCollectionImmutable;
 import ucar.nc2.grib.coord.Coordinate;
 import ucar.nc2.grib.coord.CoordinateRuntime;
@@ -402,10 +401,9 @@ public class CdmIndexPanel extends JPanel {
               f.format(" total   SA  Variable%n");
             try {
               v.readRecords();
-              SparseArray<Record> sa = v.getSparseArray();
-              int ntracks = sa.getTotalSize();
-              int nrecords = sa.getContent().size();
-              int memEstForSA = 276 + nrecords * 40 + ntracks * 4;
+              int nrecords = v.countNRecords();
+              // the track and record columns, plus the SparseRecords object and its array headers
+              int memEstForSA = 128 + (int) v.getRecordsMemoryUsed();
               int memEstBytes = 280 + memEstForSA;
               f.format("%6d %6d %-50s nrecords=%6d%n", memEstBytes, memEstForSA, bean.getName(), nrecords);
               bytesTotal += memEstBytes;
@@ -474,10 +472,9 @@ public class CdmIndexPanel extends JPanel {
               f.format(" total   SA  Variable%n");
             try {
               v.readRecords();
-              SparseArray<GribCollectionImmutable.Record> sa = v.getSparseArray();
-              int ntracks = sa.getTotalSize();
-              int nrecords = sa.getContent().size();
-              int memEstForSA = 276 + nrecords * 40 + ntracks * 4;
+              int nrecords = v.countNRecords();
+              // the track and record columns, plus the SparseRecords object and its array headers
+              int memEstForSA = 128 + (int) v.getRecordsMemoryUsed();
               int memEstBytes = 280 + memEstForSA;
               f.format("%6d %6d %-50s nrecords=%6d%n", memEstBytes, memEstForSA, bean.getName(), nrecords);
               bytesTotal += memEstBytes;
@@ -1193,8 +1190,8 @@ public class CdmIndexPanel extends JPanel {
         try {
           v.readRecords();
 
-          if (v.getSparseArray() != null) {
-            SparseArray<GribCollectionImmutable.Record> sa = v.getSparseArray();
+          SparseArray<GribCollectionImmutable.Record> sa = v.getSparseArray();
+          if (sa != null) {
             sa.showInfo(f, null);
             f.format("%n");
             sa.showTracks(f);